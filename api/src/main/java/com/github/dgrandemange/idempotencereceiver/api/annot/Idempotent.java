@@ -7,6 +7,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
+import com.github.dgrandemange.idempotencereceiver.api.model.DegradationConfiguration.Policy;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
 
 /**
  * <p>
@@ -36,4 +38,94 @@ public @interface Idempotent {
 	 *         result
 	 */
 	Class<? extends Exception>[] registerableEx() default {};
+
+	/**
+	 * <p>
+	 * Name of the logical space the idempotent method results of this endpoint
+	 * should be attached to, overriding the common namespace (see
+	 * {@link IdempotentReceiverCommonConfiguration#getNamespace()}).
+	 * </p>
+	 * 
+	 * <p>
+	 * Repositories supporting it may map a namespace to its own storage region
+	 * (e.g. its own infinispan cache), so that short-lived, high-volume entries do
+	 * not share eviction pressure with long-lived, low-volume ones.
+	 * </p>
+	 * 
+	 * @return endpoint namespace, empty to use the common namespace
+	 */
+	String namespace() default "";
+
+	/**
+	 * Lifetime (Time To Live) in milliseconds of the idempotent method results of
+	 * this endpoint in the repository, overriding the repository default one.
+	 * 
+	 * @return endpoint results lifetime in milliseconds, zero or negative to use
+	 *         the repository default lifetime
+	 */
+	long ttlMs() default 0;
+
+	/**
+	 * <p>
+	 * Existence-only deduplication mode, intended for fire-and-forget endpoints
+	 * whose response needs no replay.
+	 * </p>
+	 * 
+	 * <p>
+	 * Instead of storing the full method result in the repository, only a
+	 * fingerprint of the request is kept in a compact in-memory set, and duplicate
+	 * requests are answered with a canned response (see
+	 * {@link IdempotentReceiverCommonConfiguration#getExistenceOnly()}).<br>
+	 * NB : the set is local to the application instance, so duplicates are only
+	 * detected when they reach the same instance.
+	 * </p>
+	 * 
+	 * @return true to only record that a request was seen
+	 */
+	boolean existenceOnly() default false;
+
+	/**
+	 * <p>
+	 * Optimistic mode, intended for endpoints whose concurrent duplicates are
+	 * rare and whose handler is guarded on its own (e.g. by a unique constraint).
+	 * </p>
+	 *
+	 * <p>
+	 * The running result of a first presentation is not registered before the
+	 * handler method proceeds, saving one repository write : the completed result
+	 * is registered only if no racing presentation has registered its own first.
+	 * A running result is only registered when the handler method takes longer
+	 * than configured (see
+	 * {@link IdempotentReceiverCommonConfiguration#getOptimistic()}).<br>
+	 * NB : concurrent duplicates reaching the handler before then are both
+	 * processed.
+	 * </p>
+	 *
+	 * @return true to only register the completed result
+	 */
+	boolean optimistic() default false;
+
+	/**
+	 * <p>
+	 * Latency budget, i.e. cumulated duration in milliseconds of the repository
+	 * calls made for a request of this endpoint, overriding the common one (see
+	 * {@link IdempotentReceiverCommonConfiguration#getLatencyBudget()}).
+	 * </p>
+	 *
+	 * @return latency budget in milliseconds, 0 (default) to apply the common
+	 *         one
+	 */
+	long latencyBudgetMs() default 0;
+
+	/**
+	 * <p>
+	 * Degradation policy applied when the repository is unavailable, overriding
+	 * the common one (see
+	 * {@link IdempotentReceiverCommonConfiguration#getDegradation()}).
+	 * </p>
+	 *
+	 * @return degradation policy, {@link Policy#DEFAULT} (default) to apply the
+	 *         common one
+	 */
+	Policy degradation() default Policy.DEFAULT;
 }
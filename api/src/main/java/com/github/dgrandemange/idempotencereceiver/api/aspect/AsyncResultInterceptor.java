@@ -0,0 +1,158 @@
+package com.github.dgrandemange.idempotencereceiver.api.aspect;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+
+/**
+ * <p>
+ * Registered on the {@link WebAsyncManager} of a first presentation whose
+ * handler method returned an asynchronous result (<code>Callable</code>,
+ * <code>WebAsyncTask</code>, <code>DeferredResult</code>,
+ * <code>CompletableFuture</code>, streamed body ...).
+ * </p>
+ *
+ * <p>
+ * Once the asynchronous result is produced, it hands the running idempotent
+ * method result over to the async dispatch (where it is finalized by
+ * {@link com.github.dgrandemange.idempotencereceiver.api.web.interceptor.ImrHandlerInterceptor}),
+ * classifying a failed result against {@link Idempotent#registerableEx()} the
+ * same way a synchronous handler method exception is.
+ * </p>
+ *
+ * <p>
+ * On timeout or container error, the result is unregistered, so that a
+ * subsequent presentation gets processed again instead of waiting for a result
+ * that will never come.
+ * </p>
+ */
+class AsyncResultInterceptor implements CallableProcessingInterceptor, DeferredResultProcessingInterceptor {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncResultInterceptor.class);
+
+	static final String KEY = AsyncResultInterceptor.class.getName();
+
+	private final IdempotentReceiverAspect aspect;
+
+	private final Idempotent annot;
+
+	private final IdempotentMethodResult imr;
+
+	private final AtomicBoolean handled = new AtomicBoolean();
+
+	AsyncResultInterceptor(IdempotentReceiverAspect aspect, Idempotent annot, IdempotentMethodResult imr) {
+		this.aspect = aspect;
+		this.annot = annot;
+		this.imr = imr;
+	}
+
+	/**
+	 * Registers this interceptor for both callable and deferred result
+	 * processing, as the handler method result type decides which one applies
+	 */
+	void register(WebAsyncManager asyncManager) {
+		asyncManager.registerCallableInterceptor(KEY, this);
+		asyncManager.registerDeferredResultInterceptor(KEY, this);
+	}
+
+	@Override
+	public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+		onResult(request, concurrentResult);
+	}
+
+	@Override
+	public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+		onTimeout();
+		return CallableProcessingInterceptor.RESULT_NONE;
+	}
+
+	@Override
+	public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+		onError(t);
+		return CallableProcessingInterceptor.RESULT_NONE;
+	}
+
+	@Override
+	public <T> void postProcess(NativeWebRequest request, DeferredResult<T> deferredResult,
+	        Object concurrentResult) {
+		onResult(request, concurrentResult);
+	}
+
+	@Override
+	public <T> boolean handleTimeout(NativeWebRequest request, DeferredResult<T> deferredResult) {
+		onTimeout();
+		return true;
+	}
+
+	@Override
+	public <T> boolean handleError(NativeWebRequest request, DeferredResult<T> deferredResult, Throwable t) {
+		onError(t);
+		return true;
+	}
+
+	/**
+	 * Hands the idempotent method result over to the async dispatch, unless the
+	 * asynchronous result is a non registerable exception.<br>
+	 * NB : called on the thread producing the result, before the async dispatch
+	 * is triggered
+	 */
+	void onResult(NativeWebRequest request, Object concurrentResult) {
+		if (!handled.compareAndSet(false, true)) {
+			// Timed out or failed : result already unregistered
+			return;
+		}
+
+		if (!(concurrentResult instanceof Throwable)) {
+			LOGGER.trace(
+			        "Asynchronous result has been produced : flag idempotent method result for further registration {}",
+			        imr);
+			request.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr,
+			        RequestAttributes.SCOPE_REQUEST);
+			return;
+		}
+
+		String exceptionTypeName = concurrentResult.getClass().getName();
+		if ((concurrentResult instanceof Exception)
+		        && aspect.isExceptionRegisterable(annot.registerableEx(), (Exception) concurrentResult)) {
+			LOGGER.trace(
+			        "Asynchronous result is exception type {}, configured registerable : flag idempotent method result for further registration {}",
+			        exceptionTypeName, imr);
+			request.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr,
+			        RequestAttributes.SCOPE_REQUEST);
+			request.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION,
+			        concurrentResult, RequestAttributes.SCOPE_REQUEST);
+		} else {
+			LOGGER.trace(
+			        "Asynchronous result is exception type {}, not configured as registerable : unregister idempotent method result {}",
+			        exceptionTypeName, imr);
+			aspect.unregisterIdempotentImageResult(imr);
+		}
+	}
+
+	void onTimeout() {
+		if (handled.compareAndSet(false, true)) {
+			LOGGER.trace("Asynchronous processing has timed out : unregister idempotent method result {}", imr);
+			aspect.unregisterIdempotentImageResult(imr);
+		}
+	}
+
+	void onError(Throwable t) {
+		if (handled.compareAndSet(false, true)) {
+			LOGGER.trace("Asynchronous processing has failed ({}) : unregister idempotent method result {}",
+			        t.getMessage(), imr);
+			aspect.unregisterIdempotentImageResult(imr);
+		}
+	}
+
+}
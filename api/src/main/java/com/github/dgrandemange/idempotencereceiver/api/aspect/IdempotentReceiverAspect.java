@@ -1,50 +1,92 @@
 package com.github.dgrandemange.idempotencereceiver.api.aspect;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.util.StreamUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.ContentCachingRequestWrapper;
+import org.springframework.web.util.WebUtils;
 
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
 import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotenceUnavailableException;
+import com.github.dgrandemange.idempotencereceiver.api.exception.LatencyBudgetExhaustedException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.MissingIdempotencyKeyHeaderException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.SubsequentPresentationException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.UnmarshallException;
+import com.github.dgrandemange.idempotencereceiver.api.model.DegradationConfiguration.Policy;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.LatencyBudgetConfiguration.Exhaustion;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyCompression;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyStorage;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.GenerationalFingerprintSet;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.InFlightRegistry;
 import com.github.dgrandemange.idempotencereceiver.api.service.support.InstantProviderImpl;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LatencyBudget;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LeaseManager;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LocalFallbackStore;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayCodecRegistry;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayCodecRegistry.ReplayCodec;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RetryDelayStatistics;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningMarkerScheduler;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningResultWatcher;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.WriteBehindFinalizer;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.BufferedBodyRequestWrapper;
 import com.github.dgrandemange.idempotencereceiver.api.web.http.ByteArrayHttpInputMessage;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CapturingResponseWrapper;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.DirectReplayWriter;
 
 /**
  * <p>
@@ -59,6 +101,13 @@ public class IdempotentReceiverAspect implements Ordered {
 	public static final String HTTP_HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
 	public static final String HTTP_HEADER_PROCESSING_DURATION = "Processing-Duration";
 	public static final String REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT = "idempotenceMethodResult";
+	public static final String REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION = "idempotenceRegisterableException";
+	public static final String REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT = "idempotenceClaimedResult";
+	public static final String REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY = "idempotenceStreamedBody";
+	public static final String REQUEST_ATTR_IDEMPOTENCE_LATENCY_BUDGET = "idempotenceLatencyBudget";
+	public static final String REQUEST_ATTR_IDEMPOTENCE_LOCAL_FALLBACK = "idempotenceLocalFallback";
+	public static final String REQUEST_ATTR_IDEMPOTENCE_BYPASSED = "idempotenceBypassed";
+	public static final String REQUEST_ATTR_IDEMPOTENCE_REJECTION = "idempotenceRejection";
 
 	private InstantProviderImpl instantProvider = new InstantProviderImpl();
 
@@ -71,6 +120,44 @@ public class IdempotentReceiverAspect implements Ordered {
 	@Autowired
 	private RequestMappingHandlerAdapter handlerAdapter;
 
+	@Autowired(required = false)
+	private RetryDelayStatistics retryDelayStatistics;
+
+	@Autowired(required = false)
+	private GenerationalFingerprintSet fingerprintSet;
+
+	@Autowired(required = false)
+	private BodyCompression bodyCompression;
+
+	@Autowired(required = false)
+	private BodyStorage bodyStorage;
+
+	@Autowired(required = false)
+	private DirectReplayWriter replayWriter;
+
+	@Autowired(required = false)
+	private ReplayCodecRegistry replayCodecRegistry;
+
+	@Autowired(required = false)
+	private InFlightRegistry inFlightRegistry;
+
+	@Autowired(required = false)
+	private RunningResultWatcher runningResultWatcher;
+
+	@Autowired(required = false)
+	private LeaseManager leaseManager;
+
+	@Autowired(required = false)
+	private RunningMarkerScheduler runningMarkerScheduler;
+
+	@Autowired(required = false)
+	private WriteBehindFinalizer writeBehindFinalizer;
+
+	@Autowired(required = false)
+	private LocalFallbackStore localFallbackStore;
+
+	private final ConcurrentMap<Method, Boolean> directReplaySupport = new ConcurrentHashMap<>();
+
 	@Override
 	public int getOrder() {
 		return configuration.getOrder();
@@ -85,6 +172,26 @@ public class IdempotentReceiverAspect implements Ordered {
 	public Object core(ProceedingJoinPoint joinpoint, Idempotent annot) throws Throwable {
 		HttpServletRequest request = retrieveCurrentHttpRequest();
 
+		Object claimed = request.getAttribute(REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT);
+		if (claimed instanceof IdempotentMethodResult) {
+			// Request has already been looked up and claimed before dispatch
+			request.removeAttribute(REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT);
+			return proceedFirstPresentation(joinpoint, annot, (IdempotentMethodResult) claimed);
+		}
+
+		Object rejection = request.getAttribute(REQUEST_ATTR_IDEMPOTENCE_REJECTION);
+		if (rejection instanceof IdempotenceUnavailableException) {
+			// Request has already been rejected before dispatch
+			request.removeAttribute(REQUEST_ATTR_IDEMPOTENCE_REJECTION);
+			throw (IdempotenceUnavailableException) rejection;
+		}
+
+		if (Boolean.TRUE.equals(request.getAttribute(REQUEST_ATTR_IDEMPOTENCE_BYPASSED))) {
+			// Repository has already been found unavailable before dispatch
+			request.removeAttribute(REQUEST_ATTR_IDEMPOTENCE_BYPASSED);
+			return joinpoint.proceed();
+		}
+
 		String idempotencyKeyHeader = request.getHeader(HTTP_HEADER_IDEMPOTENCY_KEY);
 
 		if (Objects.isNull(idempotencyKeyHeader) || idempotencyKeyHeader.trim().isEmpty()) {
@@ -99,15 +206,140 @@ public class IdempotentReceiverAspect implements Ordered {
 			        idempotencyKeyHeader, request.getRequestURI(), request.getRemoteAddr());
 		}
 
-		String requestHash = computeRequestHash(request);
+		String namespace = resolveNamespace(annot);
+		String requestHash = Objects.isNull(namespace) ? computeRequestHash(request)
+		        : computeRequestHash(request, namespace);
 
 		return handleIdempotency(joinpoint, annot, requestHash);
 	}
 
+	/**
+	 * @param annot
+	 *            idempotent endpoint annotation
+	 * @return namespace declared by the endpoint, null when the endpoint relies on
+	 *         the common namespace
+	 */
+	String resolveNamespace(Idempotent annot) {
+		String namespace = annot.namespace();
+		return (Objects.isNull(namespace) || namespace.trim().isEmpty()) ? null : namespace;
+	}
+
+	/**
+	 * @param annot
+	 *            idempotent endpoint annotation
+	 * @return latency budget of the current request, null when the endpoint has
+	 *         no budget
+	 */
+	LatencyBudget resolveLatencyBudget(Idempotent annot) {
+		if (annot.latencyBudgetMs() <= 0 && configuration.getLatencyBudget().getBudgetMs() <= 0) {
+			return null;
+		}
+		return resolveLatencyBudget(annot, retrieveCurrentHttpRequest());
+	}
+
+	/**
+	 * @param request
+	 *            current request, holding its latency budget once started
+	 */
+	LatencyBudget resolveLatencyBudget(Idempotent annot, HttpServletRequest request) {
+		long budgetMs = annot.latencyBudgetMs() > 0 ? annot.latencyBudgetMs()
+		        : configuration.getLatencyBudget().getBudgetMs();
+		if (budgetMs <= 0) {
+			return null;
+		}
+
+		Object budget = request.getAttribute(REQUEST_ATTR_IDEMPOTENCE_LATENCY_BUDGET);
+		if (budget instanceof LatencyBudget) {
+			return (LatencyBudget) budget;
+		}
+		LatencyBudget newBudget = new LatencyBudget(budgetMs);
+		request.setAttribute(REQUEST_ATTR_IDEMPOTENCE_LATENCY_BUDGET, newBudget);
+		return newBudget;
+	}
+
+	/**
+	 * Called when the latency budget of a request has been exhausted before its
+	 * handler method proceeds
+	 *
+	 * @throws IdempotenceUnavailableException
+	 *             when the request is configured to be rejected, otherwise it
+	 *             proceeds without idempotence
+	 */
+	void onLatencyBudgetExhausted(String requestHash, Exception cause) throws IdempotenceUnavailableException {
+		if (Exhaustion.FAIL.equals(configuration.getLatencyBudget().getOnExhaustion())) {
+			LOGGER.debug("Latency budget exhausted for request identified by key '{}' : request rejected",
+			        requestHash);
+			throw new IdempotenceUnavailableException(
+			        String.format("latency budget exhausted for request identified by key '%s'", requestHash), cause,
+			        configuration.getDegradation().getRetryAfterSeconds());
+		}
+		LOGGER.debug("Latency budget exhausted for request identified by key '{}' : proceeding without idempotence",
+		        requestHash);
+	}
+
+	/**
+	 * @param annot
+	 *            idempotent endpoint annotation
+	 * @return degradation policy declared by the endpoint, otherwise the common
+	 *         one
+	 */
+	Policy resolveDegradation(Idempotent annot) {
+		Policy policy = Policy.DEFAULT.equals(annot.degradation()) ? configuration.getDegradation().getPolicy()
+		        : annot.degradation();
+		return (Objects.isNull(policy) || Policy.DEFAULT.equals(policy)) ? Policy.FAIL_OPEN : policy;
+	}
+
+	/**
+	 * @return true if the requests of an endpoint relying on given policy are
+	 *         currently handled by the local fallback store
+	 */
+	boolean isHandledLocally(Policy degradation) {
+		return Policy.LOCAL_FALLBACK.equals(degradation) && Objects.nonNull(localFallbackStore)
+		        && localFallbackStore.isActive();
+	}
+
+	/**
+	 * Called when the repository is unavailable before the handler method
+	 * proceeds, applying the degradation policy of the endpoint
+	 *
+	 * @return true if the request is to be handled by the local fallback store,
+	 *         false if it proceeds without idempotence
+	 * @throws IdempotenceUnavailableException
+	 *             when the request is to be rejected
+	 */
+	boolean onRepositoryUnavailable(Policy degradation, String requestHash, Exception cause)
+	        throws IdempotenceUnavailableException {
+		switch (degradation) {
+		case FAIL_CLOSED:
+			LOGGER.debug("Idempotent repository unavailable for request identified by key '{}' : request rejected",
+			        requestHash);
+			throw new IdempotenceUnavailableException(
+			        String.format("idempotent repository unavailable for request identified by key '%s'",
+			                requestHash),
+			        cause, configuration.getDegradation().getRetryAfterSeconds());
+
+		case LOCAL_FALLBACK:
+			if (Objects.nonNull(localFallbackStore)) {
+				localFallbackStore.activate(cause);
+				return true;
+			}
+			LOGGER.warn("No local fallback store available : proceeding without idempotence");
+			return false;
+
+		default:
+			return false;
+		}
+	}
+
 	String computeRequestHash(HttpServletRequest request) throws IOException, NoSuchAlgorithmException {
+		return computeRequestHash(request, this.configuration.getNamespace());
+	}
+
+	String computeRequestHash(HttpServletRequest request, String namespace)
+	        throws IOException, NoSuchAlgorithmException {
 		JsonObject builder = Json.object();
 
-		builder.add("namespace", this.configuration.getNamespace());
+		builder.add("namespace", namespace);
 
 		String idempotencyKeyHeader = request.getHeader(HTTP_HEADER_IDEMPOTENCY_KEY);
 		builder.add("idempotencyKeyHeader", Objects.isNull(idempotencyKeyHeader) ? "" : idempotencyKeyHeader);
@@ -150,7 +382,9 @@ public class IdempotentReceiverAspect implements Ordered {
 	}
 
 	byte[] retrieveBodyContents(HttpServletRequest request) throws IOException {
-		if (ContentCachingRequestWrapper.class.isAssignableFrom(request.getClass())) {
+		if (request instanceof BufferedBodyRequestWrapper) {
+			return ((BufferedBodyRequestWrapper) request).getContentAsByteArray();
+		} else if (ContentCachingRequestWrapper.class.isAssignableFrom(request.getClass())) {
 			return ((ContentCachingRequestWrapper) request).getContentAsByteArray();
 		} else if (HttpServletRequestWrapper.class.isAssignableFrom(request.getClass())) {
 			return retrieveBodyContents((HttpServletRequest) ((HttpServletRequestWrapper) request).getRequest());
@@ -173,28 +407,238 @@ public class IdempotentReceiverAspect implements Ordered {
 		return ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest();
 	}
 
+	HttpServletResponse retrieveCurrentHttpResponse() {
+		RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+		return (requestAttributes instanceof ServletRequestAttributes)
+		        ? ((ServletRequestAttributes) requestAttributes).getResponse()
+		        : null;
+	}
+
+	/**
+	 * Starts capturing the bytes of the response body as they get written to the
+	 * client, when the response has been wrapped for that purpose
+	 */
+	void startResponseCapture() {
+		CapturingResponseWrapper responseWrapper = WebUtils.getNativeResponse(retrieveCurrentHttpResponse(),
+		        CapturingResponseWrapper.class);
+		if (Objects.nonNull(responseWrapper)) {
+			responseWrapper.startCapture();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Looks up a request before it gets dispatched to its {@link Idempotent}
+	 * handler method :
+	 * </p>
+	 * <ul>
+	 * <li>a subsequent presentation is replayed directly to the response, the
+	 * request not being dispatched at all,</li>
+	 * <li>a first presentation is claimed, i.e. its running idempotent method
+	 * result gets registered, and then handed over to {@link #core} through a
+	 * request attribute once dispatched.</li>
+	 * </ul>
+	 *
+	 * <p>
+	 * Requests that can't be handled this way (existence-only handlers, no
+	 * idempotency key, unreadable stored result) are left to {@link #core}. When
+	 * the lookup fails, the degradation policy of the endpoint (or the exhaustion
+	 * policy of its latency budget) is applied right away, {@link #core} then
+	 * proceeding without looking the request up again.
+	 * </p>
+	 *
+	 * @param handlerMethod
+	 *            handler method the request is mapped to
+	 * @param request
+	 *            current request, whose body can be read several times
+	 * @param response
+	 *            current response
+	 * @return true when the response has been written, the request not to be
+	 *         dispatched
+	 * @throws IOException
+	 *             if the request body can't be read, or the replayed response
+	 *             can't be written
+	 * @throws NoSuchAlgorithmException
+	 *             if the request hash algorithm is not available
+	 */
+	public boolean handleBeforeDispatch(HandlerMethod handlerMethod, HttpServletRequest request,
+	        HttpServletResponse response) throws IOException, NoSuchAlgorithmException {
+		Idempotent annot = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), Idempotent.class);
+		String idempotencyKeyHeader = request.getHeader(HTTP_HEADER_IDEMPOTENCY_KEY);
+		if (Objects.isNull(annot) || annot.existenceOnly() || Objects.isNull(idempotencyKeyHeader)
+		        || idempotencyKeyHeader.trim().isEmpty()) {
+			return false;
+		}
+
+		Policy degradation = resolveDegradation(annot);
+		if (Policy.LOCAL_FALLBACK.equals(degradation)) {
+			request.setAttribute(REQUEST_ATTR_IDEMPOTENCE_LOCAL_FALLBACK, Boolean.TRUE);
+		}
+		if (isHandledLocally(degradation)) {
+			// Left to core, which looks the request up locally
+			return false;
+		}
+
+		String namespace = resolveNamespace(annot);
+		String requestHash = Objects.isNull(namespace) ? computeRequestHash(request)
+		        : computeRequestHash(request, namespace);
+
+		LatencyBudget budget = resolveLatencyBudget(annot, request);
+		IdempotentMethodResult imr;
+		try {
+			imr = findResult(namespace, requestHash, budget);
+		} catch (Exception e) {
+			LOGGER.trace(
+			        "An exception occurred while looking for request identified by key '{}' in idempotent repository before dispatch. Cause : {}. Applying {} degradation policy",
+			        requestHash, e.getMessage(), degradation);
+			onLookupFailureBeforeDispatch(degradation, requestHash, e, request);
+			return false;
+		}
+
+		if (Objects.isNull(imr)) {
+			imr = IdempotentMethodResult.builder().startedAt(instantProvider.provide()).withIdempotencyKey(requestHash)
+			        .inNamespace(namespace).withTtlMs(resolveTtlMs(annot, request)).build();
+			LOGGER.trace("No entry found matching hash {} before dispatch : claiming request {}", requestHash, imr);
+			if (claimFirstPresentation(annot, imr, budget)) {
+				request.setAttribute(REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT, imr);
+			}
+			return false;
+		}
+
+		if (Objects.isNull(replayWriter) || (Objects.nonNull(leaseManager) && leaseManager.isExpired(imr))) {
+			// Expired leases are taken over by core
+			return false;
+		}
+
+		LOGGER.trace("One entry found matching hash {} before dispatch : replaying {}", requestHash, imr);
+		onSubsequentPresentation(imr, request);
+		imr = awaitInFlight(imr);
+		if (Objects.nonNull(runningResultWatcher) && ProcessingState.RUNNING.equals(imr.getState())
+		        && request.isAsyncSupported()) {
+			// Left to core, which parks the request until the result is done
+			return false;
+		}
+		try {
+			if (ProcessingState.RUNNING.equals(imr.getState())) {
+				replayWriter.writeWithoutBody(HttpStatus.ACCEPTED, stillRunningHeaders(imr), response);
+			} else {
+				replayWriter.write(imr, request, response);
+			}
+			return true;
+		} catch (UnmarshallException e) {
+			LOGGER.trace("Unable to replay registered idempotent method result {} before dispatch. Cause : {}", imr,
+			        e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Applies the exhaustion policy of the latency budget, or the degradation
+	 * policy of the endpoint, once the lookup of a request failed before dispatch.
+	 * The outcome is handed over to {@link #core} through request attributes, a
+	 * rejection being raised from the handler method invocation so that it gets
+	 * mapped to its response.
+	 */
+	void onLookupFailureBeforeDispatch(Policy degradation, String requestHash, Exception cause,
+	        HttpServletRequest request) {
+		try {
+			if (cause instanceof LatencyBudgetExhaustedException) {
+				onLatencyBudgetExhausted(requestHash, cause);
+				request.setAttribute(REQUEST_ATTR_IDEMPOTENCE_BYPASSED, Boolean.TRUE);
+			} else if (!onRepositoryUnavailable(degradation, requestHash, cause)) {
+				request.setAttribute(REQUEST_ATTR_IDEMPOTENCE_BYPASSED, Boolean.TRUE);
+			}
+			// Otherwise the local fallback store is now active, core looking the request up locally
+		} catch (IdempotenceUnavailableException e) {
+			request.setAttribute(REQUEST_ATTR_IDEMPOTENCE_REJECTION, e);
+		}
+	}
+
+	/**
+	 * Unregisters the idempotent method result claimed by
+	 * {@link #handleBeforeDispatch} when the request never reached its handler
+	 * method (e.g. rejected by validation or security)
+	 *
+	 * @param request
+	 *            current request
+	 */
+	public void releaseUnprocessedClaim(HttpServletRequest request) {
+		Object claimed = request.getAttribute(REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT);
+		if (claimed instanceof IdempotentMethodResult) {
+			request.removeAttribute(REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT);
+			LOGGER.trace("Request did not reach its handler method : unregister claimed idempotent method result {}",
+			        claimed);
+			Object budget = request.getAttribute(REQUEST_ATTR_IDEMPOTENCE_LATENCY_BUDGET);
+			unregisterIdempotentImageResult((IdempotentMethodResult) claimed,
+			        (budget instanceof LatencyBudget) ? (LatencyBudget) budget : null);
+		}
+	}
+
 	Object handleIdempotency(ProceedingJoinPoint joinpoint, Idempotent annot, String requestHash) throws Throwable {
+		if (annot.existenceOnly()) {
+			if (Objects.nonNull(fingerprintSet)) {
+				return handleExistenceOnly(joinpoint, annot, requestHash);
+			}
+			LOGGER.warn("No fingerprint set available for existence-only mode : falling back on repository");
+		}
+
+		Policy degradation = resolveDegradation(annot);
+		if (Policy.LOCAL_FALLBACK.equals(degradation)) {
+			retrieveCurrentHttpRequest().setAttribute(REQUEST_ATTR_IDEMPOTENCE_LOCAL_FALLBACK, Boolean.TRUE);
+		}
+
 		// First, check if idempotency key matches one entry in idempotency repository
 		IdempotentMethodResult imr;
 
 		try {
-			imr = repository.find(requestHash);
+			imr = isHandledLocally(degradation) ? localFallbackStore.find(resolveNamespace(annot), requestHash)
+			        : findResult(resolveNamespace(annot), requestHash, resolveLatencyBudget(annot));
 		} catch (Exception e) {
-			LOGGER.trace(
-			        "An exception occurred while looking for request identified by key '{}' in idempotent repository. Cause : {}. Idempotence handling will be skipped for current request",
-			        requestHash, e.getMessage());
+			if (e instanceof LatencyBudgetExhaustedException) {
+				// Governed by the exhaustion policy of the budget, not by the degradation policy
+				onLatencyBudgetExhausted(requestHash, e);
+				return joinpoint.proceed();
+			}
 
-			// Proceed without handling idempotence
-			return joinpoint.proceed();
+			LOGGER.trace(
+			        "An exception occurred while looking for request identified by key '{}' in idempotent repository. Cause : {}. Applying {} degradation policy",
+			        requestHash, e.getMessage(), degradation);
+			if (!onRepositoryUnavailable(degradation, requestHash, e)) {
+				// Proceed without handling idempotence
+				return joinpoint.proceed();
+			}
+			imr = localFallbackStore.find(resolveNamespace(annot), requestHash);
 		}
 
 		if (Objects.isNull(imr)) {
 			// No entry matched : deal with request's first presentation
 			LOGGER.trace("No entry found matching hash {} : handling request as a first presentation", requestHash);
 			return handleRequestFirstPresentation(joinpoint, annot, requestHash);
+		} else if (Objects.nonNull(leaseManager) && leaseManager.isExpired(imr)) {
+			LOGGER.trace("One entry found matching hash {} whose lease has expired : taking it over {}", requestHash,
+			        imr);
+			return handleRequestTakeOver(joinpoint, annot, requestHash, imr);
 		} else {
 			LOGGER.trace("One entry found matching hash {} : handling request as a subsequent presentation {}",
 			        requestHash, imr);
+			onSubsequentPresentation(imr);
+			imr = awaitInFlight(imr);
+			if (parkUntilDone(joinpoint, imr)) {
+				// Request is now in asynchronous mode : handler method is short-circuited
+				return null;
+			}
+			if (supportsDirectReplay(joinpoint)) {
+				try {
+					replayDirectly(imr);
+					// Response has been written : handler method is short-circuited
+					return null;
+				} catch (UnmarshallException e) {
+					LOGGER.trace(
+					        "Unable to replay registered idempotent method result {} : handling request as a first presentation. Cause : {}",
+					        imr, e.getMessage());
+					return handleRequestFirstPresentation(joinpoint, annot, requestHash);
+				}
+			}
 			try {
 				ResponseEntity<Object> initialResponse = handleRequestSubsequentPresentation(imr);
 				throw new SubsequentPresentationException(initialResponse);
@@ -207,23 +651,215 @@ public class IdempotentReceiverAspect implements Ordered {
 		}
 	}
 
+	/**
+	 * @return result found in the repository, unless a completed result is
+	 *         still queued for registration by this instance
+	 */
+	IdempotentMethodResult findResult(String namespace, String requestHash) {
+		return findResult(namespace, requestHash, null);
+	}
+
+	/**
+	 * @param budget
+	 *            latency budget of the current request, null if none
+	 */
+	IdempotentMethodResult findResult(String namespace, String requestHash, LatencyBudget budget) {
+		IdempotentMethodResult imr = Objects.isNull(budget) ? repository.find(namespace, requestHash)
+		        : budget.find(repository, namespace, requestHash);
+		if (Objects.nonNull(writeBehindFinalizer)
+		        && (Objects.isNull(imr) || ProcessingState.RUNNING.equals(imr.getState()))) {
+			IdempotentMethodResult queuedImr = writeBehindFinalizer.pending(namespace, requestHash);
+			if (Objects.nonNull(queuedImr)) {
+				LOGGER.trace("Completed result of request identified by key '{}' not registered yet : using {}",
+				        requestHash, queuedImr);
+				return queuedImr;
+			}
+		}
+		if (Objects.nonNull(localFallbackStore)
+		        && (Objects.isNull(imr) || ProcessingState.RUNNING.equals(imr.getState()))) {
+			IdempotentMethodResult localImr = localFallbackStore.find(namespace, requestHash);
+			if (Objects.nonNull(localImr)) {
+				LOGGER.trace("Request identified by key '{}' handled locally, not replayed yet : using {}",
+				        requestHash, localImr);
+				return localImr;
+			}
+		}
+		return imr;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Object handleExistenceOnly(ProceedingJoinPoint joinpoint, Idempotent annot, String requestHash)
+	        throws Throwable {
+		long fingerprint = GenerationalFingerprintSet.fingerprintOf(requestHash);
+
+		if (!fingerprintSet.addIfAbsent(fingerprint)) {
+			LOGGER.trace("Fingerprint of hash {} already seen : returning duplicate canned response", requestHash);
+			HttpStatus status = HttpStatus.valueOf(configuration.getExistenceOnly().getDuplicateStatus());
+			if (supportsDirectReplay(joinpoint)) {
+				replayWriter.writeWithoutBody(status, null, retrieveCurrentHttpResponse());
+				return null;
+			}
+			throw new SubsequentPresentationException(new ResponseEntity(status));
+		}
+
+		try {
+			return joinpoint.proceed();
+		} catch (Exception e) {
+			if (!isExceptionRegisterable(annot.registerableEx(), e)) {
+				LOGGER.trace("Exception type {} not configured as registerable : forget fingerprint of hash {}",
+				        e.getClass().getName(), requestHash);
+				fingerprintSet.remove(fingerprint);
+			}
+			throw e;
+		}
+	}
+
 	Object handleRequestFirstPresentation(ProceedingJoinPoint joinpoint, Idempotent annot, String requestHash)
 	        throws Throwable {
-		Object result;
 		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(instantProvider.provide())
-		        .withIdempotencyKey(requestHash).build();
+		        .withIdempotencyKey(requestHash).inNamespace(resolveNamespace(annot)).withTtlMs(resolveTtlMs(annot))
+		        .build();
+
+		LOGGER.trace("Before delegating to handler method, init and register idempotent method result {}", imr);
+		Policy degradation = resolveDegradation(annot);
+		if (isHandledLocally(degradation)) {
+			return proceedLocalFirstPresentation(joinpoint, annot, imr);
+		}
+
+		LatencyBudget budget = resolveLatencyBudget(annot);
+		if (!claimFirstPresentation(annot, imr, budget)) {
+			if (Objects.nonNull(budget) && budget.isExhausted()) {
+				onLatencyBudgetExhausted(requestHash, null);
+			} else if (onRepositoryUnavailable(degradation, requestHash, null)) {
+				return proceedLocalFirstPresentation(joinpoint, annot, imr);
+			}
+		}
+
+		return proceedFirstPresentation(joinpoint, annot, imr);
+	}
+
+	/**
+	 * Claims a first presentation in the local fallback store, then proceeds with
+	 * its handler method
+	 */
+	Object proceedLocalFirstPresentation(ProceedingJoinPoint joinpoint, Idempotent annot, IdempotentMethodResult imr)
+	        throws Throwable {
+		if (!localFallbackStore.claim(imr)) {
+			IdempotentMethodResult current = localFallbackStore.find(imr.getNamespace(), imr.getIdempotencyKey());
+			if (Objects.nonNull(current)) {
+				LOGGER.trace("Request identified by key '{}' claimed locally meanwhile : replaying {}",
+				        imr.getIdempotencyKey(), current);
+				throw new SubsequentPresentationException(handleRequestSubsequentPresentation(current));
+			}
+			LOGGER.warn("Local fallback store full : proceeding without idempotence for request identified by key '{}'",
+			        imr.getIdempotencyKey());
+			return joinpoint.proceed();
+		}
+
+		LOGGER.trace("Idempotent method result claimed locally {}", imr);
+		beginInFlight(imr);
+		return proceedFirstPresentation(joinpoint, annot, imr);
+	}
+
+	/**
+	 * Registers the running result of a first presentation about to be
+	 * processed, or only schedules its registration for an optimistic endpoint
+	 * (see {@link Idempotent#optimistic()})
+	 *
+	 * @return true if the running result has been registered or scheduled
+	 */
+	boolean claimFirstPresentation(Idempotent annot, IdempotentMethodResult imr) {
+		return claimFirstPresentation(annot, imr, null);
+	}
+
+	/**
+	 * @param budget
+	 *            latency budget of the current request, null if none
+	 */
+	boolean claimFirstPresentation(Idempotent annot, IdempotentMethodResult imr, LatencyBudget budget) {
+		if (annot.optimistic()) {
+			if (Objects.isNull(runningMarkerScheduler)) {
+				LOGGER.warn("No running marker scheduler available for optimistic mode : falling back on running result registration");
+			} else if (runningMarkerScheduler.schedule(imr)) {
+				LOGGER.trace("Optimistic mode : running result only registered if still running after delay {}", imr);
+				return true;
+			}
+		}
+
+		boolean registered = Objects.isNull(budget) ? registerIdempotentImageResult(imr)
+		        : registerIdempotentImageResult(imr, budget);
+		if (registered) {
+			beginInFlight(imr);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Processes the request again in place of the instance whose lease on the
+	 * running result has expired, unless another subsequent presentation has
+	 * taken it over first
+	 *
+	 * @param expired
+	 *            running result whose lease has expired
+	 */
+	Object handleRequestTakeOver(ProceedingJoinPoint joinpoint, Idempotent annot, String requestHash,
+	        IdempotentMethodResult expired) throws Throwable {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(instantProvider.provide())
+		        .withIdempotencyKey(requestHash).inNamespace(resolveNamespace(annot)).withTtlMs(resolveTtlMs(annot))
+		        .build();
+		IdempotentMethodResult leasedImr = leaseManager.lease(imr);
+
+		boolean takenOver;
+		try {
+			takenOver = repository.takeOver(expired, leasedImr);
+		} catch (Exception e) {
+			LOGGER.warn("Unable to take over request identified by key '{}' in idempotent repository. Cause : {}",
+			        requestHash, e.getMessage());
+			takenOver = false;
+		}
+
+		if (!takenOver) {
+			LOGGER.trace("Request identified by key '{}' has not been taken over : still running", requestHash);
+			throw new SubsequentPresentationException(handleRequestSubsequentPresentation(expired));
+		}
+
+		leaseManager.hold(leasedImr);
+		beginInFlight(imr);
+		return proceedFirstPresentation(joinpoint, annot, imr);
+	}
+
+	/**
+	 * Proceeds with the handler method of a first presentation, whose running
+	 * idempotent method result has already been registered
+	 */
+	Object proceedFirstPresentation(ProceedingJoinPoint joinpoint, Idempotent annot, IdempotentMethodResult imr)
+	        throws Throwable {
+		Object result;
 
 		try {
-			LOGGER.trace("Before delegating to handler method, init and register idempotent method result {}", imr);
-			registerIdempotentImageResult(imr);
+			startResponseCapture();
 
 			// Proceed with handler method
 			result = joinpoint.proceed();
 
-			// Method processing has returned smoothly
-			LOGGER.trace("Handler method has returned : flag idempotent method result for further registration {}",
-			        imr);
-			addIdempotentImageResultToRequestAttributes(imr);
+			if (isAsyncResult(result)) {
+				// Result gets flagged (or unregistered) once it is actually produced
+				LOGGER.trace(
+				        "Handler method has returned an asynchronous result : wait for it before flagging idempotent method result {}",
+				        imr);
+				new AsyncResultInterceptor(this, annot, imr)
+				        .register(WebAsyncUtils.getAsyncManager(retrieveCurrentHttpRequest()));
+			} else {
+				// Method processing has returned smoothly
+				LOGGER.trace(
+				        "Handler method has returned : flag idempotent method result for further registration {}", imr);
+				addIdempotentImageResultToRequestAttributes(imr);
+			}
+			if (isStreamedBody(result)) {
+				// Body is written by the handler itself, bypassing the message converters
+				retrieveCurrentHttpRequest().setAttribute(REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY, Boolean.TRUE);
+			}
 		} catch (Exception e) {
 			// Method processing has raised an exception
 
@@ -235,12 +871,13 @@ public class IdempotentReceiverAspect implements Ordered {
 				        "Exception type {} is configured registerable, update idempotent method result and flag idempotent method result for further registration {}",
 				        exceptionTypeName, imr);
 				addIdempotentImageResultToRequestAttributes(imr);
+				addRegisterableExceptionToRequestAttributes(e);
 			} else {
 				LOGGER.trace(
 				        "Exception type {} not configured as registerable : unregister idempotent method result {}",
 				        exceptionTypeName, imr);
 
-				unregisterIdempotentImageResult(imr);
+				unregisterIdempotentImageResult(imr, resolveLatencyBudget(annot));
 			}
 
 			throw e;
@@ -249,14 +886,119 @@ public class IdempotentReceiverAspect implements Ordered {
 		return result;
 	}
 
+	/**
+	 * @return true if given handler method result is produced asynchronously,
+	 *         Spring MVC then completing the request on an async dispatch
+	 */
+	boolean isAsyncResult(Object result) {
+		return (result instanceof Callable) || (result instanceof WebAsyncTask) || (result instanceof DeferredResult)
+		        || (result instanceof ListenableFuture) || (result instanceof CompletionStage)
+		        || isStreamedBody(result);
+	}
+
+	/**
+	 * @return true if given handler method result writes its body itself (e.g.
+	 *         {@link StreamingResponseBody}, {@link ResponseBodyEmitter} and
+	 *         {@link SseEmitter}), possibly wrapped in an {@link HttpEntity}
+	 */
+	boolean isStreamedBody(Object result) {
+		Object body = (result instanceof HttpEntity) ? ((HttpEntity<?>) result).getBody() : result;
+		return (body instanceof StreamingResponseBody) || (body instanceof ResponseBodyEmitter);
+	}
+
+	/**
+	 * @param annot
+	 *            idempotent endpoint annotation
+	 * @return TTL declared by the endpoint if any, otherwise TTL learned from the
+	 *         endpoint retry delays in auto mode, otherwise 0 (i.e. repository
+	 *         TTL)
+	 */
+	long resolveTtlMs(Idempotent annot) {
+		return resolveTtlMs(annot, retrieveCurrentHttpRequest());
+	}
+
+	long resolveTtlMs(Idempotent annot, HttpServletRequest request) {
+		if (annot.ttlMs() > 0 || Objects.isNull(retryDelayStatistics)) {
+			return annot.ttlMs();
+		}
+		return retryDelayStatistics.resolveTtlMs(retryDelayStatistics.resolveEndpoint(request));
+	}
+
+	/**
+	 * Records the retry delay of current subsequent presentation and, when
+	 * sliding expiration is enabled, extends the lifetime of a completed result
+	 * registered in the repository, at most once per half of its TTL
+	 */
+	void onSubsequentPresentation(IdempotentMethodResult imr) {
+		if (Objects.isNull(retryDelayStatistics)) {
+			return;
+		}
+		onSubsequentPresentation(imr, retrieveCurrentHttpRequest());
+	}
+
+	void onSubsequentPresentation(IdempotentMethodResult imr, HttpServletRequest request) {
+		if (Objects.isNull(retryDelayStatistics)) {
+			return;
+		}
+
+		Instant now = instantProvider.provide();
+		long delayMs = Duration.between(imr.getStartedAt(), now).toMillis();
+		retryDelayStatistics.record(retryDelayStatistics.resolveEndpoint(request), delayMs);
+
+		// A running result is left untouched : re-registering it could overwrite its
+		// concurrent finalization. A result held locally has no repository lifetime.
+		if (retryDelayStatistics.isSlidingExpiration() && ProcessingState.DONE.equals(imr.getState())
+		        && !isHeldLocally(imr) && retryDelayStatistics.shouldExtend(imr, now)) {
+			LOGGER.trace("Extending lifetime of idempotent method result {}", imr);
+			if (registerIdempotentImageResult(imr) && Objects.nonNull(bodyStorage)) {
+				bodyStorage.retain(imr);
+			}
+		}
+	}
+
+	/**
+	 * @return true if given result is held by the local fallback store
+	 */
+	boolean isHeldLocally(IdempotentMethodResult imr) {
+		return Objects.nonNull(localFallbackStore)
+		        && Objects.nonNull(localFallbackStore.find(imr.getNamespace(), imr.getIdempotencyKey()));
+	}
+
 	void addIdempotentImageResultToRequestAttributes(IdempotentMethodResult imr) {
 		HttpServletRequest httpRequest = retrieveCurrentHttpRequest();
 		httpRequest.setAttribute(REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
 	}
 
+	/**
+	 * Exposes the registerable exception to the retention policy applied when the
+	 * idempotent method result gets finalized
+	 */
+	void addRegisterableExceptionToRequestAttributes(Exception e) {
+		HttpServletRequest httpRequest = retrieveCurrentHttpRequest();
+		httpRequest.setAttribute(REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION, e);
+	}
+
 	boolean registerIdempotentImageResult(IdempotentMethodResult imr) {
+		return registerIdempotentImageResult(imr, null);
+	}
+
+	/**
+	 * @param budget
+	 *            latency budget of the current request, null if none
+	 */
+	boolean registerIdempotentImageResult(IdempotentMethodResult imr, LatencyBudget budget) {
+		// A running result is leased, its full lifetime only applying once done
+		boolean leased = Objects.nonNull(leaseManager) && ProcessingState.RUNNING.equals(imr.getState());
+		IdempotentMethodResult registeredImr = leased ? leaseManager.lease(imr) : imr;
 		try {
-			repository.register(imr.getIdempotencyKey(), imr);
+			if (Objects.isNull(budget)) {
+				repository.register(registeredImr.getIdempotencyKey(), registeredImr);
+			} else {
+				budget.register(repository, registeredImr);
+			}
+			if (leased) {
+				leaseManager.hold(registeredImr);
+			}
 			return true;
 		} catch (Exception e) {
 			LOGGER.warn("Unable to register request identified by key '{}' in idempotent repository. Cause : {}",
@@ -266,16 +1008,228 @@ public class IdempotentReceiverAspect implements Ordered {
 	}
 
 	void unregisterIdempotentImageResult(IdempotentMethodResult imr) {
+		unregisterIdempotentImageResult(imr, null);
+	}
+
+	/**
+	 * @param budget
+	 *            latency budget of the current request, null if none
+	 */
+	void unregisterIdempotentImageResult(IdempotentMethodResult imr, LatencyBudget budget) {
 		try {
-			repository.unregister(imr.getIdempotencyKey());
+			if (Objects.nonNull(runningMarkerScheduler) && runningMarkerScheduler.settle(imr)) {
+				LOGGER.trace("No running result registered in optimistic mode : nothing to unregister for {}", imr);
+				return;
+			}
+			if (Objects.nonNull(localFallbackStore) && localFallbackStore.release(imr)) {
+				LOGGER.trace("Idempotent method result claimed locally : released {}", imr);
+				return;
+			}
+			if (Objects.nonNull(leaseManager)) {
+				leaseManager.release(imr);
+			}
+			if (Objects.isNull(budget)) {
+				repository.unregister(imr.getNamespace(), imr.getIdempotencyKey());
+			} else {
+				budget.unregister(repository, imr.getNamespace(), imr.getIdempotencyKey());
+			}
 		} catch (Exception e) {
 			LOGGER.warn("Unable to unregister request identified by key '{}' in idempotent repository. Cause : {}",
 			        imr.getIdempotencyKey(), e.getMessage());
+			if (Objects.nonNull(localFallbackStore)) {
+				// Running result left behind, unregistered once the repository answers again
+				localFallbackStore.unregisterLater(imr);
+			}
+		} finally {
+			if (Objects.nonNull(inFlightRegistry)) {
+				inFlightRegistry.complete(imr, null);
+			}
+		}
+	}
+
+	/**
+	 * Tracks a first presentation processed by this instance, so that its
+	 * concurrent duplicates can wait for it
+	 */
+	void beginInFlight(IdempotentMethodResult imr) {
+		if (Objects.nonNull(inFlightRegistry)) {
+			inFlightRegistry.begin(imr);
+		}
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result found in the repository
+	 * @return given result if not running, otherwise the result of the first
+	 *         presentation if it completes on this instance within the configured
+	 *         delay, otherwise given running result
+	 */
+	IdempotentMethodResult awaitInFlight(IdempotentMethodResult imr) {
+		if (Objects.isNull(inFlightRegistry) || !ProcessingState.RUNNING.equals(imr.getState())) {
+			return imr;
+		}
+		IdempotentMethodResult finalImr = inFlightRegistry.await(imr);
+		if (Objects.isNull(finalImr)) {
+			return imr;
 		}
+		LOGGER.trace("In-flight first presentation has completed : replaying {}", finalImr);
+		return finalImr;
 	}
 
+	/**
+	 * <p>
+	 * Parks a subsequent presentation finding a running result : the request is
+	 * put in asynchronous mode, releasing its container thread, until the result
+	 * is done or the configured delay has elapsed.
+	 * </p>
+	 * <p>
+	 * The response is then handed over to the async dispatch as a
+	 * {@link SubsequentPresentationException}, so that it is sent back whatever
+	 * the handler method return type.
+	 * </p>
+	 *
+	 * @param imr
+	 *            idempotent method result found in the repository
+	 * @return true when the request has been parked, false when the result is not
+	 *         running or the request can't be parked
+	 */
+	boolean parkUntilDone(ProceedingJoinPoint joinpoint, IdempotentMethodResult imr) {
+		if (Objects.isNull(runningResultWatcher) || !ProcessingState.RUNNING.equals(imr.getState())
+		        || ((MethodSignature) joinpoint.getSignature()).getMethod().getReturnType().isPrimitive()) {
+			return false;
+		}
+
+		HttpServletRequest request = retrieveCurrentHttpRequest();
+		if (!request.isAsyncSupported()) {
+			return false;
+		}
+		DeferredResult<Object> deferredResult = new DeferredResult<>(configuration.getPark().getMaxWaitMs());
+		try {
+			WebAsyncUtils.getAsyncManager(request).startDeferredResultProcessing(deferredResult);
+		} catch (Exception e) {
+			LOGGER.trace("Unable to park request. Cause : {}", e.getMessage());
+			return false;
+		}
+
+		// Watch only once in asynchronous mode, the response being set by the watcher thread
+		RunningResultWatcher.Watch watch = runningResultWatcher.watch(imr,
+		        found -> deferredResult.setErrorResult(parkedResponse(imr, found, request)));
+		if (Objects.isNull(watch)) {
+			deferredResult.setErrorResult(parkedResponse(imr, null, request));
+			return true;
+		}
+		deferredResult.onTimeout(() -> {
+			if (watch.cancel()) {
+				LOGGER.trace("Idempotent method result {} still running after parking delay", imr);
+				deferredResult.setErrorResult(parkedResponse(imr, null, request));
+			}
+		});
+		LOGGER.trace("Parking request until idempotent method result {} is done", imr);
+		return true;
+	}
+
+	/**
+	 * @param imr
+	 *            running idempotent method result the request has been parked on
+	 * @param found
+	 *            result found once the watch is over, null if removed or still
+	 *            running
+	 * @param request
+	 *            parked request
+	 * @return exception conveying the response of the parked request, only built
+	 *         here as it is called outside of the asynchronous dispatch : never
+	 *         written directly
+	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
+	SubsequentPresentationException parkedResponse(IdempotentMethodResult imr, IdempotentMethodResult found,
+	        HttpServletRequest request) {
+		if (Objects.nonNull(found) && ProcessingState.DONE.equals(found.getState())) {
+			try {
+				return new SubsequentPresentationException(handleRequestSubsequentPresentation(found, request, false));
+			} catch (UnmarshallException e) {
+				LOGGER.trace("Unable to unmarshall idempotent method result body {} of parked request. Cause : {}",
+				        found, e.getMessage());
+			}
+		}
+		return new SubsequentPresentationException(new ResponseEntity(stillRunningHeaders(imr), HttpStatus.ACCEPTED));
+	}
+
+	/**
+	 * <p>
+	 * Indicates if the response of a subsequent presentation can be written
+	 * directly to the servlet response, the handler method then returning null
+	 * instead of being invoked.
+	 * </p>
+	 * <p>
+	 * Only handler methods whose return value is written as a response body
+	 * support it, i.e. returning an {@link HttpEntity} or annotated with
+	 * {@link ResponseBody} (directly or via their class) : other handlers would
+	 * otherwise resolve a view from a null return value.
+	 * </p>
+	 */
+	boolean supportsDirectReplay(ProceedingJoinPoint joinpoint) {
+		if (Objects.isNull(replayWriter) || !(joinpoint.getSignature() instanceof MethodSignature)) {
+			return false;
+		}
+		Method method = ((MethodSignature) joinpoint.getSignature()).getMethod();
+		return directReplaySupport.computeIfAbsent(method,
+		        m -> !m.getReturnType().isPrimitive() && (HttpEntity.class.isAssignableFrom(m.getReturnType())
+		                || AnnotatedElementUtils.hasAnnotation(m, ResponseBody.class)
+		                || AnnotatedElementUtils.hasAnnotation(m.getDeclaringClass(), ResponseBody.class)));
+	}
+
+	/**
+	 * Writes the response of a subsequent presentation straight to the servlet
+	 * response, without going through message converters
+	 */
+	void replayDirectly(IdempotentMethodResult imr) throws UnmarshallException {
+		Objects.requireNonNull(imr);
+
+		switch (imr.getState()) {
+		case RUNNING:
+			replayWriter.writeWithoutBody(HttpStatus.ACCEPTED, stillRunningHeaders(imr), retrieveCurrentHttpResponse());
+			break;
+
+		case DONE:
+			LOGGER.trace("Replaying idempotent method result {}", imr);
+			replayWriter.write(imr, retrieveCurrentHttpRequest(), retrieveCurrentHttpResponse());
+			break;
+
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * @return headers telling how long the processing of the first presentation
+	 *         of a request has been running
+	 */
+	HttpHeaders stillRunningHeaders(IdempotentMethodResult imr) {
+		long durationMS = Duration.between(imr.getStartedAt(), instantProvider.provide()).toMillis();
+		LOGGER.trace("Idempotent method result {} indicates request processing started {} ms ago and is still running",
+		        imr, durationMS);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HTTP_HEADER_PROCESSING_DURATION, Long.toString(durationMS));
+		return headers;
+	}
+
 	ResponseEntity<Object> handleRequestSubsequentPresentation(IdempotentMethodResult imr) throws UnmarshallException {
+		return handleRequestSubsequentPresentation(imr, null, true);
+	}
+
+	/**
+	 * @param request
+	 *            request of the subsequent presentation, null for the current
+	 *            request
+	 * @param directReplay
+	 *            true if a stored body may be written directly to the current
+	 *            response, false if the response is only to be built
+	 * @return response to send back, null when it has been written directly
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	ResponseEntity<Object> handleRequestSubsequentPresentation(IdempotentMethodResult imr, HttpServletRequest request,
+	        boolean directReplay) throws UnmarshallException {
 		Objects.requireNonNull(imr);
 
 		HttpHeaders headers = new HttpHeaders();
@@ -283,24 +1237,30 @@ public class IdempotentReceiverAspect implements Ordered {
 		switch (imr.getState()) {
 		case RUNNING:
 			// Handle case where first presentation request seems to be still processing
-
-			long durationMS = Duration.between(imr.getStartedAt(), instantProvider.provide()).toMillis();
-			LOGGER.trace(
-			        "Idempotent method result {} indicates request processing started {} ms ago and is still running",
-			        imr, durationMS);
-
-			headers.add(HTTP_HEADER_PROCESSING_DURATION, Long.toString(durationMS));
-			return new ResponseEntity(headers, HttpStatus.ACCEPTED);
+			return new ResponseEntity(stillRunningHeaders(imr), HttpStatus.ACCEPTED);
 
 		case DONE:
 			// One entry matched : return first presentation processing result
 			LOGGER.trace("Returning idempotent method result {}", imr);
 
 			headers.addAll(imr.getResponseHeaders());
-			if (Objects.isNull(imr.getBody()) || (imr.getBody().length == 0)) {
+			if (Objects.nonNull(imr.getBodyRef())) {
+				return replayStoredBody(imr, headers, request, directReplay);
+			} else if (Objects.isNull(imr.getBody()) || (imr.getBody().length == 0)) {
 				return new ResponseEntity(headers, imr.getResponseStatus());
+			} else if (Objects.nonNull(bodyCompression)
+			        && bodyCompression.canPassThrough(imr,
+			                Objects.nonNull(request) ? request : retrieveCurrentHttpRequest())) {
+				// Stored body is sent as is, without being decompressed then unmarshalled
+				LOGGER.trace("Returning idempotent method result body as stored, with content coding '{}'",
+				        imr.getBodyContentEncoding());
+				headers.setContentType(imr.getBodyContentType());
+				headers.set(HttpHeaders.CONTENT_ENCODING, imr.getBodyContentEncoding());
+				headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+				headers.remove(HttpHeaders.CONTENT_LENGTH);
+				return new ResponseEntity(imr.getBody(), headers, imr.getResponseStatus());
 			} else {
-				return new ResponseEntity(unmarshallBody(imr), headers, imr.getResponseStatus());
+				return new ResponseEntity(unmarshallBody(imr, headers), headers, imr.getResponseStatus());
 			}
 
 		default:
@@ -308,8 +1268,71 @@ public class IdempotentReceiverAspect implements Ordered {
 		}
 	}
 
+	/**
+	 * Streams a body kept in the body store straight to the current servlet
+	 * response when possible, otherwise loads it to be unmarshalled
+	 * 
+	 * @return null when the response has been written, otherwise the response
+	 *         to send back
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	ResponseEntity<Object> replayStoredBody(IdempotentMethodResult imr, HttpHeaders headers,
+	        HttpServletRequest request, boolean directReplay) throws UnmarshallException {
+		if (directReplay && Objects.nonNull(replayWriter)) {
+			replayWriter.write(imr, Objects.nonNull(request) ? request : retrieveCurrentHttpRequest(),
+			        retrieveCurrentHttpResponse());
+			return null;
+		}
+		return new ResponseEntity(unmarshallBody(imr, headers), headers, imr.getResponseStatus());
+	}
+
+	/**
+	 * @param headers
+	 *            headers of the response to send back, whose content type is set
+	 *            when the body is replayed as raw bytes
+	 * @return body unmarshalled as originally returned by the handler method, or
+	 *         raw bytes of a body the handler method streamed itself
+	 */
+	Object unmarshallBody(IdempotentMethodResult imr, HttpHeaders headers) throws UnmarshallException {
+		if (isRawBody(imr)) {
+			LOGGER.trace("Returning idempotent method result body as raw bytes");
+			if (Objects.nonNull(imr.getBodyContentType())) {
+				headers.setContentType(imr.getBodyContentType());
+			}
+			return decompressBody(imr);
+		}
+		return unmarshallBody(imr);
+	}
+
+	/**
+	 * @return true if no converter was recorded to read given result body back,
+	 *         i.e. body was streamed by the handler method itself
+	 */
+	boolean isRawBody(IdempotentMethodResult imr) {
+		return imr.getReplayCodecId() == 0
+		        && (Objects.isNull(imr.getSelectedConverterTypeName()) || Objects.isNull(imr.getReturnTypeName()));
+	}
+
 	@SuppressWarnings("unchecked")
 	Object unmarshallBody(IdempotentMethodResult imr) throws UnmarshallException {
+		if (imr.getReplayCodecId() != 0) {
+			ReplayCodec codec = Objects.isNull(replayCodecRegistry) ? null
+			        : replayCodecRegistry.get(imr.getReplayCodecId());
+			if (Objects.isNull(codec)) {
+				throw new UnmarshallException(imr,
+				        String.format("unknown replay codec id %d", imr.getReplayCodecId()));
+			}
+			try {
+				return codec.read(decompressBody(imr));
+			} catch (IOException e) {
+				throw new UnmarshallException(imr, e);
+			}
+		}
+
+		if (isRawBody(imr)) {
+			throw new UnmarshallException(imr, "no message converter recorded to read body back");
+		}
+
 		Class<? extends HttpMessageConverter<?>> selectedConverterType;
 		Class<?> returnType;
 		try {
@@ -320,6 +1343,8 @@ public class IdempotentReceiverAspect implements Ordered {
 			throw new UnmarshallException(imr, e);
 		}
 
+		byte[] plainBody = decompressBody(imr);
+
 		Object body = null;
 		boolean converterFound = false;
 		List<HttpMessageConverter<?>> messageConverters = handlerAdapter.getMessageConverters();
@@ -330,7 +1355,7 @@ public class IdempotentReceiverAspect implements Ordered {
 				try {
 					converterFound = true;
 					body = ((HttpMessageConverter<Object>) httpMessageConverter).read(returnType,
-					        new ByteArrayHttpInputMessage(imr.getBody()));
+					        new ByteArrayHttpInputMessage(plainBody));
 				} catch (HttpMessageNotReadableException | IOException e) {
 					// Shouldn't occur :
 					// * converter itself has been selected by Spring in the first place
@@ -348,6 +1373,38 @@ public class IdempotentReceiverAspect implements Ordered {
 		}
 	}
 
+	/**
+	 * @return plain body of given result, loaded from the body store if not
+	 *         inline, and decompressed if stored compressed
+	 */
+	byte[] decompressBody(IdempotentMethodResult imr) throws UnmarshallException {
+		byte[] stored = imr.getBody();
+		if (Objects.nonNull(imr.getBodyRef())) {
+			if (Objects.isNull(bodyStorage)) {
+				throw new UnmarshallException(imr,
+				        String.format("no body storage available to read body '%s'", imr.getBodyRef()));
+			}
+			try {
+				stored = bodyStorage.load(imr);
+			} catch (IOException e) {
+				throw new UnmarshallException(imr, e);
+			}
+		}
+
+		if (Objects.isNull(imr.getBodyContentEncoding())) {
+			return stored;
+		}
+		if (Objects.isNull(bodyCompression)) {
+			throw new UnmarshallException(imr, String.format(
+			        "no body compression available to decode content coding '%s'", imr.getBodyContentEncoding()));
+		}
+		try {
+			return bodyCompression.decompress(imr.getBodyContentEncoding(), stored);
+		} catch (IOException e) {
+			throw new UnmarshallException(imr, e);
+		}
+	}
+
 	boolean isExceptionRegisterable(Class<? extends Exception>[] registerableEx, Exception e) {
 		Class<? extends Exception> exClazz = e.getClass();
 		boolean registerable = false;
@@ -376,6 +1433,50 @@ public class IdempotentReceiverAspect implements Ordered {
 		this.instantProvider = instantProvider;
 	}
 
+	public void setRetryDelayStatistics(RetryDelayStatistics retryDelayStatistics) {
+		this.retryDelayStatistics = retryDelayStatistics;
+	}
+
+	public void setBodyCompression(BodyCompression bodyCompression) {
+		this.bodyCompression = bodyCompression;
+	}
+
+	public void setBodyStorage(BodyStorage bodyStorage) {
+		this.bodyStorage = bodyStorage;
+	}
+
+	public void setReplayWriter(DirectReplayWriter replayWriter) {
+		this.replayWriter = replayWriter;
+	}
+
+	public void setInFlightRegistry(InFlightRegistry inFlightRegistry) {
+		this.inFlightRegistry = inFlightRegistry;
+	}
+
+	public void setLeaseManager(LeaseManager leaseManager) {
+		this.leaseManager = leaseManager;
+	}
+
+	public void setRunningMarkerScheduler(RunningMarkerScheduler runningMarkerScheduler) {
+		this.runningMarkerScheduler = runningMarkerScheduler;
+	}
+
+	public void setWriteBehindFinalizer(WriteBehindFinalizer writeBehindFinalizer) {
+		this.writeBehindFinalizer = writeBehindFinalizer;
+	}
+
+	public void setLocalFallbackStore(LocalFallbackStore localFallbackStore) {
+		this.localFallbackStore = localFallbackStore;
+	}
+
+	public void setRunningResultWatcher(RunningResultWatcher runningResultWatcher) {
+		this.runningResultWatcher = runningResultWatcher;
+	}
+
+	public void setReplayCodecRegistry(ReplayCodecRegistry replayCodecRegistry) {
+		this.replayCodecRegistry = replayCodecRegistry;
+	}
+
 	public IdempotentReceiverCommonConfiguration getConfiguration() {
 		return configuration;
 	}
@@ -0,0 +1,120 @@
+package com.github.dgrandemange.idempotencereceiver.api.codec;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * <p>
+ * Dictionaries of the most common header names and media types, so that they
+ * get encoded as a small integer id instead of a string.
+ * </p>
+ *
+ * <p>
+ * <b>Dictionaries are append only</b> : an id (i.e. the position in the
+ * dictionary, starting at 1) must never be reassigned, otherwise stored values
+ * would be decoded with wrong header names or media types.
+ * </p>
+ */
+final class HttpDictionary {
+
+	static final List<String> HEADER_NAMES = Collections.unmodifiableList(Arrays.asList(
+	        HttpHeaders.CONTENT_TYPE,
+	        HttpHeaders.CONTENT_LENGTH,
+	        HttpHeaders.CONTENT_ENCODING,
+	        HttpHeaders.CONTENT_LANGUAGE,
+	        HttpHeaders.CONTENT_DISPOSITION,
+	        HttpHeaders.LOCATION,
+	        HttpHeaders.ETAG,
+	        HttpHeaders.LAST_MODIFIED,
+	        HttpHeaders.CACHE_CONTROL,
+	        HttpHeaders.EXPIRES,
+	        HttpHeaders.PRAGMA,
+	        HttpHeaders.VARY,
+	        HttpHeaders.DATE,
+	        HttpHeaders.RETRY_AFTER,
+	        HttpHeaders.ALLOW,
+	        HttpHeaders.LINK,
+	        HttpHeaders.SET_COOKIE,
+	        HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN,
+	        HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS,
+	        HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS,
+	        "X-Content-Type-Options",
+	        "X-Frame-Options",
+	        "X-XSS-Protection",
+	        "Strict-Transport-Security",
+	        "X-Request-Id",
+	        "X-Correlation-Id"));
+
+	static final List<MediaType> MEDIA_TYPES = Collections.unmodifiableList(Arrays.asList(
+	        MediaType.APPLICATION_JSON,
+	        MediaType.APPLICATION_JSON_UTF8,
+	        MediaType.TEXT_PLAIN,
+	        MediaType.parseMediaType("text/plain;charset=UTF-8"),
+	        MediaType.APPLICATION_XML,
+	        MediaType.parseMediaType("application/xml;charset=UTF-8"),
+	        MediaType.TEXT_XML,
+	        MediaType.TEXT_HTML,
+	        MediaType.parseMediaType("text/html;charset=UTF-8"),
+	        MediaType.APPLICATION_OCTET_STREAM,
+	        MediaType.APPLICATION_PROBLEM_JSON,
+	        MediaType.APPLICATION_PROBLEM_JSON_UTF8,
+	        MediaType.APPLICATION_FORM_URLENCODED,
+	        MediaType.parseMediaType("application/hal+json"),
+	        MediaType.parseMediaType("application/hal+json;charset=UTF-8"),
+	        MediaType.APPLICATION_STREAM_JSON,
+	        MediaType.APPLICATION_PDF));
+
+	private static final Map<String, Integer> HEADER_NAME_IDS = new HashMap<>();
+
+	private static final Map<MediaType, Integer> MEDIA_TYPE_IDS = new HashMap<>();
+
+	static {
+		for (int i = 0; i < HEADER_NAMES.size(); i++) {
+			HEADER_NAME_IDS.put(HEADER_NAMES.get(i).toLowerCase(Locale.ROOT), i + 1);
+		}
+		for (int i = 0; i < MEDIA_TYPES.size(); i++) {
+			MEDIA_TYPE_IDS.put(MEDIA_TYPES.get(i), i + 1);
+		}
+	}
+
+	private HttpDictionary() {
+	}
+
+	/**
+	 * @return id of given header name, 0 if not in dictionary
+	 */
+	static int headerNameId(String headerName) {
+		Integer id = HEADER_NAME_IDS.get(headerName.toLowerCase(Locale.ROOT));
+		return (id == null) ? 0 : id;
+	}
+
+	/**
+	 * @return header name of given id, null if unknown
+	 */
+	static String headerName(int id) {
+		return (id > 0 && id <= HEADER_NAMES.size()) ? HEADER_NAMES.get(id - 1) : null;
+	}
+
+	/**
+	 * @return id of given media type, 0 if not in dictionary
+	 */
+	static int mediaTypeId(MediaType mediaType) {
+		Integer id = MEDIA_TYPE_IDS.get(mediaType);
+		return (id == null) ? 0 : id;
+	}
+
+	/**
+	 * @return media type of given id, null if unknown
+	 */
+	static MediaType mediaType(int id) {
+		return (id > 0 && id <= MEDIA_TYPES.size()) ? MEDIA_TYPES.get(id - 1) : null;
+	}
+
+}
@@ -0,0 +1,284 @@
+package com.github.dgrandemange.idempotencereceiver.api.codec;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.CodecException;
+import com.github.dgrandemange.idempotencereceiver.api.model.CompactHttpHeaders;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.IdempotentMethodResultBuilder;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
+
+/**
+ * <p>
+ * Versioned binary codec of {@link IdempotentMethodResult}, independent from
+ * Java serialization and from Spring classes layout.
+ * </p>
+ *
+ * <p>
+ * Encoded values follow the protocol buffers wire format, as described by the
+ * <code>idempotent-method-result.proto</code> schema shipped in this module :
+ * </p>
+ * <ul>
+ * <li>response status is encoded as its code,</li>
+ * <li>media type and header names are encoded through a dictionary when
+ * common,</li>
+ * <li>start timestamp is encoded as epoch milliseconds,</li>
+ * <li>body is carried as a raw byte slice, written last.</li>
+ * </ul>
+ *
+ * <p>
+ * Decoding is lazy regarding the body : it is only copied out of the encoded
+ * value when {@link IdempotentMethodResult#getBody()} is first called, so that
+ * metadata-only checks (e.g. RUNNING vs DONE) do not pay for it.
+ * </p>
+ *
+ * <p>
+ * Unknown fields are skipped, so that values written by a newer version of
+ * this codec remain readable.
+ * </p>
+ */
+public class IdempotentMethodResultCodec {
+
+	public static final int VERSION = 1;
+
+	static final int FIELD_VERSION = 1;
+	static final int FIELD_IDEMPOTENCY_KEY = 2;
+	static final int FIELD_NAMESPACE = 3;
+	static final int FIELD_TTL_MS = 4;
+	static final int FIELD_STARTED_AT_EPOCH_MS = 5;
+	static final int FIELD_STATE = 6;
+	static final int FIELD_RESPONSE_STATUS = 7;
+	static final int FIELD_BODY_CONTENT_TYPE_ID = 8;
+	static final int FIELD_BODY_CONTENT_TYPE = 9;
+	static final int FIELD_RETURN_TYPE_NAME = 10;
+	static final int FIELD_SELECTED_CONVERTER_TYPE_NAME = 11;
+	static final int FIELD_RESPONSE_HEADER = 12;
+	static final int FIELD_BODY_CONTENT_ENCODING = 13;
+	static final int FIELD_BODY_REF = 14;
+	static final int FIELD_BODY = 15;
+	static final int FIELD_REPLAY_CODEC_ID = 16;
+	static final int FIELD_LEASE_EXPIRES_AT_EPOCH_MS = 17;
+
+	static final int HEADER_FIELD_NAME_ID = 1;
+	static final int HEADER_FIELD_NAME = 2;
+	static final int HEADER_FIELD_VALUE = 3;
+
+	static final int STATE_RUNNING = 0;
+	static final int STATE_DONE = 1;
+
+	/**
+	 * @param imr
+	 *            idempotent method result
+	 * @return binary form of given result
+	 */
+	public byte[] encode(IdempotentMethodResult imr) {
+		Objects.requireNonNull(imr);
+		byte[] body = imr.getBody();
+		ProtoWriter writer = new ProtoWriter(256 + (Objects.isNull(body) ? 0 : body.length));
+
+		writer.writeUInt64(FIELD_VERSION, VERSION);
+		writer.writeString(FIELD_IDEMPOTENCY_KEY, imr.getIdempotencyKey());
+		writer.writeString(FIELD_NAMESPACE, imr.getNamespace());
+		writer.writeUInt64(FIELD_TTL_MS, imr.getTtlMs());
+		if (Objects.nonNull(imr.getStartedAt())) {
+			writer.writeUInt64(FIELD_STARTED_AT_EPOCH_MS, imr.getStartedAt().toEpochMilli());
+		}
+		if (Objects.nonNull(imr.getLeaseExpiresAt())) {
+			writer.writeUInt64(FIELD_LEASE_EXPIRES_AT_EPOCH_MS, imr.getLeaseExpiresAt().toEpochMilli());
+		}
+		writer.writeUInt64(FIELD_STATE, ProcessingState.DONE.equals(imr.getState()) ? STATE_DONE : STATE_RUNNING);
+		if (Objects.nonNull(imr.getResponseStatus())) {
+			writer.writeUInt64(FIELD_RESPONSE_STATUS, imr.getResponseStatus().value());
+		}
+
+		MediaType bodyContentType = imr.getBodyContentType();
+		if (Objects.nonNull(bodyContentType)) {
+			int id = HttpDictionary.mediaTypeId(bodyContentType);
+			if (id > 0) {
+				writer.writeUInt64(FIELD_BODY_CONTENT_TYPE_ID, id);
+			} else {
+				writer.writeString(FIELD_BODY_CONTENT_TYPE, bodyContentType.toString());
+			}
+		}
+
+		writer.writeString(FIELD_RETURN_TYPE_NAME, imr.getReturnTypeName());
+		writer.writeString(FIELD_SELECTED_CONVERTER_TYPE_NAME, imr.getSelectedConverterTypeName());
+
+		CompactHttpHeaders headers = imr.getCompactResponseHeaders();
+		if (Objects.nonNull(headers)) {
+			ProtoWriter headerWriter = new ProtoWriter(64);
+			int i = 0;
+			while (i < headers.size()) {
+				String name = headers.getName(i);
+				headerWriter.reset();
+				int id = HttpDictionary.headerNameId(name);
+				if (id > 0) {
+					headerWriter.writeUInt64(HEADER_FIELD_NAME_ID, id);
+				} else {
+					headerWriter.writeString(HEADER_FIELD_NAME, name);
+				}
+				// Values of a same header are consecutive
+				for (; i < headers.size() && name.equals(headers.getName(i)); i++) {
+					headerWriter.writeString(HEADER_FIELD_VALUE, headers.getValue(i));
+				}
+				writer.writeMessage(FIELD_RESPONSE_HEADER, headerWriter);
+			}
+		}
+
+		writer.writeString(FIELD_BODY_CONTENT_ENCODING, imr.getBodyContentEncoding());
+		writer.writeString(FIELD_BODY_REF, imr.getBodyRef());
+		writer.writeUInt64(FIELD_REPLAY_CODEC_ID, imr.getReplayCodecId());
+		writer.writeBytes(FIELD_BODY, body);
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * @param bytes
+	 *            binary form of an idempotent method result
+	 * @return decoded result, whose body is decoded on first access
+	 */
+	public IdempotentMethodResult decode(byte[] bytes) {
+		Objects.requireNonNull(bytes);
+		ProtoReader reader = new ProtoReader(bytes, 0, bytes.length);
+		IdempotentMethodResultBuilder builder = IdempotentMethodResult.builder();
+
+		String idempotencyKey = null;
+		// Absent when zero, as any proto3 scalar
+		Instant startedAt = Instant.EPOCH;
+		ProcessingState state = ProcessingState.RUNNING;
+		HttpStatus responseStatus = null;
+		MediaType bodyContentType = null;
+		String returnTypeName = null;
+		String selectedConverterTypeName = null;
+		HttpHeaders headers = null;
+		String bodyContentEncoding = null;
+		String bodyRef = null;
+		int replayCodecId = 0;
+		int bodyOffset = -1;
+		int bodyLength = 0;
+
+		while (reader.hasRemaining()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+			case FIELD_VERSION:
+				reader.readVarint();
+				break;
+			case FIELD_IDEMPOTENCY_KEY:
+				idempotencyKey = reader.readString();
+				break;
+			case FIELD_NAMESPACE:
+				builder.inNamespace(reader.readString());
+				break;
+			case FIELD_TTL_MS:
+				builder.withTtlMs(reader.readVarint());
+				break;
+			case FIELD_STARTED_AT_EPOCH_MS:
+				startedAt = Instant.ofEpochMilli(reader.readVarint());
+				break;
+			case FIELD_LEASE_EXPIRES_AT_EPOCH_MS:
+				builder.withLeaseExpiresAt(Instant.ofEpochMilli(reader.readVarint()));
+				break;
+			case FIELD_STATE:
+				state = (reader.readVarint() == STATE_DONE) ? ProcessingState.DONE : ProcessingState.RUNNING;
+				break;
+			case FIELD_RESPONSE_STATUS:
+				responseStatus = HttpStatus.resolve((int) reader.readVarint());
+				break;
+			case FIELD_BODY_CONTENT_TYPE_ID:
+				bodyContentType = HttpDictionary.mediaType((int) reader.readVarint());
+				break;
+			case FIELD_BODY_CONTENT_TYPE:
+				bodyContentType = MediaType.parseMediaType(reader.readString());
+				break;
+			case FIELD_RETURN_TYPE_NAME:
+				returnTypeName = reader.readString();
+				break;
+			case FIELD_SELECTED_CONVERTER_TYPE_NAME:
+				selectedConverterTypeName = reader.readString();
+				break;
+			case FIELD_RESPONSE_HEADER:
+				if (Objects.isNull(headers)) {
+					headers = new HttpHeaders();
+				}
+				decodeHeader(reader.readMessage(), headers);
+				break;
+			case FIELD_BODY_CONTENT_ENCODING:
+				bodyContentEncoding = reader.readString();
+				break;
+			case FIELD_BODY_REF:
+				bodyRef = reader.readString();
+				break;
+			case FIELD_REPLAY_CODEC_ID:
+				replayCodecId = (int) reader.readVarint();
+				break;
+			case FIELD_BODY:
+				bodyOffset = reader.skipBytes();
+				bodyLength = reader.getLastLength();
+				break;
+			default:
+				reader.skipField(tag);
+				break;
+			}
+		}
+
+		if (Objects.isNull(idempotencyKey)) {
+			throw new CodecException("idempotency key is mandatory");
+		}
+
+		builder.withIdempotencyKey(idempotencyKey).startedAt(startedAt);
+		if (ProcessingState.RUNNING.equals(state)) {
+			return builder.build();
+		}
+
+		builder.withResponse(null, null, bodyContentType, null, headers, responseStatus)
+		        .withBodyContentEncoding(bodyContentEncoding);
+		if (Objects.nonNull(bodyRef)) {
+			builder.withBodyRef(bodyRef);
+		} else if (bodyOffset >= 0) {
+			final int offset = bodyOffset;
+			final int length = bodyLength;
+			builder.withLazyBody(() -> Arrays.copyOfRange(bytes, offset, offset + length));
+		}
+		IdempotentMethodResult imr = builder.build();
+		imr.setReturnTypeName(returnTypeName);
+		imr.setSelectedConverterTypeName(selectedConverterTypeName);
+		imr.setReplayCodecId(replayCodecId);
+		return imr;
+	}
+
+	void decodeHeader(ProtoReader reader, HttpHeaders headers) {
+		String name = null;
+		List<String> values = new ArrayList<>(1);
+		while (reader.hasRemaining()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+			case HEADER_FIELD_NAME_ID:
+				name = HttpDictionary.headerName((int) reader.readVarint());
+				break;
+			case HEADER_FIELD_NAME:
+				name = reader.readString();
+				break;
+			case HEADER_FIELD_VALUE:
+				values.add(reader.readString());
+				break;
+			default:
+				reader.skipField(tag);
+				break;
+			}
+		}
+		if (Objects.isNull(name)) {
+			throw new CodecException("unknown response header name");
+		}
+		headers.put(name, values);
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.github.dgrandemange.idempotencereceiver.api.codec;
+
+import java.nio.charset.StandardCharsets;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.CodecException;
+
+/**
+ * Minimal protocol buffers wire format reader, covering the field types used by
+ * {@link IdempotentMethodResultCodec}. Unknown fields can be skipped, so that
+ * values written by a newer codec version remain readable.
+ */
+final class ProtoReader {
+
+	private final byte[] buffer;
+
+	private int position;
+
+	private final int limit;
+
+	private int lastLength;
+
+	ProtoReader(byte[] buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	boolean hasRemaining() {
+		return position < limit;
+	}
+
+	int readTag() {
+		return (int) readVarint();
+	}
+
+	long readVarint() {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			checkRemaining(1);
+			byte b = buffer[position++];
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new CodecException("malformed varint");
+	}
+
+	String readString() {
+		int length = readLength();
+		String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	/**
+	 * @return reader over the next length delimited field, current reader being
+	 *         moved past it
+	 */
+	ProtoReader readMessage() {
+		int length = readLength();
+		ProtoReader message = new ProtoReader(buffer, position, length);
+		position += length;
+		return message;
+	}
+
+	/**
+	 * @return offset in the underlying buffer of the next length delimited field
+	 *         contents, whose length is then available via
+	 *         {@link #getLastLength()}
+	 */
+	int skipBytes() {
+		int length = readLength();
+		int offset = position;
+		position += length;
+		lastLength = length;
+		return offset;
+	}
+
+	int getLastLength() {
+		return lastLength;
+	}
+
+	void skipField(int tag) {
+		int wireType = tag & 0x7;
+		switch (wireType) {
+		case ProtoWriter.WIRETYPE_VARINT:
+			readVarint();
+			break;
+		case 1:
+			skip(8);
+			break;
+		case ProtoWriter.WIRETYPE_LENGTH_DELIMITED:
+			skipBytes();
+			break;
+		case 5:
+			skip(4);
+			break;
+		default:
+			throw new CodecException(String.format("unsupported wire type %d", wireType));
+		}
+	}
+
+	byte[] getBuffer() {
+		return buffer;
+	}
+
+	private void skip(int length) {
+		checkRemaining(length);
+		position += length;
+	}
+
+	private int readLength() {
+		long length = readVarint();
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new CodecException("malformed length");
+		}
+		checkRemaining((int) length);
+		return (int) length;
+	}
+
+	private void checkRemaining(int length) {
+		if (length > limit - position) {
+			throw new CodecException("truncated input");
+		}
+	}
+
+}
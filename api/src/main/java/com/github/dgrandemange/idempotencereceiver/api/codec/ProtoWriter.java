@@ -0,0 +1,83 @@
+package com.github.dgrandemange.idempotencereceiver.api.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Minimal protocol buffers wire format writer, covering the field types used by
+ * {@link IdempotentMethodResultCodec}. Default (zero, null) values are not
+ * written, as in proto3.
+ */
+final class ProtoWriter {
+
+	static final int WIRETYPE_VARINT = 0;
+	static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+	private byte[] buffer;
+
+	private int position;
+
+	ProtoWriter(int initialCapacity) {
+		this.buffer = new byte[Math.max(16, initialCapacity)];
+	}
+
+	void writeUInt64(int field, long value) {
+		if (value != 0) {
+			writeTag(field, WIRETYPE_VARINT);
+			writeVarint(value);
+		}
+	}
+
+	void writeString(int field, String value) {
+		if (Objects.nonNull(value)) {
+			writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	void writeBytes(int field, byte[] value) {
+		if (Objects.nonNull(value)) {
+			writeBytes(field, value, 0, value.length);
+		}
+	}
+
+	void writeBytes(int field, byte[] value, int offset, int length) {
+		writeTag(field, WIRETYPE_LENGTH_DELIMITED);
+		writeVarint(length);
+		ensureCapacity(length);
+		System.arraycopy(value, offset, buffer, position, length);
+		position += length;
+	}
+
+	void writeMessage(int field, ProtoWriter message) {
+		writeBytes(field, message.buffer, 0, message.position);
+	}
+
+	void writeTag(int field, int wireType) {
+		writeVarint((field << 3) | wireType);
+	}
+
+	void writeVarint(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	void reset() {
+		position = 0;
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, position);
+	}
+
+	private void ensureCapacity(int extra) {
+		if (position + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + extra));
+		}
+	}
+
+}
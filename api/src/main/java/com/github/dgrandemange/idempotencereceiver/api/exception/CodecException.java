@@ -0,0 +1,23 @@
+package com.github.dgrandemange.idempotencereceiver.api.exception;
+
+/**
+ * Raised when an idempotent method result cannot be encoded into, or decoded
+ * from, its binary form
+ */
+public class CodecException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CodecException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public CodecException(String message) {
+		super(message);
+	}
+
+	public CodecException(Throwable cause) {
+		super(cause);
+	}
+
+}
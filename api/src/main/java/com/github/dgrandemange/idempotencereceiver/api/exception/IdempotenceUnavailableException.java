@@ -0,0 +1,39 @@
+package com.github.dgrandemange.idempotencereceiver.api.exception;
+
+/**
+ * Raised when a request can't be processed idempotently, and must not be
+ * processed otherwise
+ */
+public class IdempotenceUnavailableException extends IdempotentReceiverException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterSeconds;
+
+	public IdempotenceUnavailableException(String message, Throwable cause) {
+		this(message, cause, 0);
+	}
+
+	/**
+	 * @param message
+	 *            detail message
+	 * @param cause
+	 *            cause of the unavailability, null if none
+	 * @param retryAfterSeconds
+	 *            delay in seconds the client is advised to wait before retrying,
+	 *            0 if none
+	 */
+	public IdempotenceUnavailableException(String message, Throwable cause, long retryAfterSeconds) {
+		super(message, cause);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @return delay in seconds the client is advised to wait before retrying, 0
+	 *         if none
+	 */
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+}
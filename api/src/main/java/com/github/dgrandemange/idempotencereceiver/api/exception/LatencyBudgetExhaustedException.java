@@ -0,0 +1,15 @@
+package com.github.dgrandemange.idempotencereceiver.api.exception;
+
+/**
+ * Raised when a repository call could not complete within the remaining latency
+ * budget of the request
+ */
+public class LatencyBudgetExhaustedException extends IdempotentRepositoryException {
+
+	private static final long serialVersionUID = 1L;
+
+	public LatencyBudgetExhaustedException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.github.dgrandemange.idempotencereceiver.api.exception;
+
+/**
+ * Raised, without calling the repository, when the adaptive limit of concurrent
+ * repository calls is reached
+ */
+public class RepositoryOverloadedException extends IdempotentRepositoryException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RepositoryOverloadedException(String message) {
+		super(message);
+	}
+
+}
@@ -13,6 +13,10 @@ public class SubsequentPresentationException extends IdempotentReceiverException
 		this.responseEntity = responseEntity;
 	}
 
+	/**
+	 * @return response to send back, null when the response has already been
+	 *         written
+	 */
 	public ResponseEntity<Object> getResponseEntity() {
 		return responseEntity;
 	}
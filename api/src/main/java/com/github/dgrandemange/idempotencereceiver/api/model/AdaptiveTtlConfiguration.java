@@ -0,0 +1,159 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the TTL learned from the observed delays between the first
+ * presentation of a request and its subsequent presentations (i.e. retries).
+ * </p>
+ *
+ * <p>
+ * Retry delays are always recorded per endpoint, and a recommended TTL is
+ * computed from them. The recommended TTL is only applied when
+ * {@link #isAutoMode()} is enabled.
+ * </p>
+ */
+public class AdaptiveTtlConfiguration {
+
+	public static final double DEFAULT_PERCENTILE = 99.0;
+	public static final long DEFAULT_MARGIN_MS = 5000;
+	public static final long DEFAULT_MIN_TTL_MS = 10000;
+	public static final long DEFAULT_MAX_TTL_MS = 86400000;
+	public static final long DEFAULT_MIN_SAMPLES = 100;
+
+	private boolean autoMode;
+
+	private double percentile = DEFAULT_PERCENTILE;
+
+	private long marginMs = DEFAULT_MARGIN_MS;
+
+	private long minTtlMs = DEFAULT_MIN_TTL_MS;
+
+	private long maxTtlMs = DEFAULT_MAX_TTL_MS;
+
+	private long minSamples = DEFAULT_MIN_SAMPLES;
+
+	private boolean slidingExpiration;
+
+	/**
+	 * @return true if the recommended TTL of an endpoint should be applied to the
+	 *         results of this endpoint, unless the endpoint declares its own TTL
+	 */
+	public boolean isAutoMode() {
+		return autoMode;
+	}
+
+	/**
+	 * @param autoMode
+	 *            See {@link #isAutoMode()}
+	 */
+	public void setAutoMode(boolean autoMode) {
+		this.autoMode = autoMode;
+	}
+
+	/**
+	 * @return percentile of the retry delays distribution the recommended TTL is
+	 *         based on
+	 * @see #DEFAULT_PERCENTILE
+	 */
+	public double getPercentile() {
+		return percentile;
+	}
+
+	/**
+	 * @param percentile
+	 *            See {@link #getPercentile()}
+	 */
+	public void setPercentile(double percentile) {
+		this.percentile = percentile;
+	}
+
+	/**
+	 * @return margin in milliseconds added to the percentile to get the
+	 *         recommended TTL
+	 * @see #DEFAULT_MARGIN_MS
+	 */
+	public long getMarginMs() {
+		return marginMs;
+	}
+
+	/**
+	 * @param marginMs
+	 *            See {@link #getMarginMs()}
+	 */
+	public void setMarginMs(long marginMs) {
+		this.marginMs = marginMs;
+	}
+
+	/**
+	 * @return lower bound in milliseconds of the recommended TTL
+	 * @see #DEFAULT_MIN_TTL_MS
+	 */
+	public long getMinTtlMs() {
+		return minTtlMs;
+	}
+
+	/**
+	 * @param minTtlMs
+	 *            See {@link #getMinTtlMs()}
+	 */
+	public void setMinTtlMs(long minTtlMs) {
+		this.minTtlMs = minTtlMs;
+	}
+
+	/**
+	 * @return upper bound in milliseconds of the recommended TTL
+	 * @see #DEFAULT_MAX_TTL_MS
+	 */
+	public long getMaxTtlMs() {
+		return maxTtlMs;
+	}
+
+	/**
+	 * @param maxTtlMs
+	 *            See {@link #getMaxTtlMs()}
+	 */
+	public void setMaxTtlMs(long maxTtlMs) {
+		this.maxTtlMs = maxTtlMs;
+	}
+
+	/**
+	 * @return number of retry delays to record for an endpoint before a TTL gets
+	 *         recommended for it
+	 * @see #DEFAULT_MIN_SAMPLES
+	 */
+	public long getMinSamples() {
+		return minSamples;
+	}
+
+	/**
+	 * @param minSamples
+	 *            See {@link #getMinSamples()}
+	 */
+	public void setMinSamples(long minSamples) {
+		this.minSamples = minSamples;
+	}
+
+	/**
+	 * @return true if the lifetime of a result should be extended each time a
+	 *         subsequent presentation hits it
+	 */
+	public boolean isSlidingExpiration() {
+		return slidingExpiration;
+	}
+
+	/**
+	 * @param slidingExpiration
+	 *            See {@link #isSlidingExpiration()}
+	 */
+	public void setSlidingExpiration(boolean slidingExpiration) {
+		this.slidingExpiration = slidingExpiration;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveTtlConfiguration [autoMode=" + autoMode + ", percentile=" + percentile + ", marginMs="
+		        + marginMs + ", minTtlMs=" + minTtlMs + ", maxTtlMs=" + maxTtlMs + ", minSamples=" + minSamples
+		        + ", slidingExpiration=" + slidingExpiration + "]";
+	}
+
+}
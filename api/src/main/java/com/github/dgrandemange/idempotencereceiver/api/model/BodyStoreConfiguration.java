@@ -0,0 +1,148 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the store that large response bodies are moved to, the
+ * registered idempotent method result then only holding a reference to them.
+ * </p>
+ *
+ * <p>
+ * Bodies are kept inline unless a store type is set.
+ * </p>
+ */
+public class BodyStoreConfiguration {
+
+	public static final int DEFAULT_INLINE_THRESHOLD = 256 * 1024;
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+	public static final long DEFAULT_RETENTION_MS = 86400000;
+	public static final long DEFAULT_PURGE_INTERVAL_MS = 600000;
+
+	private String type;
+
+	private int inlineThreshold = DEFAULT_INLINE_THRESHOLD;
+
+	private String directory;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private long retentionMs = DEFAULT_RETENTION_MS;
+
+	private long purgeIntervalMs = DEFAULT_PURGE_INTERVAL_MS;
+
+	/**
+	 * @return type of the body store implementation to use (e.g.
+	 *         <code>filesystem</code>), null to keep all bodies inline
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @param type
+	 *            See {@link #getType()}
+	 */
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * @return size in bytes above which a body is moved to the body store
+	 * @see #DEFAULT_INLINE_THRESHOLD
+	 */
+	public int getInlineThreshold() {
+		return inlineThreshold;
+	}
+
+	/**
+	 * @param inlineThreshold
+	 *            See {@link #getInlineThreshold()}
+	 */
+	public void setInlineThreshold(int inlineThreshold) {
+		this.inlineThreshold = inlineThreshold;
+	}
+
+	/**
+	 * @return directory of the filesystem body store, defaults to a sub
+	 *         directory of the JVM temporary directory
+	 */
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param directory
+	 *            See {@link #getDirectory()}
+	 */
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return size in bytes of the chunk files a body is split into by the
+	 *         filesystem body store
+	 * @see #DEFAULT_CHUNK_SIZE
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @param chunkSize
+	 *            See {@link #getChunkSize()}
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * <p>
+	 * Duration a body is kept in the store after it has been last stored.
+	 * </p>
+	 * <p>
+	 * A body referenced by a result with a longer TTL (endpoint or adaptive one,
+	 * possibly extended on sliding expiration) is retained up to the expiry of
+	 * the result. NB : should still be greater than the default TTL of the
+	 * repository entries, as an entry whose body is no longer available gets
+	 * handled as a first presentation.
+	 * </p>
+	 * 
+	 * @return retention duration in milliseconds
+	 * @see #DEFAULT_RETENTION_MS
+	 */
+	public long getRetentionMs() {
+		return retentionMs;
+	}
+
+	/**
+	 * @param retentionMs
+	 *            See {@link #getRetentionMs()}
+	 */
+	public void setRetentionMs(long retentionMs) {
+		this.retentionMs = retentionMs;
+	}
+
+	/**
+	 * @return interval in milliseconds between two purges of the bodies whose
+	 *         retention has elapsed
+	 * @see #DEFAULT_PURGE_INTERVAL_MS
+	 */
+	public long getPurgeIntervalMs() {
+		return purgeIntervalMs;
+	}
+
+	/**
+	 * @param purgeIntervalMs
+	 *            See {@link #getPurgeIntervalMs()}
+	 */
+	public void setPurgeIntervalMs(long purgeIntervalMs) {
+		this.purgeIntervalMs = purgeIntervalMs;
+	}
+
+	@Override
+	public String toString() {
+		return "BodyStoreConfiguration [type=" + type + ", inlineThreshold=" + inlineThreshold + ", directory="
+		        + directory + ", chunkSize=" + chunkSize + ", retentionMs=" + retentionMs + ", purgeIntervalMs="
+		        + purgeIntervalMs + "]";
+	}
+
+}
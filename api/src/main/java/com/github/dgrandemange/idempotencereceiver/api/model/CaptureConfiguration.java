@@ -0,0 +1,82 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the capture of response bodies, as they are written to the
+ * client.
+ * </p>
+ *
+ * <p>
+ * A captured body is kept in memory up to {@link #getMemoryThreshold()}, then
+ * spilled to a temporary file. A body larger than {@link #getMaxBodySize()} is
+ * not captured further : its idempotent method result is then forgotten, so
+ * that the request is processed again on a subsequent presentation.
+ * </p>
+ */
+public class CaptureConfiguration {
+
+	public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+	public static final long DEFAULT_MAX_BODY_SIZE = 64L * 1024 * 1024;
+
+	private int memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+
+	private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+	private String directory;
+
+	/**
+	 * @return size in bytes above which a captured body is spilled to a file
+	 * @see #DEFAULT_MEMORY_THRESHOLD
+	 */
+	public int getMemoryThreshold() {
+		return memoryThreshold;
+	}
+
+	/**
+	 * @param memoryThreshold
+	 *            See {@link #getMemoryThreshold()}
+	 */
+	public void setMemoryThreshold(int memoryThreshold) {
+		this.memoryThreshold = memoryThreshold;
+	}
+
+	/**
+	 * @return size in bytes above which a body is not replayable, 0 for no limit
+	 * @see #DEFAULT_MAX_BODY_SIZE
+	 */
+	public long getMaxBodySize() {
+		return maxBodySize;
+	}
+
+	/**
+	 * @param maxBodySize
+	 *            See {@link #getMaxBodySize()}
+	 */
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * @return directory spilled bodies are written to, defaults to the
+	 *         <code>idempotence-receiver-capture</code> directory of
+	 *         <code>java.io.tmpdir</code>
+	 */
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param directory
+	 *            See {@link #getDirectory()}
+	 */
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public String toString() {
+		return "CaptureConfiguration [memoryThreshold=" + memoryThreshold + ", maxBodySize=" + maxBodySize
+		        + ", directory=" + directory + "]";
+	}
+
+}
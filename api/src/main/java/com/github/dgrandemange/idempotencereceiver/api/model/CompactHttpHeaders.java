@@ -0,0 +1,148 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * <p>
+ * Immutable and compact form of the HTTP headers of a stored response, as
+ * parallel arrays of names and values. A header with several values has its
+ * name repeated, consecutively.
+ * </p>
+ *
+ * <p>
+ * Header names are interned, so that the same name is shared by all the
+ * stored responses.
+ * </p>
+ */
+public final class CompactHttpHeaders implements Serializable {
+
+	private static final long serialVersionUID = 100L;
+
+	static final Interner<String> NAMES = new Interner<>(1024);
+
+	private static final String[] NONE = new String[0];
+
+	public static final CompactHttpHeaders EMPTY = new CompactHttpHeaders(NONE, NONE);
+
+	private final String[] names;
+
+	private final String[] values;
+
+	private CompactHttpHeaders(String[] names, String[] values) {
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * @param headers
+	 *            HTTP headers, possibly null
+	 * @return compact form of given headers, null if given headers are null
+	 */
+	public static CompactHttpHeaders of(HttpHeaders headers) {
+		if (Objects.isNull(headers)) {
+			return null;
+		}
+
+		int size = 0;
+		for (List<String> headerValues : headers.values()) {
+			size += headerValues.size();
+		}
+		if (size == 0) {
+			return EMPTY;
+		}
+
+		String[] names = new String[size];
+		String[] values = new String[size];
+		int i = 0;
+		for (Entry<String, List<String>> header : headers.entrySet()) {
+			String name = NAMES.intern(header.getKey());
+			for (String value : header.getValue()) {
+				names[i] = name;
+				values[i++] = value;
+			}
+		}
+		return new CompactHttpHeaders(names, values);
+	}
+
+	/**
+	 * @return number of header values
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @param index
+	 *            index of a header value
+	 * @return name of the header value at given index
+	 */
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @param index
+	 *            index of a header value
+	 * @return header value at given index
+	 */
+	public String getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @return read only HTTP headers, built on each call
+	 */
+	public HttpHeaders toHttpHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		for (int i = 0; i < names.length; i++) {
+			headers.add(names[i], values[i]);
+		}
+		return HttpHeaders.readOnlyHttpHeaders(headers);
+	}
+
+	private Object readResolve() {
+		if (names.length == 0) {
+			return EMPTY;
+		}
+		for (int i = 0; i < names.length; i++) {
+			names[i] = NAMES.intern(names[i]);
+		}
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompactHttpHeaders)) {
+			return false;
+		}
+		CompactHttpHeaders other = (CompactHttpHeaders) obj;
+		return Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(names[i]).append(':').append('"').append(values[i]).append('"');
+		}
+		return sb.append(']').toString();
+	}
+
+}
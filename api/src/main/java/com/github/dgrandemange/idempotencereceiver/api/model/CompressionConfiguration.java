@@ -0,0 +1,73 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the compression applied to response bodies before they get
+ * registered into the repository.
+ * </p>
+ *
+ * <p>
+ * Compression is disabled unless an algorithm is set.
+ * </p>
+ */
+public class CompressionConfiguration {
+
+	public static final int DEFAULT_MIN_BODY_SIZE = 1024;
+
+	private String algorithm;
+
+	private int minBodySize = DEFAULT_MIN_BODY_SIZE;
+
+	/**
+	 * <p>
+	 * Content coding of the compression algorithm to apply (e.g.
+	 * <code>gzip</code>), null or <code>none</code> to disable compression.
+	 * </p>
+	 * <p>
+	 * <code>gzip</code> is always available. Other algorithms (e.g.
+	 * <code>lz4</code>) are available once a
+	 * {@link com.github.dgrandemange.idempotencereceiver.api.service.BodyCompressor}
+	 * bean of the same content coding is declared.
+	 * </p>
+	 * <p>
+	 * NB : only <code>gzip</code> compressed bodies can be replayed as is to
+	 * clients accepting this content coding, other ones always get decompressed
+	 * on replay.
+	 * </p>
+	 * 
+	 * @return content coding of the compression algorithm
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * @param algorithm
+	 *            See {@link #getAlgorithm()}
+	 */
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * @return size in bytes under which a body is stored uncompressed
+	 * @see #DEFAULT_MIN_BODY_SIZE
+	 */
+	public int getMinBodySize() {
+		return minBodySize;
+	}
+
+	/**
+	 * @param minBodySize
+	 *            See {@link #getMinBodySize()}
+	 */
+	public void setMinBodySize(int minBodySize) {
+		this.minBodySize = minBodySize;
+	}
+
+	@Override
+	public String toString() {
+		return "CompressionConfiguration [algorithm=" + algorithm + ", minBodySize=" + minBodySize + "]";
+	}
+
+}
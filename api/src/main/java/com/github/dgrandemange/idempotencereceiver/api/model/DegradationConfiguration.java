@@ -0,0 +1,188 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+
+/**
+ * <p>
+ * Configuration of the degradation policy, i.e. how requests are handled when
+ * the repository is unavailable (failing, overloaded, or out of latency
+ * budget).
+ * </p>
+ *
+ * <p>
+ * The policy applies to every idempotent endpoint, unless overridden by the
+ * endpoint itself (see {@link Idempotent#degradation()}).
+ * </p>
+ */
+public class DegradationConfiguration {
+
+	/**
+	 * Degradation policy
+	 */
+	public enum Policy {
+		/**
+		 * On an endpoint, applies the common policy. As common policy, same as
+		 * {@link #FAIL_OPEN}
+		 */
+		DEFAULT,
+		/**
+		 * The request is processed without idempotence
+		 */
+		FAIL_OPEN,
+		/**
+		 * The request is rejected with a
+		 * {@link org.springframework.http.HttpStatus#SERVICE_UNAVAILABLE} response
+		 * and a <code>Retry-After</code> header, the client being expected to retry
+		 * it
+		 */
+		FAIL_CLOSED,
+		/**
+		 * The request is looked up, claimed and completed in a bounded local store
+		 * while the repository is unavailable, the completed results being replayed
+		 * to the repository once it answers again (see
+		 * {@link LocalFallbackConfiguration}). Same as {@link #FAIL_OPEN} when no
+		 * local store is enabled
+		 */
+		LOCAL_FALLBACK;
+	}
+
+	/**
+	 * Local store used by the {@link Policy#LOCAL_FALLBACK} policy. Duplicates
+	 * are only detected locally, i.e. when they reach the same instance. Disabled
+	 * by default.
+	 */
+	public static class LocalFallbackConfiguration {
+
+		public static final int DEFAULT_MAX_ENTRIES = 10000;
+		public static final long DEFAULT_RECONCILE_INTERVAL_MS = 1000;
+
+		private boolean enabled;
+
+		private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+		private long reconcileIntervalMs = DEFAULT_RECONCILE_INTERVAL_MS;
+
+		/**
+		 * @return true if a local store is available to the
+		 *         {@link Policy#LOCAL_FALLBACK} policy
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * @param enabled
+		 *            See {@link #isEnabled()}
+		 */
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * Once full, requests are processed without idempotence
+		 *
+		 * @return maximum number of results held locally
+		 * @see #DEFAULT_MAX_ENTRIES
+		 */
+		public int getMaxEntries() {
+			return maxEntries;
+		}
+
+		/**
+		 * @param maxEntries
+		 *            See {@link #getMaxEntries()}
+		 */
+		public void setMaxEntries(int maxEntries) {
+			this.maxEntries = maxEntries;
+		}
+
+		/**
+		 * @return interval in milliseconds between two attempts to replay the
+		 *         results held locally to the repository
+		 * @see #DEFAULT_RECONCILE_INTERVAL_MS
+		 */
+		public long getReconcileIntervalMs() {
+			return reconcileIntervalMs;
+		}
+
+		/**
+		 * @param reconcileIntervalMs
+		 *            See {@link #getReconcileIntervalMs()}
+		 */
+		public void setReconcileIntervalMs(long reconcileIntervalMs) {
+			this.reconcileIntervalMs = reconcileIntervalMs;
+		}
+
+		@Override
+		public String toString() {
+			return "LocalFallbackConfiguration [enabled=" + enabled + ", maxEntries=" + maxEntries
+			        + ", reconcileIntervalMs=" + reconcileIntervalMs + "]";
+		}
+
+	}
+
+	public static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+	private Policy policy = Policy.FAIL_OPEN;
+
+	private long retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+
+	@NestedConfigurationProperty
+	private LocalFallbackConfiguration localFallback = new LocalFallbackConfiguration();
+
+	/**
+	 * @return common degradation policy
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param policy
+	 *            See {@link #getPolicy()}
+	 */
+	public void setPolicy(Policy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * @return delay in seconds advertised in the <code>Retry-After</code> header
+	 *         of rejected requests, 0 for no header
+	 * @see #DEFAULT_RETRY_AFTER_SECONDS
+	 */
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	/**
+	 * @param retryAfterSeconds
+	 *            See {@link #getRetryAfterSeconds()}
+	 */
+	public void setRetryAfterSeconds(long retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @return Nested local fallback store configuration
+	 */
+	public LocalFallbackConfiguration getLocalFallback() {
+		return localFallback;
+	}
+
+	/**
+	 * @param localFallback
+	 *            See {@link #getLocalFallback()}
+	 */
+	public void setLocalFallback(LocalFallbackConfiguration localFallback) {
+		this.localFallback = localFallback;
+	}
+
+	@Override
+	public String toString() {
+		return "DegradationConfiguration [policy=" + policy + ", retryAfterSeconds=" + retryAfterSeconds
+		        + ", localFallback=" + localFallback + "]";
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the threads the repository calls are executed on, off the
+ * request path : the asynchronous executions of the resilient repository
+ * (lookups, registrations and retries) and the write-behind writers.
+ * </p>
+ *
+ * <p>
+ * With virtual threads, a repository call blocked on a slow repository no
+ * longer holds a platform thread : the number of calls in flight is no longer
+ * bounded by the size of a thread pool. Virtual threads require a Java 21+
+ * runtime ; on an older runtime, platform threads are used instead.
+ * </p>
+ */
+public class ExecutionConfiguration {
+
+	/**
+	 * Kind of threads
+	 */
+	public enum Threads {
+		/**
+		 * Pooled platform threads
+		 */
+		PLATFORM,
+		/**
+		 * One virtual thread per execution, platform threads being used instead
+		 * when the runtime doesn't support virtual threads
+		 */
+		VIRTUAL;
+	}
+
+	private Threads threads = Threads.PLATFORM;
+
+	/**
+	 * @return kind of threads the repository calls are executed on
+	 */
+	public Threads getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads
+	 *            See {@link #getThreads()}
+	 */
+	public void setThreads(Threads threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * @return true if virtual threads are requested
+	 */
+	public boolean isVirtual() {
+		return Threads.VIRTUAL.equals(threads);
+	}
+
+	@Override
+	public String toString() {
+		return "ExecutionConfiguration [threads=" + threads + "]";
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+
+/**
+ * <p>
+ * Configuration of the existence-only deduplication mode (see
+ * {@link Idempotent#existenceOnly()}).
+ * </p>
+ *
+ * <p>
+ * In this mode, only a 64 bits fingerprint of each request is kept, in memory,
+ * in a set split into time generations : a fingerprint is retained at least
+ * {@link #getTtlMs()}, and at most {@link #getTtlMs()} &times;
+ * {@link #getGenerations()} / ({@link #getGenerations()} - 1).
+ * </p>
+ */
+public class ExistenceOnlyConfiguration {
+
+	public static final long DEFAULT_TTL_MS = 120000;
+	public static final int DEFAULT_GENERATIONS = 3;
+	public static final int DEFAULT_DUPLICATE_STATUS = 202;
+
+	private long ttlMs = DEFAULT_TTL_MS;
+
+	private int generations = DEFAULT_GENERATIONS;
+
+	private int duplicateStatus = DEFAULT_DUPLICATE_STATUS;
+
+	/**
+	 * @return minimum lifetime in milliseconds of a request fingerprint
+	 * @see #DEFAULT_TTL_MS
+	 */
+	public long getTtlMs() {
+		return ttlMs;
+	}
+
+	/**
+	 * @param ttlMs
+	 *            See {@link #getTtlMs()}
+	 */
+	public void setTtlMs(long ttlMs) {
+		this.ttlMs = ttlMs;
+	}
+
+	/**
+	 * @return number of time generations the fingerprints are split into (at
+	 *         least 2); the more generations, the closer to {@link #getTtlMs()}
+	 *         fingerprints are evicted
+	 * @see #DEFAULT_GENERATIONS
+	 */
+	public int getGenerations() {
+		return generations;
+	}
+
+	/**
+	 * @param generations
+	 *            See {@link #getGenerations()}
+	 */
+	public void setGenerations(int generations) {
+		this.generations = generations;
+	}
+
+	/**
+	 * @return HTTP status code of the canned response, with no body, returned to
+	 *         duplicate requests
+	 * @see #DEFAULT_DUPLICATE_STATUS
+	 */
+	public int getDuplicateStatus() {
+		return duplicateStatus;
+	}
+
+	/**
+	 * @param duplicateStatus
+	 *            See {@link #getDuplicateStatus()}
+	 */
+	public void setDuplicateStatus(int duplicateStatus) {
+		this.duplicateStatus = duplicateStatus;
+	}
+
+	@Override
+	public String toString() {
+		return "ExistenceOnlyConfiguration [ttlMs=" + ttlMs + ", generations=" + generations + ", duplicateStatus="
+		        + duplicateStatus + "]";
+	}
+
+}
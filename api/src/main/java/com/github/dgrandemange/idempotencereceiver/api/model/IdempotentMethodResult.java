@@ -1,8 +1,12 @@
 package com.github.dgrandemange.idempotencereceiver.api.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -11,20 +15,54 @@ import org.springframework.http.converter.HttpMessageConverter;
 
 public class IdempotentMethodResult implements Serializable {
 
-	private static final long serialVersionUID = 100L;
+	private static final long serialVersionUID = 101L;
+
+	static final Interner<MediaType> MEDIA_TYPES = new Interner<>(256);
 
 	private String idempotencyKey;
 
+	private String namespace;
+
+	private long ttlMs;
+
 	private Instant startedAt;
 
+	/**
+	 * Expiry of the lease held by the instance processing the first
+	 * presentation, null when not leased
+	 */
+	private Instant leaseExpiresAt;
+
 	private ProcessingState state;
 
 	private byte[] body;
+
+	/**
+	 * Loads {@link #body} on first access, when decoded lazily from a stored form
+	 */
+	private transient Supplier<byte[]> bodyLoader;
+
+	/**
+	 * Reference of the body in the body store, when not kept inline
+	 */
+	private String bodyRef;
 	private MediaType bodyContentType;
+
+	/**
+	 * Content coding of the stored {@link #body}, null when stored plain
+	 */
+	private String bodyContentEncoding;
 	private String returnTypeName;
 	private String selectedConverterTypeName;
 
-	private HttpHeaders responseHeaders;
+	/**
+	 * Compact identifier of the (return type, converter) couple able to read the
+	 * body back, standing for {@link #returnTypeName} and
+	 * {@link #selectedConverterTypeName} ; 0 when those are set instead
+	 */
+	private int replayCodecId;
+
+	private CompactHttpHeaders responseHeaders;
 	private HttpStatus responseStatus;
 
 	public enum ProcessingState {
@@ -45,21 +83,48 @@ public class IdempotentMethodResult implements Serializable {
 			return this;
 		}
 
+		public IdempotentMethodResultBuilder inNamespace(String namespace) {
+			instance.namespace = namespace;
+			return this;
+		}
+
+		public IdempotentMethodResultBuilder withTtlMs(long ttlMs) {
+			instance.ttlMs = ttlMs;
+			return this;
+		}
+
 		public IdempotentMethodResultBuilder startedAt(Instant instant) {
 			instance.startedAt = instant;
 			return this;
 		}
 
+		/**
+		 * @param leaseExpiresAt
+		 *            expiry of the lease held on a running result
+		 * @return this builder
+		 */
+		public IdempotentMethodResultBuilder withLeaseExpiresAt(Instant leaseExpiresAt) {
+			instance.leaseExpiresAt = leaseExpiresAt;
+			return this;
+		}
+
 		public IdempotentMethodResultBuilder from(IdempotentMethodResult imr) {
 			instance.idempotencyKey = imr.idempotencyKey;
+			instance.namespace = imr.namespace;
+			instance.ttlMs = imr.ttlMs;
 			instance.startedAt = imr.startedAt;
+			instance.leaseExpiresAt = imr.leaseExpiresAt;
 			instance.state = imr.state;
 			instance.responseHeaders = imr.responseHeaders;
 			instance.responseStatus = imr.responseStatus;
 			instance.body = imr.body;
+			instance.bodyLoader = imr.bodyLoader;
+			instance.bodyRef = imr.bodyRef;
 			instance.bodyContentType = imr.bodyContentType;
+			instance.bodyContentEncoding = imr.bodyContentEncoding;
 			instance.selectedConverterTypeName = imr.selectedConverterTypeName;
 			instance.returnTypeName = imr.returnTypeName;
+			instance.replayCodecId = imr.replayCodecId;
 			return this;
 		}
 
@@ -67,27 +132,100 @@ public class IdempotentMethodResult implements Serializable {
 		        MediaType bodyContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType,
 		        HttpHeaders httpHeaders, HttpStatus httpStatus) {
 			instance.state = ProcessingState.DONE;
+			instance.leaseExpiresAt = null;
 			instance.body = bodyAsByteArray;
-			instance.bodyContentType = bodyContentType;
+			instance.bodyLoader = null;
+			instance.bodyRef = null;
+			instance.bodyContentType = MEDIA_TYPES.intern(bodyContentType);
+			instance.bodyContentEncoding = null;
 			instance.selectedConverterTypeName = Objects.isNull(selectedConverterType) ? null
 			        : selectedConverterType.getName();
 			instance.returnTypeName = Objects.isNull(returnType) ? null : returnType.getName();
-			instance.responseHeaders = httpHeaders;
+			instance.replayCodecId = 0;
+			instance.responseHeaders = CompactHttpHeaders.of(httpHeaders);
 			instance.responseStatus = httpStatus;
 			return this;
 		}
 
 		public IdempotentMethodResultBuilder withResponse(HttpHeaders httpHeaders, HttpStatus httpStatus) {
 			instance.state = ProcessingState.DONE;
+			instance.leaseExpiresAt = null;
 			instance.body = null;
+			instance.bodyLoader = null;
+			instance.bodyRef = null;
 			instance.bodyContentType = null;
+			instance.bodyContentEncoding = null;
 			instance.selectedConverterTypeName = null;
 			instance.returnTypeName = null;
-			instance.responseHeaders = httpHeaders;
+			instance.replayCodecId = 0;
+			instance.responseHeaders = CompactHttpHeaders.of(httpHeaders);
 			instance.responseStatus = httpStatus;
 			return this;
 		}
-		
+
+		/**
+		 * @param bodyLoader
+		 *            loads the body on its first access (see
+		 *            {@link IdempotentMethodResult#getBody()})
+		 * @return this builder
+		 */
+		public IdempotentMethodResultBuilder withLazyBody(Supplier<byte[]> bodyLoader) {
+			instance.body = null;
+			instance.bodyLoader = bodyLoader;
+			return this;
+		}
+
+		/**
+		 * @param bodyContentEncoding
+		 *            content coding of the body (e.g. <code>gzip</code>), null
+		 *            when the body is plain
+		 * @return this builder
+		 */
+		public IdempotentMethodResultBuilder withBodyContentEncoding(String bodyContentEncoding) {
+			instance.bodyContentEncoding = bodyContentEncoding;
+			return this;
+		}
+
+		/**
+		 * @param bodyRef
+		 *            reference of the body in the body store, the body no longer
+		 *            being kept inline
+		 * @return this builder
+		 */
+		public IdempotentMethodResultBuilder withBodyRef(String bodyRef) {
+			instance.body = null;
+			instance.bodyLoader = null;
+			instance.bodyRef = bodyRef;
+			return this;
+		}
+
+		/**
+		 * @param replayCodecId
+		 *            compact identifier of the (return type, converter) couple able
+		 *            to read the body back, replacing their names when not 0
+		 * @return this builder
+		 */
+		public IdempotentMethodResultBuilder withReplayCodecId(int replayCodecId) {
+			instance.replayCodecId = replayCodecId;
+			if (replayCodecId != 0) {
+				instance.returnTypeName = null;
+				instance.selectedConverterTypeName = null;
+			}
+			return this;
+		}
+
+		public IdempotentMethodResultBuilder withoutBody() {
+			instance.body = null;
+			instance.bodyLoader = null;
+			instance.bodyRef = null;
+			instance.bodyContentType = null;
+			instance.bodyContentEncoding = null;
+			instance.selectedConverterTypeName = null;
+			instance.returnTypeName = null;
+			instance.replayCodecId = 0;
+			return this;
+		}
+
 		public IdempotentMethodResult build() {
 			Objects.requireNonNull(instance.startedAt);
 			Objects.requireNonNull(instance.idempotencyKey);
@@ -99,12 +237,23 @@ public class IdempotentMethodResult implements Serializable {
 		return new IdempotentMethodResultBuilder();
 	}
 
+	/**
+	 * @return read only response headers, built from
+	 *         {@link #getCompactResponseHeaders()} on each call
+	 */
 	public HttpHeaders getResponseHeaders() {
-		return responseHeaders;
+		return Objects.isNull(responseHeaders) ? null : responseHeaders.toHttpHeaders();
 	}
 
 	public void setResponseHeaders(HttpHeaders responseHeaders) {
-		this.responseHeaders = responseHeaders;
+		this.responseHeaders = CompactHttpHeaders.of(responseHeaders);
+	}
+
+	/**
+	 * @return response headers, as stored
+	 */
+	public CompactHttpHeaders getCompactResponseHeaders() {
+		return responseHeaders;
 	}
 
 	public HttpStatus getResponseStatus() {
@@ -123,6 +272,30 @@ public class IdempotentMethodResult implements Serializable {
 		this.idempotencyKey = idempotencyKey;
 	}
 
+	/**
+	 * @return namespace of the endpoint which produced this result, null when
+	 *         attached to the common namespace
+	 */
+	public String getNamespace() {
+		return namespace;
+	}
+
+	public void setNamespace(String namespace) {
+		this.namespace = namespace;
+	}
+
+	/**
+	 * @return lifetime in milliseconds of this result in the repository, zero or
+	 *         negative when the repository default lifetime applies
+	 */
+	public long getTtlMs() {
+		return ttlMs;
+	}
+
+	public void setTtlMs(long ttlMs) {
+		this.ttlMs = ttlMs;
+	}
+
 	public ProcessingState getState() {
 		return state;
 	}
@@ -139,20 +312,84 @@ public class IdempotentMethodResult implements Serializable {
 		this.startedAt = startedAt;
 	}
 
+	/**
+	 * @return expiry of the lease held by the instance processing the first
+	 *         presentation, null when this result is not leased (e.g. once DONE)
+	 */
+	public Instant getLeaseExpiresAt() {
+		return leaseExpiresAt;
+	}
+
+	public void setLeaseExpiresAt(Instant leaseExpiresAt) {
+		this.leaseExpiresAt = leaseExpiresAt;
+	}
+
+	/**
+	 * @param other
+	 *            running result, as previously found in the repository
+	 * @return true if this result is the very same running result, holding the
+	 *         same lease
+	 */
+	public boolean isSameLeaseAs(IdempotentMethodResult other) {
+		return ProcessingState.RUNNING.equals(state) && Objects.equals(startedAt, other.startedAt)
+		        && Objects.equals(leaseExpiresAt, other.leaseExpiresAt);
+	}
+
 	public MediaType getBodyContentType() {
 		return bodyContentType;
 	}
 
 	public void setBodyContentType(MediaType bodyContentType) {
-		this.bodyContentType = bodyContentType;
+		this.bodyContentType = MEDIA_TYPES.intern(bodyContentType);
 	}
 
+	/**
+	 * @return content coding of the body returned by {@link #getBody()} (e.g.
+	 *         <code>gzip</code>), null when the body is plain
+	 */
+	public String getBodyContentEncoding() {
+		return bodyContentEncoding;
+	}
+
+	public void setBodyContentEncoding(String bodyContentEncoding) {
+		this.bodyContentEncoding = bodyContentEncoding;
+	}
+
+	/**
+	 * @return reference of the body in the body store, null when the body is
+	 *         kept inline (see {@link #getBody()})
+	 */
+	public String getBodyRef() {
+		return bodyRef;
+	}
+
+	public void setBodyRef(String bodyRef) {
+		this.bodyRef = bodyRef;
+	}
+
+	/**
+	 * @return response body, loaded on first access when this result has been
+	 *         decoded lazily
+	 */
 	public byte[] getBody() {
+		if (Objects.isNull(body) && Objects.nonNull(bodyLoader)) {
+			body = bodyLoader.get();
+			bodyLoader = null;
+		}
 		return body;
 	}
 
 	public void setBody(byte[] body) {
 		this.body = body;
+		this.bodyLoader = null;
+	}
+
+	/**
+	 * @return true if this result has a body, inline (possibly not loaded yet) or
+	 *         in the body store, without loading it
+	 */
+	public boolean hasBody() {
+		return Objects.nonNull(body) || Objects.nonNull(bodyLoader) || Objects.nonNull(bodyRef);
 	}
 
 	public String getReturnTypeName() {
@@ -171,11 +408,32 @@ public class IdempotentMethodResult implements Serializable {
 		this.selectedConverterTypeName = selectedConverterTypeName;
 	}
 
+	public int getReplayCodecId() {
+		return replayCodecId;
+	}
+
+	public void setReplayCodecId(int replayCodecId) {
+		this.replayCodecId = replayCodecId;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		getBody();
+		out.defaultWriteObject();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		bodyContentType = MEDIA_TYPES.intern(bodyContentType);
+	}
+
 	@Override
 	public String toString() {
-		return "IdempotentMethodResult [idempotencyKey=" + idempotencyKey + ", startedAt=" + startedAt + ", state="
-		        + state + ", bodyContentType=" + bodyContentType + ", returnTypeName=" + returnTypeName
-		        + ", selectedConverterTypeName=" + selectedConverterTypeName + ", responseHeaders=" + responseHeaders
+		return "IdempotentMethodResult [idempotencyKey=" + idempotencyKey + ", namespace=" + namespace + ", ttlMs="
+		        + ttlMs + ", startedAt=" + startedAt + ", leaseExpiresAt=" + leaseExpiresAt + ", state="
+		        + state + ", bodyContentType=" + bodyContentType + ", bodyContentEncoding=" + bodyContentEncoding + ", bodyRef=" + bodyRef
+		        + ", returnTypeName=" + returnTypeName
+		        + ", selectedConverterTypeName=" + selectedConverterTypeName + ", replayCodecId=" + replayCodecId
+		        + ", responseHeaders=" + responseHeaders
 		        + ", responseStatus=" + responseStatus + "]";
 	}
 
@@ -10,6 +10,8 @@ import org.springframework.web.util.ContentCachingRequestWrapper;
 import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
 import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
 import com.github.dgrandemange.idempotencereceiver.api.web.filter.CacheRequestContentFilter;
+import com.github.dgrandemange.idempotencereceiver.api.web.filter.CaptureResponseContentFilter;
+import com.github.dgrandemange.idempotencereceiver.api.web.filter.PreDispatchIdempotenceFilter;
 
 public class IdempotentReceiverCommonConfiguration {
 
@@ -21,9 +23,48 @@ public class IdempotentReceiverCommonConfiguration {
 
 	private Integer order = Ordered.LOWEST_PRECEDENCE;
 
+	private boolean directReplay = true;
+
+	private boolean registerCaptureResponseContentFilter = true;
+
+	private boolean preDispatch;
+
 	@NestedConfigurationProperty
 	private RepositoryCommonConfiguration repository = new RepositoryCommonConfiguration();
 
+	@NestedConfigurationProperty
+	private ExistenceOnlyConfiguration existenceOnly = new ExistenceOnlyConfiguration();
+
+	@NestedConfigurationProperty
+	private ReplayHeadersConfiguration replayHeaders = new ReplayHeadersConfiguration();
+
+	@NestedConfigurationProperty
+	private CaptureConfiguration capture = new CaptureConfiguration();
+
+	@NestedConfigurationProperty
+	private SingleFlightConfiguration singleFlight = new SingleFlightConfiguration();
+
+	@NestedConfigurationProperty
+	private ParkConfiguration park = new ParkConfiguration();
+
+	@NestedConfigurationProperty
+	private LeaseConfiguration lease = new LeaseConfiguration();
+
+	@NestedConfigurationProperty
+	private OptimisticConfiguration optimistic = new OptimisticConfiguration();
+
+	@NestedConfigurationProperty
+	private WriteBehindConfiguration writeBehind = new WriteBehindConfiguration();
+
+	@NestedConfigurationProperty
+	private LatencyBudgetConfiguration latencyBudget = new LatencyBudgetConfiguration();
+
+	@NestedConfigurationProperty
+	private DegradationConfiguration degradation = new DegradationConfiguration();
+
+	@NestedConfigurationProperty
+	private ExecutionConfiguration execution = new ExecutionConfiguration();
+
 	/**
 	 * <p>
 	 * Indicates if an idempotence key header (see
@@ -106,6 +147,60 @@ public class IdempotentReceiverCommonConfiguration {
 		this.registerCacheRequestContentFilter = registerCacheRequestContentFilter;
 	}
 
+	/**
+	 * <p>
+	 * Indicates if a {@link CaptureResponseContentFilter} should be inserted into
+	 * servlet filter chain or not.
+	 * </p>
+	 * 
+	 * <p>
+	 * When inserted, the response body of an idempotent handler is captured as it
+	 * is written to the client, instead of being serialized a second time to be
+	 * stored.
+	 * </p>
+	 * 
+	 * @return true if {@link CaptureResponseContentFilter} should be inserted into
+	 *         servlet filter chain, false otherwise
+	 */
+	public boolean isRegisterCaptureResponseContentFilter() {
+		return registerCaptureResponseContentFilter;
+	}
+
+	/**
+	 * @param registerCaptureResponseContentFilter
+	 *            {@link #isRegisterCaptureResponseContentFilter()}
+	 */
+	public void setRegisterCaptureResponseContentFilter(boolean registerCaptureResponseContentFilter) {
+		this.registerCaptureResponseContentFilter = registerCaptureResponseContentFilter;
+	}
+
+	/**
+	 * <p>
+	 * Indicates if duplicate requests should be detected before being dispatched,
+	 * by a {@link PreDispatchIdempotenceFilter} inserted into servlet filter chain.
+	 * </p>
+	 * 
+	 * <p>
+	 * A subsequent presentation is then replayed without going through handler
+	 * mapping, body deserialization, validation nor argument resolution, the
+	 * aspect still handling the first presentation once dispatched.
+	 * </p>
+	 * 
+	 * @return true if duplicate requests are detected before dispatch, false
+	 *         otherwise
+	 */
+	public boolean isPreDispatch() {
+		return preDispatch;
+	}
+
+	/**
+	 * @param preDispatch
+	 *            {@link #isPreDispatch()}
+	 */
+	public void setPreDispatch(boolean preDispatch) {
+		this.preDispatch = preDispatch;
+	}
+
 	/**
 	 * <p>
 	 * Idempotence management aspect precedence.
@@ -131,6 +226,34 @@ public class IdempotentReceiverCommonConfiguration {
 		this.order = order;
 	}
 
+	/**
+	 * <p>
+	 * Indicates if the stored response of a subsequent presentation should be
+	 * written directly to the servlet response : status, headers and body bytes
+	 * as stored, the handler method being short-circuited.
+	 * </p>
+	 * 
+	 * <p>
+	 * When set to <code>false</code>, the stored body is read back with the
+	 * message converter that wrote it, and sent back through a
+	 * {@link com.github.dgrandemange.idempotencereceiver.api.exception.SubsequentPresentationException}
+	 * handler.
+	 * </p>
+	 * 
+	 * @return true if stored responses are written directly, false otherwise
+	 */
+	public boolean isDirectReplay() {
+		return directReplay;
+	}
+
+	/**
+	 * @param directReplay
+	 *            {@link #isDirectReplay()}
+	 */
+	public void setDirectReplay(boolean directReplay) {
+		this.directReplay = directReplay;
+	}
+
 	/**
 	 * @return Nested repository common configuration
 	 */
@@ -146,11 +269,184 @@ public class IdempotentReceiverCommonConfiguration {
 		this.repository = repository;
 	}
 
+	/**
+	 * @return Nested existence-only deduplication mode configuration
+	 */
+	public ExistenceOnlyConfiguration getExistenceOnly() {
+		return existenceOnly;
+	}
+
+	/**
+	 * @param existenceOnly
+	 *            {@link #getExistenceOnly()}
+	 */
+	public void setExistenceOnly(ExistenceOnlyConfiguration existenceOnly) {
+		this.existenceOnly = existenceOnly;
+	}
+
+	/**
+	 * @return Nested replayed response headers configuration
+	 */
+	public ReplayHeadersConfiguration getReplayHeaders() {
+		return replayHeaders;
+	}
+
+	/**
+	 * @param replayHeaders
+	 *            {@link #getReplayHeaders()}
+	 */
+	public void setReplayHeaders(ReplayHeadersConfiguration replayHeaders) {
+		this.replayHeaders = replayHeaders;
+	}
+
+	/**
+	 * @return Nested response body capture configuration
+	 */
+	public CaptureConfiguration getCapture() {
+		return capture;
+	}
+
+	/**
+	 * @param capture
+	 *            {@link #getCapture()}
+	 */
+	public void setCapture(CaptureConfiguration capture) {
+		this.capture = capture;
+	}
+
+	/**
+	 * @return Nested in-process coalescing of concurrent duplicates configuration
+	 */
+	public SingleFlightConfiguration getSingleFlight() {
+		return singleFlight;
+	}
+
+	/**
+	 * @param singleFlight
+	 *            {@link #getSingleFlight()}
+	 */
+	public void setSingleFlight(SingleFlightConfiguration singleFlight) {
+		this.singleFlight = singleFlight;
+	}
+
+	/**
+	 * @return Nested parking of duplicates finding a running result
+	 *         configuration
+	 */
+	public ParkConfiguration getPark() {
+		return park;
+	}
+
+	/**
+	 * @param park
+	 *            {@link #getPark()}
+	 */
+	public void setPark(ParkConfiguration park) {
+		this.park = park;
+	}
+
+	/**
+	 * @return Nested running results leases configuration
+	 */
+	public LeaseConfiguration getLease() {
+		return lease;
+	}
+
+	/**
+	 * @param lease
+	 *            {@link #getLease()}
+	 */
+	public void setLease(LeaseConfiguration lease) {
+		this.lease = lease;
+	}
+
+	/**
+	 * @return Nested optimistic mode configuration
+	 */
+	public OptimisticConfiguration getOptimistic() {
+		return optimistic;
+	}
+
+	/**
+	 * @param optimistic
+	 *            {@link #getOptimistic()}
+	 */
+	public void setOptimistic(OptimisticConfiguration optimistic) {
+		this.optimistic = optimistic;
+	}
+
+	/**
+	 * @return Nested write-behind finalization configuration
+	 */
+	public WriteBehindConfiguration getWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * @param writeBehind
+	 *            {@link #getWriteBehind()}
+	 */
+	public void setWriteBehind(WriteBehindConfiguration writeBehind) {
+		this.writeBehind = writeBehind;
+	}
+
+	/**
+	 * @return Nested latency budget configuration
+	 */
+	public LatencyBudgetConfiguration getLatencyBudget() {
+		return latencyBudget;
+	}
+
+	/**
+	 * @param latencyBudget
+	 *            {@link #getLatencyBudget()}
+	 */
+	public void setLatencyBudget(LatencyBudgetConfiguration latencyBudget) {
+		this.latencyBudget = latencyBudget;
+	}
+
+	/**
+	 * @return Nested degradation policy configuration
+	 */
+	public DegradationConfiguration getDegradation() {
+		return degradation;
+	}
+
+	/**
+	 * @param degradation
+	 *            {@link #getDegradation()}
+	 */
+	public void setDegradation(DegradationConfiguration degradation) {
+		this.degradation = degradation;
+	}
+
+	/**
+	 * @return Nested execution configuration
+	 */
+	public ExecutionConfiguration getExecution() {
+		return execution;
+	}
+
+	/**
+	 * @param execution
+	 *            {@link #getExecution()}
+	 */
+	public void setExecution(ExecutionConfiguration execution) {
+		this.execution = execution;
+	}
+
 	@Override
 	public String toString() {
 		return "IdempotentReceiverCommonConfiguration [idempotencyKeyHeaderMandatory=" + idempotencyKeyHeaderMandatory
 		        + ", namespace=" + namespace + ", registerCacheRequestContentFilter="
-		        + registerCacheRequestContentFilter + ", order=" + order + ", repository=" + repository + "]";
+		        + registerCacheRequestContentFilter + ", registerCaptureResponseContentFilter="
+		        + registerCaptureResponseContentFilter + ", preDispatch=" + preDispatch + ", order=" + order + ", directReplay=" + directReplay
+		        + ", repository=" + repository
+		        + ", existenceOnly=" + existenceOnly + ", replayHeaders=" + replayHeaders + ", capture=" + capture
+		        + ", singleFlight=" + singleFlight + ", park=" + park + ", lease=" + lease
+		        + ", optimistic=" + optimistic + ", writeBehind=" + writeBehind
+		        + ", latencyBudget=" + latencyBudget + ", degradation=" + degradation
+		        + ", execution=" + execution + "]";
 	}
 
 }
@@ -0,0 +1,64 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Shares a single instance among equal values (e.g. header names, media
+ * types), so that the idempotent method results kept in memory do not each
+ * hold their own copy.
+ * </p>
+ *
+ * <p>
+ * The number of shared instances is bounded : once reached, values are
+ * returned as is.
+ * </p>
+ *
+ * @param <T>
+ *            type of the interned values
+ */
+public class Interner<T> {
+
+	private final ConcurrentMap<T, T> instances = new ConcurrentHashMap<>();
+
+	private final int maxSize;
+
+	/**
+	 * @param maxSize
+	 *            maximum number of shared instances
+	 */
+	public Interner(int maxSize) {
+		super();
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param value
+	 *            value to intern
+	 * @return shared instance equal to given value, or given value itself
+	 */
+	public T intern(T value) {
+		if (Objects.isNull(value)) {
+			return null;
+		}
+		T shared = instances.get(value);
+		if (Objects.nonNull(shared)) {
+			return shared;
+		}
+		if (instances.size() >= maxSize) {
+			return value;
+		}
+		shared = instances.putIfAbsent(value, value);
+		return Objects.isNull(shared) ? value : shared;
+	}
+
+	/**
+	 * @return current number of shared instances
+	 */
+	public int size() {
+		return instances.size();
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+
+/**
+ * <p>
+ * Configuration of the latency budget : the cumulated duration of the
+ * repository calls made for a request (lookup, claim, registration and
+ * unregistration of its result) is bounded, each call being given the
+ * remaining budget as timeout.
+ * </p>
+ *
+ * <p>
+ * The budget applies to every idempotent endpoint, unless overridden by the
+ * endpoint itself (see {@link Idempotent#latencyBudgetMs()}). Disabled by
+ * default.
+ * </p>
+ */
+public class LatencyBudgetConfiguration {
+
+	/**
+	 * Behaviour when the budget is exhausted before the handler method proceeds
+	 */
+	public enum Exhaustion {
+		/**
+		 * The request is processed without idempotence, as on repository failure
+		 */
+		PROCEED,
+		/**
+		 * The request is rejected with a {@link org.springframework.http.HttpStatus#SERVICE_UNAVAILABLE}
+		 * response, the client being expected to retry it
+		 */
+		FAIL;
+	}
+
+	private long budgetMs;
+
+	private Exhaustion onExhaustion = Exhaustion.PROCEED;
+
+	/**
+	 * @return cumulated duration in milliseconds of the repository calls made
+	 *         for a request, 0 for no budget
+	 */
+	public long getBudgetMs() {
+		return budgetMs;
+	}
+
+	/**
+	 * @param budgetMs
+	 *            See {@link #getBudgetMs()}
+	 */
+	public void setBudgetMs(long budgetMs) {
+		this.budgetMs = budgetMs;
+	}
+
+	/**
+	 * Once the handler method has proceeded, an exhausted budget only skips the
+	 * remaining repository calls : the running result then stays registered
+	 * until it expires
+	 * 
+	 * @return behaviour when the budget is exhausted before the handler method
+	 *         proceeds
+	 */
+	public Exhaustion getOnExhaustion() {
+		return onExhaustion;
+	}
+
+	/**
+	 * @param onExhaustion
+	 *            See {@link #getOnExhaustion()}
+	 */
+	public void setOnExhaustion(Exhaustion onExhaustion) {
+		this.onExhaustion = onExhaustion;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyBudgetConfiguration [budgetMs=" + budgetMs + ", onExhaustion=" + onExhaustion + "]";
+	}
+
+}
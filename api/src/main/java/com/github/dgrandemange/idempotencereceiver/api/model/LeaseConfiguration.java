@@ -0,0 +1,88 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the leases held on running results : a running result is
+ * registered with a short lifetime (the lease duration) which the owning
+ * instance keeps renewing while processing the first presentation, the full
+ * lifetime being applied once the result is done.
+ * </p>
+ *
+ * <p>
+ * When the owning instance dies, its running results are thus released once
+ * their lease expires, rather than once their full lifetime expires. A
+ * subsequent presentation finding a running result whose lease has expired
+ * takes it over.
+ * </p>
+ *
+ * <p>
+ * Disabled by default.
+ * </p>
+ */
+public class LeaseConfiguration {
+
+	public static final long DEFAULT_DURATION_MS = 30000;
+	public static final long DEFAULT_RENEW_INTERVAL_MS = 10000;
+
+	private boolean enabled;
+
+	private long durationMs = DEFAULT_DURATION_MS;
+
+	private long renewIntervalMs = DEFAULT_RENEW_INTERVAL_MS;
+
+	/**
+	 * @return true if running results are leased
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            See {@link #isEnabled()}
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return duration in milliseconds of a lease, i.e. lifetime of a running
+	 *         result not renewed by its owner
+	 * @see #DEFAULT_DURATION_MS
+	 */
+	public long getDurationMs() {
+		return durationMs;
+	}
+
+	/**
+	 * @param durationMs
+	 *            See {@link #getDurationMs()}
+	 */
+	public void setDurationMs(long durationMs) {
+		this.durationMs = durationMs;
+	}
+
+	/**
+	 * @return interval in milliseconds between two renewals of the leases held
+	 *         by an instance, which should be well below the lease duration
+	 * @see #DEFAULT_RENEW_INTERVAL_MS
+	 */
+	public long getRenewIntervalMs() {
+		return renewIntervalMs;
+	}
+
+	/**
+	 * @param renewIntervalMs
+	 *            See {@link #getRenewIntervalMs()}
+	 */
+	public void setRenewIntervalMs(long renewIntervalMs) {
+		this.renewIntervalMs = renewIntervalMs;
+	}
+
+	@Override
+	public String toString() {
+		return "LeaseConfiguration [enabled=" + enabled + ", durationMs=" + durationMs + ", renewIntervalMs="
+		        + renewIntervalMs + "]";
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+
+/**
+ * <p>
+ * Configuration of the optimistic mode (see {@link Idempotent#optimistic()}).
+ * </p>
+ *
+ * <p>
+ * In this mode, the running result of a first presentation is not registered
+ * before the handler method proceeds : only the completed result is, unless a
+ * racing presentation of the same request has registered its own first. A
+ * running marker is only registered when the handler method is still running
+ * after {@link #getRunningMarkerDelayMs()}, so that subsequent presentations of
+ * long requests keep being answered as still running.
+ * </p>
+ */
+public class OptimisticConfiguration {
+
+	public static final long DEFAULT_RUNNING_MARKER_DELAY_MS = 1000;
+
+	private long runningMarkerDelayMs = DEFAULT_RUNNING_MARKER_DELAY_MS;
+
+	/**
+	 * @return duration in milliseconds after which the running result of a
+	 *         first presentation still being processed gets registered
+	 * @see #DEFAULT_RUNNING_MARKER_DELAY_MS
+	 */
+	public long getRunningMarkerDelayMs() {
+		return runningMarkerDelayMs;
+	}
+
+	/**
+	 * @param runningMarkerDelayMs
+	 *            See {@link #getRunningMarkerDelayMs()}
+	 */
+	public void setRunningMarkerDelayMs(long runningMarkerDelayMs) {
+		this.runningMarkerDelayMs = runningMarkerDelayMs;
+	}
+
+	@Override
+	public String toString() {
+		return "OptimisticConfiguration [runningMarkerDelayMs=" + runningMarkerDelayMs + "]";
+	}
+
+}
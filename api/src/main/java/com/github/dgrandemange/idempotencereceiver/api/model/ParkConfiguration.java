@@ -0,0 +1,108 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the parking of subsequent presentations finding a result
+ * still running, whichever instance of the cluster processes the first
+ * presentation : the duplicate is put in asynchronous mode, releasing its
+ * container thread, and answered as soon as the result is done, instead of
+ * being answered <code>202 Accepted</code> right away.
+ * </p>
+ *
+ * <p>
+ * Parked duplicates are woken up by the repository change notifications when
+ * the repository supports them, otherwise by polling the repository.
+ * </p>
+ *
+ * <p>
+ * Disabled by default.
+ * </p>
+ */
+public class ParkConfiguration {
+
+	public static final long DEFAULT_MAX_WAIT_MS = 10000;
+	public static final long DEFAULT_POLL_INTERVAL_MS = 500;
+	public static final int DEFAULT_MAX_PARKED = 1000;
+
+	private boolean enabled;
+
+	private long maxWaitMs = DEFAULT_MAX_WAIT_MS;
+
+	private long pollIntervalMs = DEFAULT_POLL_INTERVAL_MS;
+
+	private int maxParked = DEFAULT_MAX_PARKED;
+
+	/**
+	 * @return true if duplicates finding a running result are parked until the
+	 *         result is done
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            See {@link #isEnabled()}
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return maximum duration in milliseconds a duplicate stays parked, before
+	 *         being answered <code>202 Accepted</code>
+	 * @see #DEFAULT_MAX_WAIT_MS
+	 */
+	public long getMaxWaitMs() {
+		return maxWaitMs;
+	}
+
+	/**
+	 * @param maxWaitMs
+	 *            See {@link #getMaxWaitMs()}
+	 */
+	public void setMaxWaitMs(long maxWaitMs) {
+		this.maxWaitMs = maxWaitMs;
+	}
+
+	/**
+	 * @return interval in milliseconds between two lookups of a parked result,
+	 *         when the repository doesn't notify its changes
+	 * @see #DEFAULT_POLL_INTERVAL_MS
+	 */
+	public long getPollIntervalMs() {
+		return pollIntervalMs;
+	}
+
+	/**
+	 * @param pollIntervalMs
+	 *            See {@link #getPollIntervalMs()}
+	 */
+	public void setPollIntervalMs(long pollIntervalMs) {
+		this.pollIntervalMs = pollIntervalMs;
+	}
+
+	/**
+	 * @return maximum number of duplicates parked at once, the next ones being
+	 *         answered <code>202 Accepted</code> right away
+	 * @see #DEFAULT_MAX_PARKED
+	 */
+	public int getMaxParked() {
+		return maxParked;
+	}
+
+	/**
+	 * @param maxParked
+	 *            See {@link #getMaxParked()}
+	 */
+	public void setMaxParked(int maxParked) {
+		this.maxParked = maxParked;
+	}
+
+	@Override
+	public String toString() {
+		return "ParkConfiguration [enabled=" + enabled + ", maxWaitMs=" + maxWaitMs + ", pollIntervalMs="
+		        + pollIntervalMs + ", maxParked=" + maxParked + "]";
+	}
+
+}
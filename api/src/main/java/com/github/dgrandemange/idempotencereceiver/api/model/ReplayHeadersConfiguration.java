@@ -0,0 +1,72 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * <p>
+ * Configuration of the response headers kept in an idempotent method result,
+ * to be replayed on subsequent presentations.
+ * </p>
+ *
+ * <p>
+ * Header names are case insensitive, and may end with a <code>*</code>
+ * wildcard to match every header starting with the same prefix (e.g.
+ * <code>X-B3-*</code>).
+ * </p>
+ */
+public class ReplayHeadersConfiguration {
+
+	/**
+	 * Headers not replayed by default : they describe the initial exchange
+	 * (date, connection, tracing) or are computed again for each request (CORS)
+	 */
+	public static final List<String> DEFAULT_EXCLUDE = Arrays.asList(HttpHeaders.DATE,
+	        HttpHeaders.CONNECTION, "Keep-Alive", HttpHeaders.TRANSFER_ENCODING, "Access-Control-*", "X-B3-*",
+	        "traceparent", "tracestate", "uber-trace-id");
+
+	private List<String> include = new ArrayList<>();
+
+	private List<String> exclude = new ArrayList<>(DEFAULT_EXCLUDE);
+
+	/**
+	 * @return whitelist of the replayed headers, every header not excluded (see
+	 *         {@link #getExclude()}) being replayed when empty
+	 */
+	public List<String> getInclude() {
+		return include;
+	}
+
+	/**
+	 * @param include
+	 *            See {@link #getInclude()}
+	 */
+	public void setInclude(List<String> include) {
+		this.include = include;
+	}
+
+	/**
+	 * @return blacklist of the headers never replayed, even when whitelisted
+	 * @see #DEFAULT_EXCLUDE
+	 */
+	public List<String> getExclude() {
+		return exclude;
+	}
+
+	/**
+	 * @param exclude
+	 *            See {@link #getExclude()}
+	 */
+	public void setExclude(List<String> exclude) {
+		this.exclude = exclude;
+	}
+
+	@Override
+	public String toString() {
+		return "ReplayHeadersConfiguration [include=" + include + ", exclude=" + exclude + "]";
+	}
+
+}
@@ -11,6 +11,18 @@ public class RepositoryCommonConfiguration {
 	@NestedConfigurationProperty
 	private ResiliencyConfiguration resiliency = new ResiliencyConfiguration();
 
+	@NestedConfigurationProperty
+	private RetentionConfiguration retention = new RetentionConfiguration();
+
+	@NestedConfigurationProperty
+	private AdaptiveTtlConfiguration adaptiveTtl = new AdaptiveTtlConfiguration();
+
+	@NestedConfigurationProperty
+	private CompressionConfiguration compression = new CompressionConfiguration();
+
+	@NestedConfigurationProperty
+	private BodyStoreConfiguration bodyStore = new BodyStoreConfiguration();
+
 	/**
 	 * @return nested repository resiliency configuration
 	 */
@@ -26,6 +38,66 @@ public class RepositoryCommonConfiguration {
 		this.resiliency = resiliency;
 	}
 
+	/**
+	 * @return nested retention rules configuration
+	 */
+	public RetentionConfiguration getRetention() {
+		return retention;
+	}
+
+	/**
+	 * @param retention
+	 *            See {@link #getRetention()}
+	 */
+	public void setRetention(RetentionConfiguration retention) {
+		this.retention = retention;
+	}
+
+	/**
+	 * @return nested adaptive TTL configuration
+	 */
+	public AdaptiveTtlConfiguration getAdaptiveTtl() {
+		return adaptiveTtl;
+	}
+
+	/**
+	 * @param adaptiveTtl
+	 *            See {@link #getAdaptiveTtl()}
+	 */
+	public void setAdaptiveTtl(AdaptiveTtlConfiguration adaptiveTtl) {
+		this.adaptiveTtl = adaptiveTtl;
+	}
+
+	/**
+	 * @return nested body compression configuration
+	 */
+	public CompressionConfiguration getCompression() {
+		return compression;
+	}
+
+	/**
+	 * @param compression
+	 *            See {@link #getCompression()}
+	 */
+	public void setCompression(CompressionConfiguration compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * @return nested body store configuration
+	 */
+	public BodyStoreConfiguration getBodyStore() {
+		return bodyStore;
+	}
+
+	/**
+	 * @param bodyStore
+	 *            See {@link #getBodyStore()}
+	 */
+	public void setBodyStore(BodyStoreConfiguration bodyStore) {
+		this.bodyStore = bodyStore;
+	}
+
 	/**
 	 * <p>
 	 * Indicates which repository implementation to use.
@@ -51,7 +123,9 @@ public class RepositoryCommonConfiguration {
 
 	@Override
 	public String toString() {
-		return "RepositoryCommonConfiguration [type=" + type + ", resiliency=" + resiliency + "]";
+		return "RepositoryCommonConfiguration [type=" + type + ", resiliency=" + resiliency + ", retention=" + retention
+		        + ", adaptiveTtl=" + adaptiveTtl + ", compression=" + compression
+		        + ", bodyStore=" + bodyStore + "]";
 	}
 
 }
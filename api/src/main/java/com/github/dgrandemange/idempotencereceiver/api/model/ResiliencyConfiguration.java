@@ -6,13 +6,20 @@ public class ResiliencyConfiguration {
 
 		public static final int RETRY_POLICY_DEFAULT_MAX_RETRIES = 1;
 		public static final int RETRY_POLICY_DEFAULT_DELAY_MS = 150;
+		public static final int RETRY_POLICY_DEFAULT_MAX_DELAY_MS = 1000;
+		public static final double RETRY_POLICY_DEFAULT_JITTER_FACTOR = 0.5;
 
 		private int delayMs = RETRY_POLICY_DEFAULT_DELAY_MS;
 
 		private int maxRetries = RETRY_POLICY_DEFAULT_MAX_RETRIES;
 
+		private int maxDelayMs = RETRY_POLICY_DEFAULT_MAX_DELAY_MS;
+
+		private double jitterFactor = RETRY_POLICY_DEFAULT_JITTER_FACTOR;
+
 		/**
-		 * @return Delay in milliseconds between retry attempts
+		 * @return Delay in milliseconds before the first retry attempt, doubled for
+		 *         each subsequent one up to {@link #getMaxDelayMs()}
 		 * @see #RETRY_POLICY_DEFAULT_DELAY_MS
 		 */
 		public int getDelayMs() {
@@ -43,9 +50,46 @@ public class ResiliencyConfiguration {
 			this.maxRetries = maxRetries;
 		}
 
+		/**
+		 * @return Max delay in milliseconds between retry attempts. Retry attempts
+		 *         are evenly spaced when not greater than {@link #getDelayMs()}
+		 * @see #RETRY_POLICY_DEFAULT_MAX_DELAY_MS
+		 */
+		public int getMaxDelayMs() {
+			return maxDelayMs;
+		}
+
+		/**
+		 * @param maxDelayMs
+		 *            See {@link #getMaxDelayMs()}
+		 */
+		public void setMaxDelayMs(int maxDelayMs) {
+			this.maxDelayMs = maxDelayMs;
+		}
+
+		/**
+		 * Each delay is randomly shortened or lengthened by up to this factor, so
+		 * that the requests failing together don't retry together
+		 * 
+		 * @return Jitter factor in [0, 1], 0 for no jitter
+		 * @see #RETRY_POLICY_DEFAULT_JITTER_FACTOR
+		 */
+		public double getJitterFactor() {
+			return jitterFactor;
+		}
+
+		/**
+		 * @param jitterFactor
+		 *            See {@link #getJitterFactor()}
+		 */
+		public void setJitterFactor(double jitterFactor) {
+			this.jitterFactor = jitterFactor;
+		}
+
 		@Override
 		public String toString() {
-			return "RetryConfiguration [delayMs=" + delayMs + ", maxRetries=" + maxRetries + "]";
+			return "RetryConfiguration [delayMs=" + delayMs + ", maxRetries=" + maxRetries + ", maxDelayMs="
+			        + maxDelayMs + ", jitterFactor=" + jitterFactor + "]";
 		}
 
 	}
@@ -137,10 +181,242 @@ public class ResiliencyConfiguration {
 
 	}
 
+	/**
+	 * Hedged lookups : when a lookup has not answered within the configured
+	 * percentile of the recent lookup latencies, a second one is sent, the first
+	 * answer being kept. Tail latency then tracks the healthy repository nodes
+	 * rather than the slowest one, at the cost of a few extra reads.
+	 */
+	public static class HedgingConfiguration {
+
+		public static final double HEDGING_DEFAULT_PERCENTILE = 95.0;
+		public static final int HEDGING_DEFAULT_MIN_DELAY_MS = 5;
+		public static final int HEDGING_DEFAULT_MIN_SAMPLES = 100;
+
+		private boolean enabled;
+
+		private double percentile = HEDGING_DEFAULT_PERCENTILE;
+
+		private int minDelayMs = HEDGING_DEFAULT_MIN_DELAY_MS;
+
+		private int minSamples = HEDGING_DEFAULT_MIN_SAMPLES;
+
+		/**
+		 * @return true if lookups are hedged
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * @param enabled
+		 *            See {@link #isEnabled()}
+		 */
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * @return Percentile, in ]0, 100], of the recent lookup latencies after
+		 *         which a second lookup is sent
+		 * @see #HEDGING_DEFAULT_PERCENTILE
+		 */
+		public double getPercentile() {
+			return percentile;
+		}
+
+		/**
+		 * @param percentile
+		 *            See {@link #getPercentile()}
+		 */
+		public void setPercentile(double percentile) {
+			this.percentile = percentile;
+		}
+
+		/**
+		 * @return Min delay in milliseconds before a second lookup is sent
+		 * @see #HEDGING_DEFAULT_MIN_DELAY_MS
+		 */
+		public int getMinDelayMs() {
+			return minDelayMs;
+		}
+
+		/**
+		 * @param minDelayMs
+		 *            See {@link #getMinDelayMs()}
+		 */
+		public void setMinDelayMs(int minDelayMs) {
+			this.minDelayMs = minDelayMs;
+		}
+
+		/**
+		 * @return Number of lookup latencies to measure before hedging, and then
+		 *         between two updates of the hedging delay
+		 * @see #HEDGING_DEFAULT_MIN_SAMPLES
+		 */
+		public int getMinSamples() {
+			return minSamples;
+		}
+
+		/**
+		 * @param minSamples
+		 *            See {@link #getMinSamples()}
+		 */
+		public void setMinSamples(int minSamples) {
+			this.minSamples = minSamples;
+		}
+
+		@Override
+		public String toString() {
+			return "HedgingConfiguration [enabled=" + enabled + ", percentile=" + percentile + ", minDelayMs="
+			        + minDelayMs + ", minSamples=" + minSamples + "]";
+		}
+
+	}
+
+	/**
+	 * Adaptive concurrency limit : the number of concurrent calls to the
+	 * repository is bounded by a limit continuously adjusted from the observed
+	 * call latencies, growing while latency stays close to its long term average
+	 * and shrinking as soon as it rises (i.e. as calls start queueing) or calls
+	 * fail. Calls exceeding the limit fail fast, as on repository failure.
+	 */
+	public static class ConcurrencyLimitConfiguration {
+
+		public static final int CONCURRENCY_LIMIT_DEFAULT_INITIAL_LIMIT = 20;
+		public static final int CONCURRENCY_LIMIT_DEFAULT_MIN_LIMIT = 2;
+		public static final int CONCURRENCY_LIMIT_DEFAULT_MAX_LIMIT = 200;
+		public static final double CONCURRENCY_LIMIT_DEFAULT_RTT_TOLERANCE = 1.5;
+		public static final double CONCURRENCY_LIMIT_DEFAULT_SMOOTHING = 0.2;
+
+		private boolean enabled;
+
+		private int initialLimit = CONCURRENCY_LIMIT_DEFAULT_INITIAL_LIMIT;
+
+		private int minLimit = CONCURRENCY_LIMIT_DEFAULT_MIN_LIMIT;
+
+		private int maxLimit = CONCURRENCY_LIMIT_DEFAULT_MAX_LIMIT;
+
+		private double rttTolerance = CONCURRENCY_LIMIT_DEFAULT_RTT_TOLERANCE;
+
+		private double smoothing = CONCURRENCY_LIMIT_DEFAULT_SMOOTHING;
+
+		/**
+		 * @return true if concurrent calls to the repository are limited
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * @param enabled
+		 *            See {@link #isEnabled()}
+		 */
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * @return Limit of concurrent calls before any latency is observed
+		 * @see #CONCURRENCY_LIMIT_DEFAULT_INITIAL_LIMIT
+		 */
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		/**
+		 * @param initialLimit
+		 *            See {@link #getInitialLimit()}
+		 */
+		public void setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+		}
+
+		/**
+		 * @return Lowest limit of concurrent calls
+		 * @see #CONCURRENCY_LIMIT_DEFAULT_MIN_LIMIT
+		 */
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		/**
+		 * @param minLimit
+		 *            See {@link #getMinLimit()}
+		 */
+		public void setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+		}
+
+		/**
+		 * @return Highest limit of concurrent calls
+		 * @see #CONCURRENCY_LIMIT_DEFAULT_MAX_LIMIT
+		 */
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		/**
+		 * @param maxLimit
+		 *            See {@link #getMaxLimit()}
+		 */
+		public void setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+		}
+
+		/**
+		 * The limit only shrinks once the recent latency exceeds the long term one
+		 * by this ratio
+		 * 
+		 * @return Tolerated ratio between recent and long term latency, at least 1
+		 * @see #CONCURRENCY_LIMIT_DEFAULT_RTT_TOLERANCE
+		 */
+		public double getRttTolerance() {
+			return rttTolerance;
+		}
+
+		/**
+		 * @param rttTolerance
+		 *            See {@link #getRttTolerance()}
+		 */
+		public void setRttTolerance(double rttTolerance) {
+			this.rttTolerance = rttTolerance;
+		}
+
+		/**
+		 * @return Weight in ]0, 1] of each new limit estimate, lower values
+		 *         adjusting the limit more smoothly
+		 * @see #CONCURRENCY_LIMIT_DEFAULT_SMOOTHING
+		 */
+		public double getSmoothing() {
+			return smoothing;
+		}
+
+		/**
+		 * @param smoothing
+		 *            See {@link #getSmoothing()}
+		 */
+		public void setSmoothing(double smoothing) {
+			this.smoothing = smoothing;
+		}
+
+		@Override
+		public String toString() {
+			return "ConcurrencyLimitConfiguration [enabled=" + enabled + ", initialLimit=" + initialLimit
+			        + ", minLimit=" + minLimit + ", maxLimit=" + maxLimit + ", rttTolerance=" + rttTolerance
+			        + ", smoothing=" + smoothing + "]";
+		}
+
+	}
+
 	private RetryConfiguration retry = new RetryConfiguration();
 
 	private CircuitBreakerConfiguration circuitBreaker = new CircuitBreakerConfiguration();
 
+	private HedgingConfiguration hedging = new HedgingConfiguration();
+
+	private ConcurrencyLimitConfiguration concurrencyLimit = new ConcurrencyLimitConfiguration();
+
 	/**
 	 * @return nested retry configuration
 	 */
@@ -171,9 +447,40 @@ public class ResiliencyConfiguration {
 		this.circuitBreaker = circuitBreaker;
 	}
 
+	/**
+	 * @return Nested hedged lookups configuration
+	 */
+	public HedgingConfiguration getHedging() {
+		return hedging;
+	}
+
+	/**
+	 * @param hedging
+	 *            See {@link #getHedging()}
+	 */
+	public void setHedging(HedgingConfiguration hedging) {
+		this.hedging = hedging;
+	}
+
+	/**
+	 * @return Nested adaptive concurrency limit configuration
+	 */
+	public ConcurrencyLimitConfiguration getConcurrencyLimit() {
+		return concurrencyLimit;
+	}
+
+	/**
+	 * @param concurrencyLimit
+	 *            See {@link #getConcurrencyLimit()}
+	 */
+	public void setConcurrencyLimit(ConcurrencyLimitConfiguration concurrencyLimit) {
+		this.concurrencyLimit = concurrencyLimit;
+	}
+
 	@Override
 	public String toString() {
-		return "ResiliencyConfiguration [retry=" + retry + ", circuitBreaker=" + circuitBreaker + "]";
+		return "ResiliencyConfiguration [retry=" + retry + ", circuitBreaker=" + circuitBreaker + ", hedging="
+		        + hedging + ", concurrencyLimit=" + concurrencyLimit + "]";
 	}
 
 }
@@ -0,0 +1,201 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Retention rules applied to idempotent method results when they are finalized,
+ * once the response is known.
+ * </p>
+ *
+ * <p>
+ * Rules are evaluated in declaration order, the first matching rule wins. When
+ * no rule matches, the result is kept with the TTL of its endpoint (or the
+ * repository one).
+ * </p>
+ */
+public class RetentionConfiguration {
+
+	public static class RuleConfiguration {
+
+		private List<String> statuses = new ArrayList<>();
+
+		private List<String> exceptionTypes = new ArrayList<>();
+
+		private long minBodySize = -1;
+
+		private long maxBodySize = -1;
+
+		private List<String> methods = new ArrayList<>();
+
+		private List<String> uriPatterns = new ArrayList<>();
+
+		private long ttlMs;
+
+		private boolean dropBody;
+
+		/**
+		 * @return response statuses matched by the rule, either a status class
+		 *         (e.g. <code>4xx</code>) or a status code (e.g. <code>201</code>);
+		 *         empty to match any status
+		 */
+		public List<String> getStatuses() {
+			return statuses;
+		}
+
+		/**
+		 * @param statuses
+		 *            See {@link #getStatuses()}
+		 */
+		public void setStatuses(List<String> statuses) {
+			this.statuses = statuses;
+		}
+
+		/**
+		 * @return fully qualified names of the registerable exception types matched
+		 *         by the rule (sub types included); empty to match any result, with
+		 *         or without exception
+		 */
+		public List<String> getExceptionTypes() {
+			return exceptionTypes;
+		}
+
+		/**
+		 * @param exceptionTypes
+		 *            See {@link #getExceptionTypes()}
+		 */
+		public void setExceptionTypes(List<String> exceptionTypes) {
+			this.exceptionTypes = exceptionTypes;
+		}
+
+		/**
+		 * @return minimum body size in bytes (inclusive) matched by the rule;
+		 *         negative for no lower bound
+		 */
+		public long getMinBodySize() {
+			return minBodySize;
+		}
+
+		/**
+		 * @param minBodySize
+		 *            See {@link #getMinBodySize()}
+		 */
+		public void setMinBodySize(long minBodySize) {
+			this.minBodySize = minBodySize;
+		}
+
+		/**
+		 * @return maximum body size in bytes (inclusive) matched by the rule;
+		 *         negative for no upper bound
+		 */
+		public long getMaxBodySize() {
+			return maxBodySize;
+		}
+
+		/**
+		 * @param maxBodySize
+		 *            See {@link #getMaxBodySize()}
+		 */
+		public void setMaxBodySize(long maxBodySize) {
+			this.maxBodySize = maxBodySize;
+		}
+
+		/**
+		 * @return HTTP methods matched by the rule; empty to match any method
+		 */
+		public List<String> getMethods() {
+			return methods;
+		}
+
+		/**
+		 * @param methods
+		 *            See {@link #getMethods()}
+		 */
+		public void setMethods(List<String> methods) {
+			this.methods = methods;
+		}
+
+		/**
+		 * @return Ant style patterns (e.g. <code>/payments/**</code>) of the
+		 *         endpoint paths matched by the rule, relative to the application
+		 *         context path; empty to match any endpoint
+		 */
+		public List<String> getUriPatterns() {
+			return uriPatterns;
+		}
+
+		/**
+		 * @param uriPatterns
+		 *            See {@link #getUriPatterns()}
+		 */
+		public void setUriPatterns(List<String> uriPatterns) {
+			this.uriPatterns = uriPatterns;
+		}
+
+		/**
+		 * @return lifetime in milliseconds of the matched results in the
+		 *         repository, overriding the endpoint TTL; zero to keep the
+		 *         endpoint (or repository) TTL
+		 */
+		public long getTtlMs() {
+			return ttlMs;
+		}
+
+		/**
+		 * @param ttlMs
+		 *            See {@link #getTtlMs()}
+		 */
+		public void setTtlMs(long ttlMs) {
+			this.ttlMs = ttlMs;
+		}
+
+		/**
+		 * @return true if the body of the matched results should not be stored;
+		 *         subsequent presentations are then replied with the initial
+		 *         status and headers only
+		 */
+		public boolean isDropBody() {
+			return dropBody;
+		}
+
+		/**
+		 * @param dropBody
+		 *            See {@link #isDropBody()}
+		 */
+		public void setDropBody(boolean dropBody) {
+			this.dropBody = dropBody;
+		}
+
+		@Override
+		public String toString() {
+			return "RuleConfiguration [statuses=" + statuses + ", exceptionTypes=" + exceptionTypes
+			        + ", minBodySize=" + minBodySize + ", maxBodySize=" + maxBodySize + ", methods=" + methods
+			        + ", uriPatterns=" + uriPatterns + ", ttlMs=" + ttlMs + ", dropBody=" + dropBody + "]";
+		}
+
+	}
+
+	private List<RuleConfiguration> rules = new ArrayList<>();
+
+	/**
+	 * @return retention rules, evaluated in declaration order
+	 */
+	public List<RuleConfiguration> getRules() {
+		return rules;
+	}
+
+	/**
+	 * @param rules
+	 *            See {@link #getRules()}
+	 */
+	public void setRules(List<RuleConfiguration> rules) {
+		this.rules = rules;
+	}
+
+	@Override
+	public String toString() {
+		return "RetentionConfiguration [rules=" + rules + "]";
+	}
+
+}
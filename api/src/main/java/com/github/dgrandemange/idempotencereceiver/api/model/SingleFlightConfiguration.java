@@ -0,0 +1,102 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the in-process coalescing of concurrent duplicates : a
+ * subsequent presentation reaching the instance still processing the first
+ * presentation waits for its completion, instead of being answered
+ * <code>202 Accepted</code> right away.
+ * </p>
+ *
+ * <p>
+ * Disabled by default.
+ * </p>
+ */
+public class SingleFlightConfiguration {
+
+	public static final long DEFAULT_MAX_WAIT_MS = 5000;
+	public static final int DEFAULT_EXPECTED_CONCURRENCY = 256;
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private boolean enabled;
+
+	private long maxWaitMs = DEFAULT_MAX_WAIT_MS;
+
+	private int expectedConcurrency = DEFAULT_EXPECTED_CONCURRENCY;
+
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	/**
+	 * @return true if concurrent duplicates wait for the first presentation
+	 *         processed by the same instance
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            See {@link #isEnabled()}
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return maximum duration in milliseconds a duplicate waits for the first
+	 *         presentation, before being answered <code>202 Accepted</code>
+	 * @see #DEFAULT_MAX_WAIT_MS
+	 */
+	public long getMaxWaitMs() {
+		return maxWaitMs;
+	}
+
+	/**
+	 * @param maxWaitMs
+	 *            See {@link #getMaxWaitMs()}
+	 */
+	public void setMaxWaitMs(long maxWaitMs) {
+		this.maxWaitMs = maxWaitMs;
+	}
+
+	/**
+	 * @return expected number of first presentations concurrently processed by
+	 *         an instance, used to size the in-flight table
+	 * @see #DEFAULT_EXPECTED_CONCURRENCY
+	 */
+	public int getExpectedConcurrency() {
+		return expectedConcurrency;
+	}
+
+	/**
+	 * @param expectedConcurrency
+	 *            See {@link #getExpectedConcurrency()}
+	 */
+	public void setExpectedConcurrency(int expectedConcurrency) {
+		this.expectedConcurrency = expectedConcurrency;
+	}
+
+	/**
+	 * @return maximum number of first presentations tracked at once, the next
+	 *         ones not being coalesced
+	 * @see #DEFAULT_MAX_ENTRIES
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @param maxEntries
+	 *            See {@link #getMaxEntries()}
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	@Override
+	public String toString() {
+		return "SingleFlightConfiguration [enabled=" + enabled + ", maxWaitMs=" + maxWaitMs + ", expectedConcurrency="
+		        + expectedConcurrency + ", maxEntries=" + maxEntries + "]";
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+/**
+ * <p>
+ * Configuration of the write-behind finalization : completed results are
+ * queued instead of being registered on the response path, and registered in
+ * batches by dedicated writer threads.
+ * </p>
+ *
+ * <p>
+ * A queued result is visible to the subsequent presentations reaching the same
+ * instance until it has been registered. Results still queued on shutdown are
+ * drained.
+ * </p>
+ *
+ * <p>
+ * Disabled by default.
+ * </p>
+ */
+public class WriteBehindConfiguration {
+
+	/**
+	 * Behaviour when the queue is full
+	 */
+	public enum Backpressure {
+		/**
+		 * The completing request waits for room in the queue, at most
+		 * {@link WriteBehindConfiguration#getMaxBlockMs()}, then registers its result
+		 * itself
+		 */
+		BLOCK,
+		/**
+		 * The completing request registers its result itself
+		 */
+		SYNC,
+		/**
+		 * The result is not registered : its running result stays in the repository
+		 * until it expires, subsequent presentations being answered as still running
+		 * meanwhile
+		 */
+		SHED;
+	}
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+	public static final int DEFAULT_WRITERS = 1;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+	public static final long DEFAULT_LINGER_MS = 5;
+	public static final long DEFAULT_MAX_BLOCK_MS = 100;
+	public static final long DEFAULT_DRAIN_TIMEOUT_MS = 5000;
+
+	private boolean enabled;
+
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	private int writers = DEFAULT_WRITERS;
+
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	private long lingerMs = DEFAULT_LINGER_MS;
+
+	private Backpressure backpressure = Backpressure.SYNC;
+
+	private long maxBlockMs = DEFAULT_MAX_BLOCK_MS;
+
+	private long drainTimeoutMs = DEFAULT_DRAIN_TIMEOUT_MS;
+
+	/**
+	 * @return true if completed results are registered by writer threads
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            See {@link #isEnabled()}
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return maximum number of completed results waiting to be registered
+	 * @see #DEFAULT_QUEUE_CAPACITY
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * @param queueCapacity
+	 *            See {@link #getQueueCapacity()}
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * @return number of writer threads
+	 * @see #DEFAULT_WRITERS
+	 */
+	public int getWriters() {
+		return writers;
+	}
+
+	/**
+	 * @param writers
+	 *            See {@link #getWriters()}
+	 */
+	public void setWriters(int writers) {
+		this.writers = writers;
+	}
+
+	/**
+	 * @return maximum number of results registered in one batch
+	 * @see #DEFAULT_MAX_BATCH_SIZE
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * @param maxBatchSize
+	 *            See {@link #getMaxBatchSize()}
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * @return duration in milliseconds a writer waits for a batch to fill up
+	 *         before registering a partial one
+	 * @see #DEFAULT_LINGER_MS
+	 */
+	public long getLingerMs() {
+		return lingerMs;
+	}
+
+	/**
+	 * @param lingerMs
+	 *            See {@link #getLingerMs()}
+	 */
+	public void setLingerMs(long lingerMs) {
+		this.lingerMs = lingerMs;
+	}
+
+	/**
+	 * @return behaviour when the queue is full
+	 */
+	public Backpressure getBackpressure() {
+		return backpressure;
+	}
+
+	/**
+	 * @param backpressure
+	 *            See {@link #getBackpressure()}
+	 */
+	public void setBackpressure(Backpressure backpressure) {
+		this.backpressure = backpressure;
+	}
+
+	/**
+	 * @return maximum duration in milliseconds a completing request waits for
+	 *         room in the queue, with {@link Backpressure#BLOCK}
+	 * @see #DEFAULT_MAX_BLOCK_MS
+	 */
+	public long getMaxBlockMs() {
+		return maxBlockMs;
+	}
+
+	/**
+	 * @param maxBlockMs
+	 *            See {@link #getMaxBlockMs()}
+	 */
+	public void setMaxBlockMs(long maxBlockMs) {
+		this.maxBlockMs = maxBlockMs;
+	}
+
+	/**
+	 * @return maximum duration in milliseconds to drain the queue on shutdown
+	 * @see #DEFAULT_DRAIN_TIMEOUT_MS
+	 */
+	public long getDrainTimeoutMs() {
+		return drainTimeoutMs;
+	}
+
+	/**
+	 * @param drainTimeoutMs
+	 *            See {@link #getDrainTimeoutMs()}
+	 */
+	public void setDrainTimeoutMs(long drainTimeoutMs) {
+		this.drainTimeoutMs = drainTimeoutMs;
+	}
+
+	@Override
+	public String toString() {
+		return "WriteBehindConfiguration [enabled=" + enabled + ", queueCapacity=" + queueCapacity + ", writers="
+		        + writers + ", maxBatchSize=" + maxBatchSize + ", lingerMs=" + lingerMs + ", backpressure="
+		        + backpressure + ", maxBlockMs=" + maxBlockMs + ", drainTimeoutMs=" + drainTimeoutMs + "]";
+	}
+
+}
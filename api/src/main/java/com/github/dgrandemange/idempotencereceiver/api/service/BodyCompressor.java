@@ -0,0 +1,43 @@
+package com.github.dgrandemange.idempotencereceiver.api.service;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * Compression algorithm applied to response bodies before they get registered
+ * into the repository.
+ * </p>
+ *
+ * <p>
+ * Declare an implementation as a bean to make its algorithm selectable by its
+ * content coding (see
+ * {@link com.github.dgrandemange.idempotencereceiver.api.model.CompressionConfiguration#getAlgorithm()}).
+ * </p>
+ */
+public interface BodyCompressor {
+
+	/**
+	 * @return content coding identifying this algorithm (e.g. <code>gzip</code>,
+	 *         <code>lz4</code>), stored along with the compressed body
+	 */
+	String getEncoding();
+
+	/**
+	 * @param body
+	 *            plain body
+	 * @return compressed body
+	 * @throws IOException
+	 *             if body cannot be compressed
+	 */
+	byte[] compress(byte[] body) throws IOException;
+
+	/**
+	 * @param compressed
+	 *            body compressed by {@link #compress(byte[])}
+	 * @return plain body
+	 * @throws IOException
+	 *             if body cannot be decompressed
+	 */
+	byte[] decompress(byte[] compressed) throws IOException;
+
+}
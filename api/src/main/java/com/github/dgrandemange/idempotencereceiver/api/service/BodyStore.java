@@ -0,0 +1,100 @@
+package com.github.dgrandemange.idempotencereceiver.api.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+import org.springframework.util.StreamUtils;
+
+/**
+ * <p>
+ * Content addressed store of the response bodies too large to be kept inline
+ * in the registered idempotent method results.
+ * </p>
+ *
+ * <p>
+ * A body is identified by a reference derived from its contents : storing the
+ * same contents twice gives the same reference, and extends the retention of
+ * the stored body.
+ * </p>
+ */
+public interface BodyStore {
+
+	/**
+	 * @return type of this store implementation
+	 */
+	String getType();
+
+	/**
+	 * @param body
+	 *            body to store
+	 * @return reference of the stored body
+	 * @throws IOException
+	 *             if body cannot be stored
+	 */
+	String store(byte[] body) throws IOException;
+
+	/**
+	 * Stores a body read from a stream, e.g. a response body spilled to disk while
+	 * being captured.<br>
+	 * Default implementation loads the whole body in memory : implementations
+	 * should override it to store the body as it is read.
+	 * 
+	 * @param body
+	 *            stream of the body to store, not closed by this method
+	 * @return reference of the stored body
+	 * @throws IOException
+	 *             if body cannot be read or stored
+	 */
+	default String store(InputStream body) throws IOException {
+		return store(StreamUtils.copyToByteArray(body));
+	}
+
+	/**
+	 * @param reference
+	 *            reference of a stored body
+	 * @return size in bytes of the stored body
+	 * @throws IOException
+	 *             if body is no longer available
+	 */
+	long size(String reference) throws IOException;
+
+	/**
+	 * @param reference
+	 *            reference of a stored body
+	 * @return stored body
+	 * @throws IOException
+	 *             if body is no longer available
+	 */
+	byte[] load(String reference) throws IOException;
+
+	/**
+	 * Streams a stored body, without loading it as a whole in memory
+	 * 
+	 * @param reference
+	 *            reference of a stored body
+	 * @param target
+	 *            channel the body is written to
+	 * @throws IOException
+	 *             if body is no longer available, or cannot be written
+	 */
+	void transferTo(String reference, WritableByteChannel target) throws IOException;
+
+	/**
+	 * Keeps a stored body at least as long as the idempotent method result
+	 * referencing it. Default implementation does nothing, for stores not
+	 * purging bodies by themselves.
+	 * 
+	 * @param reference
+	 *            reference of a stored body
+	 * @param ttlMs
+	 *            time to live in milliseconds of the result referencing the body,
+	 *            from now on
+	 * @throws IOException
+	 *             if body is no longer available
+	 */
+	default void retain(String reference, long ttlMs) throws IOException {
+		// Nothing to do by default
+	}
+
+}
@@ -1,10 +1,20 @@
 package com.github.dgrandemange.idempotencereceiver.api.service;
 
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
 
 public interface IdempotentRepository {
 
 	/**
+	 * <p>
+	 * Implementations supporting namespaces store the result in the storage
+	 * region mapped to {@link IdempotentMethodResult#getNamespace()}, and apply
+	 * {@link IdempotentMethodResult#getTtlMs()} as entry lifetime when set.
+	 * </p>
+	 * 
 	 * @param idempotencyKey Idempotent method result identifier (key) in repository  
 	 * @param imr
 	 *            Idempotent method result
@@ -24,6 +34,197 @@ public interface IdempotentRepository {
 	 */
 	IdempotentMethodResult find(String idempotencyKey);
 	
+	/**
+	 * @param namespace
+	 *            namespace the result is attached to, null for the common
+	 *            namespace
+	 * @param idempotencyKey
+	 *            Idempotent method result identifier (key) in repository
+	 * @return unregistered result
+	 */
+	default IdempotentMethodResult unregister(String namespace, String idempotencyKey) {
+		return unregister(idempotencyKey);
+	}
+
+	/**
+	 * @param namespace
+	 *            namespace the result is attached to, null for the common
+	 *            namespace
+	 * @param idempotencyKey
+	 *            Idempotent method result identifier (key) in repository
+	 * @return result matching given idempotencyKey, null if no match
+	 */
+	default IdempotentMethodResult find(String namespace, String idempotencyKey) {
+		return find(idempotencyKey);
+	}
+
+	/**
+	 * <p>
+	 * Looks a result up without blocking the calling thread.
+	 * </p>
+	 * <p>
+	 * Default implementation performs the lookup synchronously. Implementations
+	 * whose storage offers asynchronous reads should override it.
+	 * </p>
+	 * 
+	 * @param namespace
+	 *            namespace the result is attached to, null for the common
+	 *            namespace
+	 * @param idempotencyKey
+	 *            Idempotent method result identifier (key) in repository
+	 * @return future result matching given idempotencyKey, completed with null if
+	 *         no match
+	 */
+	default CompletableFuture<IdempotentMethodResult> findAsync(String namespace, String idempotencyKey) {
+		CompletableFuture<IdempotentMethodResult> future = new CompletableFuture<>();
+		try {
+			future.complete(find(namespace, idempotencyKey));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * <p>
+	 * Registers a result under its own key without blocking the calling thread.
+	 * </p>
+	 * <p>
+	 * Default implementation registers the result synchronously.
+	 * Implementations whose storage offers asynchronous writes should override
+	 * it.
+	 * </p>
+	 * 
+	 * @param imr
+	 *            Idempotent method result to register under its own key
+	 * @return future registered result
+	 */
+	default CompletableFuture<IdempotentMethodResult> registerAsync(IdempotentMethodResult imr) {
+		CompletableFuture<IdempotentMethodResult> future = new CompletableFuture<>();
+		try {
+			future.complete(register(imr.getIdempotencyKey(), imr));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * <p>
+	 * Unregisters a result without blocking the calling thread.
+	 * </p>
+	 * <p>
+	 * Default implementation unregisters the result synchronously.
+	 * Implementations whose storage offers asynchronous writes should override
+	 * it.
+	 * </p>
+	 * 
+	 * @param namespace
+	 *            namespace the result is attached to, null for the common
+	 *            namespace
+	 * @param idempotencyKey
+	 *            Idempotent method result identifier (key) in repository
+	 * @return future unregistered result
+	 */
+	default CompletableFuture<IdempotentMethodResult> unregisterAsync(String namespace, String idempotencyKey) {
+		CompletableFuture<IdempotentMethodResult> future = new CompletableFuture<>();
+		try {
+			future.complete(unregister(namespace, idempotencyKey));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * <p>
+	 * Registers several results at once, e.g. to renew the leases held on
+	 * running results.
+	 * </p>
+	 * <p>
+	 * Default implementation registers results one by one.
+	 * </p>
+	 * 
+	 * @param imrs
+	 *            Idempotent method results to register, each under its own key
+	 */
+	default void registerAll(Collection<IdempotentMethodResult> imrs) {
+		for (IdempotentMethodResult imr : imrs) {
+			register(imr.getIdempotencyKey(), imr);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Unregisters several results at once, e.g. to release the running results
+	 * of an instance shutting down.
+	 * </p>
+	 * <p>
+	 * Default implementation unregisters results one by one.
+	 * </p>
+	 * 
+	 * @param imrs
+	 *            Idempotent method results to unregister
+	 */
+	default void unregisterAll(Collection<IdempotentMethodResult> imrs) {
+		for (IdempotentMethodResult imr : imrs) {
+			unregister(imr.getNamespace(), imr.getIdempotencyKey());
+		}
+	}
+
+	/**
+	 * <p>
+	 * Registers a result unless one is already registered under its key, e.g. the
+	 * result of a racing presentation of the same request, which is then kept.
+	 * </p>
+	 * <p>
+	 * Default implementation is not atomic : it looks the key up before
+	 * registering the result. Implementations supporting conditional writes
+	 * should override it.
+	 * </p>
+	 *
+	 * @param imr
+	 *            Idempotent method result to register under its own key
+	 * @return null if given result has been registered, otherwise the result
+	 *         already registered
+	 */
+	default IdempotentMethodResult registerIfAbsent(IdempotentMethodResult imr) {
+		IdempotentMethodResult current = find(imr.getNamespace(), imr.getIdempotencyKey());
+		if (Objects.nonNull(current)) {
+			return current;
+		}
+		register(imr.getIdempotencyKey(), imr);
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Takes over a running result whose lease has expired, i.e. whose owner is
+	 * deemed dead : given result replaces it, unless it has changed in the
+	 * meantime (done, renewed or already taken over).
+	 * </p>
+	 * <p>
+	 * Default implementation is not atomic : it looks the result up again
+	 * before registering the new one. Implementations supporting conditional
+	 * writes should override it.
+	 * </p>
+	 * 
+	 * @param expired
+	 *            running result whose lease has expired, as found in the
+	 *            repository
+	 * @param imr
+	 *            running result of the instance taking over
+	 * @return true if the result has been taken over
+	 */
+	default boolean takeOver(IdempotentMethodResult expired, IdempotentMethodResult imr) {
+		IdempotentMethodResult current = find(imr.getNamespace(), imr.getIdempotencyKey());
+		if (Objects.nonNull(current) && !current.isSameLeaseAs(expired)) {
+			return false;
+		}
+		register(imr.getIdempotencyKey(), imr);
+		return true;
+	}
+
 	/**
 	 * @return repository type name
 	 */
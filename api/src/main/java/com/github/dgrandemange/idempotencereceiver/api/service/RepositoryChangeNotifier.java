@@ -0,0 +1,40 @@
+package com.github.dgrandemange.idempotencereceiver.api.service;
+
+/**
+ * <p>
+ * Implemented by the idempotent repositories able to tell when an entry has
+ * been modified, removed or has expired, possibly by another instance of the
+ * cluster.
+ * </p>
+ *
+ * <p>
+ * Listeners are notified with the key of the changed entry only : they are
+ * expected to look the entry up again if they need its contents. Notifications
+ * may be delivered on a thread owned by the repository client, so listeners
+ * must not block.
+ * </p>
+ */
+public interface RepositoryChangeNotifier {
+
+	/**
+	 * Listener of the repository entries changes
+	 */
+	@FunctionalInterface
+	interface RepositoryChangeListener {
+
+		/**
+		 * @param idempotencyKey
+		 *            key of the entry which has been modified, removed or has
+		 *            expired
+		 */
+		void onChange(String idempotencyKey);
+
+	}
+
+	/**
+	 * @param listener
+	 *            listener notified of every subsequent entry change
+	 */
+	void addChangeListener(RepositoryChangeListener listener);
+
+}
@@ -0,0 +1,52 @@
+package com.github.dgrandemange.idempotencereceiver.api.service;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+
+/**
+ * Decides how long a finalized idempotent method result should be retained in
+ * the repository, and whether its body should be retained at all.
+ */
+public interface RetentionPolicy {
+
+	/**
+	 * Policy retaining every result as is
+	 */
+	RetentionPolicy KEEP_ALL = (imr, request, exception) -> imr;
+
+	/**
+	 * @param imr
+	 *            finalized idempotent method result (i.e. in DONE state)
+	 * @param request
+	 *            current HTTP request
+	 * @param exception
+	 *            registerable exception raised by the handler method, null if
+	 *            the handler method returned smoothly
+	 * @return result to register, possibly updated with another TTL and without
+	 *         body
+	 */
+	IdempotentMethodResult apply(IdempotentMethodResult imr, HttpServletRequest request, Exception exception);
+
+	/**
+	 * Applies the policy to a result whose body is not held in memory (e.g. a
+	 * large captured body, spilled to disk)
+	 * 
+	 * @param imr
+	 *            finalized idempotent method result (i.e. in DONE state)
+	 * @param bodySize
+	 *            size in bytes of the body of given result
+	 * @param request
+	 *            current HTTP request
+	 * @param exception
+	 *            registerable exception raised by the handler method, null if
+	 *            the handler method returned smoothly
+	 * @return result to register, possibly updated with another TTL and without
+	 *         body
+	 */
+	default IdempotentMethodResult apply(IdempotentMethodResult imr, long bodySize, HttpServletRequest request,
+	        Exception exception) {
+		return apply(imr, request, exception);
+	}
+
+}
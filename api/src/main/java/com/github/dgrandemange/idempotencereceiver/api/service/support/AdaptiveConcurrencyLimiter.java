@@ -0,0 +1,162 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration.ConcurrencyLimitConfiguration;
+
+/**
+ * <p>
+ * Bounds the number of concurrent calls to a repository by a limit adjusted
+ * from the observed call latencies (see {@link ConcurrencyLimitConfiguration}).
+ * </p>
+ *
+ * <p>
+ * Each call latency feeds a short term and a long term moving average. The
+ * limit is scaled by their ratio (the gradient, at most 1 within the tolerance)
+ * and allowed to grow by the square root of the current limit : it keeps
+ * growing while the recent latency stays close to the long term one, and
+ * shrinks as soon as calls start queueing up. A failed call shrinks the limit
+ * multiplicatively.
+ * </p>
+ *
+ * <p>
+ * Lock-free : the limit and the averages are updated by compare-and-set, a
+ * concurrent update simply being applied on top of the other.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	/**
+	 * Number of calls the short term latency average spans
+	 */
+	static final int SHORT_WINDOW = 10;
+
+	/**
+	 * Number of calls the long term latency average spans
+	 */
+	static final int LONG_WINDOW = 500;
+
+	/**
+	 * Lowest gradient applied to the limit on a single call
+	 */
+	static final double MIN_GRADIENT = 0.5;
+
+	/**
+	 * Ratio the limit is scaled by when a call fails
+	 */
+	static final double DROP_RATIO = 0.9;
+
+	private final ConcurrencyLimitConfiguration config;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicLong limit;
+
+	private final AtomicLong shortRtt = new AtomicLong(Double.doubleToLongBits(0));
+
+	private final AtomicLong longRtt = new AtomicLong(Double.doubleToLongBits(0));
+
+	/**
+	 * @param config
+	 *            adaptive concurrency limit configuration
+	 */
+	public AdaptiveConcurrencyLimiter(ConcurrencyLimitConfiguration config) {
+		super();
+		this.config = config;
+		this.limit = new AtomicLong(Double.doubleToLongBits(clamp(config.getInitialLimit())));
+	}
+
+	/**
+	 * @return true if a call may be issued, in which case either
+	 *         {@link #onSuccess(long)} or {@link #onDropped()} must be called
+	 *         once it completes
+	 */
+	public boolean tryAcquire() {
+		int max = getLimit();
+		for (;;) {
+			int current = inFlight.get();
+			if (current >= max) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases a call which has succeeded, adjusting the limit from its latency
+	 *
+	 * @param rttNanos
+	 *            call latency in nanoseconds
+	 */
+	public void onSuccess(long rttNanos) {
+		int calls = inFlight.getAndDecrement();
+		double rtt = Math.max(1, rttNanos);
+		double recent = update(shortRtt, avg -> ewma(avg, rtt, SHORT_WINDOW));
+		double longTerm = update(longRtt, avg -> {
+			double next = ewma(avg, rtt, LONG_WINDOW);
+			// Recover faster once the latency drops back, e.g. after a slow period
+			return next > 2 * recent ? 0.95 * next : next;
+		});
+
+		double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, config.getRttTolerance() * longTerm / recent));
+		double smoothing = Math.max(0.01, Math.min(1.0, config.getSmoothing()));
+		update(limit, current -> {
+			double estimate = current * gradient + Math.sqrt(current);
+			if (estimate > current && calls < current / 2) {
+				// Calls don't reach the limit : their latency says nothing of a higher one
+				return current;
+			}
+			return clamp(current * (1 - smoothing) + estimate * smoothing);
+		});
+	}
+
+	/**
+	 * Releases a call which has failed or timed out, shrinking the limit
+	 */
+	public void onDropped() {
+		inFlight.decrementAndGet();
+		update(limit, current -> clamp(current * DROP_RATIO));
+	}
+
+	/**
+	 * @return current limit of concurrent calls
+	 */
+	public int getLimit() {
+		return (int) Double.longBitsToDouble(limit.get());
+	}
+
+	/**
+	 * @return number of calls in flight
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	double clamp(double value) {
+		int min = Math.max(1, config.getMinLimit());
+		return Math.max(min, Math.min(Math.max(min, config.getMaxLimit()), value));
+	}
+
+	static double ewma(double average, double sample, int window) {
+		if (average == 0) {
+			return sample;
+		}
+		double alpha = 2.0 / (window + 1);
+		return average + alpha * (sample - average);
+	}
+
+	static double update(AtomicLong bits, DoubleUnaryOperator operator) {
+		for (;;) {
+			long current = bits.get();
+			double next = operator.applyAsDouble(Double.longBitsToDouble(current));
+			if (bits.compareAndSet(current, Double.doubleToLongBits(next))) {
+				return next;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.CompressionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.BodyCompressor;
+
+/**
+ * <p>
+ * Compresses the body of idempotent method results before their registration,
+ * and gives back their plain body on replay.
+ * </p>
+ *
+ * <p>
+ * A body is left uncompressed when smaller than the configured threshold, or
+ * when compression does not make it smaller.
+ * </p>
+ */
+public class BodyCompression {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BodyCompression.class);
+
+	static final String CODING_NONE = "none";
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Autowired(required = false)
+	private List<BodyCompressor> compressors = Collections.emptyList();
+
+	private final Map<String, BodyCompressor> compressorsByEncoding = new HashMap<>();
+
+	private BodyCompressor selected;
+
+	private int minBodySize;
+
+	public BodyCompression() {
+		super();
+	}
+
+	/**
+	 * @param compression
+	 *            compression configuration
+	 * @param compressors
+	 *            available compressors, in addition to the gzip one
+	 */
+	public BodyCompression(CompressionConfiguration compression, List<BodyCompressor> compressors) {
+		super();
+		this.compressors = compressors;
+		init(compression);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(configuration.getRepository().getCompression());
+	}
+
+	void init(CompressionConfiguration compression) {
+		compressorsByEncoding.clear();
+		register(new GzipBodyCompressor());
+		if (Objects.nonNull(compressors)) {
+			for (BodyCompressor compressor : compressors) {
+				register(compressor);
+			}
+		}
+
+		minBodySize = compression.getMinBodySize();
+		String algorithm = compression.getAlgorithm();
+		if (Objects.isNull(algorithm) || algorithm.trim().isEmpty()
+		        || CODING_NONE.equalsIgnoreCase(algorithm.trim())) {
+			selected = null;
+		} else {
+			selected = compressorsByEncoding.get(algorithm.trim().toLowerCase(Locale.ROOT));
+			if (Objects.isNull(selected)) {
+				throw new IllegalArgumentException(String.format(
+				        "no body compressor available for algorithm '%s' (available : %s)", algorithm,
+				        compressorsByEncoding.keySet()));
+			}
+		}
+		LOGGER.info("Body compression : {}", compression);
+	}
+
+	void register(BodyCompressor compressor) {
+		compressorsByEncoding.put(compressor.getEncoding().toLowerCase(Locale.ROOT), compressor);
+	}
+
+	/**
+	 * @return true if bodies get compressed before registration
+	 */
+	public boolean isEnabled() {
+		return Objects.nonNull(selected);
+	}
+
+	/**
+	 * @param imr
+	 *            finalized idempotent method result, whose body is plain
+	 * @return given result if its body is left uncompressed, otherwise a copy of
+	 *         it with a compressed body
+	 */
+	public IdempotentMethodResult compress(IdempotentMethodResult imr) {
+		byte[] body = imr.getBody();
+		if (!isEnabled() || Objects.nonNull(imr.getBodyContentEncoding()) || Objects.isNull(body)
+		        || body.length < minBodySize) {
+			return imr;
+		}
+
+		byte[] compressed;
+		try {
+			compressed = selected.compress(body);
+		} catch (IOException e) {
+			LOGGER.warn("Unable to compress body of idempotent method result identified by key '{}'. Cause : {}",
+			        imr.getIdempotencyKey(), e.getMessage());
+			return imr;
+		}
+
+		if (compressed.length >= body.length) {
+			return imr;
+		}
+
+		IdempotentMethodResult compressedImr = IdempotentMethodResult.builder().from(imr)
+		        .withBodyContentEncoding(selected.getEncoding()).build();
+		compressedImr.setBody(compressed);
+		return compressedImr;
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result
+	 * @return plain body of given result
+	 * @throws IOException
+	 *             if body is compressed with an unavailable algorithm, or cannot
+	 *             be decompressed
+	 */
+	public byte[] decompress(IdempotentMethodResult imr) throws IOException {
+		return decompress(imr.getBodyContentEncoding(), imr.getBody());
+	}
+
+	/**
+	 * @param encoding
+	 *            content coding of given body, null if plain
+	 * @param body
+	 *            body, possibly compressed
+	 * @return plain body
+	 * @throws IOException
+	 *             if body is compressed with an unavailable algorithm, or cannot
+	 *             be decompressed
+	 */
+	public byte[] decompress(String encoding, byte[] body) throws IOException {
+		if (Objects.isNull(encoding) || Objects.isNull(body)) {
+			return body;
+		}
+
+		BodyCompressor compressor = compressorsByEncoding.get(encoding.toLowerCase(Locale.ROOT));
+		if (Objects.isNull(compressor)) {
+			throw new IOException(String.format("no body compressor available for content coding '%s'", encoding));
+		}
+		return compressor.decompress(body);
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result
+	 * @param request
+	 *            current HTTP request
+	 * @return true if the stored body of given result can be sent as is, i.e.
+	 *         without decompressing it, as its content coding is accepted by the
+	 *         client
+	 */
+	public boolean canPassThrough(IdempotentMethodResult imr, HttpServletRequest request) {
+		String encoding = imr.getBodyContentEncoding();
+		return Objects.nonNull(encoding) && GzipBodyCompressor.ENCODING.equalsIgnoreCase(encoding)
+		        && accepts(request.getHeader(HttpHeaders.ACCEPT_ENCODING), encoding);
+	}
+
+	/**
+	 * @return true if given content coding is listed, with a non zero quality
+	 *         value, in given <code>Accept-Encoding</code> header value
+	 */
+	static boolean accepts(String acceptEncoding, String encoding) {
+		if (Objects.isNull(acceptEncoding)) {
+			return false;
+		}
+		for (String item : acceptEncoding.split(",")) {
+			String[] parts = item.split(";");
+			String coding = parts[0].trim();
+			if (!coding.equalsIgnoreCase(encoding) && !"*".equals(coding)) {
+				continue;
+			}
+			boolean accepted = true;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						accepted = Double.parseDouble(param.substring(2)) > 0;
+					} catch (NumberFormatException e) {
+						accepted = false;
+					}
+				}
+			}
+			return accepted;
+		}
+		return false;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setCompressors(List<BodyCompressor> compressors) {
+		this.compressors = compressors;
+	}
+
+}
@@ -0,0 +1,201 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.BodyStore;
+
+/**
+ * <p>
+ * Keeps small bodies inline in the idempotent method results, and moves the
+ * ones above the configured threshold to the {@link BodyStore}, if any.
+ * </p>
+ *
+ * <p>
+ * When a body cannot be moved to the store, it is kept inline. A stored body
+ * is retained at least as long as the TTL of the result referencing it.
+ * </p>
+ */
+public class BodyStorage {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BodyStorage.class);
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Autowired(required = false)
+	private BodyStore store;
+
+	private int inlineThreshold;
+
+	public BodyStorage() {
+		super();
+	}
+
+	/**
+	 * @param store
+	 *            store large bodies are moved to
+	 * @param inlineThreshold
+	 *            size in bytes above which a body is moved to the store
+	 */
+	public BodyStorage(BodyStore store, int inlineThreshold) {
+		super();
+		this.store = store;
+		this.inlineThreshold = inlineThreshold;
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		inlineThreshold = configuration.getRepository().getBodyStore().getInlineThreshold();
+	}
+
+	/**
+	 * @return true if large bodies are moved to a body store
+	 */
+	public boolean isEnabled() {
+		return Objects.nonNull(store);
+	}
+
+	/**
+	 * @param imr
+	 *            finalized idempotent method result
+	 * @return given result if its body is kept inline, otherwise a copy of it
+	 *         referencing its stored body
+	 */
+	public IdempotentMethodResult offload(IdempotentMethodResult imr) {
+		byte[] body = imr.getBody();
+		if (!isEnabled() || Objects.isNull(body) || body.length <= inlineThreshold) {
+			return imr;
+		}
+
+		String reference;
+		try {
+			reference = store.store(body);
+			retain(reference, imr.getTtlMs());
+		} catch (IOException e) {
+			LOGGER.warn("Unable to store body of idempotent method result identified by key '{}' : keeping it inline. Cause : {}",
+			        imr.getIdempotencyKey(), e.getMessage());
+			return imr;
+		}
+
+		LOGGER.trace("Body of idempotent method result identified by key '{}' ({} bytes) stored as '{}'",
+		        imr.getIdempotencyKey(), body.length, reference);
+		return IdempotentMethodResult.builder().from(imr).withBodyRef(reference).build();
+	}
+
+	/**
+	 * Moves a body to the store whatever its size, without loading it in memory
+	 * 
+	 * @param imr
+	 *            finalized idempotent method result, without inline body
+	 * @param body
+	 *            stream of the body to store
+	 * @return copy of given result referencing its stored body
+	 * @throws IOException
+	 *             if no store is available, or body cannot be stored
+	 */
+	public IdempotentMethodResult offload(IdempotentMethodResult imr, InputStream body) throws IOException {
+		if (!isEnabled()) {
+			throw new IOException(String.format("no body store available to store body of idempotent method result identified by key '%s'",
+			        imr.getIdempotencyKey()));
+		}
+		String reference = store.store(body);
+		retain(reference, imr.getTtlMs());
+		LOGGER.trace("Streamed body of idempotent method result identified by key '{}' stored as '{}'",
+		        imr.getIdempotencyKey(), reference);
+		return IdempotentMethodResult.builder().from(imr).withBodyRef(reference).build();
+	}
+
+	/**
+	 * Extends the retention of the stored body of a result whose lifetime is
+	 * extended, e.g. on sliding expiration
+	 * 
+	 * @param imr
+	 *            idempotent method result, possibly referencing a stored body
+	 */
+	public void retain(IdempotentMethodResult imr) {
+		if (!isEnabled() || Objects.isNull(imr.getBodyRef())) {
+			return;
+		}
+		try {
+			retain(imr.getBodyRef(), imr.getTtlMs());
+		} catch (IOException e) {
+			LOGGER.warn("Unable to retain stored body '{}' of idempotent method result identified by key '{}'. Cause : {}",
+			        imr.getBodyRef(), imr.getIdempotencyKey(), e.getMessage());
+		}
+	}
+
+	/**
+	 * @param ttlMs
+	 *            TTL of the result referencing the body, 0 for the repository
+	 *            default one, the store retention then applying
+	 */
+	void retain(String reference, long ttlMs) throws IOException {
+		if (ttlMs > 0) {
+			store.retain(reference, ttlMs);
+		}
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result referencing a stored body
+	 * @return size in bytes of the stored body
+	 * @throws IOException
+	 *             if stored body is no longer available
+	 */
+	public long size(IdempotentMethodResult imr) throws IOException {
+		return checkedStore(imr).size(imr.getBodyRef());
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result
+	 * @return body of given result, loaded from the store if not inline
+	 * @throws IOException
+	 *             if stored body is no longer available
+	 */
+	public byte[] load(IdempotentMethodResult imr) throws IOException {
+		if (Objects.isNull(imr.getBodyRef())) {
+			return imr.getBody();
+		}
+		return checkedStore(imr).load(imr.getBodyRef());
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result referencing a stored body
+	 * @param target
+	 *            channel the stored body is streamed to
+	 * @throws IOException
+	 *             if stored body is no longer available, or cannot be written
+	 */
+	public void transferTo(IdempotentMethodResult imr, WritableByteChannel target) throws IOException {
+		checkedStore(imr).transferTo(imr.getBodyRef(), target);
+	}
+
+	private BodyStore checkedStore(IdempotentMethodResult imr) throws IOException {
+		if (Objects.isNull(store)) {
+			throw new IOException(String.format("no body store available to read body '%s'", imr.getBodyRef()));
+		}
+		return store;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setStore(BodyStore store) {
+		this.store = store;
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration;
+
+/**
+ * <p>
+ * Creates the threads the repository calls are executed on, either platform
+ * or virtual threads (see {@link ExecutionConfiguration}).
+ * </p>
+ *
+ * <p>
+ * Virtual threads are created through reflection, the library being built
+ * for Java 8. When the runtime doesn't support them, daemon platform threads
+ * are created instead.
+ * </p>
+ */
+public final class ExecutionThreads {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionThreads.class);
+
+	/**
+	 * <code>Thread.ofVirtual()</code>, null if not supported by the runtime
+	 */
+	private static final Method OF_VIRTUAL;
+
+	/**
+	 * <code>Thread.Builder.name(String)</code>
+	 */
+	private static final Method BUILDER_NAME;
+
+	/**
+	 * <code>Thread.Builder.unstarted(Runnable)</code>
+	 */
+	private static final Method BUILDER_UNSTARTED;
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderUnstarted = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builder.getMethod("name", String.class);
+			builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+		} catch (ReflectiveOperationException e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_UNSTARTED = builderUnstarted;
+	}
+
+	private ExecutionThreads() {
+		super();
+	}
+
+	/**
+	 * @return true if the runtime supports virtual threads
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return Objects.nonNull(OF_VIRTUAL);
+	}
+
+	/**
+	 * @param execution
+	 *            execution configuration, may be null
+	 * @return true if virtual threads are requested and supported by the runtime
+	 */
+	public static boolean useVirtualThreads(ExecutionConfiguration execution) {
+		if (Objects.isNull(execution) || !execution.isVirtual()) {
+			return false;
+		}
+		if (!isVirtualThreadSupported()) {
+			LOGGER.warn("Virtual threads not supported by the Java {} runtime : using platform threads instead",
+			        System.getProperty("java.specification.version"));
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param task
+	 *            task run by the thread
+	 * @param name
+	 *            thread name
+	 * @param virtual
+	 *            true for a virtual thread, a daemon platform thread being created
+	 *            otherwise or if the runtime doesn't support virtual threads
+	 * @return new unstarted thread
+	 */
+	public static Thread newThread(Runnable task, String name, boolean virtual) {
+		if (virtual && isVirtualThreadSupported()) {
+			try {
+				Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+				return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				LOGGER.warn("Unable to create virtual thread '{}' : using a platform thread instead. Cause : {}", name,
+				        e.getMessage());
+			}
+		}
+
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * @param namePrefix
+	 *            prefix of the thread names, followed by a sequence number
+	 * @param virtual
+	 *            See {@link #newThread(Runnable, String, boolean)}
+	 * @return factory of daemon platform threads or of virtual threads
+	 */
+	public static ThreadFactory newThreadFactory(String namePrefix, boolean virtual) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return task -> newThread(task, namePrefix + threadCount.getAndIncrement(), virtual);
+	}
+
+}
@@ -0,0 +1,365 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.FileSystemUtils;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.BodyStoreConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.BodyStore;
+
+/**
+ * <p>
+ * Body store relying on the local filesystem.
+ * </p>
+ *
+ * <p>
+ * A body is referenced by the SHA-256 of its contents, and stored as a
+ * directory <code>&lt;2 first hex chars&gt;/&lt;hash&gt;</code> of chunk files.
+ * Chunks are first written to a temporary directory, then moved atomically, so
+ * that a body is never read partially written.
+ * </p>
+ *
+ * <p>
+ * Bodies not stored again during the configured retention are purged
+ * periodically. A body referenced by a result living longer than this
+ * retention is retained up to the expiry of the result (see
+ * {@link #retain(String, long)}) : the last modified time of its directory is
+ * then moved forward, so that the retention elapses with the result TTL.
+ * </p>
+ *
+ * <p>
+ * NB : as the filesystem is local, this store is only relevant when the
+ * subsequent presentations of a request reach the same instance, or when the
+ * directory is shared between instances.
+ * </p>
+ */
+public class FileSystemBodyStore implements BodyStore {
+
+	public static final String STORE_TYPE = "filesystem";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemBodyStore.class);
+
+	static final String TMP_DIRECTORY = "tmp";
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	private Path root;
+
+	private int chunkSize;
+
+	private long retentionMs;
+
+	private ScheduledExecutorService purgeExecutor;
+
+	public FileSystemBodyStore() {
+		super();
+	}
+
+	/**
+	 * @param bodyStore
+	 *            body store configuration
+	 */
+	public FileSystemBodyStore(BodyStoreConfiguration bodyStore) {
+		super();
+		init(bodyStore);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		BodyStoreConfiguration bodyStore = configuration.getRepository().getBodyStore();
+		init(bodyStore);
+
+		purgeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "idempotence-receiver-body-store-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		purgeExecutor.scheduleWithFixedDelay(this::purge, bodyStore.getPurgeIntervalMs(),
+		        bodyStore.getPurgeIntervalMs(), TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	void preDestroy() {
+		if (Objects.nonNull(purgeExecutor)) {
+			purgeExecutor.shutdownNow();
+		}
+	}
+
+	void init(BodyStoreConfiguration bodyStore) {
+		String directory = bodyStore.getDirectory();
+		root = (Objects.isNull(directory) || directory.trim().isEmpty())
+		        ? Paths.get(System.getProperty("java.io.tmpdir"), "idempotence-receiver-bodies")
+		        : Paths.get(directory);
+		chunkSize = bodyStore.getChunkSize();
+		retentionMs = bodyStore.getRetentionMs();
+		try {
+			Files.createDirectories(root.resolve(TMP_DIRECTORY));
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("unable to create body store directory '%s'", root), e);
+		}
+		LOGGER.info("Filesystem body store initialized in directory '{}' : {}", root, bodyStore);
+	}
+
+	@Override
+	public String getType() {
+		return STORE_TYPE;
+	}
+
+	@Override
+	public String store(byte[] body) throws IOException {
+		String reference = referenceOf(body);
+		Path blob = resolve(reference);
+
+		if (Files.isDirectory(blob)) {
+			touch(blob, retentionMs);
+			return reference;
+		}
+
+		Path tmp = root.resolve(TMP_DIRECTORY).resolve(UUID.randomUUID().toString());
+		Files.createDirectories(tmp);
+		try {
+			int index = 0;
+			for (int offset = 0; offset < body.length || index == 0; offset += chunkSize) {
+				int length = Math.min(chunkSize, body.length - offset);
+				Files.write(tmp.resolve(chunkName(index++)), slice(body, offset, length));
+			}
+			Files.createDirectories(blob.getParent());
+			Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+			// Same contents concurrently stored
+			touch(blob, retentionMs);
+		} finally {
+			FileSystemUtils.deleteRecursively(tmp);
+		}
+
+		return reference;
+	}
+
+	@Override
+	public String store(InputStream body) throws IOException {
+		Path tmp = root.resolve(TMP_DIRECTORY).resolve(UUID.randomUUID().toString());
+		Files.createDirectories(tmp);
+		try {
+			// Chunks are written as the body is read, its reference being only known
+			// at the end
+			MessageDigest digest = newDigest();
+			DigestInputStream in = new DigestInputStream(body, digest);
+			byte[] chunk = new byte[chunkSize];
+			int index = 0;
+			int length;
+			do {
+				length = readChunk(in, chunk);
+				if (length > 0 || index == 0) {
+					Files.write(tmp.resolve(chunkName(index++)), slice(chunk, 0, length));
+				}
+			} while (length == chunk.length);
+
+			String reference = hex(digest.digest());
+			Path blob = resolve(reference);
+			if (Files.isDirectory(blob)) {
+				touch(blob, retentionMs);
+				return reference;
+			}
+			try {
+				Files.createDirectories(blob.getParent());
+				Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+			} catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+				// Same contents concurrently stored
+				touch(blob, retentionMs);
+			}
+			return reference;
+		} finally {
+			FileSystemUtils.deleteRecursively(tmp);
+		}
+	}
+
+	@Override
+	public long size(String reference) throws IOException {
+		long size = 0;
+		for (Path chunk : chunks(reference)) {
+			size += Files.size(chunk);
+		}
+		return size;
+	}
+
+	@Override
+	public byte[] load(String reference) throws IOException {
+		List<Path> chunks = chunks(reference);
+		long size = 0;
+		for (Path chunk : chunks) {
+			size += Files.size(chunk);
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(String.format("body '%s' is too large to be loaded in memory", reference));
+		}
+
+		byte[] body = new byte[(int) size];
+		int offset = 0;
+		for (Path chunk : chunks) {
+			byte[] bytes = Files.readAllBytes(chunk);
+			System.arraycopy(bytes, 0, body, offset, bytes.length);
+			offset += bytes.length;
+		}
+		return body;
+	}
+
+	@Override
+	public void transferTo(String reference, WritableByteChannel target) throws IOException {
+		for (Path chunk : chunks(reference)) {
+			try (FileChannel channel = FileChannel.open(chunk, StandardOpenOption.READ)) {
+				long size = channel.size();
+				long position = 0;
+				while (position < size) {
+					position += channel.transferTo(position, size - position, target);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void retain(String reference, long ttlMs) throws IOException {
+		touch(resolve(reference), ttlMs);
+	}
+
+	/**
+	 * Deletes the bodies not stored again during the retention duration
+	 */
+	void purge() {
+		long limit = System.currentTimeMillis() - retentionMs;
+		int purged = 0;
+		try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(root, Files::isDirectory)) {
+			for (Path prefix : prefixes) {
+				if (TMP_DIRECTORY.equals(prefix.getFileName().toString())) {
+					continue;
+				}
+				try (DirectoryStream<Path> blobs = Files.newDirectoryStream(prefix)) {
+					for (Path blob : blobs) {
+						if (Files.getLastModifiedTime(blob).toMillis() < limit) {
+							FileSystemUtils.deleteRecursively(blob);
+							purged++;
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to purge body store directory '{}'. Cause : {}", root, e.getMessage());
+		}
+		LOGGER.trace("{} bodies purged from body store", purged);
+	}
+
+	String referenceOf(byte[] body) {
+		return hex(newDigest().digest(body));
+	}
+
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String hex(byte[] hash) {
+		StringBuilder sb = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	Path resolve(String reference) throws IOException {
+		if (Objects.isNull(reference) || reference.length() < 3 || !reference.matches("[0-9a-f]+")) {
+			throw new NoSuchFileException(String.valueOf(reference));
+		}
+		return root.resolve(reference.substring(0, 2)).resolve(reference);
+	}
+
+	List<Path> chunks(String reference) throws IOException {
+		Path blob = resolve(reference);
+		List<Path> chunks = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(blob)) {
+			for (Path chunk : stream) {
+				chunks.add(chunk);
+			}
+		}
+		Collections.sort(chunks);
+		return chunks;
+	}
+
+	static String chunkName(int index) {
+		return String.format("%06d", index);
+	}
+
+	/**
+	 * Moves the last modified time of a stored body forward, so that it is kept
+	 * at least the given duration, and never less than the retention duration
+	 */
+	private void touch(Path blob, long keepMs) throws IOException {
+		long retainedFrom = System.currentTimeMillis() + Math.max(0, keepMs - retentionMs);
+		if (Files.getLastModifiedTime(blob).toMillis() < retainedFrom) {
+			Files.setLastModifiedTime(blob, FileTime.fromMillis(retainedFrom));
+		}
+	}
+
+	/**
+	 * @return number of bytes read into given chunk, less than its length only
+	 *         when the end of stream is reached
+	 */
+	private static int readChunk(InputStream in, byte[] chunk) throws IOException {
+		int length = 0;
+		while (length < chunk.length) {
+			int read = in.read(chunk, length, chunk.length - length);
+			if (read < 0) {
+				break;
+			}
+			length += read;
+		}
+		return length;
+	}
+
+	private static byte[] slice(byte[] body, int offset, int length) {
+		if (offset == 0 && length == body.length) {
+			return body;
+		}
+		byte[] chunk = new byte[length];
+		System.arraycopy(body, offset, chunk, 0, length);
+		return chunk;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+}
@@ -0,0 +1,314 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ExistenceOnlyConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.InstantProvider;
+
+/**
+ * <p>
+ * Compact set of 64 bits request fingerprints, used by the existence-only
+ * deduplication mode.
+ * </p>
+ *
+ * <p>
+ * Fingerprints are stored in primitive open addressing hash sets (about 8 to 16
+ * bytes per fingerprint), one per time generation. The current generation
+ * receives new fingerprints ; every <code>ttlMs / (generations - 1)</code> the
+ * oldest generation is dropped and a new empty one becomes current.
+ * </p>
+ */
+public class GenerationalFingerprintSet {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GenerationalFingerprintSet.class);
+
+	static final int SEGMENTS = 16;
+
+	static final int SEGMENT_INITIAL_CAPACITY = 256;
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	private InstantProvider instantProvider = new InstantProviderImpl();
+
+	private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+
+	/**
+	 * One lock per segment, guarding the segment sets of every generation. Locks
+	 * rather than monitors, which would pin the virtual threads contending for
+	 * a segment
+	 */
+	private final Lock[] segmentLocks = newSegmentLocks();
+
+	private long generationDurationMs;
+
+	/**
+	 * Generations, the current one first
+	 */
+	private LongHashSet[][] generations;
+
+	private volatile long nextRotationAtMs;
+
+	/**
+	 * Primitive long open addressing (linear probing) hash set, not thread safe.
+	 * <code>0</code> is reserved as the empty slot marker.
+	 */
+	static final class LongHashSet {
+		long[] table;
+		int size;
+
+		LongHashSet(int capacity) {
+			table = new long[capacity];
+		}
+
+		boolean add(long value) {
+			int mask = table.length - 1;
+			int slot = slotOf(value, mask);
+			while (table[slot] != 0) {
+				if (table[slot] == value) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = value;
+			if (++size > (table.length >> 1) + (table.length >> 2)) {
+				resize();
+			}
+			return true;
+		}
+
+		boolean contains(long value) {
+			int mask = table.length - 1;
+			for (int slot = slotOf(value, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+				if (table[slot] == value) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean remove(long value) {
+			int mask = table.length - 1;
+			int slot = slotOf(value, mask);
+			while (table[slot] != value) {
+				if (table[slot] == 0) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			// Backward shift deletion, keeps probe sequences unbroken
+			int hole = slot;
+			for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+				int home = slotOf(table[next], mask);
+				if (((next - home) & mask) >= ((next - hole) & mask)) {
+					table[hole] = table[next];
+					hole = next;
+				}
+			}
+			table[hole] = 0;
+			size--;
+			return true;
+		}
+
+		void resize() {
+			long[] old = table;
+			table = new long[old.length << 1];
+			size = 0;
+			for (long value : old) {
+				if (value != 0) {
+					add(value);
+				}
+			}
+		}
+
+		static int slotOf(long value, int mask) {
+			return (int) (value ^ (value >>> 32)) & mask;
+		}
+	}
+
+	public GenerationalFingerprintSet() {
+		super();
+	}
+
+	/**
+	 * @param existenceOnly
+	 *            existence-only mode configuration
+	 */
+	public GenerationalFingerprintSet(ExistenceOnlyConfiguration existenceOnly) {
+		super();
+		init(existenceOnly);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(configuration.getExistenceOnly());
+	}
+
+	void init(ExistenceOnlyConfiguration existenceOnly) {
+		int count = Math.max(2, existenceOnly.getGenerations());
+		this.generationDurationMs = Math.max(1, existenceOnly.getTtlMs() / (count - 1));
+		this.generations = new LongHashSet[count][];
+		for (int i = 0; i < count; i++) {
+			generations[i] = newGeneration();
+		}
+		this.nextRotationAtMs = instantProvider.provide().toEpochMilli() + generationDurationMs;
+		LOGGER.info("Existence-only fingerprint set initialized with {} generations of {} ms", count,
+		        generationDurationMs);
+	}
+
+	/**
+	 * @param fingerprint
+	 *            request fingerprint
+	 * @return true if given fingerprint was not in the set and has been added,
+	 *         false if it was already in the set
+	 */
+	public boolean addIfAbsent(long fingerprint) {
+		rotateIfNeeded();
+
+		long value = nonZero(fingerprint);
+		int segment = segmentOf(value);
+		Lock segmentLock = segmentLocks[segment];
+		rotationLock.readLock().lock();
+		segmentLock.lock();
+		try {
+			for (int i = 1; i < generations.length; i++) {
+				if (generations[i][segment].contains(value)) {
+					return false;
+				}
+			}
+			return generations[0][segment].add(value);
+		} finally {
+			segmentLock.unlock();
+			rotationLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param fingerprint
+	 *            request fingerprint
+	 * @return true if given fingerprint was in the set
+	 */
+	public boolean remove(long fingerprint) {
+		long value = nonZero(fingerprint);
+		int segment = segmentOf(value);
+		boolean removed = false;
+		Lock segmentLock = segmentLocks[segment];
+		rotationLock.readLock().lock();
+		segmentLock.lock();
+		try {
+			for (LongHashSet[] generation : generations) {
+				removed |= generation[segment].remove(value);
+			}
+		} finally {
+			segmentLock.unlock();
+			rotationLock.readLock().unlock();
+		}
+		return removed;
+	}
+
+	/**
+	 * @return number of fingerprints in the set
+	 */
+	public long size() {
+		long size = 0;
+		rotationLock.readLock().lock();
+		try {
+			for (int segment = 0; segment < SEGMENTS; segment++) {
+				segmentLocks[segment].lock();
+				try {
+					for (LongHashSet[] generation : generations) {
+						size += generation[segment].size;
+					}
+				} finally {
+					segmentLocks[segment].unlock();
+				}
+			}
+		} finally {
+			rotationLock.readLock().unlock();
+		}
+		return size;
+	}
+
+	void rotateIfNeeded() {
+		long now = instantProvider.provide().toEpochMilli();
+		if (now < nextRotationAtMs) {
+			return;
+		}
+
+		rotationLock.writeLock().lock();
+		try {
+			while (now >= nextRotationAtMs) {
+				System.arraycopy(generations, 0, generations, 1, generations.length - 1);
+				generations[0] = newGeneration();
+				nextRotationAtMs += generationDurationMs;
+			}
+			LOGGER.trace("Fingerprint generations rotated at {}", Instant.ofEpochMilli(now));
+		} finally {
+			rotationLock.writeLock().unlock();
+		}
+	}
+
+	static LongHashSet[] newGeneration() {
+		LongHashSet[] generation = new LongHashSet[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			generation[i] = new LongHashSet(SEGMENT_INITIAL_CAPACITY);
+		}
+		return generation;
+	}
+
+	static Lock[] newSegmentLocks() {
+		Lock[] locks = new Lock[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		return locks;
+	}
+
+	static int segmentOf(long value) {
+		return (int) (value >>> 60) & (SEGMENTS - 1);
+	}
+
+	static long nonZero(long fingerprint) {
+		return fingerprint == 0 ? 1 : fingerprint;
+	}
+
+	/**
+	 * @param requestHash
+	 *            hexadecimal request hash (see
+	 *            {@link com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect})
+	 * @return 64 bits fingerprint of given request hash
+	 */
+	public static long fingerprintOf(String requestHash) {
+		Objects.requireNonNull(requestHash);
+		if (requestHash.length() >= 16) {
+			try {
+				return Long.parseUnsignedLong(requestHash.substring(0, 16), 16);
+			} catch (NumberFormatException e) {
+				// Not an hexadecimal hash, fall back on hashing it
+			}
+		}
+		return ShardedIdempotentRepository.mix(ShardedIdempotentRepository.hash(requestHash));
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setInstantProvider(InstantProvider instantProvider) {
+		this.instantProvider = instantProvider;
+	}
+
+}
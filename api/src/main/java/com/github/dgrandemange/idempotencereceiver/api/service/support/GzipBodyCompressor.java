@@ -0,0 +1,42 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.util.StreamUtils;
+
+import com.github.dgrandemange.idempotencereceiver.api.service.BodyCompressor;
+
+/**
+ * Gzip compression, whose output can be sent as is to clients accepting the
+ * <code>gzip</code> content coding
+ */
+public class GzipBodyCompressor implements BodyCompressor {
+
+	public static final String ENCODING = "gzip";
+
+	@Override
+	public String getEncoding() {
+		return ENCODING;
+	}
+
+	@Override
+	public byte[] compress(byte[] body) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+		try (GZIPOutputStream gzos = new GZIPOutputStream(baos)) {
+			gzos.write(body);
+		}
+		return baos.toByteArray();
+	}
+
+	@Override
+	public byte[] decompress(byte[] compressed) throws IOException {
+		try (GZIPInputStream gzis = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return StreamUtils.copyToByteArray(gzis);
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.SingleFlightConfiguration;
+
+/**
+ * <p>
+ * Table of the first presentations being processed by this instance, so that
+ * concurrent duplicates can wait for their completion instead of polling the
+ * repository.
+ * </p>
+ *
+ * <p>
+ * Each first presentation is tracked by a completion future, keyed by its
+ * namespace and request hash. Registration relies on the lock free operations
+ * of a {@link ConcurrentHashMap}, sized after the expected concurrency. A
+ * future is only completed by the first presentation it has been created for,
+ * not by an older one whose lease has been taken over meanwhile.
+ * </p>
+ *
+ * <p>
+ * A future is completed with the finalized result once registered into the
+ * repository, or with null when the result is unregistered : waiters then fall
+ * back on the <code>202 Accepted</code> response.
+ * </p>
+ */
+public class InFlightRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InFlightRegistry.class);
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	private ConcurrentMap<String, InFlight> inFlight;
+
+	private long maxWaitMs;
+
+	private int maxEntries;
+
+	/**
+	 * Completion future of a first presentation, owned by its running result
+	 */
+	static class InFlight {
+		private final IdempotentMethodResult imr;
+		private final CompletableFuture<IdempotentMethodResult> future = new CompletableFuture<>();
+
+		InFlight(IdempotentMethodResult imr) {
+			this.imr = imr;
+		}
+
+		boolean isOwnedBy(IdempotentMethodResult other) {
+			return Objects.equals(imr.getStartedAt(), other.getStartedAt());
+		}
+	}
+
+	public InFlightRegistry() {
+		super();
+	}
+
+	/**
+	 * @param singleFlight
+	 *            single-flight configuration
+	 */
+	public InFlightRegistry(SingleFlightConfiguration singleFlight) {
+		super();
+		init(singleFlight);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(configuration.getSingleFlight());
+	}
+
+	void init(SingleFlightConfiguration singleFlight) {
+		int expectedConcurrency = Math.max(16, singleFlight.getExpectedConcurrency());
+		inFlight = new ConcurrentHashMap<>(expectedConcurrency, 0.75f, expectedConcurrency);
+		maxWaitMs = singleFlight.getMaxWaitMs();
+		maxEntries = singleFlight.getMaxEntries();
+		LOGGER.info("In-flight registry initialized : {}", singleFlight);
+	}
+
+	/**
+	 * Tracks a first presentation whose running result has been registered
+	 *
+	 * @param imr
+	 *            running idempotent method result
+	 * @return false when too many first presentations are already tracked
+	 */
+	public boolean begin(IdempotentMethodResult imr) {
+		if (inFlight.size() >= maxEntries) {
+			LOGGER.debug("In-flight registry is full : request identified by key '{}' won't be coalesced",
+			        imr.getIdempotencyKey());
+			return false;
+		}
+		InFlight previous = inFlight.put(keyOf(imr), new InFlight(imr));
+		if (Objects.nonNull(previous)) {
+			// Left over by a first presentation which was never finalized, or whose
+			// lease has been taken over
+			previous.future.complete(null);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops tracking a first presentation, releasing its waiting duplicates
+	 *
+	 * @param imr
+	 *            running idempotent method result
+	 * @param finalImr
+	 *            finalized result, as registered into the repository, null when
+	 *            the result has been unregistered
+	 */
+	public void complete(IdempotentMethodResult imr, IdempotentMethodResult finalImr) {
+		String key = keyOf(imr);
+		InFlight current = inFlight.get(key);
+		if (Objects.nonNull(current) && current.isOwnedBy(imr) && inFlight.remove(key, current)) {
+			current.future.complete(finalImr);
+		}
+	}
+
+	/**
+	 * Waits at most the configured duration for the completion of a first
+	 * presentation processed by this instance
+	 *
+	 * @param imr
+	 *            running idempotent method result, as found in the repository
+	 * @return finalized result, null if the first presentation is not processed
+	 *         by this instance, has been unregistered or is still running
+	 */
+	public IdempotentMethodResult await(IdempotentMethodResult imr) {
+		InFlight current = inFlight.get(keyOf(imr));
+		if (Objects.isNull(current)) {
+			return null;
+		}
+
+		LOGGER.trace("Waiting for in-flight first presentation identified by key '{}'", imr.getIdempotencyKey());
+		try {
+			return current.future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			LOGGER.trace("First presentation identified by key '{}' still running after {} ms",
+			        imr.getIdempotencyKey(), maxWaitMs);
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return number of first presentations currently tracked
+	 */
+	public int size() {
+		return inFlight.size();
+	}
+
+	static String keyOf(IdempotentMethodResult imr) {
+		return keyOf(imr.getNamespace(), imr.getIdempotencyKey());
+	}
+
+	/**
+	 * @return composite key, the namespace being prefixed by its length so that
+	 *         no namespace and key pair can collide with another one
+	 */
+	static String keyOf(String namespace, String idempotencyKey) {
+		return Objects.isNull(namespace) ? ':' + idempotencyKey
+		        : namespace.length() + ":" + namespace + ':' + idempotencyKey;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotentRepositoryException;
+import com.github.dgrandemange.idempotencereceiver.api.exception.LatencyBudgetExhaustedException;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.LatencyBudgetConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+/**
+ * <p>
+ * Latency budget of a request (see {@link LatencyBudgetConfiguration}) : the
+ * repository calls made for the request go through the asynchronous repository
+ * path, and are waited for at most the remaining budget.
+ * </p>
+ *
+ * <p>
+ * Only the time spent waiting for the repository is charged, not the time
+ * spent in the handler method. A call which times out is cancelled.
+ * </p>
+ */
+public class LatencyBudget {
+
+	private final long budgetNanos;
+
+	private final AtomicLong spentNanos = new AtomicLong();
+
+	/**
+	 * @param budgetMs
+	 *            cumulated duration in milliseconds of the repository calls
+	 */
+	public LatencyBudget(long budgetMs) {
+		super();
+		this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMs);
+	}
+
+	/**
+	 * @param repository
+	 *            repository to look the result up in
+	 * @param namespace
+	 *            namespace of the result, null for the default one
+	 * @param idempotencyKey
+	 *            idempotency key of the result
+	 * @return result matching given idempotencyKey, null if no match
+	 * @throws LatencyBudgetExhaustedException
+	 *             if the budget is exhausted before the lookup completes
+	 * @see IdempotentRepository#findAsync(String, String)
+	 */
+	public IdempotentMethodResult find(IdempotentRepository repository, String namespace, String idempotencyKey) {
+		return call(() -> repository.findAsync(namespace, idempotencyKey));
+	}
+
+	/**
+	 * @param repository
+	 *            repository to register the result into
+	 * @param imr
+	 *            result to register
+	 * @return registered result
+	 * @throws LatencyBudgetExhaustedException
+	 *             if the budget is exhausted before the registration completes
+	 * @see IdempotentRepository#registerAsync(IdempotentMethodResult)
+	 */
+	public IdempotentMethodResult register(IdempotentRepository repository, IdempotentMethodResult imr) {
+		return call(() -> repository.registerAsync(imr));
+	}
+
+	/**
+	 * @param repository
+	 *            repository to unregister the result from
+	 * @param namespace
+	 *            namespace of the result, null for the default one
+	 * @param idempotencyKey
+	 *            idempotency key of the result
+	 * @return unregistered result
+	 * @throws LatencyBudgetExhaustedException
+	 *             if the budget is exhausted before the unregistration completes
+	 * @see IdempotentRepository#unregisterAsync(String, String)
+	 */
+	public IdempotentMethodResult unregister(IdempotentRepository repository, String namespace,
+	        String idempotencyKey) {
+		return call(() -> repository.unregisterAsync(namespace, idempotencyKey));
+	}
+
+	/**
+	 * @param operation
+	 *            supplier issuing an asynchronous repository call
+	 * @return result of the repository call
+	 * @throws LatencyBudgetExhaustedException
+	 *             if the budget is exhausted before the call completes, the call
+	 *             not even being issued when already exhausted
+	 * @throws IdempotentRepositoryException
+	 *             if the repository call fails
+	 */
+	<T> T call(Supplier<CompletableFuture<T>> operation) {
+		long remainingNanos = getRemainingNanos();
+		if (remainingNanos <= 0) {
+			throw exhausted();
+		}
+
+		long start = System.nanoTime();
+		CompletableFuture<T> future = operation.get();
+		try {
+			return future.get(remainingNanos, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw exhausted();
+		} catch (ExecutionException e) {
+			throw ResilientIdempotentRepository.toRepositoryException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IdempotentRepositoryException(e);
+		} finally {
+			spentNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	LatencyBudgetExhaustedException exhausted() {
+		return new LatencyBudgetExhaustedException(
+		        String.format("latency budget of %d ms exhausted", TimeUnit.NANOSECONDS.toMillis(budgetNanos)));
+	}
+
+	/**
+	 * @return remaining budget in nanoseconds, 0 once exhausted
+	 */
+	public long getRemainingNanos() {
+		return Math.max(0, budgetNanos - spentNanos.get());
+	}
+
+	/**
+	 * @return true if the budget has been exhausted
+	 */
+	public boolean isExhausted() {
+		return getRemainingNanos() == 0;
+	}
+
+}
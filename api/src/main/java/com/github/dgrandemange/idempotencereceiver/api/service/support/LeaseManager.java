@@ -0,0 +1,237 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.LeaseConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+/**
+ * <p>
+ * Holds the leases of the running results registered by this instance.
+ * </p>
+ *
+ * <p>
+ * A leased running result is registered with the lease duration as lifetime.
+ * Held leases are renewed in a single batch (see
+ * {@link IdempotentRepository#registerAll(java.util.Collection)}) at the
+ * configured interval, and released just before their result gets finalized
+ * or unregistered. Leases still held on shutdown are released in bulk, their
+ * results being unregistered.
+ * </p>
+ *
+ * <p>
+ * Releasing a lease waits for a renewal in progress, so that a renewal never
+ * overwrites a finalized result with a running one.
+ * </p>
+ */
+public class LeaseManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LeaseManager.class);
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Autowired
+	private IdempotentRepository repository;
+
+	private InstantProviderImpl instantProvider = new InstantProviderImpl();
+
+	private final ConcurrentMap<String, IdempotentMethodResult> leases = new ConcurrentHashMap<>();
+
+	/**
+	 * Shared by the request threads holding and releasing leases, exclusive for
+	 * the renewals
+	 */
+	private final ReadWriteLock renewalLock = new ReentrantReadWriteLock();
+
+	private long durationMs;
+
+	private ScheduledExecutorService renewExecutor;
+
+	public LeaseManager() {
+		super();
+	}
+
+	/**
+	 * @param lease
+	 *            lease configuration
+	 * @param repository
+	 *            repository leased results are registered into
+	 */
+	public LeaseManager(LeaseConfiguration lease, IdempotentRepository repository) {
+		super();
+		this.repository = repository;
+		init(lease);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		LeaseConfiguration lease = configuration.getLease();
+		init(lease);
+
+		renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "idempotence-receiver-lease-renewal");
+			thread.setDaemon(true);
+			return thread;
+		});
+		renewExecutor.scheduleWithFixedDelay(this::renew, lease.getRenewIntervalMs(), lease.getRenewIntervalMs(),
+		        TimeUnit.MILLISECONDS);
+	}
+
+	void init(LeaseConfiguration lease) {
+		durationMs = lease.getDurationMs();
+		LOGGER.info("Lease manager initialized : {}", lease);
+	}
+
+	/**
+	 * Releases the leases still held, unregistering their running results
+	 */
+	@PreDestroy
+	void preDestroy() {
+		if (Objects.nonNull(renewExecutor)) {
+			renewExecutor.shutdownNow();
+		}
+
+		List<IdempotentMethodResult> held;
+		renewalLock.writeLock().lock();
+		try {
+			held = new ArrayList<>(leases.values());
+			leases.clear();
+		} finally {
+			renewalLock.writeLock().unlock();
+		}
+
+		if (held.isEmpty()) {
+			return;
+		}
+		LOGGER.info("Releasing {} running result(s) on shutdown", held.size());
+		try {
+			repository.unregisterAll(held);
+		} catch (Exception e) {
+			LOGGER.warn("Unable to release running results on shutdown, they will expire with their lease. Cause : {}",
+			        e.getMessage());
+		}
+	}
+
+	/**
+	 * @param imr
+	 *            running idempotent method result
+	 * @return copy of given result leased from now on, to be registered instead
+	 *         of it
+	 */
+	public IdempotentMethodResult lease(IdempotentMethodResult imr) {
+		return IdempotentMethodResult.builder().from(imr).withTtlMs(durationMs)
+		        .withLeaseExpiresAt(instantProvider.provide().plusMillis(durationMs)).build();
+	}
+
+	/**
+	 * Holds the lease of a running result once it has been registered, so that it
+	 * gets renewed
+	 *
+	 * @param leasedImr
+	 *            leased running result, as returned by {@link #lease}
+	 */
+	public void hold(IdempotentMethodResult leasedImr) {
+		renewalLock.readLock().lock();
+		try {
+			leases.put(InFlightRegistry.keyOf(leasedImr), leasedImr);
+		} finally {
+			renewalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Releases the lease of a running result, to be called before the result
+	 * gets finalized or unregistered
+	 *
+	 * @param imr
+	 *            running result
+	 */
+	public void release(IdempotentMethodResult imr) {
+		renewalLock.readLock().lock();
+		try {
+			leases.remove(InFlightRegistry.keyOf(imr));
+		} finally {
+			renewalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result found in the repository
+	 * @return true if given result is running and its lease has expired
+	 */
+	public boolean isExpired(IdempotentMethodResult imr) {
+		return ProcessingState.RUNNING.equals(imr.getState()) && Objects.nonNull(imr.getLeaseExpiresAt())
+		        && imr.getLeaseExpiresAt().isBefore(instantProvider.provide());
+	}
+
+	/**
+	 * Renews all held leases in a single batch
+	 */
+	void renew() {
+		renewalLock.writeLock().lock();
+		try {
+			if (leases.isEmpty()) {
+				return;
+			}
+
+			Instant leaseExpiresAt = instantProvider.provide().plusMillis(durationMs);
+			List<IdempotentMethodResult> renewed = new ArrayList<>(leases.size());
+			for (Entry<String, IdempotentMethodResult> entry : leases.entrySet()) {
+				IdempotentMethodResult imr = IdempotentMethodResult.builder().from(entry.getValue())
+				        .withLeaseExpiresAt(leaseExpiresAt).build();
+				entry.setValue(imr);
+				renewed.add(imr);
+			}
+
+			repository.registerAll(renewed);
+			LOGGER.trace("{} lease(s) renewed until {}", renewed.size(), leaseExpiresAt);
+		} catch (Exception e) {
+			LOGGER.warn("Unable to renew leases. Cause : {}", e.getMessage());
+		} finally {
+			renewalLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of leases currently held
+	 */
+	public int size() {
+		return leases.size();
+	}
+
+	public void setInstantProvider(InstantProviderImpl instantProvider) {
+		this.instantProvider = instantProvider;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setRepository(IdempotentRepository repository) {
+		this.repository = repository;
+	}
+
+}
@@ -0,0 +1,355 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.DegradationConfiguration.LocalFallbackConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.DegradationConfiguration.Policy;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+/**
+ * <p>
+ * Bounded local store of the {@link Policy#LOCAL_FALLBACK} degradation policy.
+ * </p>
+ *
+ * <p>
+ * Once activated by a repository failure, the requests of the endpoints
+ * relying on this policy are looked up and claimed locally, without calling
+ * the repository. Their completed results, as well as the completed results
+ * which could not be registered in the repository, are held locally until
+ * replayed to the repository by the reconciler thread. The store gets
+ * deactivated once the repository answers again.
+ * </p>
+ *
+ * <p>
+ * A completed result is only replayed if the repository holds no completed
+ * result under its key : a result completed elsewhere meanwhile is kept.
+ * </p>
+ */
+public class LocalFallbackStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LocalFallbackStore.class);
+
+	/**
+	 * Key looked up to check whether the repository answers again
+	 */
+	static final String PROBE_KEY = "idempotence-receiver-local-fallback-probe";
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Autowired
+	private IdempotentRepository repository;
+
+	private final ConcurrentMap<String, IdempotentMethodResult> entries = new ConcurrentHashMap<>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final Queue<IdempotentMethodResult> unregistrations = new ConcurrentLinkedQueue<>();
+
+	private LocalFallbackConfiguration localFallback;
+
+	private Thread reconciler;
+
+	private final Lock reconcilerLock = new ReentrantLock();
+
+	/**
+	 * Signalled on shutdown
+	 */
+	private final Condition stopped = reconcilerLock.newCondition();
+
+	private volatile boolean active;
+
+	private volatile boolean running;
+
+	public LocalFallbackStore() {
+		super();
+	}
+
+	/**
+	 * @param localFallback
+	 *            local fallback store configuration
+	 * @param repository
+	 *            repository the results held locally are replayed to
+	 */
+	public LocalFallbackStore(LocalFallbackConfiguration localFallback, IdempotentRepository repository) {
+		this(localFallback, repository, true);
+	}
+
+	/**
+	 * @param startReconciler
+	 *            false to leave the replays to explicit {@link #reconcile()}
+	 *            calls
+	 */
+	LocalFallbackStore(LocalFallbackConfiguration localFallback, IdempotentRepository repository,
+	        boolean startReconciler) {
+		super();
+		this.repository = repository;
+		init(localFallback, startReconciler);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(configuration.getDegradation().getLocalFallback(), true);
+	}
+
+	void init(LocalFallbackConfiguration localFallback, boolean startReconciler) {
+		this.localFallback = localFallback;
+		running = true;
+		if (startReconciler) {
+			reconciler = new Thread(this::runReconciler, "idempotence-receiver-local-fallback");
+			reconciler.setDaemon(true);
+			reconciler.start();
+		}
+		LOGGER.info("Local fallback store initialized : {}", localFallback);
+	}
+
+	/**
+	 * Stops the reconciler thread, the results still held locally being lost
+	 */
+	@PreDestroy
+	public void preDestroy() {
+		running = false;
+		reconcilerLock.lock();
+		try {
+			stopped.signalAll();
+		} finally {
+			reconcilerLock.unlock();
+		}
+		if (size.get() > 0) {
+			LOGGER.warn("{} result(s) held locally not replayed to the repository on shutdown", size.get());
+		}
+	}
+
+	/**
+	 * @return true while the repository is considered unavailable
+	 */
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Considers the repository unavailable until it answers again
+	 *
+	 * @param cause
+	 *            repository failure, null if unknown
+	 */
+	public void activate(Exception cause) {
+		if (!active) {
+			active = true;
+			LOGGER.warn("Idempotent repository unavailable : falling back on local store. Cause : {}",
+			        Objects.isNull(cause) ? null : cause.getMessage());
+		}
+	}
+
+	/**
+	 * @param namespace
+	 *            namespace the result is attached to, null for the common
+	 *            namespace
+	 * @param idempotencyKey
+	 *            Idempotent method result identifier (key)
+	 * @return result held locally, null if none
+	 */
+	public IdempotentMethodResult find(String namespace, String idempotencyKey) {
+		return entries.get(InFlightRegistry.keyOf(namespace, idempotencyKey));
+	}
+
+	/**
+	 * @param imr
+	 *            running result of a first presentation
+	 * @return true if claimed locally, false if a result is already held under
+	 *         its key or the store is full
+	 */
+	public boolean claim(IdempotentMethodResult imr) {
+		if (!reserve()) {
+			return false;
+		}
+		if (Objects.nonNull(entries.putIfAbsent(InFlightRegistry.keyOf(imr), imr))) {
+			size.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param imr
+	 *            completed result
+	 * @return true if its request was claimed locally, the completed result then
+	 *         being held locally until replayed
+	 */
+	public boolean complete(IdempotentMethodResult imr) {
+		String key = InFlightRegistry.keyOf(imr);
+		IdempotentMethodResult claimed = entries.get(key);
+		return Objects.nonNull(claimed) && ProcessingState.RUNNING.equals(claimed.getState())
+		        && entries.replace(key, claimed, imr);
+	}
+
+	/**
+	 * Activates the store (see {@link #activate(Exception)}), and holds given
+	 * result locally
+	 *
+	 * @param imr
+	 *            completed result which could not be registered in the repository
+	 * @param cause
+	 *            repository failure
+	 * @return true if held locally until replayed, false if the store is full
+	 */
+	public boolean keep(IdempotentMethodResult imr, Exception cause) {
+		activate(cause);
+		if (complete(imr)) {
+			return true;
+		}
+		if (!reserve()) {
+			LOGGER.warn("Local fallback store full : result identified by key '{}' won't be replayed",
+			        imr.getIdempotencyKey());
+			return false;
+		}
+		if (Objects.nonNull(entries.put(InFlightRegistry.keyOf(imr), imr))) {
+			size.decrementAndGet();
+		}
+		return true;
+	}
+
+	/**
+	 * @param imr
+	 *            running result whose processing has failed
+	 * @return true if its request was claimed locally, the claim then being
+	 *         released
+	 */
+	public boolean release(IdempotentMethodResult imr) {
+		if (entries.remove(InFlightRegistry.keyOf(imr), imr)) {
+			size.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param imr
+	 *            running result which could not be unregistered from the
+	 *            repository, unregistered on the next replay
+	 */
+	public void unregisterLater(IdempotentMethodResult imr) {
+		if (size.get() + unregistrations.size() < localFallback.getMaxEntries()) {
+			unregistrations.offer(imr);
+		}
+	}
+
+	/**
+	 * @return number of results held locally
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	boolean reserve() {
+		if (size.incrementAndGet() > localFallback.getMaxEntries()) {
+			size.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	void runReconciler() {
+		long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, localFallback.getReconcileIntervalMs()));
+		try {
+			while (running) {
+				awaitInterval(intervalNanos);
+				if (running && (active || size.get() > 0 || !unregistrations.isEmpty())) {
+					reconcile();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until the reconcile interval has elapsed, or the store is shut down.
+	 * Spurious and early wake ups are ignored, the deadline being checked again.
+	 */
+	void awaitInterval(long intervalNanos) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + intervalNanos;
+		reconcilerLock.lock();
+		try {
+			long remainingNanos;
+			while (running && (remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+				stopped.awaitNanos(remainingNanos);
+			}
+		} finally {
+			reconcilerLock.unlock();
+		}
+	}
+
+	/**
+	 * Replays the results held locally to the repository, and deactivates the
+	 * store once the repository answers again. Stops on the first repository
+	 * failure, to be resumed on the next attempt.
+	 */
+	void reconcile() {
+		try {
+			IdempotentMethodResult unregistration;
+			while (Objects.nonNull(unregistration = unregistrations.peek())) {
+				repository.unregister(unregistration.getNamespace(), unregistration.getIdempotencyKey());
+				unregistrations.poll();
+			}
+
+			int replayed = 0;
+			for (Map.Entry<String, IdempotentMethodResult> entry : entries.entrySet()) {
+				IdempotentMethodResult imr = entry.getValue();
+				if (!ProcessingState.DONE.equals(imr.getState())) {
+					// Still processed locally
+					continue;
+				}
+				IdempotentMethodResult current = repository.find(imr.getNamespace(), imr.getIdempotencyKey());
+				if (Objects.isNull(current) || !ProcessingState.DONE.equals(current.getState())) {
+					repository.register(imr.getIdempotencyKey(), imr);
+					replayed++;
+				} else {
+					LOGGER.trace("Result identified by key '{}' completed elsewhere meanwhile : keeping {}",
+					        imr.getIdempotencyKey(), current);
+				}
+				if (entries.remove(entry.getKey(), imr)) {
+					size.decrementAndGet();
+				}
+			}
+
+			if (active) {
+				repository.find(null, PROBE_KEY);
+				active = false;
+				LOGGER.info("Idempotent repository available again : {} result(s) replayed, {} still processed locally",
+				        replayed, size.get());
+			}
+		} catch (Exception e) {
+			LOGGER.debug("Idempotent repository still unavailable. Cause : {}", e.getMessage());
+		}
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setRepository(IdempotentRepository repository) {
+		this.repository = repository;
+	}
+
+}
@@ -0,0 +1,234 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.ByteArrayHttpInputMessage;
+
+/**
+ * <p>
+ * Registry of the (return type, message converter) couples of every
+ * {@link Idempotent} handler method, built at startup.
+ * </p>
+ *
+ * <p>
+ * Each couple is given a compact identifier, stored in an idempotent method
+ * result instead of the return type and converter class names : the body can
+ * then be read back without any class lookup nor converters list scan.
+ * </p>
+ *
+ * <p>
+ * Identifiers are derived from the class names, so that every application
+ * instance assigns the same identifier to the same couple. An identifier that
+ * is unknown to this registry (e.g. written by another application version
+ * during a rolling deploy) is resolved to null, the caller then falling back
+ * on its regular handling of an unreadable body.
+ * </p>
+ */
+public class ReplayCodecRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReplayCodecRegistry.class);
+
+	@Autowired
+	private RequestMappingHandlerAdapter handlerAdapter;
+
+	@Autowired(required = false)
+	private RequestMappingHandlerMapping handlerMapping;
+
+	private Map<Integer, ReplayCodec> codecs = Collections.emptyMap();
+
+	private Map<Class<?>, Map<Class<?>, Integer>> ids = Collections.emptyMap();
+
+	public ReplayCodecRegistry() {
+		super();
+	}
+
+	/**
+	 * @param messageConverters
+	 *            available message converters
+	 * @param handlerMethods
+	 *            handler methods, only {@link Idempotent} ones being registered
+	 */
+	public ReplayCodecRegistry(List<HttpMessageConverter<?>> messageConverters,
+	        Collection<HandlerMethod> handlerMethods) {
+		super();
+		init(messageConverters, handlerMethods);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(handlerAdapter.getMessageConverters(), Objects.isNull(handlerMapping) ? Collections.emptyList()
+		        : handlerMapping.getHandlerMethods().values());
+	}
+
+	void init(List<HttpMessageConverter<?>> messageConverters, Collection<HandlerMethod> handlerMethods) {
+		Map<Integer, ReplayCodec> newCodecs = new HashMap<>();
+		Set<Integer> collisions = new HashSet<>();
+
+		for (HandlerMethod handlerMethod : handlerMethods) {
+			Method method = handlerMethod.getMethod();
+			if (!AnnotatedElementUtils.hasAnnotation(method, Idempotent.class)) {
+				continue;
+			}
+
+			Class<?> bodyType = resolveBodyType(method);
+			if (Objects.isNull(bodyType)) {
+				continue;
+			}
+
+			for (HttpMessageConverter<?> converter : messageConverters) {
+				if (!converter.canWrite(bodyType, null) || !converter.canRead(bodyType, null)) {
+					continue;
+				}
+				int id = idOf(bodyType.getName(), converter.getClass().getName());
+				ReplayCodec registered = newCodecs.get(id);
+				if (Objects.isNull(registered)) {
+					if (!collisions.contains(id)) {
+						newCodecs.put(id, new ReplayCodec(id, bodyType, converter));
+					}
+				} else if (!registered.matches(bodyType, converter.getClass())) {
+					// Colliding couples keep relying on class names
+					LOGGER.warn("Replay codec id {} shared by {} and {} : not registered", id, registered,
+					        new ReplayCodec(id, bodyType, converter));
+					newCodecs.remove(id);
+					collisions.add(id);
+				}
+			}
+		}
+
+		Map<Class<?>, Map<Class<?>, Integer>> newIds = new HashMap<>();
+		for (ReplayCodec codec : newCodecs.values()) {
+			newIds.computeIfAbsent(codec.getReturnType(), k -> new HashMap<>()).put(codec.getConverter().getClass(),
+			        codec.getId());
+		}
+
+		LOGGER.debug("{} replay codecs registered", newCodecs.size());
+		this.ids = newIds;
+		this.codecs = newCodecs;
+	}
+
+	/**
+	 * @return type of the body written for given handler method, unwrapped from
+	 *         an {@link HttpEntity} return type ; null when unresolvable
+	 */
+	Class<?> resolveBodyType(Method method) {
+		ResolvableType returnType = ResolvableType.forMethodReturnType(method);
+		if (HttpEntity.class.isAssignableFrom(returnType.toClass())) {
+			return returnType.as(HttpEntity.class).getGeneric(0).resolve();
+		}
+		Class<?> bodyType = returnType.resolve();
+		return (Objects.isNull(bodyType) || void.class.equals(bodyType)) ? null : bodyType;
+	}
+
+	/**
+	 * @return identifier derived from given class names, never 0
+	 */
+	static int idOf(String returnTypeName, String converterTypeName) {
+		int id = (returnTypeName + '|' + converterTypeName).hashCode() & Integer.MAX_VALUE;
+		return (id == 0) ? 1 : id;
+	}
+
+	/**
+	 * @param returnType
+	 *            type of the body
+	 * @param converterType
+	 *            type of the converter that wrote the body
+	 * @return identifier of given couple, 0 if not registered
+	 */
+	public int idOf(Class<?> returnType, Class<?> converterType) {
+		Map<Class<?>, Integer> byConverter = ids.get(returnType);
+		Integer id = Objects.isNull(byConverter) ? null : byConverter.get(converterType);
+		return Objects.isNull(id) ? 0 : id;
+	}
+
+	/**
+	 * @param id
+	 *            replay codec identifier
+	 * @return codec of given identifier, null if unknown
+	 */
+	public ReplayCodec get(int id) {
+		return codecs.get(id);
+	}
+
+	/**
+	 * (return type, message converter) couple able to read a stored body back
+	 */
+	public static class ReplayCodec {
+
+		private final int id;
+
+		private final Class<?> returnType;
+
+		private final HttpMessageConverter<Object> converter;
+
+		@SuppressWarnings("unchecked")
+		ReplayCodec(int id, Class<?> returnType, HttpMessageConverter<?> converter) {
+			this.id = id;
+			this.returnType = returnType;
+			this.converter = (HttpMessageConverter<Object>) converter;
+		}
+
+		/**
+		 * @param body
+		 *            plain body bytes
+		 * @return body read back
+		 * @throws IOException
+		 *             if the body can't be read
+		 */
+		@SuppressWarnings("unchecked")
+		public Object read(byte[] body) throws IOException {
+			try {
+				return converter.read((Class<Object>) returnType, new ByteArrayHttpInputMessage(body));
+			} catch (HttpMessageNotReadableException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+
+		boolean matches(Class<?> returnType, Class<?> converterType) {
+			return this.returnType.equals(returnType) && this.converter.getClass().equals(converterType);
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public Class<?> getReturnType() {
+			return returnType;
+		}
+
+		public HttpMessageConverter<Object> getConverter() {
+			return converter;
+		}
+
+		@Override
+		public String toString() {
+			return "ReplayCodec [id=" + id + ", returnType=" + returnType.getName() + ", converter="
+			        + converter.getClass().getName() + "]";
+		}
+
+	}
+
+}
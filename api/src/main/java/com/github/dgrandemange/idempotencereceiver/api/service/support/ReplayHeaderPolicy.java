@@ -0,0 +1,135 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.ReplayHeadersConfiguration;
+
+/**
+ * Selects the response headers kept in an idempotent method result, according
+ * to a {@link ReplayHeadersConfiguration}
+ */
+public class ReplayHeaderPolicy {
+
+	static final int MAX_CACHED_DECISIONS = 1024;
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	private List<String> include = Collections.emptyList();
+
+	private List<String> exclude = Collections.emptyList();
+
+	private final ConcurrentMap<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+	public ReplayHeaderPolicy() {
+		super();
+	}
+
+	/**
+	 * @param replayHeaders
+	 *            replayed headers configuration
+	 */
+	public ReplayHeaderPolicy(ReplayHeadersConfiguration replayHeaders) {
+		super();
+		init(replayHeaders);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(configuration.getReplayHeaders());
+	}
+
+	void init(ReplayHeadersConfiguration replayHeaders) {
+		include = normalize(replayHeaders.getInclude());
+		exclude = normalize(replayHeaders.getExclude());
+		decisions.clear();
+	}
+
+	/**
+	 * @param name
+	 *            response header name
+	 * @return true if given header should be replayed
+	 */
+	public boolean isReplayable(String name) {
+		Boolean decision = decisions.get(name);
+		if (Objects.isNull(decision)) {
+			String lowerCaseName = name.toLowerCase(Locale.ROOT);
+			decision = (include.isEmpty() || matches(include, lowerCaseName)) && !matches(exclude, lowerCaseName);
+			if (decisions.size() < MAX_CACHED_DECISIONS) {
+				decisions.put(name, decision);
+			}
+		}
+		return decision;
+	}
+
+	/**
+	 * @param headers
+	 *            response headers
+	 * @return given headers if all of them should be replayed, otherwise a copy
+	 *         of given headers restricted to the ones to replay
+	 */
+	public HttpHeaders filter(HttpHeaders headers) {
+		if (Objects.isNull(headers)) {
+			return null;
+		}
+
+		boolean allReplayable = true;
+		for (String name : headers.keySet()) {
+			if (!isReplayable(name)) {
+				allReplayable = false;
+				break;
+			}
+		}
+		if (allReplayable) {
+			return headers;
+		}
+
+		HttpHeaders filtered = new HttpHeaders();
+		for (Entry<String, List<String>> header : headers.entrySet()) {
+			if (isReplayable(header.getKey())) {
+				filtered.put(header.getKey(), header.getValue());
+			}
+		}
+		return filtered;
+	}
+
+	static boolean matches(List<String> patterns, String lowerCaseName) {
+		for (String pattern : patterns) {
+			if (pattern.endsWith("*") ? lowerCaseName.startsWith(pattern.substring(0, pattern.length() - 1))
+			        : lowerCaseName.equals(pattern)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static List<String> normalize(List<String> patterns) {
+		List<String> normalized = new ArrayList<>();
+		if (Objects.nonNull(patterns)) {
+			for (String pattern : patterns) {
+				if (Objects.nonNull(pattern) && !pattern.trim().isEmpty()) {
+					normalized.add(pattern.trim().toLowerCase(Locale.ROOT));
+				}
+			}
+		}
+		return normalized;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+}
@@ -1,7 +1,9 @@
 package com.github.dgrandemange.idempotencereceiver.api.service.support;
 
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.PostConstruct;
 
@@ -10,6 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.RepositoryChangeNotifier;
 
 /**
  * A basic repository using an in memory weak hash map.<br>
@@ -18,7 +21,7 @@ import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentReposit
  * So, below implementation is fully dependent on garbage collection policy.<br>
  * <b>For demo only! Do not use in production environment !</b>
  */
-public class RepositoryInMemoryGcManagedImpl implements IdempotentRepository {
+public class RepositoryInMemoryGcManagedImpl implements IdempotentRepository, RepositoryChangeNotifier {
 
 	public static final String REPOSITORY_TYPE = "internal-memory";
 	
@@ -35,17 +38,22 @@ public class RepositoryInMemoryGcManagedImpl implements IdempotentRepository {
 
 	Map<String, IdempotentMethodResult> map = new WeakHashMap<>();
 
+	List<RepositoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+
 	/**
 	 * @see <a href="https://stackoverflow.com/a/30004013">GC doesnt remove objects
 	 *      from weakhashmap</a>
 	 */
 	public IdempotentMethodResult register(String idempotencyKey, IdempotentMethodResult imr) {
 		map.put(new String(idempotencyKey.getBytes()), imr);
+		fireChange(idempotencyKey);
 		return imr;
 	}
 
 	public IdempotentMethodResult unregister(String idempotencyKey) {
-		return map.remove(idempotencyKey);
+		IdempotentMethodResult removed = map.remove(idempotencyKey);
+		fireChange(idempotencyKey);
+		return removed;
 	}
 
 	public IdempotentMethodResult find(String idempotencyKey) {
@@ -56,6 +64,17 @@ public class RepositoryInMemoryGcManagedImpl implements IdempotentRepository {
 		map.clear();
 	}
 
+	@Override
+	public void addChangeListener(RepositoryChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	void fireChange(String idempotencyKey) {
+		for (RepositoryChangeListener listener : listeners) {
+			listener.onChange(idempotencyKey);
+		}
+	}
+
 	/**
 	 * @return {@link #REPOSITORY_TYPE}
 	 * @see com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository#getType()
@@ -1,6 +1,24 @@
 package com.github.dgrandemange.idempotencereceiver.api.service.support;
 
 import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -10,78 +28,537 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotentRepositoryException;
+import com.github.dgrandemange.idempotencereceiver.api.exception.RepositoryOverloadedException;
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration;
 import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration.CircuitBreakerConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration.HedgingConfiguration;
 import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration.RetryConfiguration;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
 
 import net.jodah.failsafe.CircuitBreaker;
 import net.jodah.failsafe.Failsafe;
 import net.jodah.failsafe.FailsafeException;
+import net.jodah.failsafe.FailsafeExecutor;
 import net.jodah.failsafe.RetryPolicy;
+import net.jodah.failsafe.function.CheckedRunnable;
+import net.jodah.failsafe.function.CheckedSupplier;
+import net.jodah.failsafe.util.concurrent.Scheduler;
 
+/**
+ * <p>
+ * Guards a repository with retry and circuit breaker policies, composed once
+ * into executors shared by all calls.
+ * </p>
+ *
+ * <p>
+ * Lookups go through {@link IdempotentRepository#findAsync(String, String)} :
+ * their retries are scheduled on a scheduler shared by all resilient
+ * repositories, instead of sleeping on the request thread, and are optionally
+ * hedged (see {@link HedgingConfiguration}). Registrations and
+ * unregistrations go through the asynchronous path as well, their retries
+ * being scheduled on the same scheduler.
+ * </p>
+ *
+ * <p>
+ * Concurrent calls are optionally bounded by an adaptive limit (see
+ * {@link AdaptiveConcurrencyLimiter}) : a call exceeding it fails fast with a
+ * {@link RepositoryOverloadedException}, before reaching the retry and circuit
+ * breaker policies, and is handled by callers as any repository failure.
+ * </p>
+ *
+ * <p>
+ * The asynchronous executions run either on a pool of platform threads, or on
+ * one virtual thread each (see {@link ExecutionConfiguration}).
+ * </p>
+ */
 public class ResilientIdempotentRepository implements IdempotentRepository {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ResilientIdempotentRepository.class);
 
+	/**
+	 * Number of hedging delay updates after which the lookup latencies measured
+	 * so far are forgotten
+	 */
+	static final int LOOKUP_LATENCY_WINDOWS = 10;
+
+	/**
+	 * Scheduler of the asynchronous executions, created on first use
+	 */
+	static class SharedScheduler {
+		static final ScheduledExecutorService INSTANCE;
+
+		static {
+			AtomicInteger threadCount = new AtomicInteger();
+			INSTANCE = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+				Thread thread = new Thread(r, "idempotence-receiver-resiliency-" + threadCount.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Scheduler of the asynchronous executions on virtual threads, created on
+	 * first use : each execution runs on a new virtual thread, a delayed one
+	 * (i.e. a retry) being handed off to it by a single timer thread
+	 */
+	static class VirtualThreadScheduler implements Scheduler {
+		static final VirtualThreadScheduler INSTANCE = new VirtualThreadScheduler();
+
+		private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+		        ExecutionThreads.newThreadFactory("idempotence-receiver-resiliency-timer-", false));
+
+		private final ThreadFactory threadFactory = ExecutionThreads
+		        .newThreadFactory("idempotence-receiver-resiliency-", true);
+
+		@Override
+		public ScheduledFuture<?> schedule(Callable<?> callable, long delay, TimeUnit unit) {
+			HandOff execution = new HandOff(callable);
+			if (delay <= 0) {
+				execution.start();
+			} else {
+				execution.delayed = timer.schedule(execution::start, delay, unit);
+			}
+			return execution;
+		}
+
+		/**
+		 * An execution, started on its own virtual thread once its delay has
+		 * elapsed
+		 */
+		class HandOff extends FutureTask<Object> implements ScheduledFuture<Object> {
+			private volatile ScheduledFuture<?> delayed;
+
+			@SuppressWarnings("unchecked")
+			HandOff(Callable<?> callable) {
+				super((Callable<Object>) callable);
+			}
+
+			void start() {
+				threadFactory.newThread(this).start();
+			}
+
+			@Override
+			public long getDelay(TimeUnit unit) {
+				ScheduledFuture<?> timeout = delayed;
+				return Objects.isNull(timeout) ? 0 : timeout.getDelay(unit);
+			}
+
+			@Override
+			public int compareTo(Delayed other) {
+				return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+			}
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				ScheduledFuture<?> timeout = delayed;
+				if (Objects.nonNull(timeout)) {
+					timeout.cancel(false);
+				}
+				return super.cancel(mayInterruptIfRunning);
+			}
+		}
+	}
+
 	@Autowired
 	private IdempotentReceiverCommonConfiguration configuration;
 
 	@Resource(name = "idempotentRepository")
 	private IdempotentRepository idempotentRepository;
 
+	private String name = "idempotentRepository";
+
+	private ExecutionConfiguration execution;
+
 	private RetryPolicy<IdempotentMethodResult> retryPolicy;
 	private CircuitBreaker<IdempotentMethodResult> circuitBreaker;
 
+	private FailsafeExecutor<IdempotentMethodResult> retrying;
+	private FailsafeExecutor<IdempotentMethodResult> breaking;
+
+	private HedgingConfiguration hedging;
+
+	private AdaptiveConcurrencyLimiter limiter;
+
+	private final RetryDelayHistogram lookupLatencies = new RetryDelayHistogram();
+
+	private final AtomicLong lookups = new AtomicLong();
+
+	/**
+	 * Delay in milliseconds after which a lookup is hedged, negative until enough
+	 * lookup latencies have been measured
+	 */
+	private volatile long hedgingDelayMs = -1;
+
+	public ResilientIdempotentRepository() {
+		super();
+	}
+
+	/**
+	 * Builds a resilient repository outside of any Spring context, e.g. to guard
+	 * each shard of a {@link ShardedIdempotentRepository} with its own policies
+	 * 
+	 * @param name
+	 *            name of the guarded repository, used in circuit breaker logs
+	 * @param idempotentRepository
+	 *            guarded repository
+	 * @param resiliency
+	 *            resiliency configuration to build retry and circuit breaker
+	 *            policies from
+	 */
+	public ResilientIdempotentRepository(String name, IdempotentRepository idempotentRepository,
+	        ResiliencyConfiguration resiliency) {
+		this(name, idempotentRepository, resiliency, null);
+	}
+
+	/**
+	 * @param name
+	 *            name of the guarded repository, used in circuit breaker logs
+	 * @param idempotentRepository
+	 *            guarded repository
+	 * @param resiliency
+	 *            resiliency configuration to build retry and circuit breaker
+	 *            policies from
+	 * @param execution
+	 *            configuration of the threads the asynchronous executions run on,
+	 *            platform threads if null
+	 */
+	public ResilientIdempotentRepository(String name, IdempotentRepository idempotentRepository,
+	        ResiliencyConfiguration resiliency, ExecutionConfiguration execution) {
+		super();
+		this.name = name;
+		this.idempotentRepository = idempotentRepository;
+		this.execution = execution;
+		initPolicies(resiliency);
+	}
+
 	@PostConstruct
 	void postConstruct() {
-		RetryConfiguration retryConfig = configuration.getRepository().getResiliency().getRetry();
+		execution = configuration.getExecution();
+		initPolicies(configuration.getRepository().getResiliency());
+	}
+
+	void initPolicies(ResiliencyConfiguration resiliency) {
+		RetryConfiguration retryConfig = resiliency.getRetry();
 		retryPolicy = new RetryPolicy<IdempotentMethodResult>().handle(IdempotentRepositoryException.class)
-		        .withDelay(Duration.ofMillis(retryConfig.getDelayMs())).withMaxRetries(retryConfig.getMaxRetries());
+		        .withMaxRetries(retryConfig.getMaxRetries());
+		if (retryConfig.getMaxDelayMs() > retryConfig.getDelayMs()) {
+			retryPolicy.withBackoff(retryConfig.getDelayMs(), retryConfig.getMaxDelayMs(), ChronoUnit.MILLIS);
+		} else {
+			retryPolicy.withDelay(Duration.ofMillis(retryConfig.getDelayMs()));
+		}
+		if (retryConfig.getJitterFactor() > 0 && retryConfig.getDelayMs() > 0) {
+			retryPolicy.withJitter(Math.min(1.0, retryConfig.getJitterFactor()));
+		}
 
-		CircuitBreakerConfiguration circuitBreakerConfig = configuration.getRepository().getResiliency()
-		        .getCircuitBreaker();
+		CircuitBreakerConfiguration circuitBreakerConfig = resiliency.getCircuitBreaker();
 		circuitBreaker = new CircuitBreaker<IdempotentMethodResult>().handle(IdempotentRepositoryException.class)
 		        .withFailureThreshold(circuitBreakerConfig.getFailureThreshold())
-		        .onOpen(() -> LOGGER.info("The circuit breaker has just been opened"))
+		        .onOpen(() -> LOGGER.info("The circuit breaker of repository '{}' has just been opened", name))
 
 		        .withDelay(Duration.ofMillis(circuitBreakerConfig.getDelayMs()))
-		        .onHalfOpen(() -> LOGGER.info("The circuit breaker has just been half-opened"))
+		        .onHalfOpen(() -> LOGGER.info("The circuit breaker of repository '{}' has just been half-opened", name))
 
 		        .withSuccessThreshold(circuitBreakerConfig.getSuccessThreshold())
-		        .onClose(() -> LOGGER.info("The circuit breaker has just been closed"));
+		        .onClose(() -> LOGGER.info("The circuit breaker of repository '{}' has just been closed", name));
+
+		if (ExecutionThreads.useVirtualThreads(execution)) {
+			retrying = Failsafe.with(retryPolicy, circuitBreaker).with(VirtualThreadScheduler.INSTANCE);
+			breaking = Failsafe.with(circuitBreaker).with(VirtualThreadScheduler.INSTANCE);
+		} else {
+			retrying = Failsafe.with(retryPolicy, circuitBreaker).with(SharedScheduler.INSTANCE);
+			breaking = Failsafe.with(circuitBreaker).with(SharedScheduler.INSTANCE);
+		}
+
+		hedging = resiliency.getHedging();
+
+		if (Objects.nonNull(resiliency.getConcurrencyLimit()) && resiliency.getConcurrencyLimit().isEnabled()) {
+			limiter = new AdaptiveConcurrencyLimiter(resiliency.getConcurrencyLimit());
+		}
 	}
 
+	/**
+	 * Waits for the asynchronous registration, whose retries are scheduled on
+	 * the shared scheduler
+	 */
 	@Override
 	public IdempotentMethodResult register(String idempotencyKey, IdempotentMethodResult imr) {
+		if (!Objects.equals(idempotencyKey, imr.getIdempotencyKey())) {
+			// Not registered under its own key : no asynchronous path
+			return get(retrying, () -> idempotentRepository.register(idempotencyKey, imr));
+		}
+		return join(registerAsync(imr));
+	}
+
+	@Override
+	public IdempotentMethodResult unregister(String idempotencyKey) {
+		return unregister(null, idempotencyKey);
+	}
+
+	@Override
+	public IdempotentMethodResult find(String idempotencyKey) {
+		return find(null, idempotencyKey);
+	}
+
+	/**
+	 * Waits for the asynchronous unregistration, whose retries are scheduled on
+	 * the shared scheduler
+	 */
+	@Override
+	public IdempotentMethodResult unregister(String namespace, String idempotencyKey) {
+		return join(unregisterAsync(namespace, idempotencyKey));
+	}
+
+	/**
+	 * Waits for the asynchronous lookup, hedged by a second one if it has not
+	 * answered within the hedging delay
+	 */
+	@Override
+	public IdempotentMethodResult find(String namespace, String idempotencyKey) {
+		CompletableFuture<IdempotentMethodResult> lookup = findAsync(namespace, idempotencyKey);
+		long delayMs = hedgingDelayMs;
+		if (delayMs < 0) {
+			return join(lookup);
+		}
+
 		try {
-			return Failsafe.with(retryPolicy, circuitBreaker)
-			        .get(() -> idempotentRepository.register(idempotencyKey, imr));
-		} catch (FailsafeException e) {
+			return lookup.get(delayMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			LOGGER.trace("No answer from repository '{}' for key '{}' within {} ms : lookup hedged", name,
+			        idempotencyKey, delayMs);
+			return join(firstSuccessful(lookup, findAsync(namespace, idempotencyKey)));
+		} catch (ExecutionException e) {
+			throw toRepositoryException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new IdempotentRepositoryException(e);
 		}
 	}
 
+	/**
+	 * Retries are scheduled on the shared scheduler, the calling thread is never
+	 * blocked
+	 */
 	@Override
-	public IdempotentMethodResult unregister(String idempotencyKey) {
+	public CompletableFuture<IdempotentMethodResult> findAsync(String namespace, String idempotencyKey) {
+		long start = System.nanoTime();
+		CompletableFuture<IdempotentMethodResult> lookup = limitAsync(
+		        () -> retrying.getStageAsync(() -> idempotentRepository.findAsync(namespace, idempotencyKey)));
+		if (Objects.nonNull(hedging) && hedging.isEnabled()) {
+			lookup.whenComplete((imr, t) -> {
+				if (Objects.isNull(t)) {
+					recordLookupLatency(System.nanoTime() - start);
+				}
+			});
+		}
+		return lookup;
+	}
+
+	/**
+	 * Retries are scheduled on the shared scheduler, the calling thread is never
+	 * blocked
+	 */
+	@Override
+	public CompletableFuture<IdempotentMethodResult> registerAsync(IdempotentMethodResult imr) {
+		return limitAsync(() -> retrying.getStageAsync(() -> idempotentRepository.registerAsync(imr)));
+	}
+
+	/**
+	 * Retries are scheduled on the shared scheduler, the calling thread is never
+	 * blocked
+	 */
+	@Override
+	public CompletableFuture<IdempotentMethodResult> unregisterAsync(String namespace, String idempotencyKey) {
+		return limitAsync(
+		        () -> retrying.getStageAsync(() -> idempotentRepository.unregisterAsync(namespace, idempotencyKey)));
+	}
+
+	IdempotentMethodResult get(FailsafeExecutor<IdempotentMethodResult> executor,
+	        CheckedSupplier<IdempotentMethodResult> call) {
+		acquire();
+		long start = System.nanoTime();
+		boolean succeeded = false;
 		try {
-			return Failsafe.with(retryPolicy, circuitBreaker)
-			        .get(() -> idempotentRepository.unregister(idempotencyKey));
+			IdempotentMethodResult imr = executor.get(call);
+			succeeded = true;
+			return imr;
 		} catch (FailsafeException e) {
 			throw new IdempotentRepositoryException(e);
+		} finally {
+			release(start, succeeded);
 		}
 	}
 
-	@Override
-	public IdempotentMethodResult find(String idempotencyKey) {
+	void run(FailsafeExecutor<IdempotentMethodResult> executor, CheckedRunnable call) {
+		acquire();
+		long start = System.nanoTime();
+		boolean succeeded = false;
 		try {
-			return Failsafe.with(retryPolicy, circuitBreaker).get(() -> idempotentRepository.find(idempotencyKey));
+			executor.run(call);
+			succeeded = true;
 		} catch (FailsafeException e) {
 			throw new IdempotentRepositoryException(e);
+		} finally {
+			release(start, succeeded);
+		}
+	}
+
+	/**
+	 * @return a future depending on the asynchronous call, or a failed future if
+	 *         the concurrency limit is reached. The call is released once
+	 *         completed : cancelling the returned future (e.g. on latency budget
+	 *         exhaustion) only abandons the call, which keeps its permit until
+	 *         its execution completes.
+	 */
+	CompletableFuture<IdempotentMethodResult> limitAsync(Supplier<CompletableFuture<IdempotentMethodResult>> call) {
+		if (Objects.isNull(limiter)) {
+			return call.get();
+		}
+		try {
+			acquire();
+		} catch (RepositoryOverloadedException e) {
+			CompletableFuture<IdempotentMethodResult> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+		long start = System.nanoTime();
+		CompletableFuture<IdempotentMethodResult> future;
+		try {
+			future = call.get();
+		} catch (RuntimeException e) {
+			release(start, false);
+			throw e;
+		}
+		CompletableFuture<IdempotentMethodResult> result = new CompletableFuture<>();
+		future.whenComplete((imr, t) -> {
+			release(start, Objects.isNull(t));
+			if (Objects.isNull(t)) {
+				result.complete(imr);
+			} else {
+				result.completeExceptionally(t);
+			}
+		});
+		return result;
+	}
+
+	void acquire() {
+		if (Objects.nonNull(limiter) && !limiter.tryAcquire()) {
+			throw new RepositoryOverloadedException(
+			        String.format("concurrency limit of repository '%s' reached : %d calls", name, limiter.getLimit()));
+		}
+	}
+
+	void release(long start, boolean succeeded) {
+		if (Objects.isNull(limiter)) {
+			return;
+		}
+		if (succeeded) {
+			limiter.onSuccess(System.nanoTime() - start);
+		} else {
+			limiter.onDropped();
+		}
+	}
+
+	/**
+	 * @return adaptive concurrency limiter, null if concurrent calls are not
+	 *         limited
+	 */
+	public AdaptiveConcurrencyLimiter getLimiter() {
+		return limiter;
+	}
+
+	void recordLookupLatency(long latencyNanos) {
+		lookupLatencies.record(TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+		long count = lookups.incrementAndGet();
+		int minSamples = Math.max(1, hedging.getMinSamples());
+		if (count % minSamples == 0) {
+			hedgingDelayMs = Math.max(hedging.getMinDelayMs(),
+			        lookupLatencies.getValueAtPercentile(hedging.getPercentile()));
+			if (lookupLatencies.getCount() >= (long) minSamples * LOOKUP_LATENCY_WINDOWS) {
+				lookupLatencies.reset();
+			}
 		}
 	}
 
+	/**
+	 * @return delay in milliseconds after which a lookup is hedged, negative
+	 *         while lookups are not hedged
+	 */
+	public long getHedgingDelayMs() {
+		return hedgingDelayMs;
+	}
+
+	/**
+	 * @return future completed by the first of given lookups to succeed, failed
+	 *         if both fail
+	 */
+	static CompletableFuture<IdempotentMethodResult> firstSuccessful(CompletableFuture<IdempotentMethodResult> first,
+	        CompletableFuture<IdempotentMethodResult> second) {
+		CompletableFuture<IdempotentMethodResult> result = new CompletableFuture<>();
+		first.whenComplete((imr, t) -> {
+			if (Objects.isNull(t)) {
+				result.complete(imr);
+			} else if (second.isCompletedExceptionally()) {
+				result.completeExceptionally(t);
+			}
+		});
+		second.whenComplete((imr, t) -> {
+			if (Objects.isNull(t)) {
+				result.complete(imr);
+			} else if (first.isCompletedExceptionally()) {
+				result.completeExceptionally(t);
+			}
+		});
+		return result;
+	}
+
+	IdempotentMethodResult join(CompletableFuture<IdempotentMethodResult> call) {
+		try {
+			return call.join();
+		} catch (CompletionException e) {
+			throw toRepositoryException(e.getCause());
+		}
+	}
+
+	static IdempotentRepositoryException toRepositoryException(Throwable t) {
+		Throwable cause = t instanceof CompletionException && Objects.nonNull(t.getCause()) ? t.getCause() : t;
+		if (cause instanceof IdempotentRepositoryException) {
+			return (IdempotentRepositoryException) cause;
+		}
+		return new IdempotentRepositoryException(cause);
+	}
+
+	@Override
+	public void registerAll(Collection<IdempotentMethodResult> imrs) {
+		run(retrying, () -> idempotentRepository.registerAll(imrs));
+	}
+
+	@Override
+	public void unregisterAll(Collection<IdempotentMethodResult> imrs) {
+		run(retrying, () -> idempotentRepository.unregisterAll(imrs));
+	}
+
+	/**
+	 * Not retried : a retried registration which actually succeeded would find
+	 * its own result, and report it as already registered
+	 */
+	@Override
+	public IdempotentMethodResult registerIfAbsent(IdempotentMethodResult imr) {
+		return get(breaking, () -> idempotentRepository.registerIfAbsent(imr));
+	}
+
+	/**
+	 * Not retried : a retried take over which actually succeeded would find its
+	 * own result, and report it as not taken over
+	 */
+	@Override
+	public boolean takeOver(IdempotentMethodResult expired, IdempotentMethodResult imr) {
+		return Objects.nonNull(get(breaking, () -> idempotentRepository.takeOver(expired, imr) ? imr : null));
+	}
+
 	/**
 	 * @throws UnsupportedOperationException
 	 *             always thrown as this implementation is for internal use only
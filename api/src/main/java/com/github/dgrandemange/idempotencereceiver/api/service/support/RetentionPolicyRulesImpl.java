@@ -0,0 +1,178 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.IdempotentMethodResultBuilder;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.RetentionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.RetentionConfiguration.RuleConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.RetentionPolicy;
+
+/**
+ * Retention policy applying the first matching rule of a
+ * {@link RetentionConfiguration}
+ */
+public class RetentionPolicyRulesImpl implements RetentionPolicy {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetentionPolicyRulesImpl.class);
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	private final PathMatcher pathMatcher = new AntPathMatcher();
+
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+	private List<Rule> rules = Collections.emptyList();
+
+	static class Rule {
+		final RuleConfiguration config;
+		final List<HttpStatus.Series> series = new ArrayList<>();
+		final List<Integer> codes = new ArrayList<>();
+
+		Rule(RuleConfiguration config) {
+			this.config = config;
+			for (String status : config.getStatuses()) {
+				String trimmed = status.trim().toLowerCase();
+				if (trimmed.length() == 3 && trimmed.endsWith("xx")) {
+					series.add(HttpStatus.Series.valueOf(Character.digit(trimmed.charAt(0), 10) * 100));
+				} else {
+					codes.add(Integer.valueOf(trimmed));
+				}
+			}
+		}
+	}
+
+	public RetentionPolicyRulesImpl() {
+		super();
+	}
+
+	/**
+	 * @param retention
+	 *            retention rules configuration
+	 */
+	public RetentionPolicyRulesImpl(RetentionConfiguration retention) {
+		super();
+		initRules(retention);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		initRules(configuration.getRepository().getRetention());
+	}
+
+	void initRules(RetentionConfiguration retention) {
+		List<Rule> list = new ArrayList<>();
+		if (Objects.nonNull(retention) && Objects.nonNull(retention.getRules())) {
+			for (RuleConfiguration ruleConfig : retention.getRules()) {
+				list.add(new Rule(ruleConfig));
+			}
+		}
+		this.rules = Collections.unmodifiableList(list);
+		LOGGER.debug("{} retention rule(s) loaded", rules.size());
+	}
+
+	@Override
+	public IdempotentMethodResult apply(IdempotentMethodResult imr, HttpServletRequest request, Exception exception) {
+		return apply(imr, Objects.isNull(imr.getBody()) ? 0 : imr.getBody().length, request, exception);
+	}
+
+	@Override
+	public IdempotentMethodResult apply(IdempotentMethodResult imr, long bodySize, HttpServletRequest request,
+	        Exception exception) {
+		for (Rule rule : rules) {
+			if (matches(rule, imr, bodySize, request, exception)) {
+				LOGGER.trace("Retention rule {} matches idempotent method result {}", rule.config, imr);
+				IdempotentMethodResultBuilder builder = IdempotentMethodResult.builder().from(imr);
+				if (rule.config.getTtlMs() > 0) {
+					builder.withTtlMs(rule.config.getTtlMs());
+				}
+				if (rule.config.isDropBody()) {
+					builder.withoutBody();
+				}
+				return builder.build();
+			}
+		}
+
+		return imr;
+	}
+
+	boolean matches(Rule rule, IdempotentMethodResult imr, long bodySize, HttpServletRequest request,
+	        Exception exception) {
+		return matchesStatus(rule, imr.getResponseStatus()) && matchesException(rule, exception)
+		        && matchesBodySize(rule, bodySize) && matchesEndpoint(rule, request);
+	}
+
+	boolean matchesStatus(Rule rule, HttpStatus status) {
+		if (rule.series.isEmpty() && rule.codes.isEmpty()) {
+			return true;
+		}
+		if (Objects.isNull(status)) {
+			return false;
+		}
+		return rule.codes.contains(status.value()) || rule.series.contains(status.series());
+	}
+
+	boolean matchesException(Rule rule, Exception exception) {
+		List<String> exceptionTypes = rule.config.getExceptionTypes();
+		if (Objects.isNull(exceptionTypes) || exceptionTypes.isEmpty()) {
+			return true;
+		}
+		if (Objects.isNull(exception)) {
+			return false;
+		}
+		for (Class<?> clazz = exception.getClass(); Objects.nonNull(clazz); clazz = clazz.getSuperclass()) {
+			if (exceptionTypes.contains(clazz.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	boolean matchesBodySize(Rule rule, long size) {
+		long min = rule.config.getMinBodySize();
+		long max = rule.config.getMaxBodySize();
+		return (min < 0 || size >= min) && (max < 0 || size <= max);
+	}
+
+	boolean matchesEndpoint(Rule rule, HttpServletRequest request) {
+		List<String> methods = rule.config.getMethods();
+		if (Objects.nonNull(methods) && !methods.isEmpty()) {
+			if (methods.stream().noneMatch(method -> method.equalsIgnoreCase(request.getMethod()))) {
+				return false;
+			}
+		}
+
+		List<String> uriPatterns = rule.config.getUriPatterns();
+		if (Objects.isNull(uriPatterns) || uriPatterns.isEmpty()) {
+			return true;
+		}
+		String path = urlPathHelper.getPathWithinApplication(request);
+		for (String pattern : uriPatterns) {
+			if (pathMatcher.match(pattern, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+}
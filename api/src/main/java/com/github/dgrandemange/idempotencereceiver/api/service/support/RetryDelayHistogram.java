@@ -0,0 +1,99 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Lock free histogram of retry delays, in milliseconds. Also measures the
+ * repository lookup latencies hedged lookups are tuned on.
+ * </p>
+ *
+ * <p>
+ * Delays are counted in log-linear buckets : each power of two range is split
+ * into {@link #SUB_BUCKETS} buckets, which bounds the relative error of a
+ * percentile to 1/{@link #SUB_BUCKETS}, whatever the delay magnitude.
+ * </p>
+ */
+public class RetryDelayHistogram {
+
+	static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder total = new LongAdder();
+
+	/**
+	 * @param delayMs
+	 *            delay between a request first presentation and one of its
+	 *            subsequent presentations
+	 */
+	public void record(long delayMs) {
+		counts.incrementAndGet(indexOf(Math.max(0, delayMs)));
+		total.increment();
+	}
+
+	/**
+	 * @return number of recorded delays
+	 */
+	public long getCount() {
+		return total.sum();
+	}
+
+	/**
+	 * @param percentile
+	 *            percentile in ]0, 100]
+	 * @return upper bound of the bucket holding given percentile, 0 if no delay
+	 *         has been recorded yet
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+		long cumulated = 0;
+		int lastNonEmpty = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			long bucketCount = counts.get(i);
+			if (bucketCount > 0) {
+				lastNonEmpty = i;
+				cumulated += bucketCount;
+				if (cumulated >= target) {
+					return upperBoundOf(i);
+				}
+			}
+		}
+		// Concurrent records may have been counted in total only
+		return upperBoundOf(lastNonEmpty);
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.reset();
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int sub = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		int sub = index % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+}
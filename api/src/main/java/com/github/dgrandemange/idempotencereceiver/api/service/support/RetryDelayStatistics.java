@@ -0,0 +1,208 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.AdaptiveTtlConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+
+/**
+ * <p>
+ * Records, per endpoint, the delays between the first presentation of a
+ * request and its subsequent presentations, and recommends a TTL from them :
+ * the configured percentile of the delays plus a margin, within bounds.
+ * </p>
+ *
+ * <p>
+ * Recommended TTLs are exposed through JMX.
+ * </p>
+ */
+@ManagedResource(objectName = "com.github.dgrandemange.idempotencereceiver:name=retryDelayStatistics", description = "Retry delays per idempotent endpoint")
+public class RetryDelayStatistics {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetryDelayStatistics.class);
+
+	/**
+	 * Number of tracked result expiries beyond which the expired ones are purged
+	 */
+	static final int MAX_TRACKED_EXPIRIES = 10000;
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	private AdaptiveTtlConfiguration adaptiveTtl;
+
+	private final ConcurrentMap<String, RetryDelayHistogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * Expiry of the results whose lifetime has been extended by this instance
+	 */
+	private final ConcurrentMap<String, Instant> expiries = new ConcurrentHashMap<>();
+
+	public RetryDelayStatistics() {
+		super();
+	}
+
+	/**
+	 * @param adaptiveTtl
+	 *            adaptive TTL configuration
+	 */
+	public RetryDelayStatistics(AdaptiveTtlConfiguration adaptiveTtl) {
+		super();
+		this.adaptiveTtl = adaptiveTtl;
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		this.adaptiveTtl = configuration.getRepository().getAdaptiveTtl();
+		LOGGER.info("Retry delays statistics initialized with configuration {}", adaptiveTtl);
+	}
+
+	/**
+	 * @param request
+	 *            current HTTP request
+	 * @return endpoint identifier : HTTP method and handler mapping pattern (or
+	 *         request URI when no pattern is available)
+	 */
+	public String resolveEndpoint(HttpServletRequest request) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		return request.getMethod() + " " + (Objects.isNull(pattern) ? request.getRequestURI() : pattern);
+	}
+
+	/**
+	 * @param endpoint
+	 *            endpoint identifier (see {@link #resolveEndpoint(HttpServletRequest)})
+	 * @param delayMs
+	 *            delay between request first presentation and current subsequent
+	 *            presentation
+	 */
+	public void record(String endpoint, long delayMs) {
+		histograms.computeIfAbsent(endpoint, e -> new RetryDelayHistogram()).record(delayMs);
+	}
+
+	/**
+	 * @param endpoint
+	 *            endpoint identifier (see {@link #resolveEndpoint(HttpServletRequest)})
+	 * @return recommended TTL in milliseconds, 0 if not enough delays have been
+	 *         recorded yet for given endpoint
+	 */
+	public long getRecommendedTtlMs(String endpoint) {
+		RetryDelayHistogram histogram = histograms.get(endpoint);
+		if (Objects.isNull(histogram) || histogram.getCount() < adaptiveTtl.getMinSamples()) {
+			return 0;
+		}
+
+		long ttlMs = histogram.getValueAtPercentile(adaptiveTtl.getPercentile()) + adaptiveTtl.getMarginMs();
+		return Math.min(Math.max(ttlMs, adaptiveTtl.getMinTtlMs()), adaptiveTtl.getMaxTtlMs());
+	}
+
+	/**
+	 * @param endpoint
+	 *            endpoint identifier (see {@link #resolveEndpoint(HttpServletRequest)})
+	 * @return TTL to apply to the results of given endpoint when it does not
+	 *         declare its own TTL : the recommended TTL in auto mode, 0 (i.e.
+	 *         repository TTL) otherwise
+	 */
+	public long resolveTtlMs(String endpoint) {
+		return adaptiveTtl.isAutoMode() ? getRecommendedTtlMs(endpoint) : 0;
+	}
+
+	/**
+	 * @return true if results lifetime should be extended on subsequent
+	 *         presentations
+	 */
+	public boolean isSlidingExpiration() {
+		return adaptiveTtl.isSlidingExpiration();
+	}
+
+	/**
+	 * <p>
+	 * Throttles the extensions of a result lifetime : a result is only extended
+	 * once less than half of its TTL remains, re-registering it on each of its
+	 * subsequent presentations being costly.
+	 * </p>
+	 * <p>
+	 * Its expiry is estimated from its start when it has not been extended by
+	 * this instance yet, and from the minimum TTL when it relies on the
+	 * repository TTL.
+	 * </p>
+	 *
+	 * @param imr
+	 *            completed idempotent method result hit by a subsequent
+	 *            presentation
+	 * @param now
+	 *            current instant
+	 * @return true if the lifetime of given result is to be extended now
+	 */
+	public boolean shouldExtend(IdempotentMethodResult imr, Instant now) {
+		Duration ttl = Duration.ofMillis(imr.getTtlMs() > 0 ? imr.getTtlMs() : adaptiveTtl.getMinTtlMs());
+		boolean[] extend = { false };
+		expiries.compute(InFlightRegistry.keyOf(imr), (key, expiry) -> {
+			Instant estimated = Objects.isNull(expiry) || expiry.isBefore(imr.getStartedAt().plus(ttl))
+			        ? imr.getStartedAt().plus(ttl)
+			        : expiry;
+			if (Duration.between(now, estimated).compareTo(ttl.dividedBy(2)) >= 0) {
+				return expiry;
+			}
+			extend[0] = true;
+			return now.plus(ttl);
+		});
+
+		if (expiries.size() > MAX_TRACKED_EXPIRIES) {
+			expiries.values().removeIf(expiry -> expiry.isBefore(now));
+			if (expiries.size() > MAX_TRACKED_EXPIRIES) {
+				// Forgotten expiries are estimated from the result starts again
+				expiries.clear();
+			}
+		}
+		return extend[0];
+	}
+
+	/**
+	 * @return recommended TTL in milliseconds, per endpoint
+	 */
+	@ManagedOperation(description = "Recommended TTL in milliseconds per endpoint, 0 when not enough retries were observed")
+	public Map<String, Long> getRecommendedTtls() {
+		Map<String, Long> ttls = new TreeMap<>();
+		for (String endpoint : histograms.keySet()) {
+			ttls.put(endpoint, getRecommendedTtlMs(endpoint));
+		}
+		return ttls;
+	}
+
+	/**
+	 * @return number of recorded retry delays, per endpoint
+	 */
+	@ManagedOperation(description = "Number of observed retries per endpoint")
+	public Map<String, Long> getRetryCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		histograms.forEach((endpoint, histogram) -> counts.put(endpoint, histogram.getCount()));
+		return counts;
+	}
+
+	@ManagedOperation(description = "Clears all recorded retry delays")
+	public void reset() {
+		histograms.clear();
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+}
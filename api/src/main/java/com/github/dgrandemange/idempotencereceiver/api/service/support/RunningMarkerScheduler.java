@@ -0,0 +1,224 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.OptimisticConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+/**
+ * <p>
+ * Tracks the first presentations processed in optimistic mode (see
+ * {@link Idempotent#optimistic()}) by this instance, and registers their
+ * running result once they have been running for the configured delay.
+ * </p>
+ *
+ * <p>
+ * A running marker is registered with
+ * {@link IdempotentRepository#registerIfAbsent(IdempotentMethodResult)}, so that
+ * the result of a racing presentation is kept. It is leased when running
+ * results leases are enabled.
+ * </p>
+ */
+public class RunningMarkerScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RunningMarkerScheduler.class);
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Autowired
+	private IdempotentRepository repository;
+
+	@Autowired(required = false)
+	private LeaseManager leaseManager;
+
+	private final ConcurrentMap<String, Marker> markers = new ConcurrentHashMap<>();
+
+	private long runningMarkerDelayMs;
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Running marker of a first presentation processed in optimistic mode
+	 */
+	class Marker {
+		private final IdempotentMethodResult imr;
+		private final AtomicBoolean settled = new AtomicBoolean();
+		private final CompletableFuture<Boolean> written = new CompletableFuture<>();
+		private ScheduledFuture<?> task;
+
+		Marker(IdempotentMethodResult imr) {
+			this.imr = imr;
+		}
+
+		void write() {
+			if (!settled.compareAndSet(false, true)) {
+				return;
+			}
+
+			boolean leased = Objects.nonNull(leaseManager);
+			IdempotentMethodResult markerImr = leased ? leaseManager.lease(imr) : imr;
+			try {
+				IdempotentMethodResult current = repository.registerIfAbsent(markerImr);
+				if (Objects.isNull(current)) {
+					LOGGER.trace("First presentation still running after {} ms : running result registered {}",
+					        runningMarkerDelayMs, markerImr);
+					if (leased) {
+						leaseManager.hold(markerImr);
+					}
+					written.complete(Boolean.TRUE);
+				} else {
+					LOGGER.trace("First presentation still running after {} ms : racing result kept {}",
+					        runningMarkerDelayMs, current);
+					written.complete(Boolean.FALSE);
+				}
+			} catch (Exception e) {
+				LOGGER.warn("Unable to register running result identified by key '{}' in idempotent repository. Cause : {}",
+				        imr.getIdempotencyKey(), e.getMessage());
+				written.complete(Boolean.FALSE);
+			}
+		}
+
+		/**
+		 * Cancels the marker if not registered yet, otherwise waits for its
+		 * registration in progress
+		 *
+		 * @return true if the marker has been registered
+		 */
+		boolean settle() {
+			if (settled.compareAndSet(false, true)) {
+				if (Objects.nonNull(task)) {
+					task.cancel(false);
+				}
+				return false;
+			}
+			return written.join();
+		}
+	}
+
+	public RunningMarkerScheduler() {
+		super();
+	}
+
+	/**
+	 * @param optimistic
+	 *            optimistic mode configuration
+	 * @param repository
+	 *            repository running markers are registered into
+	 */
+	public RunningMarkerScheduler(OptimisticConfiguration optimistic, IdempotentRepository repository) {
+		super();
+		this.repository = repository;
+		init(optimistic);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(configuration.getOptimistic());
+	}
+
+	@PreDestroy
+	void preDestroy() {
+		if (Objects.nonNull(executor)) {
+			executor.shutdownNow();
+		}
+	}
+
+	void init(OptimisticConfiguration optimistic) {
+		runningMarkerDelayMs = optimistic.getRunningMarkerDelayMs();
+		executor = Executors.newSingleThreadScheduledExecutor(
+		        r -> ExecutionThreads.newThread(r, "idempotence-receiver-running-marker", false));
+		LOGGER.info("Running marker scheduler initialized : {}", optimistic);
+	}
+
+	/**
+	 * Schedules the registration of the running result of a first presentation
+	 * about to be processed in optimistic mode
+	 *
+	 * @param imr
+	 *            running idempotent method result, not registered
+	 * @return false when a first presentation of the same request is already
+	 *         processed in optimistic mode by this instance, given result then
+	 *         to be registered right away
+	 */
+	public boolean schedule(IdempotentMethodResult imr) {
+		Marker marker = new Marker(imr);
+		if (Objects.nonNull(markers.putIfAbsent(InFlightRegistry.keyOf(imr), marker))) {
+			LOGGER.trace("Request identified by key '{}' already processed optimistically by this instance",
+			        imr.getIdempotencyKey());
+			return false;
+		}
+		try {
+			marker.task = executor.schedule(marker::write, runningMarkerDelayMs, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// Shutting down : running marker registered right away
+			LOGGER.trace("Running marker scheduler shut down : registering running result identified by key '{}' now",
+			        imr.getIdempotencyKey());
+			marker.write();
+		}
+		return true;
+	}
+
+	/**
+	 * Stops tracking a first presentation, to be called before its result gets
+	 * finalized or unregistered
+	 *
+	 * @param imr
+	 *            running idempotent method result
+	 * @return true if given result was processed in optimistic mode and no
+	 *         running marker of its own has been registered, i.e. an entry found
+	 *         under its key belongs to a racing presentation : the completed
+	 *         result is then to be registered with
+	 *         {@link IdempotentRepository#registerIfAbsent(IdempotentMethodResult)},
+	 *         and nothing is to be unregistered
+	 */
+	public boolean settle(IdempotentMethodResult imr) {
+		String key = InFlightRegistry.keyOf(imr);
+		Marker marker = markers.get(key);
+		if (Objects.isNull(marker) || !Objects.equals(marker.imr.getStartedAt(), imr.getStartedAt())) {
+			return false;
+		}
+		markers.remove(key, marker);
+		return !marker.settle();
+	}
+
+	/**
+	 * @return number of first presentations currently processed in optimistic
+	 *         mode
+	 */
+	public int size() {
+		return markers.size();
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setRepository(IdempotentRepository repository) {
+		this.repository = repository;
+	}
+
+	public void setLeaseManager(LeaseManager leaseManager) {
+		this.leaseManager = leaseManager;
+	}
+
+}
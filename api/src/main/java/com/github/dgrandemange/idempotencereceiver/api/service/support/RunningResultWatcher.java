@@ -0,0 +1,248 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.ParkConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.RepositoryChangeNotifier;
+import com.github.dgrandemange.idempotencereceiver.api.service.RepositoryChangeNotifier.RepositoryChangeListener;
+
+/**
+ * <p>
+ * Watches the running results duplicates have been parked on, and calls them
+ * back once the result is done, or has been removed from the repository.
+ * </p>
+ *
+ * <p>
+ * When the repository implements {@link RepositoryChangeNotifier}, a watched
+ * result is looked up again each time its entry changes, whichever instance of
+ * the cluster changed it. Otherwise, watched results are looked up at the
+ * configured poll interval.
+ * </p>
+ *
+ * <p>
+ * Lookups are run on a dedicated thread, never on the thread delivering the
+ * change notifications nor on a container thread.
+ * </p>
+ */
+public class RunningResultWatcher implements RepositoryChangeListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RunningResultWatcher.class);
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Autowired
+	private IdempotentRepository repository;
+
+	@Autowired(required = false)
+	private RepositoryChangeNotifier notifier;
+
+	private final ConcurrentMap<String, Queue<Watch>> watches = new ConcurrentHashMap<>();
+
+	private final AtomicInteger parked = new AtomicInteger();
+
+	private int maxParked;
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * A duplicate parked on a running result
+	 */
+	public class Watch {
+		private final IdempotentMethodResult imr;
+		private final Consumer<IdempotentMethodResult> callback;
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		Watch(IdempotentMethodResult imr, Consumer<IdempotentMethodResult> callback) {
+			this.imr = imr;
+			this.callback = callback;
+		}
+
+		/**
+		 * Stops watching, e.g. when the parked duplicate has timed out
+		 *
+		 * @return false if the duplicate has already been called back
+		 */
+		public boolean cancel() {
+			if (!done.compareAndSet(false, true)) {
+				return false;
+			}
+			parked.decrementAndGet();
+			watches.computeIfPresent(imr.getIdempotencyKey(), (k, queue) -> {
+				queue.remove(this);
+				return queue.isEmpty() ? null : queue;
+			});
+			return true;
+		}
+
+		void fire(IdempotentMethodResult found) {
+			if (done.compareAndSet(false, true)) {
+				parked.decrementAndGet();
+				callback.accept(found);
+			}
+		}
+	}
+
+	public RunningResultWatcher() {
+		super();
+	}
+
+	/**
+	 * @param park
+	 *            parking configuration
+	 * @param repository
+	 *            repository the watched results are looked up in
+	 * @param notifier
+	 *            repository change notifier, null to poll the repository
+	 */
+	public RunningResultWatcher(ParkConfiguration park, IdempotentRepository repository,
+	        RepositoryChangeNotifier notifier) {
+		super();
+		this.repository = repository;
+		this.notifier = notifier;
+		init(park);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		init(configuration.getPark());
+	}
+
+	@PreDestroy
+	void preDestroy() {
+		if (Objects.nonNull(executor)) {
+			executor.shutdownNow();
+		}
+	}
+
+	void init(ParkConfiguration park) {
+		maxParked = park.getMaxParked();
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "idempotence-receiver-running-result-watcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (Objects.nonNull(notifier)) {
+			notifier.addChangeListener(this);
+			LOGGER.info("Running result watcher initialized, woken up by repository change notifications : {}", park);
+		} else {
+			executor.scheduleWithFixedDelay(this::poll, park.getPollIntervalMs(), park.getPollIntervalMs(),
+			        TimeUnit.MILLISECONDS);
+			LOGGER.info("Running result watcher initialized, polling the repository : {}", park);
+		}
+	}
+
+	/**
+	 * @param imr
+	 *            running idempotent method result, as found in the repository
+	 * @param callback
+	 *            called once with the result found when done, or with null when
+	 *            the result has been removed from the repository
+	 * @return watch to cancel if the duplicate stops waiting, null when too many
+	 *         duplicates are already parked
+	 */
+	public Watch watch(IdempotentMethodResult imr, Consumer<IdempotentMethodResult> callback) {
+		if (parked.incrementAndGet() > maxParked) {
+			parked.decrementAndGet();
+			LOGGER.debug("Too many parked duplicates : request identified by key '{}' won't be parked",
+			        imr.getIdempotencyKey());
+			return null;
+		}
+
+		Watch watch = new Watch(imr, callback);
+		watches.compute(imr.getIdempotencyKey(), (k, queue) -> {
+			Queue<Watch> result = Objects.isNull(queue) ? new ConcurrentLinkedQueue<>() : queue;
+			result.add(watch);
+			return result;
+		});
+
+		// The result may have been done before being watched
+		executor.execute(() -> check(imr.getIdempotencyKey()));
+		return watch;
+	}
+
+	@Override
+	public void onChange(String idempotencyKey) {
+		if (watches.containsKey(idempotencyKey)) {
+			executor.execute(() -> check(idempotencyKey));
+		}
+	}
+
+	/**
+	 * @return number of duplicates currently parked
+	 */
+	public int size() {
+		return parked.get();
+	}
+
+	void poll() {
+		for (String idempotencyKey : watches.keySet()) {
+			check(idempotencyKey);
+		}
+	}
+
+	void check(String idempotencyKey) {
+		Queue<Watch> queue = watches.get(idempotencyKey);
+		Watch first = Objects.isNull(queue) ? null : queue.peek();
+		if (Objects.isNull(first)) {
+			return;
+		}
+
+		IdempotentMethodResult found;
+		try {
+			found = repository.find(first.imr.getNamespace(), idempotencyKey);
+		} catch (Exception e) {
+			LOGGER.trace("Unable to look watched result identified by key '{}' up. Cause : {}", idempotencyKey,
+			        e.getMessage());
+			return;
+		}
+
+		if (Objects.nonNull(found) && ProcessingState.RUNNING.equals(found.getState())) {
+			return;
+		}
+
+		Queue<Watch> released = watches.remove(idempotencyKey);
+		if (Objects.nonNull(released)) {
+			LOGGER.trace("Watched result identified by key '{}' is over : releasing {} parked duplicate(s)",
+			        idempotencyKey, released.size());
+			for (Watch watch : released) {
+				watch.fire(found);
+			}
+		}
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setRepository(IdempotentRepository repository) {
+		this.repository = repository;
+	}
+
+	public void setNotifier(RepositoryChangeNotifier notifier) {
+		this.notifier = notifier;
+	}
+
+}
@@ -0,0 +1,337 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.RepositoryChangeNotifier;
+
+/**
+ * <p>
+ * Idempotent repository spreading idempotency keys across several independent
+ * backend repositories (a.k.a. shards).
+ * </p>
+ *
+ * <p>
+ * The shard owning a key is selected by rendezvous hashing (highest random
+ * weight) : each shard is given a score computed from the key and the shard
+ * name, and the highest score wins. Adding a shard therefore only moves the keys
+ * the new shard now owns, all other keys keep their owner.
+ * </p>
+ *
+ * <p>
+ * Each shard is guarded by its own {@link ResilientIdempotentRepository}, so
+ * that a failing shard only opens its own circuit breaker and only affects the
+ * keys it owns.
+ * </p>
+ *
+ * <p>
+ * While shards are being added, a dual-read migration mode can be enabled by
+ * setting the names of the shards in place before the change (see
+ * {@link #setPreviousShardNames(Collection)}) : when a key is not found on its
+ * current owner, it is also looked up on the shard that owned it in the
+ * previous topology.
+ * </p>
+ *
+ * <p>
+ * Change listeners are registered on every shard notifying its changes.
+ * </p>
+ */
+public class ShardedIdempotentRepository implements IdempotentRepository, RepositoryChangeNotifier {
+
+	public static final String REPOSITORY_TYPE = "sharded";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardedIdempotentRepository.class);
+
+	private final List<Shard> shards;
+
+	private List<Shard> previousShards = Collections.emptyList();
+
+	private final List<RepositoryChangeNotifier> notifiers;
+
+	static class Shard {
+		final String name;
+		final long seed;
+		final IdempotentRepository repository;
+
+		Shard(String name, IdempotentRepository repository) {
+			this.name = name;
+			this.seed = hash(name);
+			this.repository = repository;
+		}
+	}
+
+	/**
+	 * @param shards
+	 *            backend repositories, indexed by their shard name
+	 * @param resiliency
+	 *            resiliency configuration used to guard each shard with its own
+	 *            retry and circuit breaker policies; when <code>null</code>, shards
+	 *            are used as is
+	 */
+	public ShardedIdempotentRepository(Map<String, ? extends IdempotentRepository> shards,
+	        ResiliencyConfiguration resiliency) {
+		this(shards, resiliency, null);
+	}
+
+	/**
+	 * @param shards
+	 *            backend repositories, indexed by their shard name
+	 * @param resiliency
+	 *            See {@link #ShardedIdempotentRepository(Map, ResiliencyConfiguration)}
+	 * @param execution
+	 *            configuration of the threads the asynchronous executions of each
+	 *            guarded shard run on, platform threads if null
+	 */
+	public ShardedIdempotentRepository(Map<String, ? extends IdempotentRepository> shards,
+	        ResiliencyConfiguration resiliency, ExecutionConfiguration execution) {
+		super();
+		if (Objects.isNull(shards) || shards.isEmpty()) {
+			throw new IllegalArgumentException("at least one shard is required");
+		}
+
+		List<Shard> list = new ArrayList<>(shards.size());
+		List<RepositoryChangeNotifier> notifierList = new ArrayList<>();
+		for (Entry<String, ? extends IdempotentRepository> entry : shards.entrySet()) {
+			if (entry.getValue() instanceof RepositoryChangeNotifier) {
+				notifierList.add((RepositoryChangeNotifier) entry.getValue());
+			}
+			IdempotentRepository repository = Objects.isNull(resiliency) ? entry.getValue()
+			        : new ResilientIdempotentRepository(entry.getKey(), entry.getValue(), resiliency, execution);
+			list.add(new Shard(entry.getKey(), repository));
+		}
+		this.shards = Collections.unmodifiableList(list);
+		this.notifiers = Collections.unmodifiableList(notifierList);
+	}
+
+	/**
+	 * <p>
+	 * Enables the dual-read migration mode when given a non empty collection.
+	 * </p>
+	 *
+	 * @param previousShardNames
+	 *            names of the shards composing the topology in place before shards
+	 *            were added; each name must match one of the current shards
+	 */
+	public void setPreviousShardNames(Collection<String> previousShardNames) {
+		if (Objects.isNull(previousShardNames) || previousShardNames.isEmpty()) {
+			this.previousShards = Collections.emptyList();
+			return;
+		}
+
+		Map<String, Shard> byName = new LinkedHashMap<>();
+		for (Shard shard : shards) {
+			byName.put(shard.name, shard);
+		}
+
+		List<Shard> list = new ArrayList<>(previousShardNames.size());
+		for (String name : previousShardNames) {
+			Shard shard = byName.get(name);
+			if (Objects.isNull(shard)) {
+				throw new IllegalArgumentException(String.format("unknown previous shard '%s'", name));
+			}
+			list.add(shard);
+		}
+		this.previousShards = Collections.unmodifiableList(list);
+		LOGGER.info("Dual-read migration mode enabled, previous shards : {}", previousShardNames);
+	}
+
+	@Override
+	public void addChangeListener(RepositoryChangeListener listener) {
+		for (RepositoryChangeNotifier notifier : notifiers) {
+			notifier.addChangeListener(listener);
+		}
+	}
+
+	@Override
+	public IdempotentMethodResult register(String idempotencyKey, IdempotentMethodResult imr) {
+		return selectShard(idempotencyKey, shards).repository.register(idempotencyKey, imr);
+	}
+
+	@Override
+	public IdempotentMethodResult unregister(String idempotencyKey) {
+		return unregister(null, idempotencyKey);
+	}
+
+	@Override
+	public IdempotentMethodResult unregister(String namespace, String idempotencyKey) {
+		Shard owner = selectShard(idempotencyKey, shards);
+		IdempotentMethodResult removed = owner.repository.unregister(namespace, idempotencyKey);
+
+		Shard previousOwner = selectPreviousShard(idempotencyKey);
+		if (Objects.nonNull(previousOwner) && previousOwner != owner) {
+			IdempotentMethodResult previouslyRemoved = previousOwner.repository.unregister(namespace, idempotencyKey);
+			if (Objects.isNull(removed)) {
+				removed = previouslyRemoved;
+			}
+		}
+
+		return removed;
+	}
+
+	@Override
+	public IdempotentMethodResult find(String idempotencyKey) {
+		return find(null, idempotencyKey);
+	}
+
+	@Override
+	public CompletableFuture<IdempotentMethodResult> registerAsync(IdempotentMethodResult imr) {
+		return selectShard(imr.getIdempotencyKey(), shards).repository.registerAsync(imr);
+	}
+
+	@Override
+	public CompletableFuture<IdempotentMethodResult> unregisterAsync(String namespace, String idempotencyKey) {
+		Shard owner = selectShard(idempotencyKey, shards);
+		CompletableFuture<IdempotentMethodResult> removal = owner.repository.unregisterAsync(namespace,
+		        idempotencyKey);
+
+		Shard previousOwner = selectPreviousShard(idempotencyKey);
+		if (Objects.nonNull(previousOwner) && previousOwner != owner) {
+			return removal.thenCombine(previousOwner.repository.unregisterAsync(namespace, idempotencyKey),
+			        (removed, previouslyRemoved) -> Objects.isNull(removed) ? previouslyRemoved : removed);
+		}
+
+		return removal;
+	}
+
+	@Override
+	public CompletableFuture<IdempotentMethodResult> findAsync(String namespace, String idempotencyKey) {
+		Shard owner = selectShard(idempotencyKey, shards);
+		Shard previousOwner = selectPreviousShard(idempotencyKey);
+		CompletableFuture<IdempotentMethodResult> lookup = owner.repository.findAsync(namespace, idempotencyKey);
+		if (Objects.isNull(previousOwner) || previousOwner == owner) {
+			return lookup;
+		}
+
+		return lookup.thenCompose(imr -> {
+			if (Objects.nonNull(imr)) {
+				return CompletableFuture.completedFuture(imr);
+			}
+			LOGGER.trace("Key '{}' not found on shard '{}', looking up previous owner shard '{}'", idempotencyKey,
+			        owner.name, previousOwner.name);
+			return previousOwner.repository.findAsync(namespace, idempotencyKey);
+		});
+	}
+
+	@Override
+	public void registerAll(Collection<IdempotentMethodResult> imrs) {
+		for (Entry<Shard, List<IdempotentMethodResult>> entry : groupByOwner(imrs).entrySet()) {
+			entry.getKey().repository.registerAll(entry.getValue());
+		}
+	}
+
+	@Override
+	public void unregisterAll(Collection<IdempotentMethodResult> imrs) {
+		for (Entry<Shard, List<IdempotentMethodResult>> entry : groupByOwner(imrs).entrySet()) {
+			entry.getKey().repository.unregisterAll(entry.getValue());
+		}
+	}
+
+	@Override
+	public IdempotentMethodResult registerIfAbsent(IdempotentMethodResult imr) {
+		return selectShard(imr.getIdempotencyKey(), shards).repository.registerIfAbsent(imr);
+	}
+
+	@Override
+	public boolean takeOver(IdempotentMethodResult expired, IdempotentMethodResult imr) {
+		return selectShard(imr.getIdempotencyKey(), shards).repository.takeOver(expired, imr);
+	}
+
+	Map<Shard, List<IdempotentMethodResult>> groupByOwner(Collection<IdempotentMethodResult> imrs) {
+		Map<Shard, List<IdempotentMethodResult>> groups = new LinkedHashMap<>();
+		for (IdempotentMethodResult imr : imrs) {
+			groups.computeIfAbsent(selectShard(imr.getIdempotencyKey(), shards), shard -> new ArrayList<>()).add(imr);
+		}
+		return groups;
+	}
+
+	@Override
+	public IdempotentMethodResult find(String namespace, String idempotencyKey) {
+		Shard owner = selectShard(idempotencyKey, shards);
+		IdempotentMethodResult imr = owner.repository.find(namespace, idempotencyKey);
+		if (Objects.nonNull(imr)) {
+			return imr;
+		}
+
+		Shard previousOwner = selectPreviousShard(idempotencyKey);
+		if (Objects.nonNull(previousOwner) && previousOwner != owner) {
+			LOGGER.trace("Key '{}' not found on shard '{}', looking up previous owner shard '{}'", idempotencyKey,
+			        owner.name, previousOwner.name);
+			return previousOwner.repository.find(namespace, idempotencyKey);
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param idempotencyKey
+	 *            Idempotent method result identifier (key) in repository
+	 * @return name of the shard owning given key
+	 */
+	public String getShardName(String idempotencyKey) {
+		return selectShard(idempotencyKey, shards).name;
+	}
+
+	Shard selectPreviousShard(String idempotencyKey) {
+		return previousShards.isEmpty() ? null : selectShard(idempotencyKey, previousShards);
+	}
+
+	Shard selectShard(String idempotencyKey, List<Shard> candidates) {
+		long keyHash = hash(idempotencyKey);
+		Shard selected = null;
+		long bestScore = 0;
+		for (Shard shard : candidates) {
+			long score = mix(keyHash ^ shard.seed);
+			if (Objects.isNull(selected) || Long.compareUnsigned(score, bestScore) > 0) {
+				selected = shard;
+				bestScore = score;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * 64 bits FNV-1a hash
+	 */
+	static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * SplitMix64 finalizer, spreads hash bits before comparing scores
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return {@link #REPOSITORY_TYPE}
+	 * @see com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository#getType()
+	 */
+	@Override
+	public String getType() {
+		return REPOSITORY_TYPE;
+	}
+
+}
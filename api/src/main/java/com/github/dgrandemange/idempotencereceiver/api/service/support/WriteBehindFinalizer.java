@@ -0,0 +1,385 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.WriteBehindConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+/**
+ * <p>
+ * Registers completed results in the background, off the response path.
+ * </p>
+ *
+ * <p>
+ * Completed results are queued in a bounded non-blocking queue, then drained
+ * by the writer threads in batches of at most the configured size, a writer
+ * waiting for a batch to fill up for at most the configured linger duration
+ * since its first result was queued. Each batch
+ * is registered with {@link IdempotentRepository#registerAll}, except results
+ * to be registered only if absent, which are registered one by one.
+ * </p>
+ *
+ * <p>
+ * A queued result can be looked up (see {@link #pending(String, String)}) until
+ * it has been registered, so that the subsequent presentations reaching this
+ * instance meanwhile get it.
+ * </p>
+ */
+public class WriteBehindFinalizer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindFinalizer.class);
+
+	/**
+	 * Maximum duration an idle writer waits for a first result to be queued
+	 */
+	private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Duration a completing request waits between two attempts to queue its
+	 * result, when blocked by a full queue
+	 */
+	private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	@Autowired
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Autowired
+	private IdempotentRepository repository;
+
+	private final Queue<Completion> queue = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final ConcurrentMap<String, IdempotentMethodResult> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * Guards the writers waits : a lock rather than a monitor, the writers
+	 * possibly running on virtual threads
+	 */
+	private final Lock batchLock = new ReentrantLock();
+
+	/**
+	 * Signalled when a batch has started or is full, and on shutdown
+	 */
+	private final Condition batchChanged = batchLock.newCondition();
+
+	/**
+	 * {@link System#nanoTime()} at which the first result of the current batch
+	 * was queued, 0 while the queue is empty
+	 */
+	private final AtomicLong batchStartedAtNanos = new AtomicLong();
+
+	private WriteBehindConfiguration writeBehind;
+
+	private int maxBatchSize;
+
+	private long lingerNanos;
+
+	private Thread[] writers;
+
+	/**
+	 * True if the writers run on virtual threads (see
+	 * {@link com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration})
+	 */
+	private boolean virtualThreads;
+
+	private volatile boolean running;
+
+	/**
+	 * A completed result waiting to be registered
+	 */
+	static class Completion {
+		private final IdempotentMethodResult imr;
+		private final boolean ifAbsent;
+
+		Completion(IdempotentMethodResult imr, boolean ifAbsent) {
+			this.imr = imr;
+			this.ifAbsent = ifAbsent;
+		}
+	}
+
+	public WriteBehindFinalizer() {
+		super();
+	}
+
+	/**
+	 * @param writeBehind
+	 *            write-behind configuration
+	 * @param repository
+	 *            repository completed results are registered into
+	 */
+	public WriteBehindFinalizer(WriteBehindConfiguration writeBehind, IdempotentRepository repository) {
+		super();
+		this.repository = repository;
+		init(writeBehind);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		virtualThreads = ExecutionThreads.useVirtualThreads(configuration.getExecution());
+		init(configuration.getWriteBehind());
+	}
+
+	void init(WriteBehindConfiguration writeBehind) {
+		this.writeBehind = writeBehind;
+		maxBatchSize = Math.max(1, writeBehind.getMaxBatchSize());
+		lingerNanos = TimeUnit.MILLISECONDS.toNanos(writeBehind.getLingerMs());
+		running = true;
+
+		writers = new Thread[Math.max(1, writeBehind.getWriters())];
+		for (int i = 0; i < writers.length; i++) {
+			writers[i] = ExecutionThreads.newThread(this::runWriter, "idempotence-receiver-write-behind-" + i,
+			        virtualThreads);
+			writers[i].start();
+		}
+		LOGGER.info("Write-behind finalizer initialized : {} (virtual threads : {})", writeBehind, virtualThreads);
+	}
+
+	/**
+	 * Drains the results still queued
+	 */
+	@PreDestroy
+	void preDestroy() {
+		running = false;
+		signalWriters();
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeBehind.getDrainTimeoutMs());
+		try {
+			for (Thread writer : writers) {
+				long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMs > 0) {
+					writer.join(remainingMs);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (queued.get() > 0) {
+			LOGGER.warn("{} completed result(s) not registered on shutdown", queued.get());
+		}
+	}
+
+	/**
+	 * @param imr
+	 *            completed idempotent method result
+	 * @param ifAbsent
+	 *            true to register the result only if no result is registered
+	 *            under its key (see
+	 *            {@link IdempotentRepository#registerIfAbsent(IdempotentMethodResult)})
+	 * @return true if the result has been queued (or shed), false if the caller
+	 *         has to register it itself
+	 */
+	public boolean submit(IdempotentMethodResult imr, boolean ifAbsent) {
+		Completion completion = new Completion(imr, ifAbsent);
+		if (offer(completion)) {
+			return true;
+		}
+		if (!running) {
+			return false;
+		}
+
+		switch (writeBehind.getBackpressure()) {
+		case BLOCK:
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeBehind.getMaxBlockMs());
+			while (System.nanoTime() < deadline) {
+				LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+				if (offer(completion)) {
+					return true;
+				}
+			}
+			LOGGER.debug("Write-behind queue still full : result identified by key '{}' registered synchronously",
+			        imr.getIdempotencyKey());
+			return false;
+
+		case SHED:
+			LOGGER.warn("Write-behind queue full : result identified by key '{}' won't be registered",
+			        imr.getIdempotencyKey());
+			return true;
+
+		default:
+			LOGGER.debug("Write-behind queue full : result identified by key '{}' registered synchronously",
+			        imr.getIdempotencyKey());
+			return false;
+		}
+	}
+
+	boolean offer(Completion completion) {
+		if (!running) {
+			return false;
+		}
+		int size = queued.incrementAndGet();
+		if (size > writeBehind.getQueueCapacity()) {
+			queued.decrementAndGet();
+			return false;
+		}
+
+		if (size == 1) {
+			batchStartedAtNanos.set(System.nanoTime());
+		}
+		pending.put(InFlightRegistry.keyOf(completion.imr), completion.imr);
+		queue.offer(completion);
+		if (size == 1 || size % maxBatchSize == 0) {
+			// A batch has started or is full
+			signalWriters();
+		}
+		return true;
+	}
+
+	void signalWriters() {
+		batchLock.lock();
+		try {
+			batchChanged.signalAll();
+		} finally {
+			batchLock.unlock();
+		}
+	}
+
+	/**
+	 * @param namespace
+	 *            namespace the result is attached to, null for the common
+	 *            namespace
+	 * @param idempotencyKey
+	 *            Idempotent method result identifier (key) in repository
+	 * @return completed result queued and not registered yet, null if none
+	 */
+	public IdempotentMethodResult pending(String namespace, String idempotencyKey) {
+		return pending.get(InFlightRegistry.keyOf(namespace, idempotencyKey));
+	}
+
+	/**
+	 * @return number of completed results waiting to be registered
+	 */
+	public int size() {
+		return queued.get();
+	}
+
+	void runWriter() {
+		List<Completion> batch = new ArrayList<>(maxBatchSize);
+		while (running || queued.get() > 0) {
+			try {
+				awaitBatch();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			long startedAtNanos = batchStartedAtNanos.get();
+			Completion completion;
+			while (batch.size() < maxBatchSize && Objects.nonNull(completion = queue.poll())) {
+				queued.decrementAndGet();
+				batch.add(completion);
+			}
+			if (queued.get() == 0) {
+				// Unless a new batch has started meanwhile
+				batchStartedAtNanos.compareAndSet(startedAtNanos, 0);
+			}
+
+			if (batch.isEmpty()) {
+				// A result is being queued
+				Thread.yield();
+			} else {
+				write(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Waits until a batch is full, or its linger duration has elapsed since its
+	 * first result was queued, or the finalizer is shut down. Spurious and early
+	 * wake ups are ignored, the deadline being checked again.
+	 */
+	void awaitBatch() throws InterruptedException {
+		batchLock.lock();
+		try {
+			while (running) {
+				int size = queued.get();
+				if (size >= maxBatchSize) {
+					return;
+				}
+				long startedAtNanos = batchStartedAtNanos.get();
+				if (size == 0 || startedAtNanos == 0) {
+					// No batch started yet, or its start is about to be signalled
+					batchChanged.awaitNanos(size == 0 ? IDLE_PARK_NANOS : lingerNanos);
+					continue;
+				}
+				long remainingNanos = startedAtNanos + lingerNanos - System.nanoTime();
+				if (remainingNanos <= 0) {
+					return;
+				}
+				batchChanged.awaitNanos(remainingNanos);
+			}
+		} finally {
+			batchLock.unlock();
+		}
+	}
+
+	void write(List<Completion> batch) {
+		List<IdempotentMethodResult> imrs = new ArrayList<>(batch.size());
+		try {
+			for (Completion completion : batch) {
+				if (completion.ifAbsent) {
+					registerIfAbsent(completion.imr);
+				} else {
+					imrs.add(completion.imr);
+				}
+			}
+
+			if (!imrs.isEmpty()) {
+				repository.registerAll(imrs);
+				LOGGER.trace("{} completed result(s) registered", imrs.size());
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Unable to register {} completed result(s) in idempotent repository. Cause : {}", imrs.size(),
+			        e.getMessage());
+		} finally {
+			for (Completion completion : batch) {
+				pending.remove(InFlightRegistry.keyOf(completion.imr), completion.imr);
+			}
+		}
+	}
+
+	void registerIfAbsent(IdempotentMethodResult imr) {
+		try {
+			IdempotentMethodResult current = repository.registerIfAbsent(imr);
+			if (Objects.nonNull(current)) {
+				LOGGER.trace("A racing presentation has registered its result first : keeping {}", current);
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Unable to register idempotent method result identified by key '{}' in idempotent repository. Cause : {}",
+			        imr.getIdempotencyKey(), e.getMessage());
+		}
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	public void setRepository(IdempotentRepository repository) {
+		this.repository = repository;
+	}
+
+}
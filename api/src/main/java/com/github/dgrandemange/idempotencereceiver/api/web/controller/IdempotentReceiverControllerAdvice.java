@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,15 +24,29 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import org.springframework.web.util.WebUtils;
 
 import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
+import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotenceUnavailableException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotentReceiverException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.MissingIdempotencyKeyHeaderException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.SubsequentPresentationException;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.RetentionPolicy;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyCompression;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyStorage;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.InFlightRegistry;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LatencyBudget;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LeaseManager;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LocalFallbackStore;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayCodecRegistry;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayHeaderPolicy;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningMarkerScheduler;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.WriteBehindFinalizer;
 import com.github.dgrandemange.idempotencereceiver.api.web.dto.HttpError;
 import com.github.dgrandemange.idempotencereceiver.api.web.http.ByteArrayHttpOutputMessage;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CapturingResponseWrapper;
 
 @ControllerAdvice
 public class IdempotentReceiverControllerAdvice implements ResponseBodyAdvice<Object> {
@@ -43,6 +59,36 @@ public class IdempotentReceiverControllerAdvice implements ResponseBodyAdvice<Ob
 	@Autowired
 	private IdempotentRepository repository;
 
+	@Autowired(required = false)
+	private RetentionPolicy retentionPolicy = RetentionPolicy.KEEP_ALL;
+
+	@Autowired(required = false)
+	private BodyCompression bodyCompression;
+
+	@Autowired(required = false)
+	private BodyStorage bodyStorage;
+
+	@Autowired(required = false)
+	private ReplayHeaderPolicy replayHeaderPolicy;
+
+	@Autowired(required = false)
+	private ReplayCodecRegistry replayCodecRegistry;
+
+	@Autowired(required = false)
+	private LeaseManager leaseManager;
+
+	@Autowired(required = false)
+	private RunningMarkerScheduler runningMarkerScheduler;
+
+	@Autowired(required = false)
+	private WriteBehindFinalizer writeBehindFinalizer;
+
+	@Autowired(required = false)
+	private LocalFallbackStore localFallbackStore;
+
+	@Autowired(required = false)
+	private InFlightRegistry inFlightRegistry;
+
 	@ExceptionHandler(SubsequentPresentationException.class)
 	ResponseEntity<Object> subsequentPresentationHandler(SubsequentPresentationException ex) {
 		return ex.getResponseEntity();
@@ -56,6 +102,17 @@ public class IdempotentReceiverControllerAdvice implements ResponseBodyAdvice<Ob
 		        status);
 	}
 
+	@ExceptionHandler(IdempotenceUnavailableException.class)
+	ResponseEntity<HttpError> idempotenceUnavailableHandler(IdempotenceUnavailableException ex) {
+		HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+		HttpHeaders headers = new HttpHeaders();
+		if (ex.getRetryAfterSeconds() > 0) {
+			headers.set(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()));
+		}
+		return new ResponseEntity<>(new HttpError(status, "idempotence temporarily unavailable, please retry"),
+		        headers, status);
+	}
+
 	@ExceptionHandler(IdempotentReceiverException.class)
 	ResponseEntity<HttpError> unhandled(IdempotentReceiverException ex) {
 		LOGGER.error(ex.getMessage(), ex);
@@ -72,14 +129,38 @@ public class IdempotentReceiverControllerAdvice implements ResponseBodyAdvice<Ob
 			return body;
 		}
 
-		IdempotentMethodResult imr = (IdempotentMethodResult) ((ServletServerHttpRequest) request).getServletRequest()
+		HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+		IdempotentMethodResult imr = (IdempotentMethodResult) servletRequest
 		        .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT);
 		if (Objects.isNull(imr)) {
 			return body;
 		}
 
-		((ServletServerHttpRequest) request).getServletRequest()
-		        .removeAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT);
+		CapturingResponseWrapper responseWrapper = (response instanceof ServletServerHttpResponse)
+		        ? WebUtils.getNativeResponse(((ServletServerHttpResponse) response).getServletResponse(),
+		                CapturingResponseWrapper.class)
+		        : null;
+		if (Objects.nonNull(responseWrapper) && responseWrapper.isCapturing()) {
+			// Body bytes get captured as they are written to the client : only keep
+			// track of how they are produced, the result being finalized by
+			// ImrHandlerInterceptor once the response is complete
+			IdempotentMethodResult pendingImr = IdempotentMethodResult.builder().from(imr).build();
+			pendingImr.setBodyContentType(selectedContentType);
+			int replayCodecId = resolveReplayCodecId(body, selectedConverterType);
+			if (replayCodecId != 0) {
+				pendingImr.setReplayCodecId(replayCodecId);
+			} else {
+				pendingImr.setReturnTypeName(body.getClass().getName());
+				pendingImr.setSelectedConverterTypeName(selectedConverterType.getName());
+			}
+			servletRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, pendingImr);
+			return body;
+		}
+
+		servletRequest.removeAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT);
+		Object registerableEx = servletRequest
+		        .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION);
+		servletRequest.removeAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION);
 
 		ByteArrayHttpOutputMessage outputMessage = null;
 		List<HttpMessageConverter<?>> messageConverters = handlerAdapter.getMessageConverters();
@@ -98,35 +179,118 @@ public class IdempotentReceiverControllerAdvice implements ResponseBodyAdvice<Ob
 			}
 		}
 
-		if (Objects.isNull(outputMessage)) {
-			try {
-				repository.unregister(imr.getIdempotencyKey());
-			} catch (Exception e) {
-				LOGGER.warn(
-				        "Unable to unregister request identified by key '{}' from idempotent repository. Cause : {}",
-				        imr.getIdempotencyKey(), e.getMessage());
+		Object budgetAttribute = servletRequest
+		        .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_LATENCY_BUDGET);
+		LatencyBudget budget = (budgetAttribute instanceof LatencyBudget) ? (LatencyBudget) budgetAttribute : null;
+
+		// Processed in optimistic mode, no running result of its own having been registered
+		boolean optimistic = Objects.nonNull(runningMarkerScheduler) && runningMarkerScheduler.settle(imr);
+
+		if (Objects.nonNull(leaseManager)) {
+			// Renewals must not overwrite the result about to be finalized
+			leaseManager.release(imr);
+		}
+
+		IdempotentMethodResult registeredImr = null;
+		try {
+			if (Objects.isNull(outputMessage)) {
+				if (optimistic) {
+					return body;
+				}
+				if (Objects.nonNull(localFallbackStore) && localFallbackStore.release(imr)) {
+					LOGGER.trace("Idempotent method result claimed locally : released {}", imr);
+					return body;
+				}
+				try {
+					if (Objects.isNull(budget)) {
+						repository.unregister(imr.getNamespace(), imr.getIdempotencyKey());
+					} else {
+						budget.unregister(repository, imr.getNamespace(), imr.getIdempotencyKey());
+					}
+				} catch (Exception e) {
+					LOGGER.warn(
+					        "Unable to unregister request identified by key '{}' from idempotent repository. Cause : {}",
+					        imr.getIdempotencyKey(), e.getMessage());
+					if (Objects.nonNull(localFallbackStore)) {
+						// Running result left behind, unregistered once the repository answers again
+						localFallbackStore.unregisterLater(imr);
+					}
+				}
+			} else {
+				byte[] bodyAsBytes = outputMessage.getBodyAsBytes();
+				HttpHeaders responseHeaders = response.getHeaders();
+				if (Objects.nonNull(replayHeaderPolicy)) {
+					responseHeaders = replayHeaderPolicy.filter(responseHeaders);
+				}
+				IdempotentMethodResult updatedImr = retentionPolicy.apply(IdempotentMethodResult.builder().from(imr)
+				        .withResponse(bodyAsBytes, body.getClass(), selectedContentType, selectedConverterType,
+				                responseHeaders,
+				                HttpStatus.resolve(((ServletServerHttpResponse) response).getServletResponse().getStatus()))
+				        .withReplayCodecId(resolveReplayCodecId(body, selectedConverterType)).build(), servletRequest, (registerableEx instanceof Exception) ? (Exception) registerableEx : null);
+
+				if (Objects.nonNull(bodyCompression)) {
+					updatedImr = bodyCompression.compress(updatedImr);
+				}
+				if (Objects.nonNull(bodyStorage)) {
+					updatedImr = bodyStorage.offload(updatedImr);
+				}
+
+				try {
+					LOGGER.trace("Registering idempotent method result into repository {}", updatedImr);
+					if (Objects.nonNull(localFallbackStore) && localFallbackStore.complete(updatedImr)) {
+						LOGGER.trace("Idempotent method result claimed locally : held locally until replayed {}",
+						        updatedImr);
+						registeredImr = updatedImr;
+						return body;
+					}
+					if (Objects.nonNull(writeBehindFinalizer) && writeBehindFinalizer.submit(updatedImr, optimistic)) {
+						LOGGER.trace("Idempotent method result has been queued for registration {}", updatedImr);
+						registeredImr = updatedImr;
+						return body;
+					}
+					if (!optimistic) {
+						if (Objects.isNull(budget)) {
+							repository.register(updatedImr.getIdempotencyKey(), updatedImr);
+						} else {
+							budget.register(repository, updatedImr);
+						}
+						registeredImr = updatedImr;
+					} else if (Objects.nonNull(repository.registerIfAbsent(updatedImr))) {
+						LOGGER.trace("A racing presentation has registered its result first : keeping it");
+						return body;
+					}
+					LOGGER.trace("Idempotent method result has been registered into repository {}", updatedImr);
+				} catch (Exception e) {
+					LOGGER.warn("Unable to register idempotent method result identified by key '{}' in idempotent repository. Cause : {}",
+					        updatedImr.getIdempotencyKey(), e.getMessage());
+					if (Objects.nonNull(localFallbackStore)
+					        && Objects.nonNull(servletRequest
+					                .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_LOCAL_FALLBACK))
+					        && localFallbackStore.keep(updatedImr, e)) {
+						LOGGER.trace("Idempotent method result held locally until replayed {}", updatedImr);
+						registeredImr = updatedImr;
+					}
+				}
 			}
-		} else {
-			byte[] bodyAsBytes = outputMessage.getBodyAsBytes();
-			IdempotentMethodResult updatedImr = IdempotentMethodResult.builder().from(imr)
-			        .withResponse(bodyAsBytes, body.getClass(), selectedContentType, selectedConverterType,
-			                HttpHeaders.readOnlyHttpHeaders(response.getHeaders()),
-			                HttpStatus.resolve(((ServletServerHttpResponse) response).getServletResponse().getStatus()))
-			        .build();
-
-			try {
-				LOGGER.trace("Registering idempotent method result into repository {}", updatedImr);
-				repository.register(updatedImr.getIdempotencyKey(), updatedImr);
-				LOGGER.trace("Idempotent method result has been registered into repository {}", updatedImr);
-			} catch (Exception e) {
-				LOGGER.warn("Unable to register idempotent method result identified by key '{}' in idempotent repository. Cause : {}",
-				        updatedImr.getIdempotencyKey(), e.getMessage());
+		} finally {
+			if (Objects.nonNull(inFlightRegistry) && !optimistic) {
+				// Concurrent duplicates waiting on this instance get the registered result
+				inFlightRegistry.complete(imr, registeredImr);
 			}
 		}
 
 		return body;
 	}
 
+	/**
+	 * @return identifier of the codec able to read given body back, 0 when none
+	 *         is registered
+	 */
+	int resolveReplayCodecId(Object body, Class<? extends HttpMessageConverter<?>> selectedConverterType) {
+		return Objects.isNull(replayCodecRegistry) ? 0
+		        : replayCodecRegistry.idOf(body.getClass(), selectedConverterType);
+	}
+
 	@Override
 	public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
 		return true;
@@ -140,4 +304,44 @@ public class IdempotentReceiverControllerAdvice implements ResponseBodyAdvice<Ob
 		this.repository = repository;
 	}
 
+	public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+		this.retentionPolicy = retentionPolicy;
+	}
+
+	public void setBodyCompression(BodyCompression bodyCompression) {
+		this.bodyCompression = bodyCompression;
+	}
+
+	public void setBodyStorage(BodyStorage bodyStorage) {
+		this.bodyStorage = bodyStorage;
+	}
+
+	public void setReplayHeaderPolicy(ReplayHeaderPolicy replayHeaderPolicy) {
+		this.replayHeaderPolicy = replayHeaderPolicy;
+	}
+
+	public void setLeaseManager(LeaseManager leaseManager) {
+		this.leaseManager = leaseManager;
+	}
+
+	public void setRunningMarkerScheduler(RunningMarkerScheduler runningMarkerScheduler) {
+		this.runningMarkerScheduler = runningMarkerScheduler;
+	}
+
+	public void setWriteBehindFinalizer(WriteBehindFinalizer writeBehindFinalizer) {
+		this.writeBehindFinalizer = writeBehindFinalizer;
+	}
+
+	public void setReplayCodecRegistry(ReplayCodecRegistry replayCodecRegistry) {
+		this.replayCodecRegistry = replayCodecRegistry;
+	}
+
+	public void setLocalFallbackStore(LocalFallbackStore localFallbackStore) {
+		this.localFallbackStore = localFallbackStore;
+	}
+
+	public void setInFlightRegistry(InFlightRegistry inFlightRegistry) {
+		this.inFlightRegistry = inFlightRegistry;
+	}
+
 }
@@ -0,0 +1,92 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.filter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.filter.GenericFilterBean;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.CaptureConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.ByteChunkPool;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CaptureBuffer;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CapturingResponseWrapper;
+
+/**
+ * Wraps responses so that the body of an idempotent handler response can be
+ * captured as it is written to the client (see
+ * {@link CapturingResponseWrapper})
+ */
+public class CaptureResponseContentFilter extends GenericFilterBean {
+
+	@Autowired(required = false)
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	private final ByteChunkPool pool;
+
+	private CaptureConfiguration capture = new CaptureConfiguration();
+
+	private Path directory;
+
+	public CaptureResponseContentFilter() {
+		this(new ByteChunkPool());
+	}
+
+	public CaptureResponseContentFilter(ByteChunkPool pool) {
+		this.pool = pool;
+		init(capture);
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		if (Objects.nonNull(configuration)) {
+			init(configuration.getCapture());
+		}
+	}
+
+	void init(CaptureConfiguration capture) {
+		this.capture = capture;
+		String dir = capture.getDirectory();
+		this.directory = (Objects.isNull(dir) || dir.trim().isEmpty())
+		        ? Paths.get(System.getProperty("java.io.tmpdir"), "idempotence-receiver-capture")
+		        : Paths.get(dir);
+	}
+
+	@Override
+	public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+	        throws IOException, ServletException {
+		if (servletResponse instanceof HttpServletResponse) {
+			CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(
+			        (HttpServletResponse) servletResponse, this::newCaptureBuffer);
+			try {
+				chain.doFilter(servletRequest, responseWrapper);
+			} finally {
+				// Capture is normally released once the result is finalized, possibly
+				// after asynchronous processing
+				if (!servletRequest.isAsyncStarted()) {
+					responseWrapper.release();
+				}
+			}
+		} else {
+			chain.doFilter(servletRequest, servletResponse);
+		}
+	}
+
+	CaptureBuffer newCaptureBuffer() {
+		return new CaptureBuffer(pool, capture.getMemoryThreshold(), capture.getMaxBodySize(), directory);
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.filter;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.GenericFilterBean;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
+import com.github.dgrandemange.idempotencereceiver.api.model.CaptureConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.BufferedBodyRequestWrapper;
+
+/**
+ * <p>
+ * Detects duplicate requests before they get dispatched : requests mapped to an
+ * {@link Idempotent} handler method are looked up (or claimed) by the
+ * {@link IdempotentReceiverAspect} from this filter, and a stored response is
+ * replayed without involving the dispatcher at all (no body deserialization,
+ * validation nor argument resolution).
+ * </p>
+ *
+ * <p>
+ * Should be ordered after security filters, as the request hash depends on the
+ * authenticated principal. Form and multipart requests are left to the aspect,
+ * as their body is read as parameters. As the body is buffered in memory, so
+ * are requests whose body size is unknown or exceeds
+ * {@link CaptureConfiguration#getMemoryThreshold()}.
+ * </p>
+ */
+public class PreDispatchIdempotenceFilter extends GenericFilterBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PreDispatchIdempotenceFilter.class);
+
+	@Autowired
+	private RequestMappingHandlerMapping handlerMapping;
+
+	@Autowired
+	private IdempotentReceiverAspect aspect;
+
+	@Autowired(required = false)
+	private IdempotentReceiverCommonConfiguration configuration;
+
+	@Override
+	public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+	        throws IOException, ServletException {
+		HandlerMethod handlerMethod = (servletRequest instanceof HttpServletRequest)
+		        && (servletResponse instanceof HttpServletResponse)
+		                ? resolveIdempotentHandlerMethod((HttpServletRequest) servletRequest)
+		                : null;
+		if (Objects.isNull(handlerMethod)) {
+			chain.doFilter(servletRequest, servletResponse);
+			return;
+		}
+
+		BufferedBodyRequestWrapper request = new BufferedBodyRequestWrapper((HttpServletRequest) servletRequest);
+		try {
+			if (aspect.handleBeforeDispatch(handlerMethod, request, (HttpServletResponse) servletResponse)) {
+				return;
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new ServletException(e);
+		}
+
+		try {
+			chain.doFilter(request, servletResponse);
+		} finally {
+			aspect.releaseUnprocessedClaim(request);
+		}
+	}
+
+	/**
+	 * @return {@link Idempotent} handler method the request is mapped to, null
+	 *         when none or when the request is not eligible to pre-dispatch
+	 *         handling
+	 */
+	HandlerMethod resolveIdempotentHandlerMethod(HttpServletRequest request) {
+		String idempotencyKeyHeader = request.getHeader(IdempotentReceiverAspect.HTTP_HEADER_IDEMPOTENCY_KEY);
+		if (Objects.isNull(idempotencyKeyHeader) || idempotencyKeyHeader.trim().isEmpty() || isFormRequest(request)
+		        || !isBufferable(request)) {
+			return null;
+		}
+
+		HandlerExecutionChain handlerExecutionChain;
+		try {
+			handlerExecutionChain = handlerMapping.getHandler(request);
+		} catch (Exception e) {
+			LOGGER.trace("Unable to resolve handler of request '{}' before dispatch. Cause : {}",
+			        request.getRequestURI(), e.getMessage());
+			return null;
+		}
+
+		if (Objects.isNull(handlerExecutionChain) || !(handlerExecutionChain.getHandler() instanceof HandlerMethod)) {
+			return null;
+		}
+		HandlerMethod handlerMethod = (HandlerMethod) handlerExecutionChain.getHandler();
+		return AnnotatedElementUtils.hasAnnotation(handlerMethod.getMethod(), Idempotent.class) ? handlerMethod
+		        : null;
+	}
+
+	boolean isFormRequest(HttpServletRequest request) {
+		String contentType = request.getContentType();
+		if (Objects.isNull(contentType)) {
+			return false;
+		}
+		try {
+			MediaType mediaType = MediaType.parseMediaType(contentType);
+			return MediaType.APPLICATION_FORM_URLENCODED.includes(mediaType)
+			        || MediaType.MULTIPART_FORM_DATA.includes(mediaType);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if the body of the request can be held in memory, i.e. its
+	 *         size is known and doesn't exceed the capture memory threshold
+	 */
+	boolean isBufferable(HttpServletRequest request) {
+		long contentLength = request.getContentLengthLong();
+		if (contentLength < 0) {
+			// No body at all, unless it is chunked
+			return Objects.isNull(request.getHeader(HttpHeaders.TRANSFER_ENCODING));
+		}
+		int memoryThreshold = Objects.isNull(configuration) ? CaptureConfiguration.DEFAULT_MEMORY_THRESHOLD
+		        : configuration.getCapture().getMemoryThreshold();
+		return contentLength <= memoryThreshold;
+	}
+
+	public void setHandlerMapping(RequestMappingHandlerMapping handlerMapping) {
+		this.handlerMapping = handlerMapping;
+	}
+
+	public void setAspect(IdempotentReceiverAspect aspect) {
+		this.aspect = aspect;
+	}
+
+	public void setConfiguration(IdempotentReceiverCommonConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+}
@@ -0,0 +1,213 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+
+/**
+ * <p>
+ * Request wrapper reading the whole body upfront, so that it can be read both
+ * before dispatch (e.g. to compute a request hash) and by the handler method.
+ * </p>
+ *
+ * <p>
+ * The body being held in memory, callers are expected to only wrap requests
+ * whose body size is known and bounded. The parameters of a form url encoded
+ * body are parsed from the buffered contents, as the container can't parse
+ * them anymore once the body has been read.
+ * </p>
+ */
+public class BufferedBodyRequestWrapper extends HttpServletRequestWrapper {
+
+	private final byte[] content;
+
+	private Map<String, String[]> parameterMap;
+
+	public BufferedBodyRequestWrapper(HttpServletRequest request) throws IOException {
+		super(request);
+		this.content = StreamUtils.copyToByteArray(request.getInputStream());
+	}
+
+	/**
+	 * @return body contents
+	 */
+	public byte[] getContentAsByteArray() {
+		return content;
+	}
+
+	@Override
+	public ServletInputStream getInputStream() {
+		return new ByteArrayServletInputStream(content);
+	}
+
+	@Override
+	public BufferedReader getReader() {
+		String encoding = getCharacterEncoding();
+		Charset charset = Objects.isNull(encoding) ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+		return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+	}
+
+	@Override
+	public int getContentLength() {
+		return content.length;
+	}
+
+	@Override
+	public long getContentLengthLong() {
+		return content.length;
+	}
+
+	@Override
+	public String getParameter(String name) {
+		String[] values = getParameterMap().get(name);
+		return (Objects.isNull(values) || values.length == 0) ? null : values[0];
+	}
+
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		if (Objects.isNull(parameterMap)) {
+			parameterMap = Collections.unmodifiableMap(parseParameters());
+		}
+		return parameterMap;
+	}
+
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(getParameterMap().keySet());
+	}
+
+	@Override
+	public String[] getParameterValues(String name) {
+		return getParameterMap().get(name);
+	}
+
+	/**
+	 * @return parameters known by the container (i.e. query string ones, the
+	 *         body having been read), merged with the ones of a form url encoded
+	 *         body
+	 */
+	Map<String, String[]> parseParameters() {
+		Map<String, String[]> parameters = new LinkedHashMap<>(super.getParameterMap());
+		if (!isFormUrlEncoded()) {
+			return parameters;
+		}
+
+		MultiValueMap<String, String> formParameters;
+		try {
+			formParameters = new FormHttpMessageConverter().read(null, new BufferedInputMessage());
+		} catch (IOException e) {
+			return parameters;
+		}
+		for (Map.Entry<String, List<String>> entry : formParameters.entrySet()) {
+			String[] values = entry.getValue().toArray(new String[0]);
+			parameters.merge(entry.getKey(), values, BufferedBodyRequestWrapper::concat);
+		}
+		return parameters;
+	}
+
+	boolean isFormUrlEncoded() {
+		String contentType = getContentType();
+		if (Objects.isNull(contentType)) {
+			return false;
+		}
+		try {
+			return MediaType.APPLICATION_FORM_URLENCODED.includes(MediaType.parseMediaType(contentType));
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	static String[] concat(String[] first, String[] second) {
+		String[] res = new String[first.length + second.length];
+		System.arraycopy(first, 0, res, 0, first.length);
+		System.arraycopy(second, 0, res, first.length, second.length);
+		return res;
+	}
+
+	private class BufferedInputMessage implements HttpInputMessage {
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(content);
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.CONTENT_TYPE, getContentType());
+			return headers;
+		}
+
+	}
+
+	private static class ByteArrayServletInputStream extends ServletInputStream {
+
+		private final ByteArrayInputStream delegate;
+
+		ByteArrayServletInputStream(byte[] content) {
+			this.delegate = new ByteArrayInputStream(content);
+		}
+
+		@Override
+		public int read() {
+			return delegate.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return delegate.read(b, off, len);
+		}
+
+		@Override
+		public boolean isFinished() {
+			return delegate.available() == 0;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		/**
+		 * The whole body being available, the listener is notified right away
+		 */
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			Objects.requireNonNull(readListener, "readListener");
+			try {
+				if (!isFinished()) {
+					readListener.onDataAvailable();
+				}
+				if (isFinished()) {
+					readListener.onAllDataRead();
+				}
+			} catch (IOException e) {
+				readListener.onError(e);
+			}
+		}
+
+	}
+
+}
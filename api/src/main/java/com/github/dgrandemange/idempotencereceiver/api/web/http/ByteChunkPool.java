@@ -0,0 +1,80 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Bounded pool of fixed size byte arrays, used to capture response bodies
+ * without allocating (and growing) a new buffer per request.
+ * </p>
+ *
+ * <p>
+ * When the pool is empty, a new chunk is allocated ; when it is full, released
+ * chunks are left to the garbage collector.
+ * </p>
+ */
+public class ByteChunkPool {
+
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	public static final int DEFAULT_MAX_POOLED_CHUNKS = 256;
+
+	private final int chunkSize;
+
+	private final int maxPooledChunks;
+
+	private final Queue<byte[]> chunks = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger pooledChunks = new AtomicInteger();
+
+	public ByteChunkPool() {
+		this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_CHUNKS);
+	}
+
+	public ByteChunkPool(int chunkSize, int maxPooledChunks) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunk size must be positive");
+		}
+		this.chunkSize = chunkSize;
+		this.maxPooledChunks = maxPooledChunks;
+	}
+
+	/**
+	 * @return a chunk of {@link #getChunkSize()} bytes, whose content is undefined
+	 */
+	public byte[] acquire() {
+		byte[] chunk = chunks.poll();
+		if (chunk == null) {
+			return new byte[chunkSize];
+		}
+		pooledChunks.decrementAndGet();
+		return chunk;
+	}
+
+	/**
+	 * @param chunk
+	 *            chunk previously acquired from this pool, not to be used anymore
+	 *            by the caller
+	 */
+	public void release(byte[] chunk) {
+		if (chunk == null || chunk.length != chunkSize) {
+			return;
+		}
+		if (pooledChunks.incrementAndGet() > maxPooledChunks) {
+			pooledChunks.decrementAndGet();
+			return;
+		}
+		chunks.offer(chunk);
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	int getPooledChunks() {
+		return pooledChunks.get();
+	}
+
+}
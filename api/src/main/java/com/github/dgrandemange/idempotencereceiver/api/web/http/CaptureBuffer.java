@@ -0,0 +1,220 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.CaptureConfiguration;
+
+/**
+ * <p>
+ * Bounded buffer of captured body bytes : bytes are kept in pooled memory
+ * chunks up to {@link CaptureConfiguration#getMemoryThreshold()}, then spilled
+ * to a temporary file.
+ * </p>
+ *
+ * <p>
+ * Once {@link CaptureConfiguration#getMaxBodySize()} is exceeded (or when the
+ * spill file can't be written), the buffer is marked overflowed and stops
+ * recording : writing to it never fails.
+ * </p>
+ */
+public class CaptureBuffer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CaptureBuffer.class);
+
+	private final PooledByteArrayOutputStream memory;
+
+	private final int memoryThreshold;
+
+	private final long maxBodySize;
+
+	private final Path directory;
+
+	private Path spillFile;
+
+	private OutputStream spillStream;
+
+	private long size;
+
+	private boolean overflowed;
+
+	/**
+	 * @param pool
+	 *            pool memory chunks are borrowed from
+	 * @param memoryThreshold
+	 *            size in bytes above which bytes are spilled to a file
+	 * @param maxBodySize
+	 *            size in bytes above which the buffer is overflowed, 0 for no
+	 *            limit
+	 * @param directory
+	 *            directory spill files are created in
+	 */
+	public CaptureBuffer(ByteChunkPool pool, int memoryThreshold, long maxBodySize, Path directory) {
+		this.memory = new PooledByteArrayOutputStream(pool);
+		this.memoryThreshold = memoryThreshold;
+		this.maxBodySize = maxBodySize;
+		this.directory = directory;
+	}
+
+	public void write(int b) {
+		if (accept(1)) {
+			try {
+				if (Objects.isNull(spillStream)) {
+					memory.write(b);
+				} else {
+					spillStream.write(b);
+				}
+				size++;
+			} catch (IOException e) {
+				overflow(e);
+			}
+		}
+	}
+
+	public void write(byte[] b, int off, int len) {
+		if (accept(len)) {
+			try {
+				if (Objects.isNull(spillStream)) {
+					memory.write(b, off, len);
+				} else {
+					spillStream.write(b, off, len);
+				}
+				size += len;
+			} catch (IOException e) {
+				overflow(e);
+			}
+		}
+	}
+
+	/**
+	 * @return true when given number of bytes can be recorded, spilling memory
+	 *         contents to a file if needed
+	 */
+	private boolean accept(int len) {
+		if (overflowed) {
+			return false;
+		}
+		if (maxBodySize > 0 && size + len > maxBodySize) {
+			LOGGER.debug("Captured body exceeds {} bytes : capture abandoned", maxBodySize);
+			overflow(null);
+			return false;
+		}
+		if (Objects.isNull(spillStream) && size + len > memoryThreshold) {
+			try {
+				Files.createDirectories(directory);
+				spillFile = Files.createTempFile(directory, "capture-", ".tmp");
+				spillStream = new BufferedOutputStream(Files.newOutputStream(spillFile), 8192);
+				spillStream.write(memory.toByteArray());
+				memory.reset();
+			} catch (IOException e) {
+				overflow(e);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void overflow(IOException e) {
+		if (Objects.nonNull(e)) {
+			LOGGER.warn("Unable to spill captured body to directory '{}' : capture abandoned. Cause : {}", directory,
+			        e.getMessage());
+		}
+		overflowed = true;
+		discard();
+	}
+
+	/**
+	 * @return number of captured bytes
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return true when the captured body exceeded the maximum size, or could not
+	 *         be spilled : it is then incomplete
+	 */
+	public boolean isOverflowed() {
+		return overflowed;
+	}
+
+	/**
+	 * @return true when the captured body has been spilled to a file
+	 */
+	public boolean isSpilled() {
+		return Objects.nonNull(spillFile);
+	}
+
+	/**
+	 * @return captured bytes
+	 * @throws IOException
+	 *             if spilled bytes can't be read back
+	 */
+	public byte[] toByteArray() throws IOException {
+		if (!isSpilled()) {
+			return memory.toByteArray();
+		}
+		spillStream.flush();
+		return Files.readAllBytes(spillFile);
+	}
+
+	/**
+	 * @return stream of the captured bytes, to be closed by the caller
+	 * @throws IOException
+	 *             if spilled bytes can't be read back
+	 */
+	public InputStream openInputStream() throws IOException {
+		if (!isSpilled()) {
+			return new ByteArrayInputStream(memory.toByteArray());
+		}
+		spillStream.flush();
+		return Files.newInputStream(spillFile);
+	}
+
+	/**
+	 * Discards captured bytes, so that capture starts over
+	 */
+	public void reset() {
+		discard();
+		overflowed = false;
+	}
+
+	/**
+	 * Discards captured bytes, giving memory chunks back to the pool
+	 */
+	public void release() {
+		discard();
+		memory.release();
+	}
+
+	private void discard() {
+		memory.reset();
+		size = 0;
+		if (Objects.nonNull(spillStream)) {
+			try {
+				spillStream.close();
+			} catch (IOException e) {
+				// Spill file gets deleted anyway
+			}
+			spillStream = null;
+		}
+		if (Objects.nonNull(spillFile)) {
+			try {
+				Files.deleteIfExists(spillFile);
+			} catch (IOException e) {
+				LOGGER.warn("Unable to delete capture spill file '{}'. Cause : {}", spillFile, e.getMessage());
+			}
+			spillFile = null;
+		}
+	}
+
+}
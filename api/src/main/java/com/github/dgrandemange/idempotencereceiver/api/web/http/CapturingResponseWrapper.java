@@ -0,0 +1,181 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.function.Supplier;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * <p>
+ * Response wrapper able to keep a copy of the body bytes as they are written to
+ * the client, so that an idempotent method result holds exactly the bytes of
+ * the first presentation response, without serializing its body twice.
+ * </p>
+ *
+ * <p>
+ * Capture is off until {@link #startCapture()} is called (i.e. for idempotent
+ * handlers only) : until then, the wrapper merely delegates to the wrapped
+ * response. Capture is abandoned when the body is written through
+ * {@link #getWriter()}, as for rendered views.
+ * </p>
+ */
+public class CapturingResponseWrapper extends HttpServletResponseWrapper {
+
+	private final Supplier<CaptureBuffer> captureBuffers;
+
+	private CaptureBuffer capture;
+
+	private ServletOutputStream outputStream;
+
+	/**
+	 * @param response
+	 *            wrapped response
+	 * @param pool
+	 *            pool the capture buffer borrows memory chunks from, the body
+	 *            being kept in memory whatever its size
+	 */
+	public CapturingResponseWrapper(HttpServletResponse response, ByteChunkPool pool) {
+		this(response, () -> new CaptureBuffer(pool, Integer.MAX_VALUE, 0, null));
+	}
+
+	/**
+	 * @param response
+	 *            wrapped response
+	 * @param captureBuffers
+	 *            supplies the buffer of a starting capture
+	 */
+	public CapturingResponseWrapper(HttpServletResponse response, Supplier<CaptureBuffer> captureBuffers) {
+		super(response);
+		this.captureBuffers = captureBuffers;
+	}
+
+	/**
+	 * Starts capturing body bytes written from now on
+	 */
+	public void startCapture() {
+		if (capture == null) {
+			capture = captureBuffers.get();
+		}
+	}
+
+	/**
+	 * @return true when body bytes are being captured
+	 */
+	public boolean isCapturing() {
+		return capture != null;
+	}
+
+	/**
+	 * @return buffer of the captured body bytes, null when not capturing
+	 */
+	public CaptureBuffer getCapture() {
+		return capture;
+	}
+
+	/**
+	 * @return copy of the captured body bytes, null when not capturing
+	 * @throws IOException
+	 *             if bytes spilled to a file can't be read back
+	 */
+	public byte[] getCapturedBody() throws IOException {
+		return (capture == null) ? null : capture.toByteArray();
+	}
+
+	/**
+	 * Stops capturing, giving capture buffers back to the pool
+	 */
+	public void release() {
+		if (capture != null) {
+			capture.release();
+			capture = null;
+		}
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (capture == null) {
+			return super.getOutputStream();
+		}
+		if (outputStream == null) {
+			outputStream = new TeeServletOutputStream(super.getOutputStream());
+		}
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		release();
+		return super.getWriter();
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		if (capture != null) {
+			capture.reset();
+		}
+	}
+
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		if (capture != null) {
+			capture.reset();
+		}
+	}
+
+	/**
+	 * Writes to the client output stream and, while capture is on, to the capture
+	 * buffer
+	 */
+	private class TeeServletOutputStream extends ServletOutputStream {
+
+		private final ServletOutputStream delegate;
+
+		TeeServletOutputStream(ServletOutputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			delegate.write(b);
+			if (capture != null) {
+				capture.write(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			delegate.write(b, off, len);
+			if (capture != null) {
+				capture.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			delegate.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+
+		@Override
+		public boolean isReady() {
+			return delegate.isReady();
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			delegate.setWriteListener(writeListener);
+		}
+
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Objects;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.UnmarshallException;
+import com.github.dgrandemange.idempotencereceiver.api.model.CompactHttpHeaders;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyCompression;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyStorage;
+
+/**
+ * <p>
+ * Replays a stored response by writing its status, headers and body bytes
+ * straight to the servlet response : the body is neither read back into a
+ * domain object nor written again by a message converter.
+ * </p>
+ *
+ * <p>
+ * A compressed body is sent as is to clients accepting its content coding, and
+ * decompressed for the other ones. A body kept in the body store is streamed
+ * without being loaded in memory.
+ * </p>
+ */
+public class DirectReplayWriter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DirectReplayWriter.class);
+
+	@Autowired(required = false)
+	private BodyCompression bodyCompression;
+
+	@Autowired(required = false)
+	private BodyStorage bodyStorage;
+
+	/**
+	 * @param imr
+	 *            idempotent method result in DONE state
+	 * @param request
+	 *            current HTTP request
+	 * @param response
+	 *            current HTTP response, not committed yet
+	 * @throws UnmarshallException
+	 *             if the stored body is not available, or cannot be decoded for
+	 *             the client ; nothing has been written to the response then
+	 */
+	public void write(IdempotentMethodResult imr, HttpServletRequest request, HttpServletResponse response)
+	        throws UnmarshallException {
+		String encoding = imr.getBodyContentEncoding();
+		boolean passThrough = Objects.nonNull(encoding) && Objects.nonNull(bodyCompression)
+		        && bodyCompression.canPassThrough(imr, request);
+
+		byte[] body = null;
+		long length = 0;
+		if (Objects.nonNull(encoding) && !passThrough) {
+			body = decompress(imr, load(imr));
+			encoding = null;
+			length = body.length;
+		} else if (Objects.nonNull(imr.getBodyRef())) {
+			length = storedSize(imr);
+		} else {
+			body = imr.getBody();
+			length = Objects.isNull(body) ? 0 : body.length;
+		}
+
+		writeStatusAndHeaders(imr.getResponseStatus(), imr.getCompactResponseHeaders(), response);
+		if (length > 0) {
+			if (Objects.nonNull(imr.getBodyContentType())) {
+				response.setContentType(imr.getBodyContentType().toString());
+			}
+			if (Objects.nonNull(encoding)) {
+				response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+				response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			}
+		}
+		response.setContentLengthLong(length);
+
+		try {
+			if (Objects.nonNull(body)) {
+				response.getOutputStream().write(body);
+			} else if (length > 0) {
+				bodyStorage.transferTo(imr, Channels.newChannel(response.getOutputStream()));
+			}
+			response.flushBuffer();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to replay response of idempotent method result identified by key '{}'. Cause : {}",
+			        imr.getIdempotencyKey(), e.getMessage());
+		}
+	}
+
+	/**
+	 * @param status
+	 *            status to send back
+	 * @param headers
+	 *            headers to send back, possibly null
+	 * @param response
+	 *            current HTTP response, not committed yet
+	 */
+	public void writeWithoutBody(HttpStatus status, HttpHeaders headers, HttpServletResponse response) {
+		writeStatusAndHeaders(status, CompactHttpHeaders.of(headers), response);
+		response.setContentLength(0);
+		try {
+			response.flushBuffer();
+		} catch (IOException e) {
+			LOGGER.warn("Unable to write response. Cause : {}", e.getMessage());
+		}
+	}
+
+	void writeStatusAndHeaders(HttpStatus status, CompactHttpHeaders headers, HttpServletResponse response) {
+		response.setStatus(Objects.isNull(status) ? HttpStatus.OK.value() : status.value());
+		if (Objects.isNull(headers)) {
+			return;
+		}
+		for (int i = 0; i < headers.size(); i++) {
+			String name = headers.getName(i);
+			// Computed again for the body as written now
+			if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+			        && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+				response.addHeader(name, headers.getValue(i));
+			}
+		}
+	}
+
+	byte[] load(IdempotentMethodResult imr) throws UnmarshallException {
+		if (Objects.isNull(imr.getBodyRef())) {
+			return imr.getBody();
+		}
+		checkBodyStorage(imr);
+		try {
+			return bodyStorage.load(imr);
+		} catch (IOException e) {
+			throw new UnmarshallException(imr, e);
+		}
+	}
+
+	long storedSize(IdempotentMethodResult imr) throws UnmarshallException {
+		checkBodyStorage(imr);
+		try {
+			return bodyStorage.size(imr);
+		} catch (IOException e) {
+			throw new UnmarshallException(imr, e);
+		}
+	}
+
+	byte[] decompress(IdempotentMethodResult imr, byte[] stored) throws UnmarshallException {
+		if (Objects.isNull(bodyCompression)) {
+			throw new UnmarshallException(imr, String.format(
+			        "no body compression available to decode content coding '%s'", imr.getBodyContentEncoding()));
+		}
+		try {
+			return bodyCompression.decompress(imr.getBodyContentEncoding(), stored);
+		} catch (IOException e) {
+			throw new UnmarshallException(imr, e);
+		}
+	}
+
+	private void checkBodyStorage(IdempotentMethodResult imr) throws UnmarshallException {
+		if (Objects.isNull(bodyStorage)) {
+			throw new UnmarshallException(imr,
+			        String.format("no body storage available to read body '%s'", imr.getBodyRef()));
+		}
+	}
+
+	public void setBodyCompression(BodyCompression bodyCompression) {
+		this.bodyCompression = bodyCompression;
+	}
+
+	public void setBodyStorage(BodyStorage bodyStorage) {
+		this.bodyStorage = bodyStorage;
+	}
+
+}
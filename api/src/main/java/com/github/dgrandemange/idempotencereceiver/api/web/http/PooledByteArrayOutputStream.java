@@ -0,0 +1,109 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output stream accumulating written bytes in chunks borrowed from a
+ * {@link ByteChunkPool}, to be given back with {@link #release()}.
+ */
+public class PooledByteArrayOutputStream extends OutputStream {
+
+	private final ByteChunkPool pool;
+
+	private final List<byte[]> chunks = new ArrayList<>(4);
+
+	private byte[] current;
+
+	private int position;
+
+	private int size;
+
+	private boolean released;
+
+	public PooledByteArrayOutputStream(ByteChunkPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void write(int b) {
+		ensureCapacity();
+		current[position++] = (byte) b;
+		size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		while (len > 0) {
+			ensureCapacity();
+			int n = Math.min(len, current.length - position);
+			System.arraycopy(b, off, current, position, n);
+			position += n;
+			size += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	private void ensureCapacity() {
+		if (released) {
+			throw new IllegalStateException("stream has been released");
+		}
+		if (current == null || position == current.length) {
+			current = pool.acquire();
+			chunks.add(current);
+			position = 0;
+		}
+	}
+
+	/**
+	 * @return number of bytes written since creation or last {@link #reset()}
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return copy of the written bytes
+	 */
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[size];
+		int offset = 0;
+		for (byte[] chunk : chunks) {
+			int n = Math.min(chunk.length, size - offset);
+			System.arraycopy(chunk, 0, bytes, offset, n);
+			offset += n;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Discards written bytes, keeping borrowed chunks
+	 */
+	public void reset() {
+		current = chunks.isEmpty() ? null : chunks.get(0);
+		for (int i = chunks.size() - 1; i > 0; i--) {
+			pool.release(chunks.remove(i));
+		}
+		position = 0;
+		size = 0;
+	}
+
+	/**
+	 * Gives borrowed chunks back to the pool, the stream being no more writable
+	 */
+	public void release() {
+		if (released) {
+			return;
+		}
+		released = true;
+		for (byte[] chunk : chunks) {
+			pool.release(chunk);
+		}
+		chunks.clear();
+		current = null;
+		size = 0;
+	}
+
+}
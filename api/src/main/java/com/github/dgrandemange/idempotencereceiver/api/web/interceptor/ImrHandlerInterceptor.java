@@ -1,5 +1,8 @@
 package com.github.dgrandemange.idempotencereceiver.api.web.interceptor;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Objects;
 
 import javax.servlet.http.HttpServletRequest;
@@ -10,12 +13,27 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.util.WebUtils;
 
 import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.RetentionPolicy;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyCompression;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyStorage;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.InFlightRegistry;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LatencyBudget;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LeaseManager;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LocalFallbackStore;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayHeaderPolicy;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningMarkerScheduler;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.WriteBehindFinalizer;
+import com.github.dgrandemange.idempotencereceiver.api.web.controller.IdempotentReceiverControllerAdvice;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CaptureBuffer;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CapturingResponseWrapper;
 
 public class ImrHandlerInterceptor extends HandlerInterceptorAdapter {
 
@@ -24,6 +42,33 @@ public class ImrHandlerInterceptor extends HandlerInterceptorAdapter {
 	@Autowired
 	private IdempotentRepository repository;
 
+	@Autowired(required = false)
+	private RetentionPolicy retentionPolicy = RetentionPolicy.KEEP_ALL;
+
+	@Autowired(required = false)
+	private ReplayHeaderPolicy replayHeaderPolicy;
+
+	@Autowired(required = false)
+	private BodyCompression bodyCompression;
+
+	@Autowired(required = false)
+	private BodyStorage bodyStorage;
+
+	@Autowired(required = false)
+	private InFlightRegistry inFlightRegistry;
+
+	@Autowired(required = false)
+	private LeaseManager leaseManager;
+
+	@Autowired(required = false)
+	private RunningMarkerScheduler runningMarkerScheduler;
+
+	@Autowired(required = false)
+	private WriteBehindFinalizer writeBehindFinalizer;
+
+	@Autowired(required = false)
+	private LocalFallbackStore localFallbackStore;
+
 	@Override
 	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex)
 	        throws Exception {
@@ -36,6 +81,9 @@ public class ImrHandlerInterceptor extends HandlerInterceptorAdapter {
 
 		imr = (IdempotentMethodResult) attribute;
 		request.removeAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT);
+		Object registerableEx = request
+		        .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION);
+		request.removeAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION);
 		if (ProcessingState.DONE.equals(imr.getState())) {
 			return;
 		}
@@ -45,6 +93,9 @@ public class ImrHandlerInterceptor extends HandlerInterceptorAdapter {
 		// Finalize imr using current response status and http headers
 		HttpHeaders httpHeaders = new HttpHeaders();
 		for (String headerName : response.getHeaderNames()) {
+			if (Objects.nonNull(replayHeaderPolicy) && !replayHeaderPolicy.isReplayable(headerName)) {
+				continue;
+			}
 			for (String headerValue : response.getHeaders(headerName)) {
 				httpHeaders.add(headerName, headerValue);
 			}
@@ -52,19 +103,256 @@ public class ImrHandlerInterceptor extends HandlerInterceptorAdapter {
 
 		HttpStatus httpStatus = HttpStatus.resolve(response.getStatus());
 
-		IdempotentMethodResult updatedImr = IdempotentMethodResult.builder().from(imr)
-		        .withResponse(httpHeaders, httpStatus).build();
+		boolean streamed = Objects
+		        .nonNull(request.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY));
+		request.removeAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY);
+
+		Object budgetAttribute = request.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_LATENCY_BUDGET);
+		LatencyBudget budget = (budgetAttribute instanceof LatencyBudget) ? (LatencyBudget) budgetAttribute : null;
 
+		CapturingResponseWrapper responseWrapper = WebUtils.getNativeResponse(response,
+		        CapturingResponseWrapper.class);
+		IdempotentMethodResult updatedImr = null;
+		IdempotentMethodResult registeredImr = null;
+		// Processed in optimistic mode, no running result of its own having been registered
+		boolean optimistic = Objects.nonNull(runningMarkerScheduler) && runningMarkerScheduler.settle(imr);
 		try {
+			if (Objects.nonNull(leaseManager)) {
+				// Renewals must not overwrite the result about to be finalized
+				leaseManager.release(imr);
+			}
+
+			CaptureBuffer capture = retrieveCapture(imr, streamed, responseWrapper);
+			if (Objects.nonNull(capture) && capture.isOverflowed()) {
+				LOGGER.warn(
+				        "Response body of request identified by key '{}' is too large to be replayed : unregister idempotent method result",
+				        imr.getIdempotencyKey());
+				if (!optimistic) {
+					unregister(imr, budget);
+				}
+				return;
+			}
+
+			updatedImr = finalizeResult(imr, capture, streamed, response, httpHeaders,
+			        httpStatus, request, (registerableEx instanceof Exception) ? (Exception) registerableEx : null);
+
 			LOGGER.trace("Registering idempotent method result into repository {}", updatedImr);
-			repository.register(updatedImr.getIdempotencyKey(), updatedImr);
+			registeredImr = register(updatedImr, optimistic, budget);
 			LOGGER.trace("Idempotent method result has been registered into repository {}", updatedImr);
 		} catch (Exception e) {
 			LOGGER.warn(
 			        "Unable to register idempotent method result identified by key '{}' in idempotent repository. Cause : {}",
-			        updatedImr.getIdempotencyKey(), e.getMessage());
+			        imr.getIdempotencyKey(), e.getMessage());
+			if (Objects.nonNull(updatedImr) && Objects.nonNull(localFallbackStore) && Objects
+			        .nonNull(request.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_LOCAL_FALLBACK))
+			        && localFallbackStore.keep(updatedImr, e)) {
+				LOGGER.trace("Idempotent method result held locally until replayed {}", updatedImr);
+				registeredImr = updatedImr;
+			}
+		} finally {
+			if (Objects.nonNull(responseWrapper)) {
+				responseWrapper.release();
+			}
+			if (Objects.nonNull(inFlightRegistry) && !optimistic) {
+				// Concurrent duplicates waiting on this instance get the registered result
+				inFlightRegistry.complete(imr, registeredImr);
+			}
+		}
+
+	}
+
+	/**
+	 * @return buffer of the body bytes captured while the response was written,
+	 *         when the body was produced by a message converter (see
+	 *         {@link IdempotentReceiverControllerAdvice}) or streamed by the
+	 *         handler, null otherwise
+	 */
+	CaptureBuffer retrieveCapture(IdempotentMethodResult imr, boolean streamed,
+	        CapturingResponseWrapper responseWrapper) {
+		if (Objects.isNull(responseWrapper)) {
+			return null;
+		}
+		boolean writtenByConverter = Objects.nonNull(imr.getSelectedConverterTypeName())
+		        || imr.getReplayCodecId() != 0;
+		return (writtenByConverter || streamed) ? responseWrapper.getCapture() : null;
+	}
+
+	IdempotentMethodResult finalizeResult(IdempotentMethodResult imr, CaptureBuffer capture, boolean streamed,
+	        HttpServletResponse response, HttpHeaders httpHeaders, HttpStatus httpStatus, HttpServletRequest request,
+	        Exception registerableEx) throws IOException {
+		if (Objects.isNull(capture)) {
+			return bodyCompressed(retentionPolicy.apply(
+			        IdempotentMethodResult.builder().from(imr).withResponse(httpHeaders, httpStatus).build(), request,
+			        registerableEx));
+		}
+
+		MediaType bodyContentType = imr.getBodyContentType();
+		if (streamed && Objects.nonNull(response.getContentType())) {
+			bodyContentType = MediaType.parseMediaType(response.getContentType());
+		}
+
+		if (capture.isSpilled() && Objects.nonNull(bodyStorage) && bodyStorage.isEnabled()) {
+			// Spilled body goes to the body store without being loaded in memory, once
+			// the retention policy has been applied on its captured size
+			IdempotentMethodResult finalImr = retentionPolicy.apply(
+			        IdempotentMethodResult.builder()
+			                .from(withCapturedBody(imr, null, bodyContentType, httpHeaders, httpStatus))
+			                .withLazyBody(() -> loadCapture(capture)).build(),
+			        capture.size(), request, registerableEx);
+			if (!finalImr.hasBody()) {
+				LOGGER.trace("Body dropped by retention policy : not stored {}", finalImr);
+				return finalImr;
+			}
+			try (InputStream body = capture.openInputStream()) {
+				return bodyStorage.offload(finalImr, body);
+			}
+		}
+
+		IdempotentMethodResult finalImr = withCapturedBody(imr, capture.toByteArray(), bodyContentType, httpHeaders,
+		        httpStatus);
+		return bodyCompressed(retentionPolicy.apply(finalImr, request, registerableEx));
+	}
+
+	/**
+	 * @return captured body, loaded in memory
+	 */
+	byte[] loadCapture(CaptureBuffer capture) {
+		try {
+			return capture.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	IdempotentMethodResult withCapturedBody(IdempotentMethodResult imr, byte[] body, MediaType bodyContentType,
+	        HttpHeaders httpHeaders, HttpStatus httpStatus) {
+		IdempotentMethodResult finalImr = IdempotentMethodResult.builder().from(imr)
+		        .withResponse(body, null, bodyContentType, null, httpHeaders, httpStatus).build();
+		finalImr.setReturnTypeName(imr.getReturnTypeName());
+		finalImr.setSelectedConverterTypeName(imr.getSelectedConverterTypeName());
+		finalImr.setReplayCodecId(imr.getReplayCodecId());
+		return finalImr;
+	}
+
+	/**
+	 * @return given result, its body being compressed and moved to the body store
+	 *         when configured
+	 */
+	IdempotentMethodResult bodyCompressed(IdempotentMethodResult imr) {
+		IdempotentMethodResult updatedImr = imr;
+		if (Objects.nonNull(bodyCompression)) {
+			updatedImr = bodyCompression.compress(updatedImr);
+		}
+		if (Objects.nonNull(bodyStorage)) {
+			updatedImr = bodyStorage.offload(updatedImr);
 		}
+		return updatedImr;
+	}
+
+	/**
+	 * @param optimistic
+	 *            true if no running result of its own has been registered for
+	 *            given result, a result registered in the meantime by a racing
+	 *            presentation then being kept
+	 * @return result registered (or queued for registration) under the key of
+	 *         given result
+	 */
+	IdempotentMethodResult register(IdempotentMethodResult updatedImr, boolean optimistic) {
+		return register(updatedImr, optimistic, null);
+	}
+
+	/**
+	 * @param budget
+	 *            latency budget of the request, null if none
+	 */
+	IdempotentMethodResult register(IdempotentMethodResult updatedImr, boolean optimistic, LatencyBudget budget) {
+		if (Objects.nonNull(localFallbackStore) && localFallbackStore.complete(updatedImr)) {
+			LOGGER.trace("Idempotent method result claimed locally : held locally until replayed {}", updatedImr);
+			return updatedImr;
+		}
+
+		if (Objects.nonNull(writeBehindFinalizer) && writeBehindFinalizer.submit(updatedImr, optimistic)) {
+			LOGGER.trace("Idempotent method result has been queued for registration {}", updatedImr);
+			return updatedImr;
+		}
+
+		if (!optimistic) {
+			if (Objects.isNull(budget)) {
+				repository.register(updatedImr.getIdempotencyKey(), updatedImr);
+			} else {
+				budget.register(repository, updatedImr);
+			}
+			return updatedImr;
+		}
+
+		IdempotentMethodResult current = repository.registerIfAbsent(updatedImr);
+		if (Objects.isNull(current)) {
+			return updatedImr;
+		}
+		LOGGER.trace("A racing presentation has registered its result first : keeping {}", current);
+		return current;
+	}
+
+	void unregister(IdempotentMethodResult imr) {
+		unregister(imr, null);
+	}
+
+	/**
+	 * @param budget
+	 *            latency budget of the request, null if none
+	 */
+	void unregister(IdempotentMethodResult imr, LatencyBudget budget) {
+		if (Objects.nonNull(localFallbackStore) && localFallbackStore.release(imr)) {
+			LOGGER.trace("Idempotent method result claimed locally : released {}", imr);
+			return;
+		}
+		try {
+			if (Objects.isNull(budget)) {
+				repository.unregister(imr.getNamespace(), imr.getIdempotencyKey());
+			} else {
+				budget.unregister(repository, imr.getNamespace(), imr.getIdempotencyKey());
+			}
+		} catch (Exception e) {
+			LOGGER.warn(
+			        "Unable to unregister request identified by key '{}' from idempotent repository. Cause : {}",
+			        imr.getIdempotencyKey(), e.getMessage());
+			if (Objects.nonNull(localFallbackStore)) {
+				// Running result left behind, unregistered once the repository answers again
+				localFallbackStore.unregisterLater(imr);
+			}
+		}
+	}
+
+	public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+		this.retentionPolicy = retentionPolicy;
+	}
+
+	public void setBodyCompression(BodyCompression bodyCompression) {
+		this.bodyCompression = bodyCompression;
+	}
+
+	public void setBodyStorage(BodyStorage bodyStorage) {
+		this.bodyStorage = bodyStorage;
+	}
+
+	public void setInFlightRegistry(InFlightRegistry inFlightRegistry) {
+		this.inFlightRegistry = inFlightRegistry;
+	}
+
+	public void setLeaseManager(LeaseManager leaseManager) {
+		this.leaseManager = leaseManager;
+	}
+
+	public void setRunningMarkerScheduler(RunningMarkerScheduler runningMarkerScheduler) {
+		this.runningMarkerScheduler = runningMarkerScheduler;
+	}
+
+	public void setWriteBehindFinalizer(WriteBehindFinalizer writeBehindFinalizer) {
+		this.writeBehindFinalizer = writeBehindFinalizer;
+	}
 
+	public void setLocalFallbackStore(LocalFallbackStore localFallbackStore) {
+		this.localFallbackStore = localFallbackStore;
 	}
 
 }
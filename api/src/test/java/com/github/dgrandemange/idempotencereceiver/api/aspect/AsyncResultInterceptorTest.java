@@ -0,0 +1,91 @@
+package com.github.dgrandemange.idempotencereceiver.api.aspect;
+
+import java.time.Instant;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+
+public class AsyncResultInterceptorTest {
+
+	IdempotentReceiverAspect aspect;
+
+	MockHttpServletRequest mockedHttpRequest;
+
+	ServletWebRequest webRequest;
+
+	IdempotentMethodResult imr;
+
+	AsyncResultInterceptor cut;
+
+	@Before
+	@Idempotent(registerableEx = { ArithmeticException.class })
+	public void setUp() {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		aspect = Mockito.mock(IdempotentReceiverAspect.class);
+		Mockito.when(aspect.isExceptionRegisterable(Mockito.any(Class[].class), Mockito.any(Exception.class)))
+		        .thenCallRealMethod();
+		mockedHttpRequest = new MockHttpServletRequest();
+		webRequest = new ServletWebRequest(mockedHttpRequest, new MockHttpServletResponse());
+		imr = IdempotentMethodResult.builder().withIdempotencyKey("12345").startedAt(Instant.now()).build();
+		cut = new AsyncResultInterceptor(aspect, annot, imr);
+	}
+
+	@Test
+	public void testPostProcess_shouldFlagImr_whenResultIsProduced() {
+		cut.postProcess(webRequest, new DeferredResult<String>(), "dummy result");
+
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT))
+		        .isEqualTo(imr);
+		Mockito.verify(aspect, Mockito.never()).unregisterIdempotentImageResult(Mockito.any());
+	}
+
+	@Test
+	public void testPostProcess_shouldFlagImrAndException_whenResultIsARegisterableException() {
+		ArithmeticException ex = new ArithmeticException();
+
+		cut.postProcess(webRequest, () -> "dummy result", ex);
+
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT))
+		        .isEqualTo(imr);
+		Assertions.assertThat(mockedHttpRequest
+		        .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_REGISTERABLE_EXCEPTION)).isEqualTo(ex);
+	}
+
+	@Test
+	public void testPostProcess_shouldUnregisterImr_whenResultIsANonRegisterableException() {
+		cut.postProcess(webRequest, new DeferredResult<String>(), new IllegalStateException());
+
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT))
+		        .isNull();
+		Mockito.verify(aspect, Mockito.times(1)).unregisterIdempotentImageResult(imr);
+	}
+
+	@Test
+	public void testHandleTimeout_shouldUnregisterImrOnce() {
+		Object timeoutResult = cut.handleTimeout(webRequest, () -> "dummy result");
+		cut.postProcess(webRequest, () -> "dummy result", new AsyncRequestTimeoutException());
+
+		Assertions.assertThat(timeoutResult).isEqualTo(CallableProcessingInterceptor.RESULT_NONE);
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT))
+		        .isNull();
+		Mockito.verify(aspect, Mockito.times(1)).unregisterIdempotentImageResult(imr);
+	}
+
+}
@@ -9,6 +9,8 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
@@ -38,17 +40,39 @@ import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotenceUnavailableException;
+import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotentRepositoryException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.MissingIdempotencyKeyHeaderException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.SubsequentPresentationException;
 import com.github.dgrandemange.idempotencereceiver.api.exception.UnmarshallException;
+import com.github.dgrandemange.idempotencereceiver.api.model.DegradationConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.DegradationConfiguration.Policy;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentReceiverCommonConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.LatencyBudgetConfiguration.Exhaustion;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyStorage;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.InFlightRegistry;
 import com.github.dgrandemange.idempotencereceiver.api.service.support.InMemoryRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LatencyBudget;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LeaseManager;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LocalFallbackStore;
 import com.github.dgrandemange.idempotencereceiver.api.service.support.MyStringHttpMessageConverter;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningMarkerScheduler;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningResultWatcher;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.WriteBehindFinalizer;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.DirectReplayWriter;
 
 @RunWith(MockitoJUnitRunner.class)
 public class IdempotentReceiverAspectTest {
@@ -209,6 +233,26 @@ public class IdempotentReceiverAspectTest {
 		}
 	}
 
+	@Test
+	@Idempotent(namespace = "payments", ttlMs = 60000)
+	public void testCore_shouldComputeRequestHashInEndpointNamespace_whenEndpointDeclaresANamespace()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		configuration.setIdempotencyKeyHeaderMandatory(false);
+
+		String dummyRequestHash = "157840f0f1c1d77526a0beb9980c1170d2bc4f5fe170d8fab4309032a1640b36";
+		Mockito.doReturn(dummyRequestHash).when(cut).computeRequestHash(mockedHttpRequest, "payments");
+		Object expectedResult = new Object();
+		Mockito.doReturn(expectedResult).when(cut).handleIdempotency(joinPoint, annot, dummyRequestHash);
+
+		Object result = cut.core(joinPoint, annot);
+		Assertions.assertThat(result).isEqualTo(expectedResult);
+		Mockito.verify(cut, Mockito.times(0)).computeRequestHash(mockedHttpRequest);
+		Mockito.verify(cut, Mockito.times(1)).handleIdempotency(joinPoint, annot, dummyRequestHash);
+	}
+
 	@Test
 	@Idempotent
 	public void testComputeRequestHash_shouldReturnRequestBodyComputedHash() throws Throwable {
@@ -277,7 +321,7 @@ public class IdempotentReceiverAspectTest {
 		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
 
 		String idempotencyKey = genRequestUniqueIdentifier();
-		Mockito.doReturn(null).when(repository).find(idempotencyKey);
+		Mockito.doReturn(null).when(repository).find(null, idempotencyKey);
 
 		Object expectedResult = new Object();
 		Mockito.doReturn(expectedResult).when(cut).handleRequestFirstPresentation(joinPoint, annot, idempotencyKey);
@@ -289,6 +333,7 @@ public class IdempotentReceiverAspectTest {
 	}
 
 	@Test
+	@Idempotent
 	public void testHandleIdempotency_shouldHandleRequestAsASubsequentPresentation_whenAnEntryActuallyMatchesTheProvidedIdempotencyKey()
 	        throws Throwable {
 		Idempotent annot = new Object() {
@@ -299,7 +344,7 @@ public class IdempotentReceiverAspectTest {
 		        .withIdempotencyKey(idempotencyKey).withResponse("dummy body".getBytes(), String.class,
 		                MediaType.TEXT_PLAIN, StringHttpMessageConverter.class, HttpHeaders.EMPTY, HttpStatus.OK)
 		        .build();
-		Mockito.doReturn(imr).when(repository).find(idempotencyKey);
+		Mockito.doReturn(imr).when(repository).find(null, idempotencyKey);
 
 		ResponseEntity<Object> expectedResponseEntity = new ResponseEntity<Object>(HttpStatus.OK);
 		Mockito.doReturn(expectedResponseEntity).when(cut).handleRequestSubsequentPresentation(imr);
@@ -313,6 +358,177 @@ public class IdempotentReceiverAspectTest {
 		}
 	}
 
+	@Test
+	@Idempotent
+	public void testHandleIdempotency_shouldReplayDirectly_whenHandlerReturnValueIsWrittenAsResponseBody()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		DirectReplayWriter replayWriter = Mockito.mock(DirectReplayWriter.class);
+		cut.setReplayWriter(replayWriter);
+		MockHttpServletResponse mockedHttpResponse = new MockHttpServletResponse();
+		Mockito.doReturn(mockedHttpResponse).when(cut).retrieveCurrentHttpResponse();
+		Mockito.when(signature.getMethod()).thenReturn(MyDummyRestWebService.class.getMethod("post"));
+
+		String idempotencyKey = genRequestUniqueIdentifier();
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(idempotencyKey).withResponse("dummy body".getBytes(), String.class,
+		                MediaType.TEXT_PLAIN, StringHttpMessageConverter.class, HttpHeaders.EMPTY, HttpStatus.OK)
+		        .build();
+		Mockito.doReturn(imr).when(repository).find(null, idempotencyKey);
+
+		Object result = cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+
+		Assertions.assertThat(result).isNull();
+		Mockito.verify(replayWriter, Mockito.times(1)).write(imr, mockedHttpRequest, mockedHttpResponse);
+		Mockito.verify(cut, Mockito.never()).handleRequestSubsequentPresentation(imr);
+		Mockito.verify(joinPoint, Mockito.never()).proceed();
+	}
+
+	@Test
+	public void testHandleBeforeDispatch_shouldReplayStoredResponse_whenRequestIsASubsequentPresentation()
+	        throws Exception {
+		DirectReplayWriter replayWriter = Mockito.mock(DirectReplayWriter.class);
+		cut.setReplayWriter(replayWriter);
+		MockHttpServletResponse mockedHttpResponse = new MockHttpServletResponse();
+		mockedHttpRequest.addHeader(IdempotentReceiverAspect.HTTP_HEADER_IDEMPOTENCY_KEY, "12345");
+		HandlerMethod handlerMethod = new HandlerMethod(new MyDummyRestWebService(), "post");
+
+		String requestHash = cut.computeRequestHash(mockedHttpRequest);
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(requestHash).withResponse(HttpHeaders.EMPTY, HttpStatus.CREATED).build();
+		Mockito.doReturn(imr).when(repository).find(null, requestHash);
+
+		boolean written = cut.handleBeforeDispatch(handlerMethod, mockedHttpRequest, mockedHttpResponse);
+
+		Assertions.assertThat(written).isTrue();
+		Mockito.verify(replayWriter, Mockito.times(1)).write(imr, mockedHttpRequest, mockedHttpResponse);
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT))
+		        .isNull();
+	}
+
+	@Test
+	public void testHandleBeforeDispatch_shouldClaimRequest_andCoreShouldProceedWithoutLookup_whenRequestIsAFirstPresentation()
+	        throws Throwable {
+		Idempotent annot = MyDummyRestWebService.class.getMethod("post").getAnnotation(Idempotent.class);
+		MockHttpServletResponse mockedHttpResponse = new MockHttpServletResponse();
+		mockedHttpRequest.addHeader(IdempotentReceiverAspect.HTTP_HEADER_IDEMPOTENCY_KEY, "12345");
+		HandlerMethod handlerMethod = new HandlerMethod(new MyDummyRestWebService(), "post");
+		String requestHash = cut.computeRequestHash(mockedHttpRequest);
+
+		boolean written = cut.handleBeforeDispatch(handlerMethod, mockedHttpRequest, mockedHttpResponse);
+
+		Assertions.assertThat(written).isFalse();
+		IdempotentMethodResult claimed = (IdempotentMethodResult) mockedHttpRequest
+		        .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT);
+		Assertions.assertThat(claimed.getIdempotencyKey()).isEqualTo(requestHash);
+		Mockito.verify(repository, Mockito.times(1)).register(requestHash, claimed);
+
+		Mockito.when(joinPoint.proceed()).thenReturn("dummy body");
+		Object result = cut.core(joinPoint, annot);
+
+		Assertions.assertThat(result).isEqualTo("dummy body");
+		Mockito.verify(repository, Mockito.times(1)).find(null, requestHash);
+		Mockito.verify(repository, Mockito.times(1)).register(Mockito.anyString(), Mockito.any());
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT))
+		        .isNull();
+		Assertions
+		        .assertThat(
+		                mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT))
+		        .isEqualTo(claimed);
+	}
+
+	@Test
+	public void testHandleBeforeDispatch_shouldApplyDegradationPolicy_andCoreShouldProceedWithoutLookup_whenRepositoryIsUnavailable()
+	        throws Throwable {
+		Idempotent annot = MyDummyRestWebService.class.getMethod("post").getAnnotation(Idempotent.class);
+		mockedHttpRequest.addHeader(IdempotentReceiverAspect.HTTP_HEADER_IDEMPOTENCY_KEY, "12345");
+		HandlerMethod handlerMethod = new HandlerMethod(new MyDummyRestWebService(), "post");
+		String requestHash = cut.computeRequestHash(mockedHttpRequest);
+		Mockito.doThrow(new IdempotentRepositoryException("Node down")).when(repository).find(null, requestHash);
+
+		boolean written = cut.handleBeforeDispatch(handlerMethod, mockedHttpRequest, new MockHttpServletResponse());
+
+		Assertions.assertThat(written).isFalse();
+		Mockito.when(joinPoint.proceed()).thenReturn("dummy body");
+		Assertions.assertThat(cut.core(joinPoint, annot)).isEqualTo("dummy body");
+		Mockito.verify(repository, Mockito.times(1)).find(null, requestHash);
+		Mockito.verify(repository, Mockito.never()).register(Mockito.anyString(), Mockito.any());
+	}
+
+	@Test
+	@Idempotent(degradation = Policy.FAIL_CLOSED)
+	public void testHandleBeforeDispatch_shouldRejectRequestOnceDispatched_whenRepositoryIsUnavailableAndEndpointFailsClosed()
+	        throws Throwable {
+		HandlerMethod handlerMethod = new HandlerMethod(this,
+		        "testHandleBeforeDispatch_shouldRejectRequestOnceDispatched_whenRepositoryIsUnavailableAndEndpointFailsClosed");
+		Idempotent annot = handlerMethod.getMethodAnnotation(Idempotent.class);
+		mockedHttpRequest.addHeader(IdempotentReceiverAspect.HTTP_HEADER_IDEMPOTENCY_KEY, "12345");
+		String requestHash = cut.computeRequestHash(mockedHttpRequest);
+		Mockito.doThrow(new IdempotentRepositoryException("Node down")).when(repository).find(null, requestHash);
+
+		boolean written = cut.handleBeforeDispatch(handlerMethod, mockedHttpRequest, new MockHttpServletResponse());
+
+		Assertions.assertThat(written).isFalse();
+		try {
+			cut.core(joinPoint, annot);
+			Fail.fail("an IdempotenceUnavailableException was expected here");
+		} catch (IdempotenceUnavailableException e) {
+			Assertions.assertThat(e.getRetryAfterSeconds())
+			        .isEqualTo(DegradationConfiguration.DEFAULT_RETRY_AFTER_SECONDS);
+		}
+		Mockito.verify(repository, Mockito.times(1)).find(null, requestHash);
+		Mockito.verify(joinPoint, Mockito.never()).proceed();
+	}
+
+	@Test
+	public void testReleaseUnprocessedClaim_shouldUnregisterClaimedResult() {
+		IdempotentMethodResult claimed = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey("12345").build();
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT, claimed);
+
+		cut.releaseUnprocessedClaim(mockedHttpRequest);
+
+		Mockito.verify(repository, Mockito.times(1)).unregister(null, "12345");
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_CLAIMED_RESULT))
+		        .isNull();
+	}
+
+	@Test
+	public void testSupportsDirectReplay_shouldBeFalse_whenHandlerReturnValueIsNotWrittenAsResponseBody()
+	        throws Exception {
+		cut.setReplayWriter(Mockito.mock(DirectReplayWriter.class));
+		Mockito.when(signature.getMethod()).thenReturn(MyDummyRestWebService.class.getMethod("delete"));
+
+		Assertions.assertThat(cut.supportsDirectReplay(joinPoint)).isFalse();
+	}
+
+	@Test
+	@Idempotent
+	public void testHandleRequestFirstPresentation_shouldWaitForAsyncResult_whenHandlerReturnsACompletableFuture()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		Mockito.doReturn(mockedHttpRequest).when(cut).retrieveCurrentHttpRequest();
+		CompletableFuture<String> future = new CompletableFuture<>();
+		Mockito.doReturn(future).when(joinPoint).proceed();
+
+		Object result = cut.handleRequestFirstPresentation(joinPoint, annot, genRequestUniqueIdentifier());
+
+		Assertions.assertThat(result).isEqualTo(future);
+		Mockito.verify(cut, Mockito.never()).addIdempotentImageResultToRequestAttributes(Mockito.any());
+		WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(mockedHttpRequest);
+		Assertions.assertThat(asyncManager.getDeferredResultInterceptor(AsyncResultInterceptor.KEY))
+		        .isInstanceOf(AsyncResultInterceptor.class);
+		Assertions.assertThat(asyncManager.getCallableInterceptor(AsyncResultInterceptor.KEY))
+		        .isInstanceOf(AsyncResultInterceptor.class);
+	}
+
 	@Test
 	@Idempotent
 	public void testHandleRequestFirstPresentation_shouldAddIdempotentMethodResultToRequestAttribute_whenRequestProcessedWithoutError()
@@ -466,6 +682,374 @@ public class IdempotentReceiverAspectTest {
 		Mockito.verify(cut, Mockito.times(1)).unmarshallBody(imr);
 	}
 
+	@Test
+	public void testHandleRequestSubsequentPresentation_shouldReturnRawBody_whenBodyWasStreamedByHandler()
+	        throws Exception {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(genRequestUniqueIdentifier())
+		        .withResponse("streamed body".getBytes(), null, MediaType.APPLICATION_OCTET_STREAM, null,
+		                new HttpHeaders(), HttpStatus.OK)
+		        .build();
+
+		ResponseEntity<Object> result = cut.handleRequestSubsequentPresentation(imr);
+
+		Assertions.assertThat(result.getBody()).isEqualTo("streamed body".getBytes());
+		Assertions.assertThat(result.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_OCTET_STREAM);
+		Mockito.verify(handlerAdapter, Mockito.never()).getMessageConverters();
+	}
+
+	@Test
+	public void testAwaitInFlight_shouldReturnResultOfFirstPresentationCompletedOnThisInstance() {
+		InFlightRegistry inFlightRegistry = Mockito.mock(InFlightRegistry.class);
+		cut.setInFlightRegistry(inFlightRegistry);
+
+		IdempotentMethodResult runningImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(genRequestUniqueIdentifier()).build();
+		IdempotentMethodResult doneImr = IdempotentMethodResult.builder().from(runningImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+		Mockito.doReturn(doneImr).when(inFlightRegistry).await(runningImr);
+
+		Assertions.assertThat(cut.awaitInFlight(runningImr)).isSameAs(doneImr);
+		Assertions.assertThat(cut.awaitInFlight(doneImr)).isSameAs(doneImr);
+		Mockito.verify(inFlightRegistry, Mockito.times(1)).await(Mockito.any());
+	}
+
+	@Test
+	public void testAwaitInFlight_shouldReturnRunningResult_whenFirstPresentationDoesNotCompleteInTime() {
+		InFlightRegistry inFlightRegistry = Mockito.mock(InFlightRegistry.class);
+		cut.setInFlightRegistry(inFlightRegistry);
+
+		IdempotentMethodResult runningImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(genRequestUniqueIdentifier()).build();
+
+		Assertions.assertThat(cut.awaitInFlight(runningImr)).isSameAs(runningImr);
+	}
+
+	@Test
+	@Idempotent
+	@SuppressWarnings("unchecked")
+	public void testHandleIdempotency_shouldParkRequestUntilResultIsDone_whenResultIsStillRunning()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		RunningResultWatcher watcher = Mockito.mock(RunningResultWatcher.class);
+		cut.setRunningResultWatcher(watcher);
+		MockHttpServletResponse mockedHttpResponse = new MockHttpServletResponse();
+		Mockito.doReturn(mockedHttpResponse).when(cut).retrieveCurrentHttpResponse();
+		Mockito.when(signature.getMethod()).thenReturn(MyDummyRestWebService.class.getMethod("post"));
+		mockedHttpRequest.setAsyncSupported(true);
+		WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(mockedHttpRequest);
+		asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(mockedHttpRequest, mockedHttpResponse));
+
+		String idempotencyKey = genRequestUniqueIdentifier();
+		IdempotentMethodResult runningImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(idempotencyKey).build();
+		IdempotentMethodResult doneImr = IdempotentMethodResult.builder().from(runningImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+		Mockito.doReturn(runningImr).when(repository).find(null, idempotencyKey);
+		ArgumentCaptor<Consumer> callback = ArgumentCaptor.forClass(Consumer.class);
+		Mockito.doReturn(Mockito.mock(RunningResultWatcher.Watch.class)).when(watcher).watch(Mockito.eq(runningImr),
+		        callback.capture());
+
+		Object result = cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+
+		Assertions.assertThat(result).isNull();
+		Assertions.assertThat(asyncManager.isConcurrentHandlingStarted()).isTrue();
+		Mockito.verify(joinPoint, Mockito.never()).proceed();
+
+		callback.getValue().accept(doneImr);
+
+		Assertions.assertThat(asyncManager.getConcurrentResult()).isInstanceOf(SubsequentPresentationException.class);
+		ResponseEntity<Object> response = ((SubsequentPresentationException) asyncManager.getConcurrentResult())
+		        .getResponseEntity();
+		Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+	}
+
+	@Test
+	public void testParkedResponse_shouldOnlyBuildResponse_whenStoredBodyCouldBeReplayedDirectly() throws Exception {
+		DirectReplayWriter replayWriter = Mockito.mock(DirectReplayWriter.class);
+		cut.setReplayWriter(replayWriter);
+		BodyStorage bodyStorage = Mockito.mock(BodyStorage.class);
+		cut.setBodyStorage(bodyStorage);
+
+		IdempotentMethodResult runningImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(genRequestUniqueIdentifier()).build();
+		IdempotentMethodResult doneImr = IdempotentMethodResult.builder().from(runningImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.OK).withBodyRef("dummy-ref").build();
+		Mockito.doReturn("dummy body".getBytes()).when(bodyStorage).load(doneImr);
+
+		// Called by the watcher thread, outside of the asynchronous dispatch
+		ResponseEntity<Object> response = cut.parkedResponse(runningImr, doneImr, mockedHttpRequest)
+		        .getResponseEntity();
+
+		Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		Assertions.assertThat(response.getBody()).isEqualTo("dummy body".getBytes());
+		Mockito.verifyZeroInteractions(replayWriter);
+	}
+
+	@Test
+	@Idempotent
+	public void testHandleIdempotency_shouldAnswerACCEPTED_whenRequestCannotBeParked() throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		RunningResultWatcher watcher = Mockito.mock(RunningResultWatcher.class);
+		cut.setRunningResultWatcher(watcher);
+		Mockito.when(signature.getMethod()).thenReturn(MyDummyRestWebService.class.getMethod("post"));
+
+		String idempotencyKey = genRequestUniqueIdentifier();
+		IdempotentMethodResult runningImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(idempotencyKey).build();
+		Mockito.doReturn(runningImr).when(repository).find(null, idempotencyKey);
+
+		try {
+			cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+			Fail.fail(String.format("A %s was expected", SubsequentPresentationException.class.getSimpleName()));
+		} catch (SubsequentPresentationException e) {
+			Assertions.assertThat(e.getResponseEntity().getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+			Mockito.verify(watcher, Mockito.never()).watch(Mockito.any(), Mockito.any());
+		}
+	}
+
+	@Test
+	@Idempotent
+	public void testHandleIdempotency_shouldTakeOverRunningResult_whenItsLeaseHasExpired() throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		LeaseManager leaseManager = Mockito.mock(LeaseManager.class);
+		cut.setLeaseManager(leaseManager);
+		Mockito.doReturn(null).when(cut).proceedFirstPresentation(Mockito.eq(joinPoint), Mockito.eq(annot),
+		        Mockito.any(IdempotentMethodResult.class));
+
+		String idempotencyKey = genRequestUniqueIdentifier();
+		IdempotentMethodResult expiredImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(idempotencyKey).withLeaseExpiresAt(Instant.now()).build();
+		IdempotentMethodResult leasedImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(idempotencyKey).build();
+		Mockito.doReturn(expiredImr).when(repository).find(null, idempotencyKey);
+		Mockito.doReturn(true).when(leaseManager).isExpired(expiredImr);
+		Mockito.doReturn(leasedImr).when(leaseManager).lease(Mockito.any(IdempotentMethodResult.class));
+		Mockito.doReturn(true).when(repository).takeOver(expiredImr, leasedImr);
+
+		cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+
+		Mockito.verify(leaseManager, Mockito.times(1)).hold(leasedImr);
+		Mockito.verify(cut, Mockito.times(1)).proceedFirstPresentation(Mockito.eq(joinPoint), Mockito.eq(annot),
+		        Mockito.any(IdempotentMethodResult.class));
+	}
+
+	@Test
+	@Idempotent
+	public void testHandleIdempotency_shouldAnswerACCEPTED_whenExpiredLeaseHasAlreadyBeenTakenOver()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		LeaseManager leaseManager = Mockito.mock(LeaseManager.class);
+		cut.setLeaseManager(leaseManager);
+
+		String idempotencyKey = genRequestUniqueIdentifier();
+		IdempotentMethodResult expiredImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(idempotencyKey).withLeaseExpiresAt(Instant.now()).build();
+		Mockito.doReturn(expiredImr).when(repository).find(null, idempotencyKey);
+		Mockito.doReturn(true).when(leaseManager).isExpired(expiredImr);
+		Mockito.doReturn(expiredImr).when(leaseManager).lease(Mockito.any(IdempotentMethodResult.class));
+		Mockito.doReturn(false).when(repository).takeOver(Mockito.any(IdempotentMethodResult.class),
+		        Mockito.any(IdempotentMethodResult.class));
+
+		try {
+			cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+			Fail.fail(String.format("A %s was expected", SubsequentPresentationException.class.getSimpleName()));
+		} catch (SubsequentPresentationException e) {
+			Assertions.assertThat(e.getResponseEntity().getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+			Mockito.verify(leaseManager, Mockito.never()).hold(Mockito.any(IdempotentMethodResult.class));
+			Mockito.verify(joinPoint, Mockito.never()).proceed();
+		}
+	}
+
+	@Test
+	@Idempotent(optimistic = true)
+	public void testHandleRequestFirstPresentation_shouldOnlyScheduleRunningResult_whenEndpointIsOptimistic()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+
+		RunningMarkerScheduler runningMarkerScheduler = Mockito.mock(RunningMarkerScheduler.class);
+		cut.setRunningMarkerScheduler(runningMarkerScheduler);
+		Mockito.doReturn(true).when(runningMarkerScheduler).schedule(Mockito.any(IdempotentMethodResult.class));
+		Mockito.doReturn(null).when(cut).proceedFirstPresentation(Mockito.eq(joinPoint), Mockito.eq(annot),
+		        Mockito.any(IdempotentMethodResult.class));
+
+		cut.handleRequestFirstPresentation(joinPoint, annot, genRequestUniqueIdentifier());
+
+		Mockito.verify(runningMarkerScheduler, Mockito.times(1)).schedule(Mockito.any(IdempotentMethodResult.class));
+		Mockito.verify(repository, Mockito.never()).register(Mockito.anyString(),
+		        Mockito.any(IdempotentMethodResult.class));
+		Mockito.verify(cut, Mockito.times(1)).proceedFirstPresentation(Mockito.eq(joinPoint), Mockito.eq(annot),
+		        Mockito.any(IdempotentMethodResult.class));
+	}
+
+	@Test
+	public void testUnregisterIdempotentImageResult_shouldLeaveRepositoryUntouched_whenNoRunningMarkerWasRegistered() {
+		RunningMarkerScheduler runningMarkerScheduler = Mockito.mock(RunningMarkerScheduler.class);
+		cut.setRunningMarkerScheduler(runningMarkerScheduler);
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(genRequestUniqueIdentifier()).build();
+		Mockito.doReturn(true).when(runningMarkerScheduler).settle(imr);
+
+		cut.unregisterIdempotentImageResult(imr);
+
+		Mockito.verify(repository, Mockito.never()).unregister(Mockito.any(), Mockito.anyString());
+	}
+
+	@Test
+	public void testFindResult_shouldReturnQueuedResult_whenItIsNotRegisteredYet() {
+		WriteBehindFinalizer writeBehindFinalizer = Mockito.mock(WriteBehindFinalizer.class);
+		cut.setWriteBehindFinalizer(writeBehindFinalizer);
+
+		String idempotencyKey = genRequestUniqueIdentifier();
+		IdempotentMethodResult runningImr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey(idempotencyKey).build();
+		IdempotentMethodResult queuedImr = IdempotentMethodResult.builder().from(runningImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+		Mockito.doReturn(runningImr).when(repository).find(null, idempotencyKey);
+		Mockito.doReturn(queuedImr).when(writeBehindFinalizer).pending(null, idempotencyKey);
+
+		Assertions.assertThat(cut.findResult(null, idempotencyKey)).isSameAs(queuedImr);
+
+		Mockito.doReturn(queuedImr).when(repository).find(null, idempotencyKey);
+		Mockito.doReturn(null).when(writeBehindFinalizer).pending(null, idempotencyKey);
+
+		Assertions.assertThat(cut.findResult(null, idempotencyKey)).isSameAs(queuedImr);
+	}
+
+	@Test
+	@Idempotent(latencyBudgetMs = 20)
+	public void testHandleIdempotency_shouldRejectRequest_whenLatencyBudgetIsExhaustedAndConfiguredToFail()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+		configuration.getLatencyBudget().setOnExhaustion(Exhaustion.FAIL);
+		String idempotencyKey = genRequestUniqueIdentifier();
+		Mockito.doReturn(new CompletableFuture<>()).when(repository).findAsync(null, idempotencyKey);
+
+		try {
+			cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+			Fail.fail("an IdempotenceUnavailableException was expected here");
+		} catch (IdempotenceUnavailableException e) {
+			// Expected
+		}
+
+		Mockito.verify(joinPoint, Mockito.never()).proceed();
+	}
+
+	@Test
+	@Idempotent(latencyBudgetMs = 20)
+	public void testHandleIdempotency_shouldProceedWithoutIdempotence_whenLatencyBudgetIsExhausted()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+		String idempotencyKey = genRequestUniqueIdentifier();
+		Mockito.doReturn(new CompletableFuture<>()).when(repository).findAsync(null, idempotencyKey);
+		Mockito.doReturn("dummy body").when(joinPoint).proceed();
+
+		Assertions.assertThat(cut.handleIdempotency(joinPoint, annot, idempotencyKey)).isEqualTo("dummy body");
+
+		Assertions.assertThat(
+		        ((LatencyBudget) mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_LATENCY_BUDGET))
+		                .isExhausted()).isTrue();
+		Mockito.verify(repository, Mockito.never()).register(Mockito.anyString(), Mockito.any(IdempotentMethodResult.class));
+	}
+
+	@Test
+	@Idempotent(latencyBudgetMs = 20, degradation = Policy.FAIL_CLOSED)
+	public void testHandleIdempotency_shouldProceedWithoutIdempotence_whenLatencyBudgetIsExhaustedAndEndpointFailsClosed()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+		String idempotencyKey = genRequestUniqueIdentifier();
+		Mockito.doReturn(new CompletableFuture<>()).when(repository).findAsync(null, idempotencyKey);
+		Mockito.doReturn("dummy body").when(joinPoint).proceed();
+
+		// Exhausted budget governed by its own PROCEED policy, not by the degradation policy
+		Assertions.assertThat(cut.handleIdempotency(joinPoint, annot, idempotencyKey)).isEqualTo("dummy body");
+
+		Mockito.verify(joinPoint).proceed();
+		Mockito.verify(repository, Mockito.never()).register(Mockito.anyString(), Mockito.any(IdempotentMethodResult.class));
+	}
+
+	@Test
+	@Idempotent(degradation = Policy.FAIL_CLOSED)
+	public void testHandleIdempotency_shouldRejectRequest_whenRepositoryIsUnavailableAndEndpointFailsClosed()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+		String idempotencyKey = genRequestUniqueIdentifier();
+		Mockito.doThrow(new IdempotentRepositoryException("Node down")).when(repository).find(null, idempotencyKey);
+
+		try {
+			cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+			Fail.fail("an IdempotenceUnavailableException was expected here");
+		} catch (IdempotenceUnavailableException e) {
+			Assertions.assertThat(e.getRetryAfterSeconds())
+			        .isEqualTo(DegradationConfiguration.DEFAULT_RETRY_AFTER_SECONDS);
+		}
+
+		Mockito.verify(joinPoint, Mockito.never()).proceed();
+	}
+
+	@Test
+	@Idempotent(degradation = Policy.LOCAL_FALLBACK)
+	public void testHandleIdempotency_shouldClaimRequestLocally_whenRepositoryIsUnavailableAndEndpointFallsBackLocally()
+	        throws Throwable {
+		Idempotent annot = new Object() {
+		}.getClass().getEnclosingMethod().getAnnotation(Idempotent.class);
+		configuration.getDegradation().getLocalFallback().setReconcileIntervalMs(60000);
+		LocalFallbackStore localFallbackStore = new LocalFallbackStore(
+		        configuration.getDegradation().getLocalFallback(), repository);
+		cut.setLocalFallbackStore(localFallbackStore);
+		String idempotencyKey = genRequestUniqueIdentifier();
+		Mockito.doThrow(new IdempotentRepositoryException("Node down")).when(repository).find(null, idempotencyKey);
+		Mockito.doReturn("dummy body").when(joinPoint).proceed();
+
+		try {
+			Assertions.assertThat(cut.handleIdempotency(joinPoint, annot, idempotencyKey)).isEqualTo("dummy body");
+
+			Assertions.assertThat(localFallbackStore.isActive()).isTrue();
+			Assertions.assertThat(localFallbackStore.find(null, idempotencyKey).getState())
+			        .isEqualTo(ProcessingState.RUNNING);
+			Assertions.assertThat(
+			        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_LOCAL_FALLBACK))
+			        .isEqualTo(Boolean.TRUE);
+			Mockito.verify(repository, Mockito.never()).register(Mockito.anyString(),
+			        Mockito.any(IdempotentMethodResult.class));
+
+			// Duplicate looked up locally, without calling the repository
+			Mockito.reset(repository);
+			try {
+				cut.handleIdempotency(joinPoint, annot, idempotencyKey);
+				Fail.fail("a SubsequentPresentationException was expected here");
+			} catch (SubsequentPresentationException e) {
+				Assertions.assertThat(e.getResponseEntity().getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+			}
+			Mockito.verifyZeroInteractions(repository);
+		} finally {
+			localFallbackStore.preDestroy();
+		}
+	}
+
+	@Test
+	public void testIsStreamedBody() {
+		StreamingResponseBody streamingBody = out -> out.write(0);
+
+		Assertions.assertThat(cut.isStreamedBody(streamingBody)).isTrue();
+		Assertions.assertThat(cut.isStreamedBody(ResponseEntity.ok(new SseEmitter()))).isTrue();
+		Assertions.assertThat(cut.isStreamedBody(ResponseEntity.ok("dummy body"))).isFalse();
+		Assertions.assertThat(cut.isStreamedBody(null)).isFalse();
+	}
+
 	@Test
 	public void testHandleRequestSubsequentPresentation_shouldReturnHttpStatusACCEPTED_whenFirstRequestProcessingIsStillRunning()
 	        throws Exception {
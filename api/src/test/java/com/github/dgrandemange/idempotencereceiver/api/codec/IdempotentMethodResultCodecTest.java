@@ -0,0 +1,126 @@
+package com.github.dgrandemange.idempotencereceiver.api.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.fest.assertions.Assertions;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult.ProcessingState;
+
+public class IdempotentMethodResultCodecTest {
+
+	IdempotentMethodResultCodec cut = new IdempotentMethodResultCodec();
+
+	@Test
+	public void testDecode_shouldRestoreEncodedDoneResult() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.LOCATION, "/books/123");
+		headers.add("X-Custom", "a");
+		headers.add("X-Custom", "b");
+
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.ofEpochMilli(1551434400123L))
+		        .withIdempotencyKey("12345").inNamespace("payments").withTtlMs(60000)
+		        .withResponse("dummy body".getBytes(), String.class, MediaType.APPLICATION_JSON_UTF8,
+		                StringHttpMessageConverter.class, headers, HttpStatus.CREATED)
+		        .withBodyContentEncoding("gzip").build();
+		IdempotentMethodResult imrWithCodecId = IdempotentMethodResult.builder().from(imr).withReplayCodecId(42)
+		        .build();
+
+		IdempotentMethodResult decoded = cut.decode(cut.encode(imr));
+		IdempotentMethodResult decodedWithCodecId = cut.decode(cut.encode(imrWithCodecId));
+
+		Assertions.assertThat(decoded.getIdempotencyKey()).isEqualTo("12345");
+		Assertions.assertThat(decoded.getNamespace()).isEqualTo("payments");
+		Assertions.assertThat(decoded.getTtlMs()).isEqualTo(60000);
+		Assertions.assertThat(decoded.getStartedAt()).isEqualTo(imr.getStartedAt());
+		Assertions.assertThat(decoded.getState()).isEqualTo(ProcessingState.DONE);
+		Assertions.assertThat(decoded.getResponseStatus()).isEqualTo(HttpStatus.CREATED);
+		Assertions.assertThat(decoded.getBodyContentType()).isEqualTo(MediaType.APPLICATION_JSON_UTF8);
+		Assertions.assertThat(decoded.getReturnTypeName()).isEqualTo(String.class.getName());
+		Assertions.assertThat(decoded.getSelectedConverterTypeName())
+		        .isEqualTo(StringHttpMessageConverter.class.getName());
+		Assertions.assertThat(decoded.getResponseHeaders()).isEqualTo(headers);
+		Assertions.assertThat(decoded.getBodyContentEncoding()).isEqualTo("gzip");
+		Assertions.assertThat(decoded.getBody()).isEqualTo("dummy body".getBytes());
+		Assertions.assertThat(decoded.getReplayCodecId()).isEqualTo(0);
+
+		Assertions.assertThat(decodedWithCodecId.getReplayCodecId()).isEqualTo(42);
+		Assertions.assertThat(decodedWithCodecId.getReturnTypeName()).isNull();
+		Assertions.assertThat(decodedWithCodecId.getSelectedConverterTypeName()).isNull();
+		Assertions.assertThat(decodedWithCodecId.getBody()).isEqualTo("dummy body".getBytes());
+	}
+
+	@Test
+	public void testDecode_shouldRestoreEncodedRunningResult() {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.EPOCH)
+		        .withIdempotencyKey("12345").build();
+
+		IdempotentMethodResult decoded = cut.decode(cut.encode(imr));
+
+		Assertions.assertThat(decoded.getIdempotencyKey()).isEqualTo("12345");
+		Assertions.assertThat(decoded.getNamespace()).isNull();
+		Assertions.assertThat(decoded.getStartedAt()).isEqualTo(Instant.EPOCH);
+		Assertions.assertThat(decoded.getState()).isEqualTo(ProcessingState.RUNNING);
+		Assertions.assertThat(decoded.getResponseStatus()).isNull();
+		Assertions.assertThat(decoded.getBody()).isNull();
+	}
+
+	@Test
+	public void testDecode_shouldRestoreLeaseOfRunningResult() {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.ofEpochMilli(1551434400123L))
+		        .withIdempotencyKey("12345").withTtlMs(30000)
+		        .withLeaseExpiresAt(Instant.ofEpochMilli(1551434430123L)).build();
+
+		IdempotentMethodResult decoded = cut.decode(cut.encode(imr));
+
+		Assertions.assertThat(decoded.getLeaseExpiresAt()).isEqualTo(Instant.ofEpochMilli(1551434430123L));
+		Assertions.assertThat(decoded.getTtlMs()).isEqualTo(30000);
+		Assertions.assertThat(decoded.isSameLeaseAs(imr)).isTrue();
+	}
+
+	@Test
+	public void testDecode_shouldSkipUnknownFields() {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey("12345").withResponse(new HttpHeaders(), HttpStatus.ACCEPTED).build();
+
+		ProtoWriter writer = new ProtoWriter(16);
+		writer.writeUInt64(100, 42);
+		writer.writeString(101, "some field added by a newer version");
+		byte[] encoded = cut.encode(imr);
+		byte[] extra = writer.toByteArray();
+		byte[] extended = Arrays.copyOf(encoded, encoded.length + extra.length);
+		System.arraycopy(extra, 0, extended, encoded.length, extra.length);
+
+		IdempotentMethodResult decoded = cut.decode(extended);
+
+		Assertions.assertThat(decoded.getResponseStatus()).isEqualTo(HttpStatus.ACCEPTED);
+	}
+
+	@Test
+	public void testEncode_shouldBeSmallerThanJavaSerialization() throws Exception {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setLocation(java.net.URI.create("/books/123"));
+
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey("157840f0f1c1d77526a0beb9980c1170d2bc4f5fe170d8fab4309032a1640b36")
+		        .withResponse("{}".getBytes(), String.class, MediaType.APPLICATION_JSON_UTF8,
+		                StringHttpMessageConverter.class, headers, HttpStatus.CREATED)
+		        .build();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(imr);
+		}
+
+		Assertions.assertThat(cut.encode(imr).length * 2).isLessThan(baos.size());
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.github.dgrandemange.idempotencereceiver.api.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.fest.assertions.Assertions;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+public class CompactHttpHeadersTest {
+
+	@Test
+	public void testOf_shouldKeepValuesInOrder() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.LOCATION, "/books/123");
+		headers.add("X-Custom", "a");
+		headers.add("X-Custom", "b");
+
+		CompactHttpHeaders cut = CompactHttpHeaders.of(headers);
+
+		Assertions.assertThat(cut.size()).isEqualTo(3);
+		Assertions.assertThat(cut.getName(1)).isEqualTo("X-Custom");
+		Assertions.assertThat(cut.getValue(2)).isEqualTo("b");
+		Assertions.assertThat(cut.toHttpHeaders()).isEqualTo(headers);
+	}
+
+	@Test
+	public void testOf_shouldShareHeaderNames() {
+		HttpHeaders headers1 = new HttpHeaders();
+		headers1.add(new String("X-Shared-Name"), "1");
+		HttpHeaders headers2 = new HttpHeaders();
+		headers2.add(new String("X-Shared-Name"), "2");
+
+		Assertions.assertThat(CompactHttpHeaders.of(headers1).getName(0))
+		        .isSameAs(CompactHttpHeaders.of(headers2).getName(0));
+	}
+
+	@Test
+	public void testOf_shouldReturnEmptyInstance_whenNoHeader() {
+		Assertions.assertThat(CompactHttpHeaders.of(new HttpHeaders())).isSameAs(CompactHttpHeaders.EMPTY);
+		Assertions.assertThat(CompactHttpHeaders.of(null)).isNull();
+	}
+
+	@Test
+	public void testSerialization_shouldShareHeaderNames() throws Exception {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.LOCATION, "/books/123");
+		CompactHttpHeaders cut = CompactHttpHeaders.of(headers);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(cut);
+		}
+		CompactHttpHeaders deserialized;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			deserialized = (CompactHttpHeaders) ois.readObject();
+		}
+
+		Assertions.assertThat(deserialized).isEqualTo(cut);
+		Assertions.assertThat(deserialized.getName(0)).isSameAs(cut.getName(0));
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration.ConcurrencyLimitConfiguration;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+	ConcurrencyLimitConfiguration config;
+
+	@Before
+	public void setUp() {
+		config = new ConcurrencyLimitConfiguration();
+		config.setInitialLimit(10);
+		config.setMinLimit(2);
+		config.setMaxLimit(50);
+	}
+
+	@Test
+	public void testTryAcquire_shouldReject_whenLimitIsReached() {
+		config.setInitialLimit(2);
+		AdaptiveConcurrencyLimiter cut = new AdaptiveConcurrencyLimiter(config);
+
+		Assertions.assertThat(cut.tryAcquire()).isTrue();
+		Assertions.assertThat(cut.tryAcquire()).isTrue();
+		Assertions.assertThat(cut.tryAcquire()).isFalse();
+		Assertions.assertThat(cut.getInFlight()).isEqualTo(2);
+
+		cut.onDropped();
+		Assertions.assertThat(cut.getInFlight()).isEqualTo(1);
+		Assertions.assertThat(cut.tryAcquire()).isTrue();
+	}
+
+	@Test
+	public void testOnSuccess_shouldGrowLimit_whileLatencyIsSteady_andShrinkIt_whenLatencyRises() {
+		AdaptiveConcurrencyLimiter cut = new AdaptiveConcurrencyLimiter(config);
+
+		for (int i = 0; i < 20; i++) {
+			saturate(cut, TimeUnit.MILLISECONDS.toNanos(2));
+		}
+		int grown = cut.getLimit();
+		Assertions.assertThat(grown).isGreaterThan(10);
+
+		for (int i = 0; i < 20; i++) {
+			saturate(cut, TimeUnit.MILLISECONDS.toNanos(20));
+		}
+		Assertions.assertThat(cut.getLimit()).isLessThan(grown);
+		Assertions.assertThat(cut.getLimit()).isGreaterThanOrEqualTo(2);
+	}
+
+	@Test
+	public void testOnSuccess_shouldNotGrowLimit_whenCallsDontReachIt() {
+		AdaptiveConcurrencyLimiter cut = new AdaptiveConcurrencyLimiter(config);
+
+		for (int i = 0; i < 100; i++) {
+			cut.tryAcquire();
+			cut.onSuccess(TimeUnit.MILLISECONDS.toNanos(2));
+		}
+		Assertions.assertThat(cut.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	public void testOnDropped_shouldShrinkLimit_downToMinLimit() {
+		AdaptiveConcurrencyLimiter cut = new AdaptiveConcurrencyLimiter(config);
+
+		cut.tryAcquire();
+		cut.onDropped();
+		Assertions.assertThat(cut.getLimit()).isEqualTo(9);
+
+		for (int i = 0; i < 100; i++) {
+			cut.tryAcquire();
+			cut.onDropped();
+		}
+		Assertions.assertThat(cut.getLimit()).isEqualTo(2);
+	}
+
+	/**
+	 * Issues as many calls as allowed, then completes them with given latency
+	 */
+	void saturate(AdaptiveConcurrencyLimiter cut, long rttNanos) {
+		int calls = 0;
+		while (cut.tryAcquire()) {
+			calls++;
+		}
+		for (int i = 0; i < calls; i++) {
+			cut.onSuccess(rttNanos);
+		}
+	}
+
+}
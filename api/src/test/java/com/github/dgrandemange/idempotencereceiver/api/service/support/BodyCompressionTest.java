@@ -0,0 +1,106 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.CompressionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+
+public class BodyCompressionTest {
+
+	CompressionConfiguration config;
+
+	byte[] largeBody;
+
+	@Before
+	public void setUp() {
+		config = new CompressionConfiguration();
+		config.setAlgorithm("gzip");
+		config.setMinBodySize(64);
+
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 100; i++) {
+			sb.append("{\"id\":").append(i).append(",\"status\":\"ACCEPTED\"},");
+		}
+		largeBody = sb.append("{}]").toString().getBytes();
+	}
+
+	IdempotentMethodResult imrWithBody(byte[] body) {
+		return IdempotentMethodResult.builder().startedAt(Instant.now()).withIdempotencyKey("12345")
+		        .withResponse(body, String.class, MediaType.APPLICATION_JSON_UTF8, StringHttpMessageConverter.class,
+		                new HttpHeaders(), HttpStatus.CREATED)
+		        .build();
+	}
+
+	@Test
+	public void testCompress_shouldCompressLargeBody() throws Exception {
+		BodyCompression cut = new BodyCompression(config, Collections.emptyList());
+		IdempotentMethodResult imr = imrWithBody(largeBody);
+
+		IdempotentMethodResult compressed = cut.compress(imr);
+
+		Assertions.assertThat(compressed.getBodyContentEncoding()).isEqualTo("gzip");
+		Assertions.assertThat(compressed.getBody().length).isLessThan(largeBody.length);
+		Assertions.assertThat(cut.decompress(compressed)).isEqualTo(largeBody);
+		// Original result is left untouched
+		Assertions.assertThat(imr.getBody()).isEqualTo(largeBody);
+		Assertions.assertThat(imr.getBodyContentEncoding()).isNull();
+	}
+
+	@Test
+	public void testCompress_shouldLeaveSmallBodyUncompressed() {
+		BodyCompression cut = new BodyCompression(config, Collections.emptyList());
+		IdempotentMethodResult imr = imrWithBody("{}".getBytes());
+
+		Assertions.assertThat(cut.compress(imr)).isSameAs(imr);
+	}
+
+	@Test
+	public void testCompress_shouldLeaveBodyUncompressedWhenDisabled() {
+		config.setAlgorithm("none");
+		BodyCompression cut = new BodyCompression(config, Collections.emptyList());
+		IdempotentMethodResult imr = imrWithBody(largeBody);
+
+		Assertions.assertThat(cut.isEnabled()).isFalse();
+		Assertions.assertThat(cut.compress(imr)).isSameAs(imr);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInit_shouldRejectUnavailableAlgorithm() {
+		config.setAlgorithm("lz4");
+		new BodyCompression(config, Collections.emptyList());
+	}
+
+	@Test
+	public void testCanPassThrough() {
+		BodyCompression cut = new BodyCompression(config, Collections.emptyList());
+		IdempotentMethodResult compressed = cut.compress(imrWithBody(largeBody));
+		MockHttpServletRequest request = new MockHttpServletRequest();
+
+		Assertions.assertThat(cut.canPassThrough(compressed, request)).isFalse();
+
+		request.addHeader(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+		Assertions.assertThat(cut.canPassThrough(compressed, request)).isTrue();
+		Assertions.assertThat(cut.canPassThrough(imrWithBody(largeBody), request)).isFalse();
+	}
+
+	@Test
+	public void testAccepts() {
+		Assertions.assertThat(BodyCompression.accepts("gzip", "gzip")).isTrue();
+		Assertions.assertThat(BodyCompression.accepts("br, GZIP", "gzip")).isTrue();
+		Assertions.assertThat(BodyCompression.accepts("*", "gzip")).isTrue();
+		Assertions.assertThat(BodyCompression.accepts("gzip;q=0", "gzip")).isFalse();
+		Assertions.assertThat(BodyCompression.accepts("identity", "gzip")).isFalse();
+		Assertions.assertThat(BodyCompression.accepts(null, "gzip")).isFalse();
+	}
+
+}
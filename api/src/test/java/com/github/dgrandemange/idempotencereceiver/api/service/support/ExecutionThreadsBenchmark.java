@@ -0,0 +1,97 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.fest.assertions.Assertions;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration.Threads;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration;
+
+/**
+ * <p>
+ * Compares the throughput of the asynchronous lookups of a slow repository,
+ * executed on platform threads and on virtual threads, at high concurrency.
+ * </p>
+ *
+ * <p>
+ * Not run by the build (not a <code>*Test</code> class). To run it, on a Java
+ * 21+ runtime for the virtual threads part :
+ * <code>mvn -pl api test -Dtest=ExecutionThreadsBenchmark</code>
+ * </p>
+ */
+public class ExecutionThreadsBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionThreadsBenchmark.class);
+
+	static final int CONCURRENT_LOOKUPS = 5000;
+
+	static final int ROUNDS = 3;
+
+	static final long REPOSITORY_LATENCY_MS = 20;
+
+	@Test
+	public void benchmarkPlatformThreads() throws Exception {
+		run(Threads.PLATFORM);
+	}
+
+	@Test
+	public void benchmarkVirtualThreads() throws Exception {
+		Assume.assumeTrue(ExecutionThreads.isVirtualThreadSupported());
+		run(Threads.VIRTUAL);
+	}
+
+	void run(Threads threads) throws Exception {
+		ExecutionConfiguration execution = new ExecutionConfiguration();
+		execution.setThreads(threads);
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(Instant.now()).build();
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public IdempotentMethodResult find(String idempotencyKey) {
+				try {
+					// Blocking read of a slow repository
+					TimeUnit.MILLISECONDS.sleep(REPOSITORY_LATENCY_MS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.find(idempotencyKey);
+			}
+		};
+		repository.register(imr.getIdempotencyKey(), imr);
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("benchmark", repository,
+		        new ResiliencyConfiguration(), execution);
+
+		// Warm up
+		lookups(cut, imr.getIdempotencyKey(), 100);
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			long start = System.nanoTime();
+			lookups(cut, imr.getIdempotencyKey(), CONCURRENT_LOOKUPS);
+			long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			LOGGER.info("{} threads, round {} : {} concurrent lookups of {} ms in {} ms, i.e. {} lookups/s", threads,
+			        round, CONCURRENT_LOOKUPS, REPOSITORY_LATENCY_MS, elapsedMs,
+			        CONCURRENT_LOOKUPS * 1000L / Math.max(1, elapsedMs));
+		}
+	}
+
+	void lookups(ResilientIdempotentRepository cut, String idempotencyKey, int count) {
+		List<CompletableFuture<IdempotentMethodResult>> futures = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			futures.add(cut.findAsync(null, idempotencyKey));
+		}
+		for (CompletableFuture<IdempotentMethodResult> future : futures) {
+			Assertions.assertThat(future.join()).isNotNull();
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+
+import org.fest.assertions.Assertions;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration.Threads;
+
+public class ExecutionThreadsTest {
+
+	@Test
+	public void testNewThread_shouldCreateDaemonPlatformThread() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		Thread thread = ExecutionThreads.newThread(ran::countDown, "test-platform", false);
+
+		Assertions.assertThat(thread.getName()).isEqualTo("test-platform");
+		Assertions.assertThat(thread.isDaemon()).isTrue();
+		thread.start();
+		Assertions.assertThat(ran.await(1, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void testNewThreadFactory_shouldCreateNamedVirtualThreads_whenSupported() throws Exception {
+		Assume.assumeTrue(ExecutionThreads.isVirtualThreadSupported());
+		ExecutionConfiguration execution = new ExecutionConfiguration();
+		execution.setThreads(Threads.VIRTUAL);
+		Assertions.assertThat(ExecutionThreads.useVirtualThreads(execution)).isTrue();
+
+		ThreadFactory factory = ExecutionThreads.newThreadFactory("test-virtual-", true);
+		CountDownLatch ran = new CountDownLatch(2);
+		Thread first = factory.newThread(ran::countDown);
+		Thread second = factory.newThread(ran::countDown);
+
+		Assertions.assertThat(first.getName()).isEqualTo("test-virtual-0");
+		Assertions.assertThat(second.getName()).isEqualTo("test-virtual-1");
+		Assertions.assertThat(Thread.class.getMethod("isVirtual").invoke(first)).isEqualTo(Boolean.TRUE);
+		first.start();
+		second.start();
+		Assertions.assertThat(ran.await(1, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void testUseVirtualThreads_shouldBeFalse_byDefault() {
+		Assertions.assertThat(ExecutionThreads.useVirtualThreads(null)).isFalse();
+		Assertions.assertThat(ExecutionThreads.useVirtualThreads(new ExecutionConfiguration())).isFalse();
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.BodyStoreConfiguration;
+
+public class FileSystemBodyStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	FileSystemBodyStore cut;
+
+	byte[] body;
+
+	@Before
+	public void setUp() throws IOException {
+		BodyStoreConfiguration config = new BodyStoreConfiguration();
+		config.setDirectory(folder.getRoot().getAbsolutePath());
+		config.setChunkSize(10);
+		config.setRetentionMs(60000);
+		cut = new FileSystemBodyStore(config);
+
+		body = "a body spanning several chunks of ten bytes".getBytes();
+	}
+
+	@Test
+	public void testStore_shouldSplitBodyInChunks() throws IOException {
+		String reference = cut.store(body);
+
+		Assertions.assertThat(cut.chunks(reference)).hasSize(5);
+		Assertions.assertThat(cut.size(reference)).isEqualTo(body.length);
+		Assertions.assertThat(cut.load(reference)).isEqualTo(body);
+	}
+
+	@Test
+	public void testStore_shouldReferenceBodyByItsContents() throws IOException {
+		String reference = cut.store(body);
+
+		Assertions.assertThat(cut.store(body.clone())).isEqualTo(reference);
+		Assertions.assertThat(cut.store("another body".getBytes())).isNotEqualTo(reference);
+	}
+
+	@Test
+	public void testStoreStream_shouldStoreSameChunksAsByteArray() throws IOException {
+		String reference = cut.store(new ByteArrayInputStream(body));
+
+		Assertions.assertThat(reference).isEqualTo(cut.referenceOf(body));
+		Assertions.assertThat(cut.chunks(reference)).hasSize(5);
+		Assertions.assertThat(cut.load(reference)).isEqualTo(body);
+		Assertions.assertThat(cut.store(new ByteArrayInputStream(body))).isEqualTo(reference);
+		Assertions.assertThat(folder.getRoot().toPath().resolve(FileSystemBodyStore.TMP_DIRECTORY).toFile().list())
+		        .isEmpty();
+	}
+
+	@Test
+	public void testTransferTo() throws IOException {
+		String reference = cut.store(body);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		cut.transferTo(reference, Channels.newChannel(baos));
+
+		Assertions.assertThat(baos.toByteArray()).isEqualTo(body);
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoad_shouldFailOnUnknownReference() throws IOException {
+		cut.load(cut.referenceOf(body));
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoad_shouldRejectInvalidReference() throws IOException {
+		cut.load("../../etc/passwd");
+	}
+
+	@Test
+	public void testPurge_shouldDeleteBodiesWhoseRetentionHasElapsed() throws IOException {
+		String expired = cut.store(body);
+		String retained = cut.store("another body".getBytes());
+		Files.setLastModifiedTime(cut.resolve(expired), FileTime.fromMillis(System.currentTimeMillis() - 120000));
+
+		cut.purge();
+
+		Assertions.assertThat(Files.exists(cut.resolve(expired))).isFalse();
+		Assertions.assertThat(cut.load(retained)).isEqualTo("another body".getBytes());
+	}
+
+	@Test
+	public void testRetain_shouldKeepBodyUpToExpiryOfItsResult_whenTtlExceedsRetention() throws IOException {
+		String reference = cut.store(body);
+
+		cut.retain(reference, 300000);
+		// Storing the same contents again doesn't shorten its retention
+		cut.store(body);
+
+		long retainedFrom = Files.getLastModifiedTime(cut.resolve(reference)).toMillis();
+		Assertions.assertThat(retainedFrom).isGreaterThan(System.currentTimeMillis() + 200000);
+		cut.purge();
+		Assertions.assertThat(cut.load(reference)).isEqualTo(body);
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ExistenceOnlyConfiguration;
+
+public class GenerationalFingerprintSetTest {
+
+	long nowMs;
+
+	GenerationalFingerprintSet cut;
+
+	@Before
+	public void setUp() {
+		ExistenceOnlyConfiguration existenceOnly = new ExistenceOnlyConfiguration();
+		existenceOnly.setTtlMs(1000);
+		existenceOnly.setGenerations(3);
+
+		nowMs = 0;
+		cut = new GenerationalFingerprintSet();
+		cut.setInstantProvider(() -> Instant.ofEpochMilli(nowMs));
+		cut.init(existenceOnly);
+	}
+
+	@Test
+	public void testAddIfAbsent_shouldDetectDuplicates() {
+		Random random = new Random(42);
+		Set<Long> added = new HashSet<>();
+		for (int i = 0; i < 100000; i++) {
+			long fingerprint = random.nextLong();
+			Assertions.assertThat(cut.addIfAbsent(fingerprint)).isEqualTo(added.add(fingerprint));
+		}
+
+		for (Long fingerprint : added) {
+			Assertions.assertThat(cut.addIfAbsent(fingerprint)).isFalse();
+		}
+		Assertions.assertThat(cut.size()).isEqualTo(added.size());
+	}
+
+	@Test
+	public void testAddIfAbsent_shouldRetainFingerprintAtLeastTtl() {
+		Assertions.assertThat(cut.addIfAbsent(123L)).isTrue();
+
+		// Generation duration is 1000 / (3 - 1) = 500 ms
+		nowMs = 999;
+		Assertions.assertThat(cut.addIfAbsent(123L)).isFalse();
+
+		nowMs = 1500;
+		Assertions.assertThat(cut.addIfAbsent(123L)).isTrue();
+	}
+
+	@Test
+	public void testRemove_shouldForgetFingerprint() {
+		for (long fingerprint = 1; fingerprint <= 1000; fingerprint++) {
+			cut.addIfAbsent(fingerprint);
+		}
+
+		for (long fingerprint = 1; fingerprint <= 1000; fingerprint += 2) {
+			Assertions.assertThat(cut.remove(fingerprint)).isTrue();
+		}
+
+		for (long fingerprint = 1; fingerprint <= 1000; fingerprint++) {
+			Assertions.assertThat(cut.addIfAbsent(fingerprint)).isEqualTo(fingerprint % 2 == 1);
+		}
+	}
+
+	@Test
+	public void testFingerprintOf_shouldUseRequestHashLeadingBits() {
+		Assertions.assertThat(GenerationalFingerprintSet
+		        .fingerprintOf("ffffffffffffffff5f4e443ad6591b8878da34f77e84381759c6a1412ebffc73")).isEqualTo(-1L);
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.SingleFlightConfiguration;
+
+public class InFlightRegistryTest {
+
+	InFlightRegistry cut;
+
+	IdempotentMethodResult runningImr;
+
+	IdempotentMethodResult doneImr;
+
+	@Before
+	public void setUp() {
+		SingleFlightConfiguration config = new SingleFlightConfiguration();
+		config.setMaxWaitMs(50);
+		config.setMaxEntries(2);
+		cut = new InFlightRegistry(config);
+
+		runningImr = IdempotentMethodResult.builder().withIdempotencyKey("12345").inNamespace("payments")
+		        .startedAt(Instant.now()).build();
+		doneImr = IdempotentMethodResult.builder().from(runningImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+	}
+
+	@Test
+	public void testAwait_shouldReturnNull_whenRequestIsNotInFlight() {
+		Assertions.assertThat(cut.await(runningImr)).isNull();
+	}
+
+	@Test
+	public void testAwait_shouldReturnFinalResult_whenFirstPresentationCompletes() {
+		cut = new InFlightRegistry(new SingleFlightConfiguration());
+		cut.begin(runningImr);
+
+		completeLater(runningImr, doneImr);
+
+		Assertions.assertThat(cut.await(runningImr)).isSameAs(doneImr);
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testAwait_shouldReturnNull_whenFirstPresentationIsStillRunningAfterMaxWait() {
+		cut.begin(runningImr);
+
+		Assertions.assertThat(cut.await(runningImr)).isNull();
+		Assertions.assertThat(cut.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void testAwait_shouldReturnNull_whenFirstPresentationIsUnregistered() {
+		cut = new InFlightRegistry(new SingleFlightConfiguration());
+		cut.begin(runningImr);
+
+		completeLater(runningImr, null);
+
+		Assertions.assertThat(cut.await(runningImr)).isNull();
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testBegin_shouldRefuse_whenMaxEntriesIsReached() {
+		IdempotentMethodResult otherImr = IdempotentMethodResult.builder().withIdempotencyKey("67890")
+		        .startedAt(Instant.now()).build();
+		IdempotentMethodResult thirdImr = IdempotentMethodResult.builder().withIdempotencyKey("abcde")
+		        .startedAt(Instant.now()).build();
+
+		Assertions.assertThat(cut.begin(runningImr)).isTrue();
+		Assertions.assertThat(cut.begin(otherImr)).isTrue();
+		Assertions.assertThat(cut.begin(thirdImr)).isFalse();
+	}
+
+	@Test
+	public void testKeyOf_shouldDistinguishNamespaces() {
+		IdempotentMethodResult commonImr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(Instant.now()).build();
+
+		Assertions.assertThat(InFlightRegistry.keyOf(commonImr)).isNotEqualTo(InFlightRegistry.keyOf(runningImr));
+		Assertions.assertThat(InFlightRegistry.keyOf(null, "a:b")).isNotEqualTo(InFlightRegistry.keyOf("a", "b"));
+		Assertions.assertThat(InFlightRegistry.keyOf("a:b", "c")).isNotEqualTo(InFlightRegistry.keyOf("a", "b:c"));
+		Assertions.assertThat(InFlightRegistry.keyOf(null, "1:a:b")).isNotEqualTo(InFlightRegistry.keyOf("a", "b"));
+	}
+
+	@Test
+	public void testComplete_shouldNotCompleteFutureOfTakingOverPresentation() {
+		cut.begin(runningImr);
+		IdempotentMethodResult takingOverImr = IdempotentMethodResult.builder().from(runningImr)
+		        .startedAt(runningImr.getStartedAt().plusSeconds(30)).build();
+		cut.begin(takingOverImr);
+
+		// Late completion of the first presentation whose lease has been taken over
+		cut.complete(runningImr, doneImr);
+
+		Assertions.assertThat(cut.size()).isEqualTo(1);
+		Assertions.assertThat(cut.await(takingOverImr)).isNull();
+
+		IdempotentMethodResult takenOverDoneImr = IdempotentMethodResult.builder().from(takingOverImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+		cut.complete(takingOverImr, takenOverDoneImr);
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	CompletableFuture<Void> completeLater(IdempotentMethodResult imr, IdempotentMethodResult finalImr) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				TimeUnit.MILLISECONDS.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			cut.complete(imr, finalImr);
+		});
+	}
+
+}
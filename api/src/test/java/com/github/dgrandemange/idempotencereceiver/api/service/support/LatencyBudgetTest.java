@@ -0,0 +1,78 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.fest.assertions.Assertions;
+import org.fest.assertions.Fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.LatencyBudgetExhaustedException;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+public class LatencyBudgetTest {
+
+	InMemoryRepository repository;
+
+	IdempotentMethodResult imr;
+
+	@Before
+	public void setUp() {
+		repository = new InMemoryRepository();
+		imr = IdempotentMethodResult.builder().withIdempotencyKey("12345").startedAt(Instant.now()).build();
+	}
+
+	@Test
+	public void testCall_shouldGoThroughAsynchronousRepositoryPath_withinBudget() {
+		LatencyBudget cut = new LatencyBudget(1000);
+
+		cut.register(repository, imr);
+		Assertions.assertThat(cut.find(repository, null, "12345")).isSameAs(imr);
+		Assertions.assertThat(cut.unregister(repository, null, "12345")).isSameAs(imr);
+
+		Assertions.assertThat(repository.find("12345")).isNull();
+		Assertions.assertThat(cut.isExhausted()).isFalse();
+		Assertions.assertThat(cut.getRemainingNanos()).isLessThan(TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test
+	public void testCall_shouldCancelCall_whenBudgetIsExhaustedBeforeItCompletes() {
+		LatencyBudget cut = new LatencyBudget(20);
+		CompletableFuture<IdempotentMethodResult> stuckLookup = new CompletableFuture<>();
+
+		try {
+			cut.call(() -> stuckLookup);
+			Fail.fail("a LatencyBudgetExhaustedException was expected here");
+		} catch (LatencyBudgetExhaustedException e) {
+			// Expected
+		}
+
+		Assertions.assertThat(stuckLookup.isCancelled()).isTrue();
+		Assertions.assertThat(cut.isExhausted()).isTrue();
+	}
+
+	@Test
+	public void testCall_shouldNotIssueCall_whenBudgetIsAlreadyExhausted() {
+		LatencyBudget cut = new LatencyBudget(10);
+		try {
+			cut.call(() -> new CompletableFuture<>());
+		} catch (LatencyBudgetExhaustedException e) {
+			// Budget now exhausted
+		}
+		IdempotentRepository mockedRepository = Mockito.mock(IdempotentRepository.class);
+
+		try {
+			cut.find(mockedRepository, null, "12345");
+			Fail.fail("a LatencyBudgetExhaustedException was expected here");
+		} catch (LatencyBudgetExhaustedException e) {
+			// Expected
+		}
+
+		Mockito.verifyZeroInteractions(mockedRepository);
+	}
+
+}
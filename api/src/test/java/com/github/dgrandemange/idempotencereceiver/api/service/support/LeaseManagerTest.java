@@ -0,0 +1,115 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.LeaseConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+public class LeaseManagerTest {
+
+	static final Instant NOW = Instant.ofEpochMilli(1551434400000L);
+
+	IdempotentRepository repository;
+
+	InstantProviderImpl instantProvider;
+
+	IdempotentMethodResult runningImr;
+
+	LeaseManager cut;
+
+	@Before
+	public void setUp() {
+		repository = Mockito.mock(IdempotentRepository.class);
+		LeaseConfiguration lease = new LeaseConfiguration();
+		lease.setDurationMs(1000);
+		cut = new LeaseManager(lease, repository);
+
+		instantProvider = new InstantProviderImpl();
+		instantProvider.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+		cut.setInstantProvider(instantProvider);
+
+		runningImr = IdempotentMethodResult.builder().withIdempotencyKey("12345").inNamespace("payments")
+		        .withTtlMs(3600000).startedAt(NOW).build();
+	}
+
+	@Test
+	public void testLease_shouldShortenLifetimeOfRunningResult() {
+		IdempotentMethodResult leasedImr = cut.lease(runningImr);
+
+		Assertions.assertThat(leasedImr.getTtlMs()).isEqualTo(1000);
+		Assertions.assertThat(leasedImr.getLeaseExpiresAt()).isEqualTo(NOW.plusMillis(1000));
+		Assertions.assertThat(runningImr.getTtlMs()).isEqualTo(3600000);
+		Assertions.assertThat(runningImr.getLeaseExpiresAt()).isNull();
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testRenew_shouldRegisterHeldLeasesInOneBatch() {
+		IdempotentMethodResult otherImr = IdempotentMethodResult.builder().withIdempotencyKey("67890")
+		        .startedAt(NOW).build();
+		cut.hold(cut.lease(runningImr));
+		cut.hold(cut.lease(otherImr));
+		instantProvider.setClock(Clock.fixed(NOW.plusMillis(400), ZoneOffset.UTC));
+
+		cut.renew();
+
+		ArgumentCaptor<Collection> renewed = ArgumentCaptor.forClass(Collection.class);
+		Mockito.verify(repository, Mockito.times(1)).registerAll(renewed.capture());
+		Assertions.assertThat(renewed.getValue()).hasSize(2);
+		for (Object imr : renewed.getValue()) {
+			Assertions.assertThat(((IdempotentMethodResult) imr).getLeaseExpiresAt())
+			        .isEqualTo(NOW.plusMillis(1400));
+			Assertions.assertThat(((IdempotentMethodResult) imr).getTtlMs()).isEqualTo(1000);
+		}
+	}
+
+	@Test
+	public void testRenew_shouldSkipReleasedLeases() {
+		cut.hold(cut.lease(runningImr));
+		cut.release(runningImr);
+
+		cut.renew();
+
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+		Mockito.verify(repository, Mockito.never()).registerAll(Mockito.anyCollection());
+	}
+
+	@Test
+	public void testPreDestroy_shouldUnregisterHeldLeasesInBulk() {
+		cut.hold(cut.lease(runningImr));
+
+		cut.preDestroy();
+
+		Mockito.verify(repository, Mockito.times(1)).unregisterAll(Mockito.anyCollection());
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testIsExpired() {
+		IdempotentMethodResult leasedImr = cut.lease(runningImr);
+		IdempotentMethodResult doneImr = IdempotentMethodResult.builder().from(leasedImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+
+		Assertions.assertThat(cut.isExpired(leasedImr)).isFalse();
+		Assertions.assertThat(cut.isExpired(runningImr)).isFalse();
+
+		instantProvider.setClock(Clock.fixed(NOW.plusMillis(1001), ZoneOffset.UTC));
+
+		Assertions.assertThat(cut.isExpired(leasedImr)).isTrue();
+		Assertions.assertThat(cut.isExpired(doneImr)).isFalse();
+		Assertions.assertThat(doneImr.getLeaseExpiresAt()).isNull();
+	}
+
+}
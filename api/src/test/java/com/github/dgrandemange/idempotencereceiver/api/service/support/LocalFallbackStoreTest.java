@@ -0,0 +1,108 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+
+import org.fest.assertions.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotentRepositoryException;
+import com.github.dgrandemange.idempotencereceiver.api.model.DegradationConfiguration.LocalFallbackConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+public class LocalFallbackStoreTest {
+
+	IdempotentRepository repository;
+
+	LocalFallbackConfiguration localFallback;
+
+	LocalFallbackStore cut;
+
+	@Before
+	public void setUp() {
+		repository = Mockito.mock(IdempotentRepository.class);
+		localFallback = new LocalFallbackConfiguration();
+	}
+
+	@After
+	public void tearDown() {
+		if (cut != null) {
+			cut.preDestroy();
+		}
+	}
+
+	IdempotentMethodResult runningImr(String idempotencyKey) {
+		return IdempotentMethodResult.builder().withIdempotencyKey(idempotencyKey).inNamespace("payments")
+		        .startedAt(Instant.now()).build();
+	}
+
+	IdempotentMethodResult doneImr(IdempotentMethodResult imr) {
+		return IdempotentMethodResult.builder().from(imr).withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+	}
+
+	@Test
+	public void testClaim_shouldRejectDuplicate_andClaimsBeyondMaxEntries() {
+		localFallback.setMaxEntries(2);
+		cut = new LocalFallbackStore(localFallback, repository, false);
+		IdempotentMethodResult imr = runningImr("12345");
+
+		Assertions.assertThat(cut.claim(imr)).isTrue();
+		Assertions.assertThat(cut.claim(runningImr("12345"))).isFalse();
+		Assertions.assertThat(cut.find("payments", "12345")).isSameAs(imr);
+		Assertions.assertThat(cut.claim(runningImr("67890"))).isTrue();
+		Assertions.assertThat(cut.claim(runningImr("24680"))).isFalse();
+		Assertions.assertThat(cut.size()).isEqualTo(2);
+
+		Assertions.assertThat(cut.release(imr)).isTrue();
+		Assertions.assertThat(cut.find("payments", "12345")).isNull();
+		Assertions.assertThat(cut.claim(runningImr("24680"))).isTrue();
+	}
+
+	@Test
+	public void testComplete_shouldOnlyHoldResultsClaimedLocally() {
+		cut = new LocalFallbackStore(localFallback, repository, false);
+		IdempotentMethodResult imr = runningImr("12345");
+		cut.claim(imr);
+
+		IdempotentMethodResult done = doneImr(imr);
+		Assertions.assertThat(cut.complete(done)).isTrue();
+		Assertions.assertThat(cut.find("payments", "12345")).isSameAs(done);
+		Assertions.assertThat(cut.complete(doneImr(runningImr("67890")))).isFalse();
+		Assertions.assertThat(cut.find("payments", "67890")).isNull();
+	}
+
+	@Test
+	public void testReconcile_shouldReplayCompletedResults_andDeactivateStore_onceRepositoryAnswersAgain() {
+		cut = new LocalFallbackStore(localFallback, repository, false);
+		IdempotentMethodResult running = runningImr("12345");
+		IdempotentMethodResult done = doneImr(runningImr("67890"));
+		IdempotentMethodResult completedElsewhere = doneImr(runningImr("24680"));
+		cut.claim(running);
+		cut.keep(done, new IdempotentRepositoryException("Node down"));
+		cut.keep(completedElsewhere, null);
+		Assertions.assertThat(cut.isActive()).isTrue();
+
+		Mockito.doThrow(new IdempotentRepositoryException("Node down")).when(repository).find(Mockito.anyString(),
+		        Mockito.anyString());
+		cut.reconcile();
+		Assertions.assertThat(cut.isActive()).isTrue();
+		Assertions.assertThat(cut.size()).isEqualTo(3);
+
+		Mockito.reset(repository);
+		Mockito.doReturn(completedElsewhere).when(repository).find("payments", "24680");
+		cut.reconcile();
+
+		Mockito.verify(repository, Mockito.times(1)).register("67890", done);
+		Mockito.verify(repository, Mockito.never()).register("24680", completedElsewhere);
+		Assertions.assertThat(cut.isActive()).isFalse();
+		// Still processed locally
+		Assertions.assertThat(cut.size()).isEqualTo(1);
+		Assertions.assertThat(cut.find("payments", "12345")).isSameAs(running);
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.web.method.HandlerMethod;
+
+import com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayCodecRegistry.ReplayCodec;
+
+public class ReplayCodecRegistryTest {
+
+	static class MyDummyRestWebService {
+
+		@Idempotent
+		public String create() {
+			return "created";
+		}
+
+		@Idempotent
+		public ResponseEntity<byte[]> upload() {
+			return ResponseEntity.ok(new byte[0]);
+		}
+
+		public Integer count() {
+			return 0;
+		}
+
+	}
+
+	ReplayCodecRegistry cut;
+
+	@Before
+	public void setUp() throws Exception {
+		MyDummyRestWebService handler = new MyDummyRestWebService();
+		cut = new ReplayCodecRegistry(
+		        Arrays.<HttpMessageConverter<?>>asList(new ByteArrayHttpMessageConverter(),
+		                new StringHttpMessageConverter()),
+		        Arrays.asList(new HandlerMethod(handler, "create"), new HandlerMethod(handler, "upload"),
+		                new HandlerMethod(handler, "count")));
+	}
+
+	@Test
+	public void testIdOf_shouldReturnSameIdOnEveryInstance_forIdempotentHandlerBodyType() {
+		int id = cut.idOf(String.class, StringHttpMessageConverter.class);
+
+		Assertions.assertThat(id).isNotEqualTo(0);
+		Assertions.assertThat(id).isEqualTo(
+		        ReplayCodecRegistry.idOf(String.class.getName(), StringHttpMessageConverter.class.getName()));
+	}
+
+	@Test
+	public void testIdOf_shouldUnwrapHttpEntityBodyType() {
+		Assertions.assertThat(cut.idOf(byte[].class, ByteArrayHttpMessageConverter.class)).isNotEqualTo(0);
+	}
+
+	@Test
+	public void testIdOf_shouldReturn0_whenCoupleIsNotRegistered() {
+		Assertions.assertThat(cut.idOf(Integer.class, StringHttpMessageConverter.class)).isEqualTo(0);
+		Assertions.assertThat(cut.idOf(String.class, ByteArrayHttpMessageConverter.class)).isEqualTo(0);
+	}
+
+	@Test
+	public void testGet_shouldReadBodyBack() throws Exception {
+		ReplayCodec codec = cut.get(cut.idOf(String.class, StringHttpMessageConverter.class));
+
+		Assertions.assertThat(codec.getReturnType()).isEqualTo(String.class);
+		Assertions.assertThat(codec.read("dummy body".getBytes())).isEqualTo("dummy body");
+	}
+
+	@Test
+	public void testGet_shouldReturnNull_whenIdIsUnknown() {
+		ReplayCodecRegistry emptyRegistry = new ReplayCodecRegistry(Collections.emptyList(),
+		        Collections.emptyList());
+
+		Assertions.assertThat(emptyRegistry.get(cut.idOf(String.class, StringHttpMessageConverter.class))).isNull();
+	}
+
+}
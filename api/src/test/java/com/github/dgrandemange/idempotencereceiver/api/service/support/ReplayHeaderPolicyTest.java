@@ -0,0 +1,54 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.fest.assertions.Assertions;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.ReplayHeadersConfiguration;
+
+public class ReplayHeaderPolicyTest {
+
+	@Test
+	public void testIsReplayable_withDefaultConfiguration() {
+		ReplayHeaderPolicy cut = new ReplayHeaderPolicy(new ReplayHeadersConfiguration());
+
+		Assertions.assertThat(cut.isReplayable(HttpHeaders.LOCATION)).isTrue();
+		Assertions.assertThat(cut.isReplayable(HttpHeaders.CONTENT_TYPE)).isTrue();
+		Assertions.assertThat(cut.isReplayable(HttpHeaders.DATE)).isFalse();
+		Assertions.assertThat(cut.isReplayable("date")).isFalse();
+		Assertions.assertThat(cut.isReplayable(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN)).isFalse();
+		Assertions.assertThat(cut.isReplayable("X-B3-TraceId")).isFalse();
+	}
+
+	@Test
+	public void testIsReplayable_withWhitelist() {
+		ReplayHeadersConfiguration config = new ReplayHeadersConfiguration();
+		config.setInclude(Arrays.asList("Location", "X-Custom-*"));
+		config.setExclude(Collections.singletonList("X-Custom-Secret"));
+		ReplayHeaderPolicy cut = new ReplayHeaderPolicy(config);
+
+		Assertions.assertThat(cut.isReplayable(HttpHeaders.LOCATION)).isTrue();
+		Assertions.assertThat(cut.isReplayable("x-custom-id")).isTrue();
+		Assertions.assertThat(cut.isReplayable("X-Custom-Secret")).isFalse();
+		Assertions.assertThat(cut.isReplayable(HttpHeaders.CONTENT_TYPE)).isFalse();
+	}
+
+	@Test
+	public void testFilter() {
+		ReplayHeaderPolicy cut = new ReplayHeaderPolicy(new ReplayHeadersConfiguration());
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.LOCATION, "/books/123");
+
+		Assertions.assertThat(cut.filter(headers)).isSameAs(headers);
+
+		headers.add(HttpHeaders.DATE, "Fri, 01 Mar 2019 10:00:00 GMT");
+		HttpHeaders filtered = cut.filter(headers);
+
+		Assertions.assertThat(filtered.keySet()).containsOnly(HttpHeaders.LOCATION);
+		Assertions.assertThat(headers.keySet()).hasSize(2);
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.fest.assertions.Assertions;
+import org.fest.assertions.Fail;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotentRepositoryException;
+import com.github.dgrandemange.idempotencereceiver.api.exception.RepositoryOverloadedException;
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.ExecutionConfiguration.Threads;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.ResiliencyConfiguration;
+
+public class ResilientIdempotentRepositoryTest {
+
+	ResiliencyConfiguration resiliency;
+
+	IdempotentMethodResult imr;
+
+	@Before
+	public void setUp() {
+		resiliency = new ResiliencyConfiguration();
+		resiliency.getRetry().setDelayMs(10);
+		resiliency.getRetry().setMaxDelayMs(20);
+		imr = IdempotentMethodResult.builder().withIdempotencyKey("12345").startedAt(Instant.now()).build();
+	}
+
+	@Test
+	public void testFind_shouldRetryFailedLookup() {
+		AtomicInteger lookups = new AtomicInteger();
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public IdempotentMethodResult find(String idempotencyKey) {
+				if (lookups.incrementAndGet() == 1) {
+					throw new IdempotentRepositoryException("Node down");
+				}
+				return super.find(idempotencyKey);
+			}
+		};
+		repository.register(imr.getIdempotencyKey(), imr);
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("test", repository, resiliency);
+
+		Assertions.assertThat(cut.find(imr.getIdempotencyKey())).isSameAs(imr);
+		Assertions.assertThat(lookups.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testFind_shouldRetryFailedLookup_onVirtualThreads() {
+		ExecutionConfiguration execution = new ExecutionConfiguration();
+		execution.setThreads(Threads.VIRTUAL);
+		AtomicInteger lookups = new AtomicInteger();
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public IdempotentMethodResult find(String idempotencyKey) {
+				if (lookups.incrementAndGet() == 1) {
+					throw new IdempotentRepositoryException("Node down");
+				}
+				return super.find(idempotencyKey);
+			}
+		};
+		repository.register(imr.getIdempotencyKey(), imr);
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("test", repository, resiliency,
+		        execution);
+
+		Assertions.assertThat(cut.find(imr.getIdempotencyKey())).isSameAs(imr);
+		Assertions.assertThat(lookups.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testRegister_shouldScheduleRetryOfFailedRegistration() {
+		AtomicInteger registrations = new AtomicInteger();
+		AtomicReference<Thread> retryThread = new AtomicReference<>();
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public IdempotentMethodResult register(String idempotencyKey, IdempotentMethodResult imr) {
+				if (registrations.incrementAndGet() == 1) {
+					throw new IdempotentRepositoryException("Node down");
+				}
+				retryThread.set(Thread.currentThread());
+				return super.register(idempotencyKey, imr);
+			}
+		};
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("test", repository, resiliency);
+
+		cut.register(imr.getIdempotencyKey(), imr);
+
+		Assertions.assertThat(repository.find(imr.getIdempotencyKey())).isSameAs(imr);
+		Assertions.assertThat(registrations.get()).isEqualTo(2);
+		Assertions.assertThat(retryThread.get()).isNotSameAs(Thread.currentThread());
+	}
+
+	@Test(expected = IdempotentRepositoryException.class)
+	public void testFind_shouldFail_whenRetriesAreExhausted() {
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public IdempotentMethodResult find(String idempotencyKey) {
+				throw new IdempotentRepositoryException("Node down");
+			}
+		};
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("test", repository, resiliency);
+
+		cut.find(imr.getIdempotencyKey());
+	}
+
+	@Test
+	public void testFind_shouldAnswerWithHedgedLookup_whenFirstLookupIsSlow() throws Exception {
+		resiliency.getHedging().setEnabled(true);
+		resiliency.getHedging().setMinSamples(1);
+		resiliency.getHedging().setMinDelayMs(10);
+		AtomicInteger lookups = new AtomicInteger();
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public CompletableFuture<IdempotentMethodResult> findAsync(String namespace, String idempotencyKey) {
+				if (lookups.incrementAndGet() == 2) {
+					// Stuck node
+					return new CompletableFuture<>();
+				}
+				return super.findAsync(namespace, idempotencyKey);
+			}
+		};
+		repository.register(imr.getIdempotencyKey(), imr);
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("test", repository, resiliency);
+
+		Assertions.assertThat(cut.getHedgingDelayMs()).isLessThan(0);
+		cut.find(imr.getIdempotencyKey());
+		for (int i = 0; i < 100 && cut.getHedgingDelayMs() < 0; i++) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		Assertions.assertThat(cut.getHedgingDelayMs()).isGreaterThanOrEqualTo(10);
+
+		Assertions.assertThat(cut.find(imr.getIdempotencyKey())).isSameAs(imr);
+		Assertions.assertThat(lookups.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void testFind_shouldFailFast_whenConcurrencyLimitIsReached() throws Exception {
+		resiliency.getConcurrencyLimit().setEnabled(true);
+		resiliency.getConcurrencyLimit().setInitialLimit(1);
+		resiliency.getConcurrencyLimit().setMinLimit(1);
+		AtomicInteger lookups = new AtomicInteger();
+		CountDownLatch holdingPermit = new CountDownLatch(1);
+		CompletableFuture<IdempotentMethodResult> stuck = new CompletableFuture<>();
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public CompletableFuture<IdempotentMethodResult> findAsync(String namespace, String idempotencyKey) {
+				lookups.incrementAndGet();
+				holdingPermit.countDown();
+				return stuck;
+			}
+		};
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("test", repository, resiliency);
+
+		CompletableFuture<IdempotentMethodResult> pending = cut.findAsync(null, imr.getIdempotencyKey());
+		// First lookup executed asynchronously : wait until it holds the only permit
+		Assertions.assertThat(holdingPermit.await(5, TimeUnit.SECONDS)).isTrue();
+		Assertions.assertThat(cut.getLimiter().getInFlight()).isEqualTo(1);
+		try {
+			cut.find(imr.getIdempotencyKey());
+			Fail.fail("RepositoryOverloadedException expected");
+		} catch (RepositoryOverloadedException e) {
+			Assertions.assertThat(lookups.get()).isEqualTo(1);
+		}
+
+		stuck.complete(imr);
+		Assertions.assertThat(pending.join()).isSameAs(imr);
+		for (int i = 0; i < 100 && cut.getLimiter().getInFlight() > 0; i++) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		Assertions.assertThat(cut.getLimiter().getInFlight()).isEqualTo(0);
+	}
+
+	@Test
+	public void testFindAsync_shouldKeepPermit_untilCancelledLookupCompletes() throws Exception {
+		resiliency.getConcurrencyLimit().setEnabled(true);
+		resiliency.getConcurrencyLimit().setInitialLimit(1);
+		resiliency.getConcurrencyLimit().setMinLimit(1);
+		CountDownLatch holdingPermit = new CountDownLatch(1);
+		CompletableFuture<IdempotentMethodResult> stuck = new CompletableFuture<>();
+		InMemoryRepository repository = new InMemoryRepository() {
+			@Override
+			public CompletableFuture<IdempotentMethodResult> findAsync(String namespace, String idempotencyKey) {
+				holdingPermit.countDown();
+				return stuck;
+			}
+		};
+		ResilientIdempotentRepository cut = new ResilientIdempotentRepository("test", repository, resiliency);
+
+		CompletableFuture<IdempotentMethodResult> pending = cut.findAsync(null, imr.getIdempotencyKey());
+		Assertions.assertThat(holdingPermit.await(5, TimeUnit.SECONDS)).isTrue();
+		pending.cancel(true);
+
+		// Lookup still executed : its permit is kept
+		Assertions.assertThat(cut.getLimiter().getInFlight()).isEqualTo(1);
+
+		stuck.complete(imr);
+		for (int i = 0; i < 100 && cut.getLimiter().getInFlight() > 0; i++) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		Assertions.assertThat(cut.getLimiter().getInFlight()).isEqualTo(0);
+	}
+
+	@Test
+	public void testFirstSuccessful_shouldFail_onlyWhenBothLookupsFail() {
+		CompletableFuture<IdempotentMethodResult> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IdempotentRepositoryException("Node down"));
+		CompletableFuture<IdempotentMethodResult> pending = new CompletableFuture<>();
+
+		CompletableFuture<IdempotentMethodResult> result = ResilientIdempotentRepository.firstSuccessful(failed,
+		        pending);
+		Assertions.assertThat(result.isDone()).isFalse();
+
+		pending.complete(imr);
+		Assertions.assertThat(result.join()).isSameAs(imr);
+
+		CompletableFuture<IdempotentMethodResult> alsoFailed = new CompletableFuture<>();
+		alsoFailed.completeExceptionally(new IdempotentRepositoryException("Node down"));
+		Assertions.assertThat(ResilientIdempotentRepository.firstSuccessful(failed, alsoFailed)
+		        .isCompletedExceptionally()).isTrue();
+	}
+
+}
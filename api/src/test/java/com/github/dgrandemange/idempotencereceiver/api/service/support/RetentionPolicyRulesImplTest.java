@@ -0,0 +1,100 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.RetentionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.RetentionConfiguration.RuleConfiguration;
+
+public class RetentionPolicyRulesImplTest {
+
+	RetentionPolicyRulesImpl cut;
+
+	MockHttpServletRequest request;
+
+	@Before
+	public void setUp() {
+		RuleConfiguration acceptedRule = new RuleConfiguration();
+		acceptedRule.setStatuses(Arrays.asList("202"));
+		acceptedRule.setTtlMs(60000);
+		acceptedRule.setDropBody(true);
+
+		RuleConfiguration businessErrorRule = new RuleConfiguration();
+		businessErrorRule.setStatuses(Arrays.asList("4xx"));
+		businessErrorRule.setExceptionTypes(Arrays.asList(IllegalArgumentException.class.getName()));
+		businessErrorRule.setTtlMs(120000);
+
+		RuleConfiguration largePaymentRule = new RuleConfiguration();
+		largePaymentRule.setMethods(Arrays.asList("POST"));
+		largePaymentRule.setUriPatterns(Arrays.asList("/payments/**"));
+		largePaymentRule.setMinBodySize(10);
+		largePaymentRule.setTtlMs(86400000);
+
+		RetentionConfiguration retention = new RetentionConfiguration();
+		retention.setRules(Arrays.asList(acceptedRule, businessErrorRule, largePaymentRule));
+
+		cut = new RetentionPolicyRulesImpl(retention);
+
+		request = new MockHttpServletRequest("POST", "/payments/123");
+	}
+
+	@Test
+	public void testApply_shouldOverrideTtlAndDropBody_whenStatusMatches() {
+		IdempotentMethodResult imr = genImr("accepted", HttpStatus.ACCEPTED);
+
+		IdempotentMethodResult result = cut.apply(imr, request, null);
+
+		Assertions.assertThat(result.getTtlMs()).isEqualTo(60000);
+		Assertions.assertThat(result.getBody()).isNull();
+		Assertions.assertThat(result.getReturnTypeName()).isNull();
+		Assertions.assertThat(result.getResponseStatus()).isEqualTo(HttpStatus.ACCEPTED);
+	}
+
+	@Test
+	public void testApply_shouldMatchExceptionSubTypes_whenStatusClassMatches() {
+		IdempotentMethodResult imr = genImr("bad", HttpStatus.UNPROCESSABLE_ENTITY);
+
+		IdempotentMethodResult result = cut.apply(imr, request, new NumberFormatException());
+
+		Assertions.assertThat(result.getTtlMs()).isEqualTo(120000);
+		Assertions.assertThat(result.getBody()).isEqualTo("bad".getBytes());
+	}
+
+	@Test
+	public void testApply_shouldMatchEndpointAndBodySize() {
+		IdempotentMethodResult imr = genImr("some large body", HttpStatus.CREATED);
+
+		Assertions.assertThat(cut.apply(imr, request, null).getTtlMs()).isEqualTo(86400000);
+
+		IdempotentMethodResult smallImr = genImr("small", HttpStatus.CREATED);
+		Assertions.assertThat(cut.apply(smallImr, request, null)).isSameAs(smallImr);
+
+		MockHttpServletRequest otherRequest = new MockHttpServletRequest("POST", "/telemetry");
+		Assertions.assertThat(cut.apply(imr, otherRequest, null)).isSameAs(imr);
+	}
+
+	@Test
+	public void testApply_shouldKeepResultAsIs_whenNoRuleMatches() {
+		IdempotentMethodResult imr = genImr("bad", HttpStatus.BAD_REQUEST);
+
+		Assertions.assertThat(cut.apply(imr, request, null)).isSameAs(imr);
+	}
+
+	private IdempotentMethodResult genImr(String body, HttpStatus status) {
+		return IdempotentMethodResult.builder().startedAt(Instant.now()).withIdempotencyKey("12345").withTtlMs(1000)
+		        .withResponse(body.getBytes(), String.class, MediaType.TEXT_PLAIN, StringHttpMessageConverter.class,
+		                new HttpHeaders(), status)
+		        .build();
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.AdaptiveTtlConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+
+public class RetryDelayStatisticsTest {
+
+	AdaptiveTtlConfiguration adaptiveTtl;
+
+	RetryDelayStatistics cut;
+
+	@Before
+	public void setUp() {
+		adaptiveTtl = new AdaptiveTtlConfiguration();
+		adaptiveTtl.setPercentile(99.0);
+		adaptiveTtl.setMarginMs(1000);
+		adaptiveTtl.setMinTtlMs(2000);
+		adaptiveTtl.setMaxTtlMs(60000);
+		adaptiveTtl.setMinSamples(100);
+		cut = new RetryDelayStatistics(adaptiveTtl);
+	}
+
+	@Test
+	public void testGetRecommendedTtlMs_shouldReturnZero_whenNotEnoughSamples() {
+		for (int i = 0; i < 99; i++) {
+			cut.record("POST /books", 500);
+		}
+
+		Assertions.assertThat(cut.getRecommendedTtlMs("POST /books")).isEqualTo(0);
+		Assertions.assertThat(cut.getRecommendedTtlMs("POST /unknown")).isEqualTo(0);
+	}
+
+	@Test
+	public void testGetRecommendedTtlMs_shouldReturnPercentilePlusMargin() {
+		for (int i = 1; i <= 1000; i++) {
+			cut.record("POST /books", i * 10);
+		}
+
+		long ttlMs = cut.getRecommendedTtlMs("POST /books");
+
+		// 99th percentile is 9900 ms, histogram relative error is bounded to 1/8
+		Assertions.assertThat(ttlMs).isGreaterThanOrEqualTo(9900 + 1000);
+		Assertions.assertThat(ttlMs).isLessThanOrEqualTo(9900 * 9 / 8 + 1000);
+	}
+
+	@Test
+	public void testShouldExtend_shouldOnlyExtend_onceLessThanHalfOfTheTtlRemains() {
+		Instant startedAt = Instant.parse("2019-01-01T00:00:00Z");
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(startedAt).withTtlMs(10000).build();
+
+		Assertions.assertThat(cut.shouldExtend(imr, startedAt.plusMillis(4000))).isFalse();
+		Assertions.assertThat(cut.shouldExtend(imr, startedAt.plusMillis(6000))).isTrue();
+		// Extended until 16 s
+		Assertions.assertThat(cut.shouldExtend(imr, startedAt.plusMillis(7000))).isFalse();
+		Assertions.assertThat(cut.shouldExtend(imr, startedAt.plusMillis(10000))).isFalse();
+		Assertions.assertThat(cut.shouldExtend(imr, startedAt.plusMillis(11500))).isTrue();
+	}
+
+	@Test
+	public void testShouldExtend_shouldRelyOnMinTtl_whenResultReliesOnRepositoryTtl() {
+		Instant startedAt = Instant.parse("2019-01-01T00:00:00Z");
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(startedAt).build();
+
+		Assertions.assertThat(cut.shouldExtend(imr, startedAt.plusMillis(500))).isFalse();
+		Assertions.assertThat(cut.shouldExtend(imr, startedAt.plusMillis(1500))).isTrue();
+	}
+
+	@Test
+	public void testGetRecommendedTtlMs_shouldBeBounded() {
+		for (int i = 0; i < 100; i++) {
+			cut.record("POST /fast", 1);
+			cut.record("POST /slow", 3600000);
+		}
+
+		Assertions.assertThat(cut.getRecommendedTtlMs("POST /fast")).isEqualTo(2000);
+		Assertions.assertThat(cut.getRecommendedTtlMs("POST /slow")).isEqualTo(60000);
+	}
+
+	@Test
+	public void testResolveTtlMs_shouldOnlyApplyRecommendedTtlInAutoMode() {
+		for (int i = 0; i < 100; i++) {
+			cut.record("POST /books", 5000);
+		}
+
+		Assertions.assertThat(cut.resolveTtlMs("POST /books")).isEqualTo(0);
+
+		adaptiveTtl.setAutoMode(true);
+		Assertions.assertThat(cut.resolveTtlMs("POST /books")).isEqualTo(cut.getRecommendedTtlMs("POST /books"));
+	}
+
+	@Test
+	public void testResolveEndpoint_shouldPreferHandlerMappingPattern() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/books/123/chapters");
+
+		Assertions.assertThat(cut.resolveEndpoint(request)).isEqualTo("POST /books/123/chapters");
+
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/books/{id}/chapters");
+		Assertions.assertThat(cut.resolveEndpoint(request)).isEqualTo("POST /books/{id}/chapters");
+	}
+
+	@Test
+	public void testHistogram_shouldMapValuesToBucketsWhoseUpperBoundIsNotLower() {
+		for (long value : new long[] { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE }) {
+			int index = RetryDelayHistogram.indexOf(value);
+			Assertions.assertThat(RetryDelayHistogram.upperBoundOf(index)).isGreaterThanOrEqualTo(value);
+			if (index > 0) {
+				Assertions.assertThat(RetryDelayHistogram.upperBoundOf(index - 1)).isLessThan(value);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.fest.assertions.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.OptimisticConfiguration;
+
+public class RunningMarkerSchedulerTest {
+
+	InMemoryRepository repository;
+
+	OptimisticConfiguration optimistic;
+
+	IdempotentMethodResult runningImr;
+
+	RunningMarkerScheduler cut;
+
+	@Before
+	public void setUp() {
+		repository = new InMemoryRepository();
+		optimistic = new OptimisticConfiguration();
+		runningImr = IdempotentMethodResult.builder().withIdempotencyKey("12345").startedAt(Instant.now()).build();
+	}
+
+	@After
+	public void tearDown() {
+		cut.preDestroy();
+	}
+
+	@Test
+	public void testSettle_shouldCancelRunningMarker_whenCompletedWithinDelay() throws Exception {
+		optimistic.setRunningMarkerDelayMs(50);
+		cut = new RunningMarkerScheduler(optimistic, repository);
+
+		Assertions.assertThat(cut.schedule(runningImr)).isTrue();
+		Assertions.assertThat(cut.settle(runningImr)).isTrue();
+
+		TimeUnit.MILLISECONDS.sleep(150);
+		Assertions.assertThat(repository.find(runningImr.getIdempotencyKey())).isNull();
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testSchedule_shouldRegisterRunningMarker_whenStillRunningAfterDelay() throws Exception {
+		optimistic.setRunningMarkerDelayMs(10);
+		cut = new RunningMarkerScheduler(optimistic, repository);
+
+		cut.schedule(runningImr);
+
+		TimeUnit.MILLISECONDS.sleep(150);
+		Assertions.assertThat(repository.find(runningImr.getIdempotencyKey())).isSameAs(runningImr);
+		Assertions.assertThat(cut.settle(runningImr)).isFalse();
+	}
+
+	@Test
+	public void testSchedule_shouldKeepRacingResult() throws Exception {
+		optimistic.setRunningMarkerDelayMs(10);
+		cut = new RunningMarkerScheduler(optimistic, repository);
+		IdempotentMethodResult racingImr = IdempotentMethodResult.builder().from(runningImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+		repository.register(racingImr.getIdempotencyKey(), racingImr);
+
+		cut.schedule(runningImr);
+
+		TimeUnit.MILLISECONDS.sleep(150);
+		Assertions.assertThat(repository.find(runningImr.getIdempotencyKey())).isSameAs(racingImr);
+		Assertions.assertThat(cut.settle(runningImr)).isTrue();
+	}
+
+	@Test
+	public void testSchedule_shouldRegisterRunningMarkerRightAway_onceShutDown() {
+		optimistic.setRunningMarkerDelayMs(60000);
+		cut = new RunningMarkerScheduler(optimistic, repository);
+		cut.preDestroy();
+
+		Assertions.assertThat(cut.schedule(runningImr)).isTrue();
+
+		Assertions.assertThat(repository.find(runningImr.getIdempotencyKey())).isSameAs(runningImr);
+		Assertions.assertThat(cut.settle(runningImr)).isFalse();
+	}
+
+	@Test
+	public void testSchedule_shouldRefuse_whenSameRequestIsAlreadyProcessedOptimistically() {
+		cut = new RunningMarkerScheduler(optimistic, repository);
+		IdempotentMethodResult duplicateImr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(runningImr.getStartedAt().plusMillis(1)).build();
+
+		Assertions.assertThat(cut.schedule(runningImr)).isTrue();
+		Assertions.assertThat(cut.schedule(duplicateImr)).isFalse();
+
+		Assertions.assertThat(cut.settle(duplicateImr)).isFalse();
+		Assertions.assertThat(cut.settle(runningImr)).isTrue();
+	}
+
+}
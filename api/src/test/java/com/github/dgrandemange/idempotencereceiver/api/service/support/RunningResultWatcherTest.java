@@ -0,0 +1,118 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.fest.assertions.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.ParkConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.service.RepositoryChangeNotifier.RepositoryChangeListener;
+
+public class RunningResultWatcherTest {
+
+	InMemoryRepository repository;
+
+	RepositoryChangeListener listener;
+
+	ParkConfiguration park;
+
+	IdempotentMethodResult runningImr;
+
+	IdempotentMethodResult doneImr;
+
+	RunningResultWatcher cut;
+
+	@Before
+	public void setUp() {
+		repository = new InMemoryRepository();
+		park = new ParkConfiguration();
+		park.setMaxParked(2);
+
+		runningImr = IdempotentMethodResult.builder().withIdempotencyKey("12345").startedAt(Instant.now()).build();
+		doneImr = IdempotentMethodResult.builder().from(runningImr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+		repository.register(runningImr.getIdempotencyKey(), runningImr);
+	}
+
+	@After
+	public void tearDown() {
+		if (cut != null) {
+			cut.preDestroy();
+		}
+	}
+
+	@Test
+	public void testWatch_shouldCallBack_whenRepositoryNotifiesResultIsDone() throws Exception {
+		cut = new RunningResultWatcher(park, repository, l -> listener = l);
+		CompletableFuture<IdempotentMethodResult> callback = new CompletableFuture<>();
+
+		Assertions.assertThat(cut.watch(runningImr, callback::complete)).isNotNull();
+		Assertions.assertThat(cut.size()).isEqualTo(1);
+
+		repository.register(doneImr.getIdempotencyKey(), doneImr);
+		listener.onChange(doneImr.getIdempotencyKey());
+
+		Assertions.assertThat(callback.get(1, TimeUnit.SECONDS)).isSameAs(doneImr);
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testWatch_shouldCallBackWithNull_whenResultIsRemoved() throws Exception {
+		cut = new RunningResultWatcher(park, repository, l -> listener = l);
+		CompletableFuture<IdempotentMethodResult> callback = new CompletableFuture<>();
+		cut.watch(runningImr, callback::complete);
+
+		repository.unregister(runningImr.getIdempotencyKey());
+		listener.onChange(runningImr.getIdempotencyKey());
+
+		Assertions.assertThat(callback.get(1, TimeUnit.SECONDS)).isNull();
+	}
+
+	@Test
+	public void testWatch_shouldPollRepository_whenNoNotifierIsAvailable() throws Exception {
+		park.setPollIntervalMs(20);
+		cut = new RunningResultWatcher(park, repository, null);
+		CompletableFuture<IdempotentMethodResult> callback = new CompletableFuture<>();
+		cut.watch(runningImr, callback::complete);
+
+		repository.register(doneImr.getIdempotencyKey(), doneImr);
+
+		Assertions.assertThat(callback.get(1, TimeUnit.SECONDS)).isSameAs(doneImr);
+	}
+
+	@Test
+	public void testWatch_shouldRefuse_whenMaxParkedIsReached() {
+		cut = new RunningResultWatcher(park, repository, l -> listener = l);
+
+		Assertions.assertThat(cut.watch(runningImr, imr -> {
+		})).isNotNull();
+		Assertions.assertThat(cut.watch(runningImr, imr -> {
+		})).isNotNull();
+		Assertions.assertThat(cut.watch(runningImr, imr -> {
+		})).isNull();
+	}
+
+	@Test
+	public void testCancel_shouldNotCallBack() throws Exception {
+		cut = new RunningResultWatcher(park, repository, l -> listener = l);
+		CompletableFuture<IdempotentMethodResult> callback = new CompletableFuture<>();
+		RunningResultWatcher.Watch watch = cut.watch(runningImr, callback::complete);
+
+		Assertions.assertThat(watch.cancel()).isTrue();
+		repository.register(doneImr.getIdempotencyKey(), doneImr);
+		listener.onChange(doneImr.getIdempotencyKey());
+
+		Assertions.assertThat(watch.cancel()).isFalse();
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+		TimeUnit.MILLISECONDS.sleep(100);
+		Assertions.assertThat(callback.isDone()).isFalse();
+	}
+
+}
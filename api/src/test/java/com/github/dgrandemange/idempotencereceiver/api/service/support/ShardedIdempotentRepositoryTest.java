@@ -0,0 +1,110 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+
+public class ShardedIdempotentRepositoryTest {
+
+	Map<String, InMemoryRepository> shards;
+
+	@Before
+	public void setUp() {
+		shards = new LinkedHashMap<>();
+		shards.put("shard-a", new InMemoryRepository());
+		shards.put("shard-b", new InMemoryRepository());
+		shards.put("shard-c", new InMemoryRepository());
+	}
+
+	@Test
+	public void testRegister_shouldStoreEntryOnOwnerShardOnly() {
+		ShardedIdempotentRepository cut = new ShardedIdempotentRepository(shards, null);
+
+		for (int i = 0; i < 100; i++) {
+			String key = genKey();
+			IdempotentMethodResult imr = genImr(key);
+
+			cut.register(key, imr);
+
+			String owner = cut.getShardName(key);
+			for (Map.Entry<String, InMemoryRepository> entry : shards.entrySet()) {
+				if (entry.getKey().equals(owner)) {
+					Assertions.assertThat(entry.getValue().find(key)).isEqualTo(imr);
+				} else {
+					Assertions.assertThat(entry.getValue().find(key)).isNull();
+				}
+			}
+			Assertions.assertThat(cut.find(key)).isEqualTo(imr);
+		}
+
+		// Keys should be spread across all shards
+		for (InMemoryRepository shard : shards.values()) {
+			Assertions.assertThat(shard.map).isNotEmpty();
+		}
+	}
+
+	@Test
+	public void testGetShardName_shouldOnlyMoveKeysToNewShard_whenAddingAShard() {
+		ShardedIdempotentRepository before = new ShardedIdempotentRepository(shards, null);
+
+		Map<String, InMemoryRepository> extendedShards = new LinkedHashMap<>(shards);
+		extendedShards.put("shard-d", new InMemoryRepository());
+		ShardedIdempotentRepository after = new ShardedIdempotentRepository(extendedShards, null);
+
+		int moved = 0;
+		for (int i = 0; i < 1000; i++) {
+			String key = genKey();
+			String ownerBefore = before.getShardName(key);
+			String ownerAfter = after.getShardName(key);
+			if (!ownerBefore.equals(ownerAfter)) {
+				Assertions.assertThat(ownerAfter).isEqualTo("shard-d");
+				moved++;
+			}
+		}
+
+		Assertions.assertThat(moved).isGreaterThan(0);
+	}
+
+	@Test
+	public void testFind_shouldLookupPreviousOwner_whenDualReadMigrationModeIsEnabled() {
+		ShardedIdempotentRepository before = new ShardedIdempotentRepository(shards, null);
+
+		Map<String, InMemoryRepository> extendedShards = new LinkedHashMap<>(shards);
+		extendedShards.put("shard-d", new InMemoryRepository());
+		ShardedIdempotentRepository after = new ShardedIdempotentRepository(extendedShards, null);
+
+		// Find a key owned by the new shard
+		String key;
+		do {
+			key = genKey();
+		} while (!"shard-d".equals(after.getShardName(key)));
+
+		IdempotentMethodResult imr = genImr(key);
+		before.register(key, imr);
+
+		Assertions.assertThat(after.find(key)).isNull();
+
+		after.setPreviousShardNames(Arrays.asList("shard-a", "shard-b", "shard-c"));
+		Assertions.assertThat(after.find(key)).isEqualTo(imr);
+
+		after.unregister(key);
+		Assertions.assertThat(after.find(key)).isNull();
+	}
+
+	private IdempotentMethodResult genImr(String key) {
+		return IdempotentMethodResult.builder().startedAt(Instant.now()).withIdempotencyKey(key).build();
+	}
+
+	private String genKey() {
+		return UUID.randomUUID().toString();
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.github.dgrandemange.idempotencereceiver.api.service.support;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.fest.assertions.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.WriteBehindConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.WriteBehindConfiguration.Backpressure;
+import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+
+public class WriteBehindFinalizerTest {
+
+	IdempotentRepository repository;
+
+	WriteBehindConfiguration writeBehind;
+
+	WriteBehindFinalizer cut;
+
+	CountDownLatch writing = new CountDownLatch(1);
+
+	CountDownLatch repositoryReleased = new CountDownLatch(1);
+
+	@Before
+	public void setUp() {
+		repository = Mockito.mock(IdempotentRepository.class);
+		writeBehind = new WriteBehindConfiguration();
+		// Batches are only written on shutdown
+		writeBehind.setLingerMs(60000);
+	}
+
+	@After
+	public void tearDown() {
+		repositoryReleased.countDown();
+		if (cut != null) {
+			cut.preDestroy();
+		}
+	}
+
+	IdempotentMethodResult doneImr(String idempotencyKey) {
+		return IdempotentMethodResult.builder().withIdempotencyKey(idempotencyKey).inNamespace("payments")
+		        .startedAt(Instant.now()).withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testSubmit_shouldRegisterQueuedResultsInOneBatch_andKeepThemVisibleUntilThen() {
+		cut = new WriteBehindFinalizer(writeBehind, repository);
+		IdempotentMethodResult imr1 = doneImr("12345");
+		IdempotentMethodResult imr2 = doneImr("67890");
+
+		Assertions.assertThat(cut.submit(imr1, false)).isTrue();
+		Assertions.assertThat(cut.submit(imr2, false)).isTrue();
+
+		Assertions.assertThat(cut.pending("payments", "12345")).isSameAs(imr1);
+		Assertions.assertThat(cut.pending(null, "12345")).isNull();
+		Mockito.verify(repository, Mockito.never()).registerAll(Mockito.anyCollection());
+
+		cut.preDestroy();
+
+		ArgumentCaptor<Collection> registered = ArgumentCaptor.forClass(Collection.class);
+		Mockito.verify(repository, Mockito.times(1)).registerAll(registered.capture());
+		Assertions.assertThat(registered.getValue()).containsOnly(imr1, imr2);
+		Assertions.assertThat(cut.pending("payments", "12345")).isNull();
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testSubmit_shouldRegisterOnlyIfAbsent_whenRequested() {
+		cut = new WriteBehindFinalizer(writeBehind, repository);
+		IdempotentMethodResult imr = doneImr("12345");
+
+		cut.submit(imr, true);
+		cut.preDestroy();
+
+		Mockito.verify(repository, Mockito.times(1)).registerIfAbsent(imr);
+		Mockito.verify(repository, Mockito.never()).registerAll(Mockito.anyCollection());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSubmit_shouldWaitForLingerDuration_beforeRegisteringAnIncompleteBatch() throws Exception {
+		writeBehind.setLingerMs(200);
+		cut = new WriteBehindFinalizer(writeBehind, repository);
+
+		long start = System.nanoTime();
+		cut.submit(doneImr("12345"), false);
+
+		Mockito.verify(repository, Mockito.timeout(5000)).registerAll(Mockito.anyCollection());
+		Assertions.assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testSubmit_shouldHandResultBack_whenQueueIsFull() throws Exception {
+		writeBehind.setBackpressure(Backpressure.SYNC);
+		fillQueue();
+
+		Assertions.assertThat(cut.submit(doneImr("13579"), false)).isFalse();
+		Assertions.assertThat(cut.pending("payments", "13579")).isNull();
+	}
+
+	@Test
+	public void testSubmit_shouldHandResultBackAfterMaxBlock_whenQueueStaysFull() throws Exception {
+		writeBehind.setBackpressure(Backpressure.BLOCK);
+		writeBehind.setMaxBlockMs(50);
+		fillQueue();
+
+		long start = System.nanoTime();
+		Assertions.assertThat(cut.submit(doneImr("13579"), false)).isFalse();
+		Assertions.assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(50000000L);
+	}
+
+	@Test
+	public void testSubmit_shouldShedResult_whenQueueIsFull() throws Exception {
+		writeBehind.setBackpressure(Backpressure.SHED);
+		fillQueue();
+
+		Assertions.assertThat(cut.submit(doneImr("13579"), false)).isTrue();
+		Assertions.assertThat(cut.pending("payments", "13579")).isNull();
+		Assertions.assertThat(cut.size()).isEqualTo(1);
+	}
+
+	/**
+	 * Fills a one result queue while the writer is blocked registering a first
+	 * batch, so that the queue stays full
+	 */
+	@SuppressWarnings("unchecked")
+	void fillQueue() throws Exception {
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				writing.countDown();
+				repositoryReleased.await();
+				return null;
+			}
+		}).when(repository).registerAll(Mockito.anyCollection());
+		writeBehind.setQueueCapacity(1);
+		writeBehind.setMaxBatchSize(1);
+		cut = new WriteBehindFinalizer(writeBehind, repository);
+
+		Assertions.assertThat(cut.submit(doneImr("12345"), false)).isTrue();
+		Assertions.assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+		Assertions.assertThat(cut.submit(doneImr("67890"), false)).isTrue();
+		Assertions.assertThat(cut.size()).isEqualTo(1);
+	}
+
+}
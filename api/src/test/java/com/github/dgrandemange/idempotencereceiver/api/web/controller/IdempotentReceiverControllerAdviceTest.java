@@ -3,6 +3,7 @@ package com.github.dgrandemange.idempotencereceiver.api.web.controller;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.fest.assertions.Assertions;
 import org.hamcrest.beans.SamePropertyValuesAs;
@@ -27,8 +28,12 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
 
 import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.SingleFlightConfiguration;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.InFlightRegistry;
 import com.github.dgrandemange.idempotencereceiver.api.service.support.MyStringHttpMessageConverter;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.ByteChunkPool;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CapturingResponseWrapper;
 
 @RunWith(MockitoJUnitRunner.class)
 public class IdempotentReceiverControllerAdviceTest {
@@ -75,7 +80,7 @@ public class IdempotentReceiverControllerAdviceTest {
 		Assertions.assertThat(res).isEqualTo(body);
 		Mockito.verify(repository, Mockito.times(0)).register(Mockito.anyString(),
 		        Mockito.any(IdempotentMethodResult.class));
-		Mockito.verify(repository, Mockito.times(0)).unregister(Mockito.anyString());
+		Mockito.verify(repository, Mockito.times(0)).unregister(Mockito.anyString(), Mockito.anyString());
 	}
 
 	@Test
@@ -107,7 +112,7 @@ public class IdempotentReceiverControllerAdviceTest {
 
 		Assertions.assertThat(res).isEqualTo(body);
 
-		Mockito.verify(repository, Mockito.times(0)).unregister(Mockito.anyString());
+		Mockito.verify(repository, Mockito.times(0)).unregister(Mockito.anyString(), Mockito.anyString());
 
 		Mockito.verify(repository, Mockito.times(1)).register(Mockito.eq(expectedImr.getIdempotencyKey()),
 		        Mockito.argThat(SamePropertyValuesAs.samePropertyValuesAs(expectedImr)));
@@ -139,7 +144,67 @@ public class IdempotentReceiverControllerAdviceTest {
 		Assertions.assertThat(res).isEqualTo(body);
 
 		Mockito.verify(repository, Mockito.times(0)).register(Mockito.anyString(), Mockito.any());
-		Mockito.verify(repository, Mockito.times(1)).unregister(imr.getIdempotencyKey());
+		Mockito.verify(repository, Mockito.times(1)).unregister(imr.getNamespace(), imr.getIdempotencyKey());
+	}
+
+	@Test
+	public void testBeforeBodyWrite_shouldReleaseCoalescedDuplicates_whenResponseBodyIsNotCaptured()
+	        throws Exception {
+		SingleFlightConfiguration singleFlight = new SingleFlightConfiguration();
+		singleFlight.setMaxWaitMs(5000);
+		InFlightRegistry inFlightRegistry = new InFlightRegistry(singleFlight);
+		cut.setInFlightRegistry(inFlightRegistry);
+
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey("12345").build();
+		inFlightRegistry.begin(imr);
+		AtomicReference<IdempotentMethodResult> released = new AtomicReference<>();
+		Thread duplicate = new Thread(() -> released.set(inFlightRegistry.await(imr)));
+		duplicate.start();
+		while (!Thread.State.TIMED_WAITING.equals(duplicate.getState())) {
+			// Until the duplicate waits on the first presentation
+			Thread.sleep(1);
+		}
+
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+		messageConverters.add(new MyStringHttpMessageConverter());
+
+		cut.beforeBodyWrite("dummy body", null, MediaType.TEXT_PLAIN, MyStringHttpMessageConverter.class,
+		        serverHttpRequest, serverHttpResponse);
+
+		duplicate.join(1000);
+		Assertions.assertThat(released.get()).isNotNull();
+		Assertions.assertThat(released.get().getBody()).isEqualTo("My_dummy body".getBytes());
+		Assertions.assertThat(inFlightRegistry.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testBeforeBodyWrite_shouldDeferRegistrationToResponseCompletion_whenResponseBodyIsCaptured() {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().startedAt(Instant.now())
+		        .withIdempotencyKey("12345").build();
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+
+		CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(mockedHttpResponse,
+		        new ByteChunkPool());
+		responseWrapper.startCapture();
+		messageConverters.add(new MyStringHttpMessageConverter());
+
+		String body = "dummy body";
+		Object res = cut.beforeBodyWrite(body, null, MediaType.TEXT_PLAIN, MyStringHttpMessageConverter.class,
+		        serverHttpRequest, new ServletServerHttpResponse(responseWrapper));
+
+		Assertions.assertThat(res).isEqualTo(body);
+		Mockito.verifyZeroInteractions(repository);
+		Mockito.verify(handlerAdapter, Mockito.never()).getMessageConverters();
+
+		IdempotentMethodResult pendingImr = (IdempotentMethodResult) mockedHttpRequest
+		        .getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT);
+		Assertions.assertThat(pendingImr.getState()).isEqualTo(imr.getState());
+		Assertions.assertThat(pendingImr.getBodyContentType()).isEqualTo(MediaType.TEXT_PLAIN);
+		Assertions.assertThat(pendingImr.getReturnTypeName()).isEqualTo(String.class.getName());
+		Assertions.assertThat(pendingImr.getSelectedConverterTypeName())
+		        .isEqualTo(MyStringHttpMessageConverter.class.getName());
+		Assertions.assertThat(imr.getSelectedConverterTypeName()).isNull();
 	}
 
 }
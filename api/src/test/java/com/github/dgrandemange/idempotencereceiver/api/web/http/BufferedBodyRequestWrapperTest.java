@@ -0,0 +1,95 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import org.fest.assertions.Assertions;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class BufferedBodyRequestWrapperTest {
+
+	@Test
+	public void testGetInputStream_shouldReplayBody_eachTimeItIsRequested() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/books");
+		request.setContent("dummy body".getBytes());
+
+		BufferedBodyRequestWrapper cut = new BufferedBodyRequestWrapper(request);
+
+		Assertions.assertThat(cut.getContentAsByteArray()).isEqualTo("dummy body".getBytes());
+		Assertions.assertThat(cut.getReader().readLine()).isEqualTo("dummy body");
+		Assertions.assertThat(cut.getReader().readLine()).isEqualTo("dummy body");
+		Assertions.assertThat(cut.getContentLength()).isEqualTo(10);
+	}
+
+	@Test
+	public void testGetParameter_shouldReturnFormParameters_onceBodyHasBeenBuffered() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/books");
+		request.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+		request.setContent("title=Dune&author=Frank+Herbert&tag=sf".getBytes());
+		request.addParameter("tag", "novel");
+
+		BufferedBodyRequestWrapper cut = new BufferedBodyRequestWrapper(request);
+
+		Assertions.assertThat(cut.getParameter("title")).isEqualTo("Dune");
+		Assertions.assertThat(cut.getParameter("author")).isEqualTo("Frank Herbert");
+		Assertions.assertThat(cut.getParameterValues("tag")).isEqualTo(new String[] { "novel", "sf" });
+		Assertions.assertThat(cut.getParameterMap()).hasSize(3);
+		Assertions.assertThat(cut.getContentAsByteArray())
+		        .isEqualTo("title=Dune&author=Frank+Herbert&tag=sf".getBytes());
+	}
+
+	@Test
+	public void testGetParameter_shouldIgnoreBody_whenNotFormUrlEncoded() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/books");
+		request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		request.setContent("title=Dune".getBytes());
+		request.addParameter("page", "1");
+
+		BufferedBodyRequestWrapper cut = new BufferedBodyRequestWrapper(request);
+
+		Assertions.assertThat(cut.getParameter("title")).isNull();
+		Assertions.assertThat(cut.getParameter("page")).isEqualTo("1");
+	}
+
+	@Test
+	public void testSetReadListener_shouldNotifyListener_withBufferedBody() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/books");
+		request.setContent("dummy body".getBytes());
+		BufferedBodyRequestWrapper cut = new BufferedBodyRequestWrapper(request);
+		ServletInputStream inputStream = cut.getInputStream();
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		boolean[] allDataRead = new boolean[1];
+
+		inputStream.setReadListener(new ReadListener() {
+
+			@Override
+			public void onDataAvailable() throws IOException {
+				byte[] buffer = new byte[4];
+				int len;
+				while (inputStream.isReady() && (len = inputStream.read(buffer)) != -1) {
+					read.write(buffer, 0, len);
+				}
+			}
+
+			@Override
+			public void onAllDataRead() {
+				allDataRead[0] = true;
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				throw new AssertionError(t);
+			}
+		});
+
+		Assertions.assertThat(read.toByteArray()).isEqualTo("dummy body".getBytes());
+		Assertions.assertThat(allDataRead[0]).isTrue();
+		Assertions.assertThat(inputStream.isFinished()).isTrue();
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+public class CaptureBufferTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	ByteChunkPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ByteChunkPool(4, 8);
+	}
+
+	@Test
+	public void testWrite_shouldKeepBytesInMemory_whenBelowMemoryThreshold() throws Exception {
+		CaptureBuffer cut = new CaptureBuffer(pool, 16, 0, folder.getRoot().toPath());
+
+		cut.write("dummy body".getBytes(), 0, 10);
+
+		Assertions.assertThat(cut.isSpilled()).isFalse();
+		Assertions.assertThat(cut.size()).isEqualTo(10);
+		Assertions.assertThat(cut.toByteArray()).isEqualTo("dummy body".getBytes());
+		Assertions.assertThat(folder.getRoot().list()).isEmpty();
+	}
+
+	@Test
+	public void testWrite_shouldSpillBytesToFile_whenAboveMemoryThreshold() throws Exception {
+		CaptureBuffer cut = new CaptureBuffer(pool, 8, 0, folder.getRoot().toPath());
+
+		cut.write("dummy".getBytes(), 0, 5);
+		cut.write(' ');
+		cut.write("body".getBytes(), 0, 4);
+
+		Assertions.assertThat(cut.isSpilled()).isTrue();
+		Assertions.assertThat(cut.isOverflowed()).isFalse();
+		Assertions.assertThat(cut.size()).isEqualTo(10);
+		Assertions.assertThat(folder.getRoot().list()).hasSize(1);
+		try (InputStream in = cut.openInputStream()) {
+			Assertions.assertThat(StreamUtils.copyToByteArray(in)).isEqualTo("dummy body".getBytes());
+		}
+
+		cut.release();
+
+		Assertions.assertThat(folder.getRoot().list()).isEmpty();
+	}
+
+	@Test
+	public void testWrite_shouldOverflowAndDiscardBytes_whenAboveMaxBodySize() throws Exception {
+		CaptureBuffer cut = new CaptureBuffer(pool, 4, 8, folder.getRoot().toPath());
+
+		cut.write("dummy".getBytes(), 0, 5);
+		cut.write(" body".getBytes(), 0, 5);
+
+		Assertions.assertThat(cut.isOverflowed()).isTrue();
+		Assertions.assertThat(cut.size()).isEqualTo(0);
+		Assertions.assertThat(folder.getRoot().list()).isEmpty();
+	}
+
+	@Test
+	public void testWrite_shouldOverflow_whenSpillFileCannotBeCreated() throws Exception {
+		File notADirectory = folder.newFile();
+		CaptureBuffer cut = new CaptureBuffer(pool, 4, 0, notADirectory.toPath());
+
+		cut.write("dummy body".getBytes(), 0, 10);
+
+		Assertions.assertThat(cut.isOverflowed()).isTrue();
+	}
+
+	@Test
+	public void testReset_shouldStartCaptureOver() throws Exception {
+		CaptureBuffer cut = new CaptureBuffer(pool, 4, 8, folder.getRoot().toPath());
+		cut.write("too large error page".getBytes(), 0, 20);
+
+		cut.reset();
+		cut.write("body".getBytes(), 0, 4);
+
+		Assertions.assertThat(cut.isOverflowed()).isFalse();
+		Assertions.assertThat(cut.toByteArray()).isEqualTo("body".getBytes());
+	}
+
+}
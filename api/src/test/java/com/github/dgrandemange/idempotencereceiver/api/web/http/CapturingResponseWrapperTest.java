@@ -0,0 +1,73 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class CapturingResponseWrapperTest {
+
+	ByteChunkPool pool;
+
+	MockHttpServletResponse response;
+
+	CapturingResponseWrapper cut;
+
+	@Before
+	public void setUp() {
+		pool = new ByteChunkPool(4, 8);
+		response = new MockHttpServletResponse();
+		cut = new CapturingResponseWrapper(response, pool);
+	}
+
+	@Test
+	public void testGetCapturedBody_shouldBeNull_whenCaptureIsNotStarted() throws Exception {
+		cut.getOutputStream().write("dummy body".getBytes());
+
+		Assertions.assertThat(cut.isCapturing()).isFalse();
+		Assertions.assertThat(cut.getCapturedBody()).isNull();
+		Assertions.assertThat(response.getContentAsString()).isEqualTo("dummy body");
+	}
+
+	@Test
+	public void testGetCapturedBody_shouldReturnBytesWrittenToClient_whenCaptureIsStarted() throws Exception {
+		cut.startCapture();
+		cut.getOutputStream().write("dummy".getBytes());
+		cut.getOutputStream().write(' ');
+		cut.getOutputStream().write("body".getBytes());
+
+		Assertions.assertThat(cut.getCapturedBody()).isEqualTo("dummy body".getBytes());
+		Assertions.assertThat(response.getContentAsString()).isEqualTo("dummy body");
+	}
+
+	@Test
+	public void testGetCapturedBody_shouldOnlyReturnBytesWrittenAfterReset() throws Exception {
+		cut.startCapture();
+		cut.getOutputStream().write("error page".getBytes());
+		cut.resetBuffer();
+		cut.getOutputStream().write("dummy body".getBytes());
+
+		Assertions.assertThat(cut.getCapturedBody()).isEqualTo("dummy body".getBytes());
+	}
+
+	@Test
+	public void testGetWriter_shouldAbandonCapture() throws Exception {
+		cut.startCapture();
+		cut.getWriter().write("rendered view");
+
+		Assertions.assertThat(cut.isCapturing()).isFalse();
+		Assertions.assertThat(cut.getCapturedBody()).isNull();
+	}
+
+	@Test
+	public void testRelease_shouldGiveCaptureBuffersBackToPool() throws Exception {
+		cut.startCapture();
+		cut.getOutputStream().write("dummy body".getBytes());
+
+		cut.release();
+
+		Assertions.assertThat(cut.isCapturing()).isFalse();
+		Assertions.assertThat(pool.getPooledChunks()).isEqualTo(3);
+	}
+
+}
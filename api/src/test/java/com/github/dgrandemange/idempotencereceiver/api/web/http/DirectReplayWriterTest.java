@@ -0,0 +1,118 @@
+package com.github.dgrandemange.idempotencereceiver.api.web.http;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import org.fest.assertions.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.github.dgrandemange.idempotencereceiver.api.exception.UnmarshallException;
+import com.github.dgrandemange.idempotencereceiver.api.model.CompressionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyCompression;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.GzipBodyCompressor;
+
+public class DirectReplayWriterTest {
+
+	DirectReplayWriter cut;
+
+	MockHttpServletRequest request;
+
+	MockHttpServletResponse response;
+
+	HttpHeaders headers;
+
+	@Before
+	public void setUp() {
+		CompressionConfiguration compression = new CompressionConfiguration();
+		compression.setAlgorithm("gzip");
+		compression.setMinBodySize(0);
+
+		cut = new DirectReplayWriter();
+		cut.setBodyCompression(new BodyCompression(compression, Collections.emptyList()));
+
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+
+		headers = new HttpHeaders();
+		headers.add(HttpHeaders.LOCATION, "/books/123");
+		headers.add(HttpHeaders.CONTENT_LENGTH, "999");
+	}
+
+	IdempotentMethodResult imr(byte[] body) {
+		return IdempotentMethodResult.builder().startedAt(Instant.now()).withIdempotencyKey("12345")
+		        .withResponse(body, String.class, MediaType.APPLICATION_JSON_UTF8, StringHttpMessageConverter.class,
+		                headers, HttpStatus.CREATED)
+		        .build();
+	}
+
+	@Test
+	public void testWrite_shouldWriteStoredStatusHeadersAndBody() throws Exception {
+		cut.write(imr("{\"id\":123}".getBytes()), request, response);
+
+		Assertions.assertThat(response.getStatus()).isEqualTo(HttpStatus.CREATED.value());
+		Assertions.assertThat(response.getHeader(HttpHeaders.LOCATION)).isEqualTo("/books/123");
+		Assertions.assertThat(response.getContentType()).startsWith(MediaType.APPLICATION_JSON_VALUE);
+		Assertions.assertThat(response.getContentLength()).isEqualTo(10);
+		Assertions.assertThat(response.getContentAsString()).isEqualTo("{\"id\":123}");
+		Assertions.assertThat(response.isCommitted()).isTrue();
+	}
+
+	@Test
+	public void testWrite_shouldWriteGzipBodyAsStored_whenClientAcceptsGzip() throws Exception {
+		byte[] compressed = new GzipBodyCompressor().compress("{\"id\":123}".getBytes());
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().from(imr(compressed))
+		        .withBodyContentEncoding(GzipBodyCompressor.ENCODING).build();
+		request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+		cut.write(imr, request, response);
+
+		Assertions.assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		Assertions.assertThat(response.getContentAsByteArray()).isEqualTo(compressed);
+	}
+
+	@Test
+	public void testWrite_shouldDecompressGzipBody_whenClientDoesNotAcceptGzip() throws Exception {
+		byte[] compressed = new GzipBodyCompressor().compress("{\"id\":123}".getBytes());
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().from(imr(compressed))
+		        .withBodyContentEncoding(GzipBodyCompressor.ENCODING).build();
+
+		cut.write(imr, request, response);
+
+		Assertions.assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+		Assertions.assertThat(response.getContentAsString()).isEqualTo("{\"id\":123}");
+	}
+
+	@Test
+	public void testWrite_shouldFailWithoutWriting_whenStoredBodyIsNotAvailable() {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().from(imr(null)).withBodyRef("abcdef").build();
+
+		try {
+			cut.write(imr, request, response);
+			org.fest.assertions.Fail.fail("An UnmarshallException was expected");
+		} catch (UnmarshallException e) {
+			Assertions.assertThat(response.isCommitted()).isFalse();
+			Assertions.assertThat(response.getHeader(HttpHeaders.LOCATION)).isNull();
+		}
+	}
+
+	@Test
+	public void testWriteWithoutBody() {
+		HttpHeaders processing = new HttpHeaders();
+		processing.add("Processing-Duration", "150");
+
+		cut.writeWithoutBody(HttpStatus.ACCEPTED, processing, response);
+
+		Assertions.assertThat(response.getStatus()).isEqualTo(HttpStatus.ACCEPTED.value());
+		Assertions.assertThat(response.getHeader("Processing-Duration")).isEqualTo("150");
+		Assertions.assertThat(response.getContentLength()).isEqualTo(0);
+	}
+
+}
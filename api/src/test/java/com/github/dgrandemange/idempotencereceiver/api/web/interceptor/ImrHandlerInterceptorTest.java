@@ -1,6 +1,10 @@
 package com.github.dgrandemange.idempotencereceiver.api.web.interceptor;
 
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -9,6 +13,7 @@ import org.hamcrest.beans.SamePropertyValuesAs;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -23,7 +28,16 @@ import org.springframework.mock.web.MockHttpServletResponse;
 
 import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
+import com.github.dgrandemange.idempotencereceiver.api.model.RetentionConfiguration;
+import com.github.dgrandemange.idempotencereceiver.api.model.RetentionConfiguration.RuleConfiguration;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyStorage;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.InFlightRegistry;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RetentionPolicyRulesImpl;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningMarkerScheduler;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.ByteChunkPool;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CaptureBuffer;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.CapturingResponseWrapper;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ImrHandlerInterceptorTest {
@@ -110,4 +124,149 @@ public class ImrHandlerInterceptorTest {
 		        .isNull();
 	}
 
+	@Test
+	public void testAfterCompletion_shouldUpdateImrWithCapturedBody_whenBodyWasWrittenByAConverter()
+	        throws Exception {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(Instant.now()).build();
+		imr.setBodyContentType(MediaType.TEXT_PLAIN);
+		imr.setReturnTypeName(String.class.getName());
+		imr.setSelectedConverterTypeName(StringHttpMessageConverter.class.getName());
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+
+		CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(mockedHttpResponse,
+		        new ByteChunkPool());
+		responseWrapper.startCapture();
+		responseWrapper.setStatus(HttpStatus.CREATED.value());
+		responseWrapper.addHeader(HttpHeaders.LOCATION, "http://dummy/resource/1");
+		responseWrapper.getOutputStream().write("dummy body".getBytes());
+
+		HttpHeaders httpHeaders = new HttpHeaders();
+		httpHeaders.add(HttpHeaders.LOCATION, "http://dummy/resource/1");
+		IdempotentMethodResult expectedImr = IdempotentMethodResult.builder().from(imr)
+		        .withResponse("dummy body".getBytes(), String.class, MediaType.TEXT_PLAIN,
+		                StringHttpMessageConverter.class, httpHeaders, HttpStatus.CREATED)
+		        .build();
+
+		interceptor.afterCompletion(mockedHttpRequest, responseWrapper, null, null);
+
+		Mockito.verify(repository, Mockito.times(1)).register(Mockito.eq(expectedImr.getIdempotencyKey()),
+		        Mockito.argThat(SamePropertyValuesAs.samePropertyValuesAs(expectedImr)));
+		Assertions.assertThat(responseWrapper.isCapturing()).isFalse();
+	}
+
+	@Test
+	public void testAfterCompletion_shouldUpdateImrWithStreamedBody_whenBodyWasStreamedByHandler() throws Exception {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(Instant.now()).build();
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY, Boolean.TRUE);
+
+		CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(mockedHttpResponse,
+		        new ByteChunkPool());
+		responseWrapper.startCapture();
+		responseWrapper.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+		responseWrapper.getOutputStream().write("streamed body".getBytes());
+
+		interceptor.afterCompletion(mockedHttpRequest, responseWrapper, null, null);
+
+		ArgumentCaptor<IdempotentMethodResult> registered = ArgumentCaptor.forClass(IdempotentMethodResult.class);
+		Mockito.verify(repository, Mockito.times(1)).register(Mockito.eq("12345"), registered.capture());
+		Assertions.assertThat(registered.getValue().getBody()).isEqualTo("streamed body".getBytes());
+		Assertions.assertThat(registered.getValue().getBodyContentType()).isEqualTo(MediaType.APPLICATION_OCTET_STREAM);
+		Assertions.assertThat(registered.getValue().getSelectedConverterTypeName()).isNull();
+		Assertions.assertThat(
+		        mockedHttpRequest.getAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY))
+		        .isNull();
+	}
+
+	@Test
+	public void testAfterCompletion_shouldUnregisterImr_whenCapturedBodyExceedsMaxBodySize() throws Exception {
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .inNamespace("payments").startedAt(Instant.now()).build();
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY, Boolean.TRUE);
+
+		CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(mockedHttpResponse,
+		        () -> new CaptureBuffer(new ByteChunkPool(), 4, 8, null));
+		responseWrapper.startCapture();
+		responseWrapper.getOutputStream().write("a body too large to be replayed".getBytes());
+
+		interceptor.afterCompletion(mockedHttpRequest, responseWrapper, null, null);
+
+		Mockito.verify(repository, Mockito.times(0)).register(Mockito.anyString(), Mockito.any());
+		Mockito.verify(repository, Mockito.times(1)).unregister("payments", "12345");
+		Assertions.assertThat(mockedHttpResponse.getContentAsString()).isEqualTo("a body too large to be replayed");
+	}
+
+	@Test
+	public void testAfterCompletion_shouldApplyRetentionOnSpilledBodySize_beforeStoringIt() throws Exception {
+		RuleConfiguration largeBodyRule = new RuleConfiguration();
+		largeBodyRule.setMinBodySize(16);
+		largeBodyRule.setTtlMs(60000);
+		largeBodyRule.setDropBody(true);
+		RetentionConfiguration retention = new RetentionConfiguration();
+		retention.setRules(Arrays.asList(largeBodyRule));
+		interceptor.setRetentionPolicy(new RetentionPolicyRulesImpl(retention));
+		BodyStorage bodyStorage = Mockito.mock(BodyStorage.class);
+		Mockito.doReturn(true).when(bodyStorage).isEnabled();
+		interceptor.setBodyStorage(bodyStorage);
+
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(Instant.now()).build();
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_STREAMED_BODY, Boolean.TRUE);
+
+		Path spillDirectory = Files.createTempDirectory("capture-");
+		CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(mockedHttpResponse,
+		        () -> new CaptureBuffer(new ByteChunkPool(), 4, 0, spillDirectory));
+		responseWrapper.startCapture();
+		responseWrapper.getOutputStream().write("a large body spilled to disk".getBytes());
+
+		interceptor.afterCompletion(mockedHttpRequest, responseWrapper, null, null);
+
+		ArgumentCaptor<IdempotentMethodResult> registered = ArgumentCaptor.forClass(IdempotentMethodResult.class);
+		Mockito.verify(repository, Mockito.times(1)).register(Mockito.eq("12345"), registered.capture());
+		Assertions.assertThat(registered.getValue().getTtlMs()).isEqualTo(60000);
+		Assertions.assertThat(registered.getValue().hasBody()).isFalse();
+		Mockito.verify(bodyStorage, Mockito.never()).offload(Mockito.any(IdempotentMethodResult.class),
+		        Mockito.any(InputStream.class));
+	}
+
+	@Test
+	public void testAfterCompletion_shouldCompleteInFlightFirstPresentation_withRegisteredImr() throws Exception {
+		InFlightRegistry inFlightRegistry = Mockito.mock(InFlightRegistry.class);
+		interceptor.setInFlightRegistry(inFlightRegistry);
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(Instant.now()).build();
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+		mockedHttpResponse.setStatus(HttpStatus.CREATED.value());
+
+		interceptor.afterCompletion(mockedHttpRequest, mockedHttpResponse, null, null);
+
+		ArgumentCaptor<IdempotentMethodResult> registered = ArgumentCaptor.forClass(IdempotentMethodResult.class);
+		Mockito.verify(repository, Mockito.times(1)).register(Mockito.eq("12345"), registered.capture());
+		Mockito.verify(inFlightRegistry, Mockito.times(1)).complete(imr, registered.getValue());
+	}
+
+	@Test
+	public void testAfterCompletion_shouldKeepRacingResult_whenProcessedOptimistically() throws Exception {
+		RunningMarkerScheduler runningMarkerScheduler = Mockito.mock(RunningMarkerScheduler.class);
+		interceptor.setRunningMarkerScheduler(runningMarkerScheduler);
+		IdempotentMethodResult imr = IdempotentMethodResult.builder().withIdempotencyKey("12345")
+		        .startedAt(Instant.now()).build();
+		IdempotentMethodResult racingImr = IdempotentMethodResult.builder().from(imr)
+		        .withResponse(new HttpHeaders(), HttpStatus.CREATED).build();
+		mockedHttpRequest.setAttribute(IdempotentReceiverAspect.REQUEST_ATTR_IDEMPOTENCE_METHOD_RESULT, imr);
+		mockedHttpResponse.setStatus(HttpStatus.OK.value());
+		Mockito.doReturn(true).when(runningMarkerScheduler).settle(imr);
+		Mockito.doReturn(racingImr).when(repository).registerIfAbsent(Mockito.any(IdempotentMethodResult.class));
+
+		interceptor.afterCompletion(mockedHttpRequest, mockedHttpResponse, null, null);
+
+		Mockito.verify(repository, Mockito.times(1)).registerIfAbsent(Mockito.any(IdempotentMethodResult.class));
+		Mockito.verify(repository, Mockito.never()).register(Mockito.anyString(),
+		        Mockito.any(IdempotentMethodResult.class));
+	}
+
 }
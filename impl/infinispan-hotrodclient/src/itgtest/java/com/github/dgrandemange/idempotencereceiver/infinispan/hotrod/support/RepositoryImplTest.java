@@ -76,13 +76,12 @@ public class RepositoryImplTest {
 		}
 
 		// Check last inserted entry is available in cache
-		Assertions.assertThat(repo.find(key)).isEqualTo(imr);
+		Assertions.assertThat(repo.find(key).getIdempotencyKey()).isEqualTo(imr.getIdempotencyKey());
 
 		// List cache entries
-		for (Iterator<Entry<String, IdempotentMethodResult>> it = repo.getCache().entrySet().iterator(); it
-		        .hasNext();) {
-			Entry<String, IdempotentMethodResult> e = it.next();
-			LOGGER.info("{} -> {}", e.getKey(), e.getValue().getStartedAt());
+		for (Iterator<Entry<String, Object>> it = repo.getCache().entrySet().iterator(); it.hasNext();) {
+			Entry<String, Object> e = it.next();
+			LOGGER.info("{} -> {}", e.getKey(), repo.decode(e.getValue()).getStartedAt());
 		}
 
 		// Wait for server to evict entries from the cache
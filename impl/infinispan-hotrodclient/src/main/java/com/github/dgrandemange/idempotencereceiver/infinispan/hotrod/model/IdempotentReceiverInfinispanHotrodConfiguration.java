@@ -1,13 +1,35 @@
 package com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class IdempotentReceiverInfinispanHotrodConfiguration {
 
+	/**
+	 * Form of the values stored in the cache
+	 */
+	public enum ValueFormat {
+		/**
+		 * Compact binary form (see
+		 * {@link com.github.dgrandemange.idempotencereceiver.api.codec.IdempotentMethodResultCodec})
+		 */
+		BINARY,
+		/**
+		 * Java serialized form, as written by previous versions
+		 */
+		SERIALIZED;
+	}
+
 	private String hotrodClientConfigPath;
 
 	private String cacheName;
 
 	private long ttlMs;
 
+	private Map<String, IdempotentReceiverInfinispanHotrodNamespaceConfiguration> namespaces = new LinkedHashMap<>();
+
+	private ValueFormat valueFormat = ValueFormat.BINARY;
+
 	/**
 	 * Location of the hotrod client configuration resource<br>
 	 * Can either be a in the classpath (use the '{@code classpath:}' prefix), or in
@@ -64,10 +86,46 @@ public class IdempotentReceiverInfinispanHotrodConfiguration {
 		this.ttlMs = ttlMs;
 	}
 
+	/**
+	 * @return storage regions, indexed by namespace (see
+	 *         {@link com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent#namespace()});
+	 *         entries of a namespace with no region are stored in the repository
+	 *         cache
+	 */
+	public Map<String, IdempotentReceiverInfinispanHotrodNamespaceConfiguration> getNamespaces() {
+		return namespaces;
+	}
+
+	/**
+	 * @param namespaces
+	 *            See {@link #getNamespaces()}
+	 */
+	public void setNamespaces(Map<String, IdempotentReceiverInfinispanHotrodNamespaceConfiguration> namespaces) {
+		this.namespaces = namespaces;
+	}
+
+	/**
+	 * @return form of the values written to the cache; values of both forms are
+	 *         always readable, which allows switching from one form to the other
+	 *         without flushing the cache
+	 */
+	public ValueFormat getValueFormat() {
+		return valueFormat;
+	}
+
+	/**
+	 * @param valueFormat
+	 *            See {@link #getValueFormat()}
+	 */
+	public void setValueFormat(ValueFormat valueFormat) {
+		this.valueFormat = valueFormat;
+	}
+
 	@Override
 	public String toString() {
 		return "IdempotentReceiverInfinispanHotrodConfiguration [hotrodClientConfigPath=" + hotrodClientConfigPath
-		        + ", cacheName=" + cacheName + ", ttlMs=" + ttlMs + "]";
+		        + ", cacheName=" + cacheName + ", ttlMs=" + ttlMs + ", namespaces=" + namespaces + ", valueFormat=" + valueFormat
+		        + "]";
 	}
 
 }
@@ -0,0 +1,53 @@
+package com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model;
+
+/**
+ * Storage region dedicated to the idempotent endpoints of a given namespace (see
+ * {@link com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent#namespace()})
+ */
+public class IdempotentReceiverInfinispanHotrodNamespaceConfiguration {
+
+	private String cacheName;
+
+	private long ttlMs;
+
+	/**
+	 * @return name of a cache declared in the infinispan server, dedicated to the
+	 *         namespace entries; when not set, the repository cache is used
+	 */
+	public String getCacheName() {
+		return cacheName;
+	}
+
+	/**
+	 * @param cacheName
+	 *            See {@link #getCacheName()}
+	 */
+	public void setCacheName(String cacheName) {
+		this.cacheName = cacheName;
+	}
+
+	/**
+	 * @return lifetime (Time To Live) in milliseconds of the namespace entries;
+	 *         when not set (0), the repository TTL is used. An endpoint TTL (see
+	 *         {@link com.github.dgrandemange.idempotencereceiver.api.annot.Idempotent#ttlMs()})
+	 *         takes precedence over this one
+	 */
+	public long getTtlMs() {
+		return ttlMs;
+	}
+
+	/**
+	 * @param ttlMs
+	 *            See {@link #getTtlMs()}
+	 */
+	public void setTtlMs(long ttlMs) {
+		this.ttlMs = ttlMs;
+	}
+
+	@Override
+	public String toString() {
+		return "IdempotentReceiverInfinispanHotrodNamespaceConfiguration [cacheName=" + cacheName + ", ttlMs=" + ttlMs
+		        + "]";
+	}
+
+}
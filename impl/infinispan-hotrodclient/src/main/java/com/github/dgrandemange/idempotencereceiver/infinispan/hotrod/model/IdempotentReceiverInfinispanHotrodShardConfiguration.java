@@ -0,0 +1,35 @@
+package com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model;
+
+public class IdempotentReceiverInfinispanHotrodShardConfiguration extends IdempotentReceiverInfinispanHotrodConfiguration {
+
+	private String name;
+
+	/**
+	 * <p>
+	 * Shard name, used to compute which keys this shard owns.
+	 * </p>
+	 * <p>
+	 * Must be unique and stable : renaming a shard moves all its keys to other
+	 * shards.
+	 * </p>
+	 * 
+	 * @return shard name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name
+	 *            See {@link #getName()}
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String toString() {
+		return "IdempotentReceiverInfinispanHotrodShardConfiguration [name=" + name + ", " + super.toString() + "]";
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IdempotentReceiverInfinispanHotrodShardedConfiguration {
+
+	private List<IdempotentReceiverInfinispanHotrodShardConfiguration> shards = new ArrayList<>();
+
+	private List<String> previousShards = new ArrayList<>();
+
+	/**
+	 * @return configuration of each shard, each one relying on its own infinispan
+	 *         cache (or cluster of)
+	 */
+	public List<IdempotentReceiverInfinispanHotrodShardConfiguration> getShards() {
+		return shards;
+	}
+
+	/**
+	 * @param shards
+	 *            See {@link #getShards()}
+	 */
+	public void setShards(List<IdempotentReceiverInfinispanHotrodShardConfiguration> shards) {
+		this.shards = shards;
+	}
+
+	/**
+	 * <p>
+	 * Names of the shards in place before new shards were added.
+	 * </p>
+	 * <p>
+	 * When not empty, enables the dual-read migration mode : a key not found on
+	 * its owner shard is also looked up on the shard that owned it in the previous
+	 * topology. Should be emptied once entries registered before the topology
+	 * change have expired.
+	 * </p>
+	 * 
+	 * @return names of the previous topology shards
+	 */
+	public List<String> getPreviousShards() {
+		return previousShards;
+	}
+
+	/**
+	 * @param previousShards
+	 *            See {@link #getPreviousShards()}
+	 */
+	public void setPreviousShards(List<String> previousShards) {
+		this.previousShards = previousShards;
+	}
+
+	@Override
+	public String toString() {
+		return "IdempotentReceiverInfinispanHotrodShardedConfiguration [shards=" + shards + ", previousShards="
+		        + previousShards + "]";
+	}
+
+}
@@ -1,17 +1,36 @@
 package com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.service.support;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.MetadataValue;
 import org.infinispan.client.hotrod.RemoteCache;
 import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.annotation.ClientCacheEntryExpired;
+import org.infinispan.client.hotrod.annotation.ClientCacheEntryModified;
+import org.infinispan.client.hotrod.annotation.ClientCacheEntryRemoved;
+import org.infinispan.client.hotrod.annotation.ClientListener;
 import org.infinispan.client.hotrod.configuration.Configuration;
 import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.client.hotrod.event.ClientCacheEntryExpiredEvent;
+import org.infinispan.client.hotrod.event.ClientCacheEntryModifiedEvent;
+import org.infinispan.client.hotrod.event.ClientCacheEntryRemovedEvent;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.commons.api.BasicCache;
 import org.slf4j.Logger;
@@ -20,12 +39,30 @@ import org.springframework.context.ResourceLoaderAware;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 
+import com.github.dgrandemange.idempotencereceiver.api.codec.IdempotentMethodResultCodec;
 import com.github.dgrandemange.idempotencereceiver.api.exception.IdempotentRepositoryException;
 import com.github.dgrandemange.idempotencereceiver.api.model.IdempotentMethodResult;
 import com.github.dgrandemange.idempotencereceiver.api.service.IdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.RepositoryChangeNotifier;
 import com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model.IdempotentReceiverInfinispanHotrodConfiguration;
+import com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model.IdempotentReceiverInfinispanHotrodConfiguration.ValueFormat;
+import com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model.IdempotentReceiverInfinispanHotrodNamespaceConfiguration;
 
-public class RepositoryInfinispanCacheImpl implements IdempotentRepository, ResourceLoaderAware {
+/**
+ * <p>
+ * Idempotent repository backed by remote Infinispan caches, accessed through
+ * the Hot Rod client.
+ * </p>
+ *
+ * <p>
+ * Entries changes are notified through a Hot Rod client listener, registered on
+ * the repository cache and on the namespace caches once a change listener has
+ * been added : every instance is then told when a result is done, removed or
+ * has expired, whichever instance changed it.
+ * </p>
+ */
+public class RepositoryInfinispanCacheImpl
+        implements IdempotentRepository, RepositoryChangeNotifier, ResourceLoaderAware {
 
 	public static final String REPOSITORY_TYPE = "infinispan-cache";
 
@@ -42,7 +79,49 @@ public class RepositoryInfinispanCacheImpl implements IdempotentRepository, Reso
 
 	private RemoteCacheManager rcm;
 
-	private RemoteCache<String, IdempotentMethodResult> cache;
+	/**
+	 * Values are either binary encoded results (byte arrays), or Java serialized
+	 * results
+	 */
+	private volatile RemoteCache<String, Object> cache;
+
+	/**
+	 * Guards the repository cache retrieval. A lock rather than a monitor, not
+	 * to pin the virtual threads waiting for the remote cache manager
+	 */
+	private final Lock cacheLock = new ReentrantLock();
+
+	/**
+	 * Caches dedicated to namespaces, indexed by cache name
+	 */
+	private final Map<String, RemoteCache<String, Object>> namespaceCaches = new ConcurrentHashMap<>();
+
+	private final IdempotentMethodResultCodec codec = new IdempotentMethodResultCodec();
+
+	private final List<RepositoryChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Hot Rod client listener relaying the modified, removed and expired entries
+	 * keys to the change listeners
+	 */
+	@ClientListener
+	public class CacheEntryChangeListener {
+
+		@ClientCacheEntryModified
+		public void onModified(ClientCacheEntryModifiedEvent<String> event) {
+			fireChange(event.getKey());
+		}
+
+		@ClientCacheEntryRemoved
+		public void onRemoved(ClientCacheEntryRemovedEvent<String> event) {
+			fireChange(event.getKey());
+		}
+
+		@ClientCacheEntryExpired
+		public void onExpired(ClientCacheEntryExpiredEvent<String> event) {
+			fireChange(event.getKey());
+		}
+	}
 
 	@PostConstruct
 	public void initIt() throws Exception {
@@ -79,6 +158,7 @@ public class RepositoryInfinispanCacheImpl implements IdempotentRepository, Reso
 		if (rcm != null) {
 			rcm.stop();
 			rcm.close();
+			namespaceCaches.clear();
 		}
 		LOGGER.info("Infinispan idempotent repository now stopped");
 	}
@@ -86,8 +166,8 @@ public class RepositoryInfinispanCacheImpl implements IdempotentRepository, Reso
 	@Override
 	public IdempotentMethodResult register(String idempotencyKey, IdempotentMethodResult imr) {
 		try {
-			checkCacheIsInitialized();
-			getCache().put(idempotencyKey, imr, repositoryConfig.getTtlMs(), TimeUnit.MILLISECONDS);
+			resolveCache(imr.getNamespace()).put(idempotencyKey, encode(imr), resolveTtlMs(imr),
+			        TimeUnit.MILLISECONDS);
 			return imr;
 		} catch (Exception e) {
 			throw new IdempotentRepositoryException(e);
@@ -96,9 +176,13 @@ public class RepositoryInfinispanCacheImpl implements IdempotentRepository, Reso
 
 	@Override
 	public IdempotentMethodResult unregister(String idempotencyKey) {
+		return unregister(null, idempotencyKey);
+	}
+
+	@Override
+	public IdempotentMethodResult unregister(String namespace, String idempotencyKey) {
 		try {
-			checkCacheIsInitialized();
-			return getCache().remove(idempotencyKey);
+			return decode(resolveCache(namespace).remove(idempotencyKey));
 		} catch (Exception e) {
 			throw new IdempotentRepositoryException(e);
 		}
@@ -106,30 +190,295 @@ public class RepositoryInfinispanCacheImpl implements IdempotentRepository, Reso
 
 	@Override
 	public IdempotentMethodResult find(String idempotencyKey) {
+		return find(null, idempotencyKey);
+	}
+
+	@Override
+	public IdempotentMethodResult find(String namespace, String idempotencyKey) {
 		try {
-			checkCacheIsInitialized();
-			return getCache().get(idempotencyKey);
+			return decode(resolveCache(namespace).get(idempotencyKey));
 		} catch (Exception e) {
 			throw new IdempotentRepositoryException(e);
 		}
 	}
 
+	/**
+	 * Non blocking read, decoded on the Hot Rod client thread completing it
+	 */
+	@Override
+	public CompletableFuture<IdempotentMethodResult> findAsync(String namespace, String idempotencyKey) {
+		try {
+			return decodeAsync(resolveCache(namespace).getAsync(idempotencyKey));
+		} catch (Exception e) {
+			return failedFuture(e);
+		}
+	}
+
+	/**
+	 * Non blocking write
+	 */
+	@Override
+	public CompletableFuture<IdempotentMethodResult> registerAsync(IdempotentMethodResult imr) {
+		try {
+			return decodeAsync(resolveCache(imr.getNamespace())
+			        .putAsync(imr.getIdempotencyKey(), encode(imr), resolveTtlMs(imr), TimeUnit.MILLISECONDS))
+			                .thenApply(previous -> imr);
+		} catch (Exception e) {
+			return failedFuture(e);
+		}
+	}
+
+	/**
+	 * Non blocking removal
+	 */
+	@Override
+	public CompletableFuture<IdempotentMethodResult> unregisterAsync(String namespace, String idempotencyKey) {
+		try {
+			return decodeAsync(resolveCache(namespace).removeAsync(idempotencyKey));
+		} catch (Exception e) {
+			return failedFuture(e);
+		}
+	}
+
+	/**
+	 * @return future value decoded on the Hot Rod client thread completing given
+	 *         operation, failed with an {@link IdempotentRepositoryException} if
+	 *         the operation fails
+	 */
+	CompletableFuture<IdempotentMethodResult> decodeAsync(CompletableFuture<Object> operation) {
+		CompletableFuture<IdempotentMethodResult> future = new CompletableFuture<>();
+		operation.whenComplete((value, t) -> {
+			if (Objects.nonNull(t)) {
+				future.completeExceptionally(new IdempotentRepositoryException(t));
+				return;
+			}
+			try {
+				future.complete(decode(value));
+			} catch (Exception e) {
+				future.completeExceptionally(new IdempotentRepositoryException(e));
+			}
+		});
+		return future;
+	}
+
+	static CompletableFuture<IdempotentMethodResult> failedFuture(Exception e) {
+		CompletableFuture<IdempotentMethodResult> future = new CompletableFuture<>();
+		future.completeExceptionally(new IdempotentRepositoryException(e));
+		return future;
+	}
+
+	@Override
+	public void addChangeListener(RepositoryChangeListener listener) {
+		boolean first = changeListeners.isEmpty();
+		changeListeners.add(listener);
+		if (first) {
+			if (Objects.nonNull(cache)) {
+				addCacheEntryChangeListener(cache);
+			}
+			for (RemoteCache<String, Object> namespaceCache : namespaceCaches.values()) {
+				addCacheEntryChangeListener(namespaceCache);
+			}
+		}
+	}
+
+	void fireChange(String idempotencyKey) {
+		for (RepositoryChangeListener listener : changeListeners) {
+			listener.onChange(idempotencyKey);
+		}
+	}
+
+	void addCacheEntryChangeListener(RemoteCache<String, Object> remoteCache) {
+		try {
+			remoteCache.addClientListener(new CacheEntryChangeListener());
+			LOGGER.debug("Entries changes of cache '{}' are now listened to", remoteCache.getName());
+		} catch (HotRodClientException e) {
+			LOGGER.warn("Unable to listen to entries changes of cache '{}'. Cause : {}", remoteCache.getName(),
+			        e.getMessage());
+		}
+	}
+
+	/**
+	 * Registers the results in one batch per cache and lifetime
+	 */
+	@Override
+	public void registerAll(Collection<IdempotentMethodResult> imrs) {
+		Map<RemoteCache<String, Object>, Map<Long, Map<String, Object>>> batches = new HashMap<>();
+		for (IdempotentMethodResult imr : imrs) {
+			batches.computeIfAbsent(resolveCache(imr.getNamespace()), c -> new HashMap<>())
+			        .computeIfAbsent(resolveTtlMs(imr), ttlMs -> new HashMap<>())
+			        .put(imr.getIdempotencyKey(), encode(imr));
+		}
+
+		try {
+			for (Map.Entry<RemoteCache<String, Object>, Map<Long, Map<String, Object>>> batch : batches.entrySet()) {
+				for (Map.Entry<Long, Map<String, Object>> entries : batch.getValue().entrySet()) {
+					batch.getKey().putAll(entries.getValue(), entries.getKey(), TimeUnit.MILLISECONDS);
+				}
+			}
+		} catch (Exception e) {
+			throw new IdempotentRepositoryException(e);
+		}
+	}
+
+	/**
+	 * Issues all removals at once, then waits for their completion
+	 */
+	@Override
+	public void unregisterAll(Collection<IdempotentMethodResult> imrs) {
+		try {
+			List<CompletableFuture<Object>> removals = new ArrayList<>(imrs.size());
+			for (IdempotentMethodResult imr : imrs) {
+				removals.add(resolveCache(imr.getNamespace()).removeAsync(imr.getIdempotencyKey()));
+			}
+			CompletableFuture.allOf(removals.toArray(new CompletableFuture<?>[removals.size()])).join();
+		} catch (Exception e) {
+			throw new IdempotentRepositoryException(e);
+		}
+	}
+
+	/**
+	 * Single conditional write, returning the value already registered if any
+	 */
+	@Override
+	public IdempotentMethodResult registerIfAbsent(IdempotentMethodResult imr) {
+		Object current;
+		try {
+			current = resolveCache(imr.getNamespace()).withFlags(Flag.FORCE_RETURN_VALUE)
+			        .putIfAbsent(imr.getIdempotencyKey(), encode(imr), resolveTtlMs(imr), TimeUnit.MILLISECONDS);
+		} catch (Exception e) {
+			throw new IdempotentRepositoryException(e);
+		}
+		return Objects.isNull(current) ? null : decode(current);
+	}
+
+	/**
+	 * Conditional write on the entry version read along with the expired result,
+	 * or on the entry absence when it has expired in the meantime
+	 */
+	@Override
+	public boolean takeOver(IdempotentMethodResult expired, IdempotentMethodResult imr) {
+		try {
+			RemoteCache<String, Object> remoteCache = resolveCache(imr.getNamespace());
+			MetadataValue<Object> current = remoteCache.getWithMetadata(imr.getIdempotencyKey());
+			if (Objects.isNull(current)) {
+				return Objects.isNull(remoteCache.withFlags(Flag.FORCE_RETURN_VALUE)
+				        .putIfAbsent(imr.getIdempotencyKey(), encode(imr), resolveTtlMs(imr), TimeUnit.MILLISECONDS));
+			}
+			if (!decode(current.getValue()).isSameLeaseAs(expired)) {
+				return false;
+			}
+			return remoteCache.replaceWithVersion(imr.getIdempotencyKey(), encode(imr), current.getVersion(),
+			        resolveTtlMs(imr), TimeUnit.MILLISECONDS, 0, TimeUnit.MILLISECONDS);
+		} catch (Exception e) {
+			throw new IdempotentRepositoryException(e);
+		}
+	}
+
+	Object encode(IdempotentMethodResult imr) {
+		return ValueFormat.SERIALIZED.equals(repositoryConfig.getValueFormat()) ? imr : codec.encode(imr);
+	}
+
+	/**
+	 * @param value
+	 *            value read from the cache, in any form
+	 * @return decoded result, whose body is only decoded on first access when
+	 *         stored in binary form
+	 */
+	public IdempotentMethodResult decode(Object value) {
+		if (value instanceof byte[]) {
+			return codec.decode((byte[]) value);
+		}
+		return (IdempotentMethodResult) value;
+	}
+
+	/**
+	 * @param namespace
+	 *            namespace of the idempotent endpoint, may be null
+	 * @return cache dedicated to given namespace if any, repository cache
+	 *         otherwise
+	 */
+	RemoteCache<String, Object> resolveCache(String namespace) {
+		IdempotentReceiverInfinispanHotrodNamespaceConfiguration region = findNamespaceRegion(namespace);
+		if (Objects.isNull(region) || Objects.isNull(region.getCacheName())
+		        || region.getCacheName().equals(repositoryConfig.getCacheName())) {
+			checkCacheIsInitialized();
+			return this.cache;
+		}
+
+		RemoteCache<String, Object> namespaceCache = namespaceCaches.get(region.getCacheName());
+		if (Objects.nonNull(namespaceCache)) {
+			return namespaceCache;
+		}
+
+		// Retrieved outside of computeIfAbsent(), which would hold the map bin
+		// monitor during the remote call
+		String cacheName = region.getCacheName();
+		LOGGER.debug("Retrieving cache '{}' of namespace '{}' from remote cache manager ...", cacheName, namespace);
+		namespaceCache = this.rcm.getCache(cacheName);
+		RemoteCache<String, Object> retrieved = namespaceCaches.putIfAbsent(cacheName, namespaceCache);
+		if (Objects.nonNull(retrieved)) {
+			return retrieved;
+		}
+		if (!changeListeners.isEmpty()) {
+			addCacheEntryChangeListener(namespaceCache);
+		}
+		return namespaceCache;
+	}
+
+	/**
+	 * @param imr
+	 *            idempotent method result to store
+	 * @return TTL of the endpoint if set, TTL of the endpoint namespace region if
+	 *         set, repository TTL otherwise
+	 */
+	long resolveTtlMs(IdempotentMethodResult imr) {
+		if (imr.getTtlMs() > 0) {
+			return imr.getTtlMs();
+		}
+
+		IdempotentReceiverInfinispanHotrodNamespaceConfiguration region = findNamespaceRegion(imr.getNamespace());
+		if (Objects.nonNull(region) && region.getTtlMs() > 0) {
+			return region.getTtlMs();
+		}
+
+		return repositoryConfig.getTtlMs();
+	}
+
+	IdempotentReceiverInfinispanHotrodNamespaceConfiguration findNamespaceRegion(String namespace) {
+		if (Objects.isNull(namespace) || Objects.isNull(repositoryConfig.getNamespaces())) {
+			return null;
+		}
+		return repositoryConfig.getNamespaces().get(namespace);
+	}
+
 	void checkCacheIsInitialized() {
 		if (Objects.isNull(this.getCache())) {
 			initCache();
 		}
 	}
 
-	synchronized void initCache() {
-		LOGGER.debug("Retrieving cache '{}' from remote cache manager ...", repositoryConfig.getCacheName());
-		setCache(this.rcm.getCache(repositoryConfig.getCacheName()));
+	void initCache() {
+		cacheLock.lock();
+		try {
+			if (Objects.nonNull(cache)) {
+				// Retrieved by a concurrent request meanwhile
+				return;
+			}
+			LOGGER.debug("Retrieving cache '{}' from remote cache manager ...", repositoryConfig.getCacheName());
+			setCache(this.rcm.getCache(repositoryConfig.getCacheName()));
+			if (Objects.nonNull(cache) && !changeListeners.isEmpty()) {
+				addCacheEntryChangeListener(cache);
+			}
+		} finally {
+			cacheLock.unlock();
+		}
 	}
 
-	void setCache(RemoteCache<String, IdempotentMethodResult> cache) {
+	void setCache(RemoteCache<String, Object> cache) {
 		this.cache = cache;
 	}
 
-	public BasicCache<String, IdempotentMethodResult> getCache() {
+	public BasicCache<String, Object> getCache() {
 		return this.cache;
 	}
 
@@ -2,6 +2,7 @@ package com.github.dgrandemange.idempotencereceiver.autoconfigure;
 
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -13,27 +14,151 @@ import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import com.github.dgrandemange.idempotencereceiver.api.aspect.IdempotentReceiverAspect;
+import com.github.dgrandemange.idempotencereceiver.api.service.BodyStore;
+import com.github.dgrandemange.idempotencereceiver.api.service.RetentionPolicy;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyCompression;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.BodyStorage;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.FileSystemBodyStore;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.GenerationalFingerprintSet;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.InFlightRegistry;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LeaseManager;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.LocalFallbackStore;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayCodecRegistry;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ReplayHeaderPolicy;
 import com.github.dgrandemange.idempotencereceiver.api.service.support.ResilientIdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RetentionPolicyRulesImpl;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RetryDelayStatistics;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningMarkerScheduler;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.RunningResultWatcher;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ShardedIdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.api.service.support.WriteBehindFinalizer;
 import com.github.dgrandemange.idempotencereceiver.api.web.controller.IdempotentReceiverControllerAdvice;
 import com.github.dgrandemange.idempotencereceiver.api.web.filter.CacheRequestContentFilter;
+import com.github.dgrandemange.idempotencereceiver.api.web.filter.CaptureResponseContentFilter;
+import com.github.dgrandemange.idempotencereceiver.api.web.filter.PreDispatchIdempotenceFilter;
+import com.github.dgrandemange.idempotencereceiver.api.web.http.DirectReplayWriter;
 import com.github.dgrandemange.idempotencereceiver.api.web.interceptor.ImrHandlerInterceptor;
 import com.github.dgrandemange.idempotencereceiver.autoconfigure.repository.infinispan.IdempotentReceiverRepositoryInfinispanAutoConfiguration;
 import com.github.dgrandemange.idempotencereceiver.autoconfigure.repository.memory.IdempotentReceiverRepositoryMemoryAutoConfiguration;
+import com.github.dgrandemange.idempotencereceiver.autoconfigure.repository.sharded.IdempotentReceiverRepositoryShardedAutoConfiguration;
 
 @Configuration
 @AutoConfigureAfter({ IdempotentReceiverRepositoryMemoryAutoConfiguration.class,
-        IdempotentReceiverRepositoryInfinispanAutoConfiguration.class })
+        IdempotentReceiverRepositoryInfinispanAutoConfiguration.class,
+        IdempotentReceiverRepositoryShardedAutoConfiguration.class })
 @ConditionalOnBean(name = "idempotentRepository")
 @EnableConfigurationProperties(IdempotentReceiverCommonProperties.class)
 @EnableAspectJAutoProxy
 public class IdempotentReceiverCommonAutoConfiguration implements WebMvcConfigurer {
 
+	/**
+	 * Not declared for a sharded repository, as each shard is already guarded by
+	 * its own resiliency policies
+	 */
 	@Bean
 	@Primary
+	@ConditionalOnMissingBean(ShardedIdempotentRepository.class)
 	ResilientIdempotentRepository resilientIdempotencyRepository() {
 		return new ResilientIdempotentRepository();
 	}
 
+	@Bean
+	@ConditionalOnMissingBean(RetentionPolicy.class)
+	RetentionPolicyRulesImpl retentionPolicy() {
+		return new RetentionPolicyRulesImpl();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(BodyCompression.class)
+	BodyCompression bodyCompression() {
+		return new BodyCompression();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(BodyStore.class)
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "repository.body-store.type", havingValue = FileSystemBodyStore.STORE_TYPE)
+	FileSystemBodyStore fileSystemBodyStore() {
+		return new FileSystemBodyStore();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(BodyStorage.class)
+	BodyStorage bodyStorage() {
+		return new BodyStorage();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(ReplayHeaderPolicy.class)
+	ReplayHeaderPolicy replayHeaderPolicy() {
+		return new ReplayHeaderPolicy();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(ReplayCodecRegistry.class)
+	ReplayCodecRegistry replayCodecRegistry() {
+		return new ReplayCodecRegistry();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(RetryDelayStatistics.class)
+	RetryDelayStatistics retryDelayStatistics() {
+		return new RetryDelayStatistics();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(GenerationalFingerprintSet.class)
+	GenerationalFingerprintSet generationalFingerprintSet() {
+		return new GenerationalFingerprintSet();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(InFlightRegistry.class)
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "single-flight.enabled", havingValue = "true")
+	InFlightRegistry inFlightRegistry() {
+		return new InFlightRegistry();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(RunningResultWatcher.class)
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "park.enabled", havingValue = "true")
+	RunningResultWatcher runningResultWatcher() {
+		return new RunningResultWatcher();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(LeaseManager.class)
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "lease.enabled", havingValue = "true")
+	LeaseManager leaseManager() {
+		return new LeaseManager();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(RunningMarkerScheduler.class)
+	RunningMarkerScheduler runningMarkerScheduler() {
+		return new RunningMarkerScheduler();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(WriteBehindFinalizer.class)
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "write-behind.enabled", havingValue = "true")
+	WriteBehindFinalizer writeBehindFinalizer() {
+		return new WriteBehindFinalizer();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(LocalFallbackStore.class)
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "degradation.local-fallback.enabled", havingValue = "true")
+	LocalFallbackStore localFallbackStore() {
+		return new LocalFallbackStore();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(DirectReplayWriter.class)
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "direct-replay", matchIfMissing = true)
+	DirectReplayWriter directReplayWriter() {
+		return new DirectReplayWriter();
+	}
+
 	@Bean
 	IdempotentReceiverControllerAdvice idempotentReceiverControllerAdvice() {
 		return new IdempotentReceiverControllerAdvice();
@@ -60,6 +185,18 @@ public class IdempotentReceiverCommonAutoConfiguration implements WebMvcConfigur
 		return new CacheRequestContentFilter();
 	}
 
+	@Bean
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "register-capture-response-content-filter", matchIfMissing = true)
+	CaptureResponseContentFilter captureResponseContentFilter() {
+		return new CaptureResponseContentFilter();
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = IdempotentReceiverCommonProperties.PREFIX, name = "pre-dispatch", havingValue = "true")
+	PreDispatchIdempotenceFilter preDispatchIdempotenceFilter() {
+		return new PreDispatchIdempotenceFilter();
+	}
+
 	@Bean
 	@Conditional(SpringfoxSwaggerPluginSupportCondition.class)
 	public Object idempotencyKeyHeaderBuilder()
@@ -0,0 +1,98 @@
+package com.github.dgrandemange.idempotencereceiver.autoconfigure.repository.sharded;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ResourceLoaderAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ShardedIdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.autoconfigure.IdempotentReceiverCommonProperties;
+import com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model.IdempotentReceiverInfinispanHotrodShardConfiguration;
+import com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.service.support.RepositoryInfinispanCacheImpl;
+
+@Configuration
+@ConditionalOnProperty(name = IdempotentReceiverCommonProperties.PREFIX
+        + ".repository.type", havingValue = ShardedIdempotentRepository.REPOSITORY_TYPE)
+@EnableConfigurationProperties({ IdempotentReceiverRepositoryShardedProperties.class,
+        IdempotentReceiverCommonProperties.class })
+public class IdempotentReceiverRepositoryShardedAutoConfiguration implements ResourceLoaderAware {
+	private static final String PROPERTY_NOT_CONFIGURED_ERRMSG = "%s not configured properly for shard #%d. Please check "
+	        + IdempotentReceiverRepositoryShardedProperties.PREFIX + ".shards[*].* properties settings in configuration file.";
+
+	@Autowired
+	IdempotentReceiverRepositoryShardedProperties properties;
+
+	@Autowired
+	IdempotentReceiverCommonProperties commonProperties;
+
+	private ResourceLoader resourceLoader;
+
+	private final List<RepositoryInfinispanCacheImpl> shardRepositories = new ArrayList<>();
+
+	@Bean
+	@ConditionalOnMissingBean
+	public ShardedIdempotentRepository idempotentRepository() throws Exception {
+		List<IdempotentReceiverInfinispanHotrodShardConfiguration> shardConfigs = properties.getShards();
+		if (Objects.isNull(shardConfigs) || shardConfigs.isEmpty()) {
+			throw new IllegalStateException(String.format(
+			        "No shard configured. Please check %s.shards[*].* properties settings in configuration file.",
+			        IdempotentReceiverRepositoryShardedProperties.PREFIX));
+		}
+
+		Map<String, RepositoryInfinispanCacheImpl> shards = new LinkedHashMap<>();
+		for (int i = 0; i < shardConfigs.size(); i++) {
+			IdempotentReceiverInfinispanHotrodShardConfiguration shardConfig = shardConfigs.get(i);
+
+			// Check configured properties
+			Objects.requireNonNull(shardConfig.getName(), String.format(PROPERTY_NOT_CONFIGURED_ERRMSG, "Shard name", i));
+
+			Objects.requireNonNull(shardConfig.getHotrodClientConfigPath(),
+			        String.format(PROPERTY_NOT_CONFIGURED_ERRMSG, "Hotrod client configuration path", i));
+
+			Objects.requireNonNull(shardConfig.getCacheName(),
+			        String.format(PROPERTY_NOT_CONFIGURED_ERRMSG, "Infinispan cache name", i));
+
+			if (shards.containsKey(shardConfig.getName())) {
+				throw new IllegalStateException(String.format("Duplicate shard name '%s'", shardConfig.getName()));
+			}
+
+			RepositoryInfinispanCacheImpl repo = new RepositoryInfinispanCacheImpl();
+			repo.setResourceLoader(resourceLoader);
+			repo.setRepositoryConfig(shardConfig);
+			shardRepositories.add(repo);
+			repo.initIt();
+
+			shards.put(shardConfig.getName(), repo);
+		}
+
+		ShardedIdempotentRepository repo = new ShardedIdempotentRepository(shards,
+		        commonProperties.getRepository().getResiliency(), commonProperties.getExecution());
+		repo.setPreviousShardNames(properties.getPreviousShards());
+		return repo;
+	}
+
+	@PreDestroy
+	public void cleanUp() throws Exception {
+		for (RepositoryInfinispanCacheImpl repo : shardRepositories) {
+			repo.cleanUp();
+		}
+	}
+
+	@Override
+	public void setResourceLoader(ResourceLoader resourceLoader) {
+		this.resourceLoader = resourceLoader;
+	}
+
+}
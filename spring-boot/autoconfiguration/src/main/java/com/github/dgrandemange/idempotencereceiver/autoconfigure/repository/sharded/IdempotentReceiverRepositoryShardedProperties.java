@@ -0,0 +1,26 @@
+package com.github.dgrandemange.idempotencereceiver.autoconfigure.repository.sharded;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.github.dgrandemange.idempotencereceiver.api.service.support.ShardedIdempotentRepository;
+import com.github.dgrandemange.idempotencereceiver.autoconfigure.IdempotentReceiverCommonProperties;
+import com.github.dgrandemange.idempotencereceiver.infinispan.hotrod.model.IdempotentReceiverInfinispanHotrodShardedConfiguration;
+
+@ConfigurationProperties(prefix = IdempotentReceiverRepositoryShardedProperties.PREFIX)
+public class IdempotentReceiverRepositoryShardedProperties extends IdempotentReceiverInfinispanHotrodShardedConfiguration {
+
+	public static final String PREFIX = IdempotentReceiverCommonProperties.PREFIX + ".repository."
+	        + ShardedIdempotentRepository.REPOSITORY_TYPE;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IdempotentReceiverRepositoryShardedProperties.class);
+
+	@PostConstruct
+	public void postConstruct() {
+		LOGGER.info(super.toString());
+	}
+
+}